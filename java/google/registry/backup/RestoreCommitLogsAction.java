@@ -19,6 +19,7 @@ import static com.google.common.collect.Iterators.peekingIterator;
 import static google.registry.backup.BackupUtils.createDeserializingIterator;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import com.google.appengine.api.datastore.DatastoreService;
 import com.google.appengine.api.datastore.Entity;
@@ -26,6 +27,7 @@ import com.google.appengine.api.datastore.EntityTranslator;
 import com.google.appengine.tools.cloudstorage.GcsFileMetadata;
 import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.common.base.Function;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Lists;
 import com.google.common.collect.PeekingIterator;
@@ -47,7 +49,9 @@ import google.registry.util.Retrier;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.Channels;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -55,7 +59,13 @@ import java.util.Set;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 
-/** Restore Registry 2 commit logs from GCS to Datastore. */
+/**
+ * Restore Registry 2 commit logs from GCS to Datastore.
+ *
+ * <p>The checkpoint stored in each diff file is saved only once the whole file has been restored,
+ * so if a restore is interrupted, running it again with the same parameters skips the files that
+ * were already restored.
+ */
 @Action(
   path = RestoreCommitLogsAction.PATH,
   method = Action.Method.POST,
@@ -97,23 +107,45 @@ public class RestoreCommitLogsAction implements Runnable {
       logger.info("Nothing to restore");
       return;
     }
+    Stopwatch stopwatch = Stopwatch.createStarted();
     Map<Integer, DateTime> bucketTimestamps = new HashMap<>();
     CommitLogCheckpoint lastCheckpoint = null;
+    int filesProcessed = 0;
+    long transactionsRestored = 0;
     for (GcsFileMetadata metadata : diffFiles) {
-      logger.infofmt("Restoring: %s", metadata.getFilename().getObjectName());
+      String filename = metadata.getFilename().getObjectName();
+      filesProcessed++;
       try (InputStream input = Channels.newInputStream(
           gcsService.openPrefetchingReadChannel(metadata.getFilename(), 0, BLOCK_SIZE))) {
         PeekingIterator<ImmutableObject> commitLogs =
             peekingIterator(createDeserializingIterator(input));
         lastCheckpoint = (CommitLogCheckpoint) commitLogs.next();
-        saveOfy(asList(lastCheckpoint));  // Save the checkpoint itself.
-        while (commitLogs.hasNext()) {
-          CommitLogManifest manifest = restoreOneTransaction(commitLogs);
-          bucketTimestamps.put(manifest.getBucketId(), manifest.getCommitTime());
+        if (isRestored(lastCheckpoint)) {
+          // An earlier, interrupted restore got through this file, so only its bucket timestamps
+          // are needed.
+          logger.infofmt(
+              "Skipping already restored file %d of %d: %s",
+              filesProcessed, diffFiles.size(), filename);
+          while (commitLogs.hasNext()) {
+            ImmutableObject commitLog = commitLogs.next();
+            if (commitLog instanceof CommitLogManifest) {
+              CommitLogManifest manifest = (CommitLogManifest) commitLog;
+              bucketTimestamps.put(manifest.getBucketId(), manifest.getCommitTime());
+            }
+          }
+          continue;
         }
+        logger.infofmt("Restoring file %d of %d: %s", filesProcessed, diffFiles.size(), filename);
+        transactionsRestored += restoreDiffFile(commitLogs, bucketTimestamps);
+        // Save the checkpoint itself only once everything in the file has been restored, so that it
+        // marks the file as done for a restore that is resumed after being interrupted.
+        saveOfy(asList(lastCheckpoint));
       } catch (IOException e) {
         throw new RuntimeException(e);
       }
+      logger.infofmt(
+          "Restored %d transactions in %s (%.1f per second)",
+          transactionsRestored, stopwatch, getRatePerSecond(transactionsRestored, stopwatch));
     }
     // Restore the CommitLogCheckpointRoot and CommitLogBuckets.
     saveOfy(
@@ -129,34 +161,83 @@ public class RestoreCommitLogsAction implements Runnable {
     logger.info("Restore complete");
   }
 
+  /** Returns whether the diff file ending at the given checkpoint has already been restored. */
+  private boolean isRestored(CommitLogCheckpoint checkpoint) {
+    return ofy().load().key(Key.create(checkpoint)).now() != null;
+  }
+
+  private static double getRatePerSecond(long count, Stopwatch stopwatch) {
+    return count * 1000.0 / Math.max(1, stopwatch.elapsed(MILLISECONDS));
+  }
+
   /**
-   * Restore the contents of one transaction to Datastore.
+   * Restores the transactions of one diff file to Datastore, in batches.
    *
-   * <p>The objects to delete are listed in the {@link CommitLogManifest}, which will be the first
-   * object in the iterable. The objects to save follow, each as a {@link CommitLogMutation}. We
-   * restore by deleting the deletes and recreating the saves from their proto form. We also save
-   * the commit logs themselves back to Datastore, so that the commit log system itself is
-   * transparently restored alongside the data.
+   * <p>Consecutive transactions are gathered into a {@link TransactionBatch} until one touches a
+   * key that is already in the batch, or the batch is full. A batch is restored with one put and
+   * one delete, which can be done in any order and concurrently, because none of its transactions
+   * touch the same entity. Batches are restored one after another, so the writes to any one entity
+   * are still restored in commit order.
+   *
+   * @return the number of transactions restored
+   */
+  private int restoreDiffFile(
+      PeekingIterator<ImmutableObject> commitLogs, Map<Integer, DateTime> bucketTimestamps) {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    TransactionBatch batch = new TransactionBatch();
+    int transactions = 0;
+    int batches = 0;
+    while (commitLogs.hasNext()) {
+      CommitLogManifest manifest = (CommitLogManifest) commitLogs.next();
+      List<Entity> entitiesToSave = readTransaction(manifest, commitLogs);
+      if (!batch.canAdd(manifest.getDeletions(), entitiesToSave)) {
+        restoreBatch(batch);
+        batches++;
+        batch = new TransactionBatch();
+      }
+      batch.add(manifest.getDeletions(), entitiesToSave);
+      bucketTimestamps.put(manifest.getBucketId(), manifest.getCommitTime());
+      transactions++;
+    }
+    if (!batch.isEmpty()) {
+      restoreBatch(batch);
+      batches++;
+    }
+    logger.infofmt(
+        "Restored %d transactions in %d batches in %s (%.1f per second)",
+        transactions, batches, stopwatch, getRatePerSecond(transactions, stopwatch));
+    return transactions;
+  }
+
+  /**
+   * Reads the contents of one transaction, returning the entities to save.
    *
-   * @return the manifest, for use in restoring the {@link CommitLogBucket}.
+   * <p>The objects to delete are listed in the {@link CommitLogManifest}, which precedes the
+   * objects to save, each as a {@link CommitLogMutation}. We restore by deleting the deletes and
+   * recreating the saves from their proto form. We also save the commit logs themselves back to
+   * Datastore, so that the commit log system itself is transparently restored alongside the data.
    */
-  private CommitLogManifest restoreOneTransaction(PeekingIterator<ImmutableObject> commitLogs) {
-    final CommitLogManifest manifest = (CommitLogManifest) commitLogs.next();
-    Result<?> deleteResult = deleteAsync(manifest.getDeletions());
+  private static List<Entity> readTransaction(
+      CommitLogManifest manifest, PeekingIterator<ImmutableObject> commitLogs) {
     List<Entity> entitiesToSave = Lists.newArrayList(ofy().save().toEntity(manifest));
     while (commitLogs.hasNext() && commitLogs.peek() instanceof CommitLogMutation) {
       CommitLogMutation mutation = (CommitLogMutation) commitLogs.next();
       entitiesToSave.add(ofy().save().toEntity(mutation));
       entitiesToSave.add(EntityTranslator.createFromPbBytes(mutation.getEntityProtoBytes()));
     }
-    saveRaw(entitiesToSave);
+    return entitiesToSave;
+  }
+
+  /** Restores the contents of a batch of transactions to Datastore. */
+  private void restoreBatch(TransactionBatch batch) {
+    Set<Key<?>> keysToDelete = batch.keysToDelete;
+    Result<?> deleteResult = deleteAsync(keysToDelete);
+    saveRaw(batch.entitiesToSave);
     try {
       deleteResult.now();
     } catch (Exception e) {
-      retrier.callWithRetry(
-          () -> deleteAsync(manifest.getDeletions()).now(), RuntimeException.class);
+      retrier.callWithRetry(() -> deleteAsync(keysToDelete).now(), RuntimeException.class);
     }
-    return manifest;
   }
 
   private void saveRaw(List<Entity> entitiesToSave) {
@@ -185,4 +266,55 @@ public class RestoreCommitLogsAction implements Runnable {
         : ofy().deleteWithoutBackup().keys(keysToDelete);
   }
 
+  /** Transactions that touch disjoint sets of entities, to be restored together. */
+  private static class TransactionBatch {
+
+    /** The number of entities that can be saved, or deleted, with one Datastore call. */
+    private static final int MAX_ENTITIES = 500;
+
+    final List<Entity> entitiesToSave = new ArrayList<>();
+    final Set<Key<?>> keysToDelete = new HashSet<>();
+    final Set<com.google.appengine.api.datastore.Key> touchedKeys = new HashSet<>();
+
+    boolean isEmpty() {
+      return entitiesToSave.isEmpty() && keysToDelete.isEmpty();
+    }
+
+    /**
+     * Returns whether a transaction can be added, which is when it touches none of the entities
+     * in this batch and fits within it. A transaction can always be added to an empty batch.
+     */
+    boolean canAdd(Set<Key<?>> deletions, List<Entity> saves) {
+      if (isEmpty()) {
+        return true;
+      }
+      if (entitiesToSave.size() + saves.size() > MAX_ENTITIES
+          || keysToDelete.size() + deletions.size() > MAX_ENTITIES) {
+        return false;
+      }
+      for (Key<?> key : deletions) {
+        if (touchedKeys.contains(key.getRaw())) {
+          return false;
+        }
+      }
+      for (Entity entity : saves) {
+        if (touchedKeys.contains(entity.getKey())) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void add(Set<Key<?>> deletions, List<Entity> saves) {
+      keysToDelete.addAll(deletions);
+      entitiesToSave.addAll(saves);
+      for (Key<?> key : deletions) {
+        touchedKeys.add(key.getRaw());
+      }
+      for (Entity entity : saves) {
+        touchedKeys.add(entity.getKey());
+      }
+    }
+  }
+
 }
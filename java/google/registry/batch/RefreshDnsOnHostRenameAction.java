@@ -15,38 +15,40 @@
 package google.registry.batch;
 
 import static com.google.appengine.api.taskqueue.QueueConstants.maxLeaseCount;
-import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static google.registry.flows.async.AsyncFlowEnqueuer.PARAM_HOST_KEY;
 import static google.registry.flows.async.AsyncFlowEnqueuer.PARAM_REQUESTED_TIME;
 import static google.registry.flows.async.AsyncFlowEnqueuer.QUEUE_ASYNC_HOST_RENAME;
 import static google.registry.flows.async.AsyncFlowMetrics.OperationType.DNS_REFRESH;
-import static google.registry.mapreduce.inputs.EppResourceInputs.createEntityInput;
 import static google.registry.model.EppResourceUtils.isActive;
 import static google.registry.model.EppResourceUtils.isDeleted;
+import static google.registry.model.EppResourceUtils.queryForLinkedDomains;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.DateTimeUtils.latestOf;
-import static google.registry.util.PipelineUtils.createJobPath;
 import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.QueryResultIterator;
 import com.google.appengine.api.taskqueue.LeaseOptions;
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.TaskHandle;
+import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.api.taskqueue.TaskOptions.Method;
 import com.google.appengine.api.taskqueue.TransientFailureException;
-import com.google.appengine.tools.mapreduce.Mapper;
-import com.google.appengine.tools.mapreduce.Reducer;
-import com.google.appengine.tools.mapreduce.ReducerInput;
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.googlecode.objectify.Key;
+import com.googlecode.objectify.cmd.Query;
+import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.DnsQueue;
 import google.registry.flows.async.AsyncFlowMetrics;
 import google.registry.flows.async.AsyncFlowMetrics.OperationResult;
-import google.registry.mapreduce.MapreduceRunner;
-import google.registry.mapreduce.inputs.NullInput;
+import google.registry.model.domain.DomainBase;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.host.HostResource;
 import google.registry.request.Action;
@@ -56,7 +58,6 @@ import google.registry.util.Clock;
 import google.registry.util.FormattingLogger;
 import google.registry.util.NonFinalForTesting;
 import google.registry.util.Retrier;
-import google.registry.util.SystemClock;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -64,6 +65,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.joda.time.DateTime;
+import org.joda.time.Duration;
 
 /** Performs batched DNS refreshes for applicable domains following a host rename. */
 @Action(
@@ -75,9 +77,24 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
   private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
   private static final long LEASE_MINUTES = 20;
 
+  /**
+   * The web-safe cursor of the linked domain query to resume from, on tasks that continue the
+   * refresh for a host that ran out of time.
+   */
+  static final String PARAM_CURSOR = "cursor";
+
+  /** The time that the linked domain query was made as of, on tasks that continue a refresh. */
+  static final String PARAM_QUERY_TIME = "queryTime";
+
+  /** The number of linked domains that are loaded, and enqueued for refresh, at a time. */
+  @NonFinalForTesting
+  @VisibleForTesting
+  static int domainBatchSize = 500;
+
   @Inject AsyncFlowMetrics asyncFlowMetrics;
   @Inject Clock clock;
-  @Inject MapreduceRunner mrRunner;
+  @Inject @Config("refreshDnsOnHostRenameRuntime") Duration maxRunningTime;
+  @Inject DnsQueue dnsQueue;
   @Inject @Named(QUEUE_ASYNC_HOST_RENAME) Queue pullQueue;
   @Inject Response response;
   @Inject Retrier retrier;
@@ -124,124 +141,134 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
       response.setPayload("All requested DNS refreshes are on hosts that were since deleted.");
     } else {
       logger.infofmt("Processing asynchronous DNS refresh for renamed hosts: %s", hostKeys.build());
-      runMapreduce(refreshRequests);
+      refreshLinkedDomains(refreshRequests);
     }
   }
 
-  private void runMapreduce(ImmutableList<DnsRefreshRequest> refreshRequests) {
-    try {
-      response.sendJavaScriptRedirect(createJobPath(mrRunner
-          .setJobName("Enqueue DNS refreshes for domains referencing renamed hosts")
-          .setModuleName("backend")
-          .setDefaultReduceShards(1)
-          .runMapreduce(
-              new RefreshDnsOnHostRenameMapper(refreshRequests, retrier),
-              new RefreshDnsOnHostRenameReducer(refreshRequests, retrier),
-              // Add an extra NullInput so that the reducer always fires exactly once.
-              ImmutableList.of(
-                  new NullInput<>(), createEntityInput(DomainResource.class)))));
-    } catch (Throwable t) {
-      logger.severefmt(t, "Error while kicking off mapreduce to refresh DNS for renamed hosts.");
-    }
-  }
-
-  /** Map over domains and refresh the DNS of those that reference the renamed hosts. */
-  public static class RefreshDnsOnHostRenameMapper
-      extends Mapper<DomainResource, Boolean, Boolean> {
-
-    private static final long serialVersionUID = -5261698524424335531L;
-    private static final DnsQueue dnsQueue = DnsQueue.create();
-
-    private final ImmutableList<DnsRefreshRequest> refreshRequests;
-    private final Retrier retrier;
-
-    RefreshDnsOnHostRenameMapper(
-        ImmutableList<DnsRefreshRequest> refreshRequests, Retrier retrier) {
-      this.refreshRequests = refreshRequests;
-      this.retrier = retrier;
-    }
-
-    @Override
-    public final void map(@Nullable final DomainResource domain) {
-      if (domain == null) {
-        // Emit a single value so that the reducer always runs.  The key and value don't matter.
-        emit(true, true);
-        return;
+  /**
+   * Enqueues DNS refreshes for the domains that reference the renamed hosts, and then deletes the
+   * tasks.
+   *
+   * <p>The candidate domains are found with keys-only queries on the nameserver index, and each
+   * batch of candidates is then loaded by key to confirm that it is an active domain which still
+   * references the host, so that the work done is proportional to the number of linked domains
+   * rather than to the number of domains in the registry. The index is eventually consistent, but
+   * a domain that gains the host too recently to be seen here has its own DNS refresh enqueued by
+   * the domain update, which publishes the host's current name.
+   *
+   * <p>A host can be linked to a great many domains, so this stops starting new batches once
+   * {@code refreshDnsOnHostRenameRuntime} has elapsed. A host that is only partly done is replaced
+   * on the queue by a task that resumes its query from a cursor, and the hosts that weren't started
+   * are left on the queue, so the next run picks up where this one stopped.
+   */
+  private void refreshLinkedDomains(ImmutableList<DnsRefreshRequest> refreshRequests) {
+    DateTime deadline = clock.nowUtc().plus(maxRunningTime);
+    boolean outOfTime = false;
+    int domainsRefreshed = 0;
+    List<DnsRefreshRequest> completedRequests = new ArrayList<>();
+    List<DnsRefreshRequest> continuedRequests = new ArrayList<>();
+    for (DnsRefreshRequest request : refreshRequests) {
+      if (outOfTime) {
+        // Make the task available to the next run right away, rather than when its lease expires.
+        pullQueue.modifyTaskLease(request.task(), 0, MILLISECONDS);
+        continue;
+      }
+      Query<DomainBase> query = queryForLinkedDomains(request.hostKey(), request.lastUpdateTime());
+      if (request.cursor() != null) {
+        query = query.startAt(Cursor.fromWebSafeString(request.cursor()));
       }
-      Key<HostResource> referencingHostKey = null;
-      for (DnsRefreshRequest request : refreshRequests) {
-        if (isActive(domain, request.lastUpdateTime())
-            && domain.getNameservers().contains(request.hostKey())) {
-          referencingHostKey = request.hostKey();
+      QueryResultIterator<Key<DomainBase>> keys = query.chunk(domainBatchSize).keys().iterator();
+      while (keys.hasNext()) {
+        List<Key<DomainBase>> batch = new ArrayList<>();
+        while (keys.hasNext() && batch.size() < domainBatchSize) {
+          batch.add(keys.next());
+        }
+        domainsRefreshed += refreshDomains(request, batch);
+        if (!clock.nowUtc().isBefore(deadline)) {
+          outOfTime = true;
           break;
         }
       }
-      if (referencingHostKey != null) {
-        retrier.callWithRetry(
-            () -> dnsQueue.addDomainRefreshTask(domain.getFullyQualifiedDomainName()),
-            TransientFailureException.class);
-        logger.infofmt(
-            "Enqueued DNS refresh for domain %s referenced by host %s.",
-            domain.getFullyQualifiedDomainName(), referencingHostKey);
-        getContext().incrementCounter("domains refreshed");
+      if (keys.hasNext()) {
+        enqueueContinuation(request, keys.getCursor());
+        continuedRequests.add(request);
       } else {
-        getContext().incrementCounter("domains not refreshed");
+        completedRequests.add(request);
       }
-
-      // Don't catch errors -- we allow the mapreduce to terminate on any errors that can't be
-      // resolved by retrying the transaction. The reducer only fires if the mapper completes
-      // without errors, meaning that it is acceptable to delete all tasks.
     }
+    logger.infofmt(
+        "Enqueued DNS refreshes for %d domains; %d of %d hosts are done.",
+        domainsRefreshed, completedRequests.size(), refreshRequests.size());
+    deleteTasksWithRetry(
+        completedRequests, pullQueue, asyncFlowMetrics, retrier, OperationResult.SUCCESS);
+    // The continuations record the result for these once they are done.
+    deleteTasksWithRetry(getTasks(continuedRequests), pullQueue, retrier);
+    response.setPayload(
+        String.format("Enqueued DNS refreshes for %d domains.", domainsRefreshed));
   }
 
   /**
-   * A reducer that always fires exactly once.
+   * Enqueues DNS refreshes for those of the given domains that are active and still reference the
+   * renamed host.
    *
-   * <p>This is really a reducer in name only; what it's really doing is waiting for all of the
-   * mapper tasks to finish, and then delete the pull queue tasks. Note that this only happens if
-   * the mapper completes execution without errors.
+   * @return the number of domains refreshed
    */
-  public static class RefreshDnsOnHostRenameReducer extends Reducer<Boolean, Boolean, Void> {
-
-    private static final long serialVersionUID = -2850944843275790412L;
-
-    @NonFinalForTesting
-    private static AsyncFlowMetrics asyncFlowMetrics = new AsyncFlowMetrics(new SystemClock());
-
-    private final Retrier retrier;
-    private final List<DnsRefreshRequest> refreshRequests;
-
-    RefreshDnsOnHostRenameReducer(List<DnsRefreshRequest> refreshRequests, Retrier retrier) {
-      this.refreshRequests = refreshRequests;
-      this.retrier = retrier;
+  private int refreshDomains(DnsRefreshRequest request, List<Key<DomainBase>> keys) {
+    final ImmutableList<String> domainsToRefresh =
+        ofy()
+            .load()
+            .keys(keys)
+            .values()
+            .stream()
+            .filter(
+                domain ->
+                    domain instanceof DomainResource
+                        && isActive(domain, request.lastUpdateTime())
+                        && domain.getNameservers().contains(request.hostKey()))
+            .map(DomainBase::getFullyQualifiedDomainName)
+            .collect(toImmutableList());
+    if (!domainsToRefresh.isEmpty()) {
+      retrier.callWithRetry(
+          () -> dnsQueue.addDomainRefreshTasks(domainsToRefresh), TransientFailureException.class);
     }
+    return domainsToRefresh.size();
+  }
 
-    @Override
-    public void reduce(Boolean key, ReducerInput<Boolean> values) {
-      deleteTasksWithRetry(
-          refreshRequests,
-          getQueue(QUEUE_ASYNC_HOST_RENAME),
-          asyncFlowMetrics,
-          retrier,
-          OperationResult.SUCCESS);
-    }
+  /** Enqueues a task that resumes the refresh for the given request from the given cursor. */
+  private void enqueueContinuation(DnsRefreshRequest request, Cursor cursor) {
+    final TaskOptions task =
+        TaskOptions.Builder.withMethod(Method.PULL)
+            .param(PARAM_HOST_KEY, request.hostKey().getString())
+            .param(PARAM_REQUESTED_TIME, request.requestedTime().toString())
+            .param(PARAM_QUERY_TIME, request.lastUpdateTime().toString())
+            .param(PARAM_CURSOR, cursor.toWebSafeString());
+    retrier.callWithRetry(() -> pullQueue.add(task), TransientFailureException.class);
+    logger.infofmt("Ran out of time refreshing DNS for %s; continuing later.", request.hostKey());
   }
 
-  /** Deletes a list of tasks from the given queue using a retrier. */
+  /** Deletes a list of tasks from the given queue using a retrier, and records their result. */
   private static void deleteTasksWithRetry(
       final List<DnsRefreshRequest> refreshRequests,
       final Queue queue,
       AsyncFlowMetrics asyncFlowMetrics,
       Retrier retrier,
       OperationResult result) {
-    if (refreshRequests.isEmpty()) {
+    deleteTasksWithRetry(getTasks(refreshRequests), queue, retrier);
+    refreshRequests.forEach(
+        r -> asyncFlowMetrics.recordAsyncFlowResult(DNS_REFRESH, result, r.requestedTime()));
+  }
+
+  /** Deletes a list of tasks from the given queue using a retrier. */
+  private static void deleteTasksWithRetry(
+      final List<TaskHandle> tasks, final Queue queue, Retrier retrier) {
+    if (tasks.isEmpty()) {
       return;
     }
-    final List<TaskHandle> tasks =
-        refreshRequests.stream().map(DnsRefreshRequest::task).collect(toImmutableList());
     retrier.callWithRetry(() -> queue.deleteTask(tasks), TransientFailureException.class);
-    refreshRequests.forEach(
-        r -> asyncFlowMetrics.recordAsyncFlowResult(DNS_REFRESH, result, r.requestedTime()));
+  }
+
+  private static ImmutableList<TaskHandle> getTasks(List<DnsRefreshRequest> refreshRequests) {
+    return refreshRequests.stream().map(DnsRefreshRequest::task).collect(toImmutableList());
   }
 
   /** A class that encapsulates the values of a request to refresh DNS for a renamed host. */
@@ -255,6 +282,8 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
     abstract DateTime requestedTime();
     abstract boolean isRefreshNeeded();
     abstract TaskHandle task();
+    /** The cursor to resume the linked domain query from, if this continues an earlier refresh. */
+    @Nullable abstract String cursor();
 
     @AutoValue.Builder
     abstract static class Builder {
@@ -263,6 +292,7 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
       abstract Builder setRequestedTime(DateTime requestedTime);
       abstract Builder setIsRefreshNeeded(boolean isRefreshNeeded);
       abstract Builder setTask(TaskHandle task);
+      abstract Builder setCursor(@Nullable String cursor);
       abstract DnsRefreshRequest build();
     }
 
@@ -280,14 +310,23 @@ public class RefreshDnsOnHostRenameAction implements Runnable {
       if (isHostDeleted) {
         logger.infofmt("Host %s is already deleted, not refreshing DNS.", hostKey);
       }
+      // A continuation has to resume the same query that it started, even if the host has been
+      // updated since; any later rename enqueued its own refresh.
+      String cursor = params.get(PARAM_CURSOR);
+      DateTime lastUpdateTime =
+          (cursor == null)
+              ? host.getUpdateAutoTimestamp().getTimestamp()
+              : DateTime.parse(
+                  checkNotNull(params.get(PARAM_QUERY_TIME), "Query time not specified"));
       return new AutoValue_RefreshDnsOnHostRenameAction_DnsRefreshRequest.Builder()
           .setHostKey(hostKey)
-          .setLastUpdateTime(host.getUpdateAutoTimestamp().getTimestamp())
+          .setLastUpdateTime(lastUpdateTime)
           .setRequestedTime(
               DateTime.parse(
                   checkNotNull(params.get(PARAM_REQUESTED_TIME), "Requested time not specified")))
           .setIsRefreshNeeded(!isHostDeleted)
           .setTask(task)
+          .setCursor(cursor)
           .build();
     }
   }
@@ -14,6 +14,7 @@
 
 package google.registry.config;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Suppliers.memoize;
 import static google.registry.config.ConfigUtils.makeUrl;
 import static java.lang.annotation.RetentionPolicy.RUNTIME;
@@ -264,6 +265,32 @@ public final class RegistryConfig {
       return 100;
     }
 
+    /**
+     * The maximum number of domain and host updates to batch together for a TLD that has a large
+     * backlog of updates.
+     *
+     * @see google.registry.dns.ReadDnsQueueAction
+     */
+    @Provides
+    @Config("dnsTldUpdateMaxBatchSize")
+    public static int provideDnsTldUpdateMaxBatchSize() {
+      return 500;
+    }
+
+    /**
+     * The maximum amount of time that ReadDnsQueueAction will keep leasing batches of tasks from
+     * the dns-pull queue before leaving the rest for its next run.
+     *
+     * <p>This should be less than the interval at which the action is run by cron.
+     *
+     * @see google.registry.dns.ReadDnsQueueAction
+     */
+    @Provides
+    @Config("readDnsQueueActionRuntime")
+    public static Duration provideReadDnsQueueActionRuntime() {
+      return Duration.standardSeconds(45);
+    }
+
     /**
      * The maximum interval (seconds) to lease tasks from the dns-pull queue.
      *
@@ -628,6 +655,20 @@ public final class RegistryConfig {
       return Duration.standardMinutes(30);
     }
 
+    /**
+     * Size in bytes of the buffers handed between the threads of the RDE upload pipeline.
+     *
+     * <p>Larger buffers mean less handing over between threads, at the cost of memory: each of the
+     * pipeline's stages may hold several buffers at once.
+     *
+     * @see google.registry.rde.RdeUploadAction
+     */
+    @Provides
+    @Config("rdeUploadPipelineBufferSize")
+    public static int provideRdeUploadPipelineBufferSize(RegistryConfigSettings config) {
+      return config.rde.uploadPipelineBufferSize;
+    }
+
     /**
      * Minimum amount of time to wait between consecutive SFTP uploads on a single TLD.
      *
@@ -867,6 +908,31 @@ public final class RegistryConfig {
       return Duration.standardSeconds(config.monitoring.writeIntervalSeconds);
     }
 
+    /**
+     * Returns the fraction of EPP commands, keyed by flow class simple name, whose input XML is
+     * pretty-printed in the EPP command log line.
+     *
+     * <p>Flows that aren't present in this map are always pretty-printed.
+     *
+     * @see google.registry.flows.FlowRunner
+     */
+    @Provides
+    @Config("eppCommandPrettyPrintRates")
+    public static ImmutableMap<String, Double> provideEppCommandPrettyPrintRates(
+        RegistryConfigSettings config) {
+      ImmutableMap.Builder<String, Double> builder = new ImmutableMap.Builder<>();
+      for (Entry<String, Number> entry : config.monitoring.eppCommandPrettyPrintRates.entrySet()) {
+        double rate = entry.getValue().doubleValue();
+        checkArgument(
+            rate >= 0 && rate <= 1,
+            "Pretty-print rate for %s must be between 0 and 1: %s",
+            entry.getKey(),
+            rate);
+        builder.put(entry.getKey(), rate);
+      }
+      return builder.build();
+    }
+
     /**
      * The global automatic transfer length for contacts.  After this amount of time has
      * elapsed, the transfer is automatically approved.
@@ -916,6 +982,20 @@ public final class RegistryConfig {
       return Duration.standardSeconds(90);
     }
 
+    /**
+     * The maximum amount of time that RefreshDnsOnHostRenameAction spends enqueueing DNS refreshes
+     * for the domains linked to renamed hosts before leaving the rest for its next run.
+     *
+     * <p>This should be well under the lease period of its tasks and the request deadline.
+     *
+     * @see google.registry.batch.RefreshDnsOnHostRenameAction
+     */
+    @Provides
+    @Config("refreshDnsOnHostRenameRuntime")
+    public static Duration provideRefreshDnsOnHostRenameRuntime() {
+      return Duration.standardMinutes(3);
+    }
+
     /**
      * The server ID used in the 'svID' element of an EPP 'greeting'.
      *
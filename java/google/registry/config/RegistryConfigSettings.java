@@ -123,6 +123,7 @@ public class RegistryConfigSettings {
     public String reportUrlPrefix;
     public String uploadUrl;
     public String sshIdentityEmailAddress;
+    public int uploadPipelineBufferSize;
   }
 
   /** Configuration for the web-based registrar console. */
@@ -140,6 +141,7 @@ public class RegistryConfigSettings {
     public int stackdriverMaxQps;
     public int stackdriverMaxPointsPerRequest;
     public int writeIntervalSeconds;
+    public Map<String, Number> eppCommandPrettyPrintRates;
   }
 
   /** Miscellaneous configuration that doesn't quite fit in anywhere else. */
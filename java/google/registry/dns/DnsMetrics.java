@@ -15,8 +15,10 @@
 package google.registry.dns;
 
 import static google.registry.request.RequestParameters.PARAM_TLD;
+import static java.lang.Math.max;
 
 import com.google.common.collect.ImmutableSet;
+import dagger.Lazy;
 import google.registry.config.RegistryEnvironment;
 import google.registry.monitoring.metrics.DistributionFitter;
 import google.registry.monitoring.metrics.EventMetric;
@@ -25,6 +27,7 @@ import google.registry.monitoring.metrics.FibonacciFitter;
 import google.registry.monitoring.metrics.IncrementableMetric;
 import google.registry.monitoring.metrics.LabelDescriptor;
 import google.registry.monitoring.metrics.MetricRegistryImpl;
+import google.registry.monitoring.metrics.SettableMetric;
 import google.registry.request.Parameter;
 import javax.inject.Inject;
 import org.joda.time.Duration;
@@ -52,6 +55,9 @@ public class DnsMetrics {
           LabelDescriptor.create(
               "status", "Whether writer.commit() succeeded or failed."));
 
+  private static final ImmutableSet<LabelDescriptor> LABEL_DESCRIPTORS_FOR_QUEUE =
+      ImmutableSet.of(LabelDescriptor.create("tld", "TLD"));
+
   // Finer-grained fitter than the DEFAULT_FITTER, allows values between 1. and 2^20, which gives
   // over 15 minutes.
   private static final DistributionFitter EXPONENTIAL_FITTER =
@@ -156,8 +162,44 @@ public class DnsMetrics {
               LABEL_DESCRIPTORS_FOR_COMMIT,
               FIBONACCI_FITTER);
 
+  private static final EventMetric leasedRefreshItemsDist =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/dns/read_dns_queue/leased_items",
+              "Number of hosts and domains found for a TLD in each batch leased from the DNS queue",
+              "count",
+              LABEL_DESCRIPTORS_FOR_QUEUE,
+              FIBONACCI_FITTER);
+
+  private static final IncrementableMetric queueItemsDrainedCount =
+      MetricRegistryImpl.getDefault()
+          .newIncrementableMetric(
+              "/dns/read_dns_queue/items_drained",
+              "Count of hosts and domains fanned out from the DNS queue",
+              "count",
+              LABEL_DESCRIPTORS_FOR_QUEUE);
+
+  private static final EventMetric queueDrainRateDist =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/dns/read_dns_queue/drain_rate",
+              "Number of tasks removed from the DNS queue per second by each readDnsQueue run",
+              "tasks per second",
+              ImmutableSet.of(),
+              EXPONENTIAL_FITTER);
+
+  private static final SettableMetric<Long> queueDepth =
+      MetricRegistryImpl.getDefault()
+          .newSettableMetric(
+              "/dns/queue/depth",
+              "Number of tasks in the DNS pull queue, as of the last time tasks were leased",
+              "tasks",
+              ImmutableSet.of(),
+              Long.class);
+
   @Inject RegistryEnvironment registryEnvironment;
-  @Inject @Parameter(PARAM_TLD) String tld;
+  // Lazy, since ReadDnsQueueAction also records metrics but doesn't have a tld parameter.
+  @Inject @Parameter(PARAM_TLD) Lazy<String> tld;
 
   @Inject
   DnsMetrics() {}
@@ -168,7 +210,7 @@ public class DnsMetrics {
    */
   public void incrementPublishDomainRequests(long numRequests, PublishStatus status) {
     if (numRequests > 0) {
-      publishDomainRequests.incrementBy(numRequests, tld, status.name());
+      publishDomainRequests.incrementBy(numRequests, tld.get(), status.name());
     }
   }
 
@@ -178,7 +220,7 @@ public class DnsMetrics {
    */
   public void incrementPublishHostRequests(long numRequests, PublishStatus status) {
     if (numRequests > 0) {
-      publishHostRequests.incrementBy(numRequests, tld, status.name());
+      publishHostRequests.incrementBy(numRequests, tld.get(), status.name());
     }
   }
 
@@ -199,6 +241,7 @@ public class DnsMetrics {
     if (registryEnvironment == RegistryEnvironment.PRODUCTION) {
       return;
     }
+    String tld = this.tld.get();
     int batchSize = numberOfDomains + numberOfHosts;
 
     processingTimePerCommitDist.record(processingDuration.getMillis(), tld, status.name());
@@ -223,4 +266,35 @@ public class DnsMetrics {
     domainsCommittedCount.incrementBy(numberOfDomains, tld, status.name());
     hostsCommittedCount.incrementBy(numberOfHosts, tld, status.name());
   }
+
+  /**
+   * Records the number of refresh items found for a TLD in one batch of tasks leased from the DNS
+   * pull queue, and counts them as drained if they were fanned out to the publish queue.
+   *
+   * <p>This is bounded by the lease batch size, so it is not the depth of the queue, which {@link
+   * #recordQueueDepth} records instead.
+   */
+  void recordLeasedRefreshItems(String tld, int numberOfItems, boolean drained) {
+    leasedRefreshItemsDist.record(numberOfItems, tld);
+    if (drained) {
+      queueItemsDrainedCount.incrementBy(numberOfItems, tld);
+    }
+  }
+
+  /** Records how quickly a single run of {@link ReadDnsQueueAction} drained the DNS pull queue. */
+  void recordQueueDrainRate(int numberOfTasks, Duration processingDuration) {
+    queueDrainRateDist.record(
+        numberOfTasks * 1000.0 / max(1, processingDuration.getMillis()));
+  }
+
+  /**
+   * Records the number of tasks in the DNS pull queue, which {@link DnsQueue#leaseTasks} fetches
+   * before every lease.
+   *
+   * <p>This is static, unlike the other recording methods, because DnsQueue is also created
+   * outside of injection, e.g. in mapreduces.
+   */
+  static void recordQueueDepth(int numberOfTasks) {
+    queueDepth.set((long) numberOfTasks);
+  }
 }
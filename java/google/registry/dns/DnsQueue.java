@@ -16,6 +16,7 @@ package google.registry.dns;
 
 import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static google.registry.dns.DnsConstants.DNS_PULL_QUEUE_NAME;
 import static google.registry.dns.DnsConstants.DNS_TARGET_NAME_PARAM;
 import static google.registry.dns.DnsConstants.DNS_TARGET_TYPE_PARAM;
@@ -33,12 +34,16 @@ import com.google.appengine.api.taskqueue.TransientFailureException;
 import com.google.apphosting.api.DeadlineExceededException;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
-import com.google.common.net.InternetDomainName;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Iterables;
 import google.registry.dns.DnsConstants.TargetType;
 import google.registry.model.registry.Registries;
 import google.registry.util.FormattingLogger;
 import google.registry.util.NonFinalForTesting;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -74,48 +79,109 @@ public class DnsQueue {
   long leaseTasksBatchSize = QueueConstants.maxLeaseCount();
 
   /**
-   * Enqueues the given task type with the given target name to the DNS queue.
+   * The maximum number of target names written to a single pull queue task.
+   *
+   * <p>This keeps each task comfortably under the pull queue's task size limit.
+   */
+  @VisibleForTesting
+  static final int MAX_TARGETS_PER_TASK = 100;
+
+  /**
+   * Enqueues tasks of the given type for the given target names, all on the given TLD, to the DNS
+   * queue.
+   *
+   * <p>Duplicate names are only enqueued once, and the names are packed into as few tasks as
+   * possible (each holding multiple values of {@link DnsConstants#DNS_TARGET_NAME_PARAM}), which
+   * are added to the queue in a single call.
    */
-  private TaskHandle addToQueue(TargetType targetType, String targetName, String tld) {
-    logger.infofmt(
-        "Adding task type=%s, target=%s, tld=%s to pull queue %s (%d tasks currently on queue)",
-        targetType, targetName, tld, DNS_PULL_QUEUE_NAME, queue.fetchStatistics().getNumTasks());
-    return queue.add(TaskOptions.Builder
-        .withDefaults()
-        .method(Method.PULL)
-        .param(DNS_TARGET_TYPE_PARAM, targetType.toString())
-        .param(DNS_TARGET_NAME_PARAM, targetName)
-        .param(PARAM_TLD, tld));
+  private ImmutableList<TaskHandle> addToQueue(
+      TargetType targetType, Iterable<String> targetNames, String tld) {
+    ImmutableList.Builder<TaskOptions> tasks = new ImmutableList.Builder<>();
+    for (List<String> chunk :
+        Iterables.partition(ImmutableSet.copyOf(targetNames), MAX_TARGETS_PER_TASK)) {
+      logger.infofmt(
+          "Adding task type=%s, targets=%s, tld=%s to pull queue %s",
+          targetType, chunk, tld, DNS_PULL_QUEUE_NAME);
+      TaskOptions options = TaskOptions.Builder
+          .withDefaults()
+          .method(Method.PULL)
+          .param(DNS_TARGET_TYPE_PARAM, targetType.toString())
+          .param(PARAM_TLD, tld);
+      for (String targetName : chunk) {
+        options.param(DNS_TARGET_NAME_PARAM, targetName);
+      }
+      tasks.add(options);
+    }
+    ImmutableList<TaskOptions> taskOptions = tasks.build();
+    return taskOptions.isEmpty()
+        ? ImmutableList.of()
+        : ImmutableList.copyOf(queue.add(taskOptions));
   }
 
   /**
    * Adds a task to the queue to refresh the DNS information for the specified subordinate host.
    */
   public TaskHandle addHostRefreshTask(String fullyQualifiedHostName) {
-    Optional<InternetDomainName> tld =
-        Registries.findTldForName(InternetDomainName.from(fullyQualifiedHostName));
-    checkArgument(tld.isPresent(),
-        String.format("%s is not a subordinate host to a known tld", fullyQualifiedHostName));
-    return addToQueue(TargetType.HOST, fullyQualifiedHostName, tld.get().toString());
+    return getOnlyElement(addHostRefreshTasks(ImmutableList.of(fullyQualifiedHostName)));
+  }
+
+  /**
+   * Adds tasks to the queue to refresh the DNS information for the specified subordinate hosts.
+   *
+   * <p>The hosts are grouped by TLD, and duplicates are only refreshed once.
+   */
+  public ImmutableList<TaskHandle> addHostRefreshTasks(Iterable<String> fullyQualifiedHostNames) {
+    ImmutableSetMultimap.Builder<String, String> hostsByTld = new ImmutableSetMultimap.Builder<>();
+    for (String hostName : fullyQualifiedHostNames) {
+      Optional<String> tld = Registries.findTldForName(hostName);
+      checkArgument(tld.isPresent(),
+          String.format("%s is not a subordinate host to a known tld", hostName));
+      hostsByTld.put(tld.get(), hostName);
+    }
+    return addToQueueByTld(TargetType.HOST, hostsByTld.build());
   }
 
   /** Adds a task to the queue to refresh the DNS information for the specified domain. */
   public TaskHandle addDomainRefreshTask(String fullyQualifiedDomainName) {
-    return addToQueue(
-        TargetType.DOMAIN,
-        fullyQualifiedDomainName,
-        assertTldExists(getTldFromDomainName(fullyQualifiedDomainName)));
+    return getOnlyElement(addDomainRefreshTasks(ImmutableList.of(fullyQualifiedDomainName)));
+  }
+
+  /**
+   * Adds tasks to the queue to refresh the DNS information for the specified domains.
+   *
+   * <p>The domains are grouped by TLD, and duplicates are only refreshed once.
+   */
+  public ImmutableList<TaskHandle> addDomainRefreshTasks(
+      Iterable<String> fullyQualifiedDomainNames) {
+    ImmutableSetMultimap.Builder<String, String> domainsByTld =
+        new ImmutableSetMultimap.Builder<>();
+    for (String domainName : fullyQualifiedDomainNames) {
+      domainsByTld.put(assertTldExists(getTldFromDomainName(domainName)), domainName);
+    }
+    return addToQueueByTld(TargetType.DOMAIN, domainsByTld.build());
   }
 
   /** Adds a task to the queue to refresh the DNS information for the specified zone. */
   public TaskHandle addZoneRefreshTask(String fullyQualifiedZoneName) {
-    return addToQueue(TargetType.ZONE, fullyQualifiedZoneName, fullyQualifiedZoneName);
+    return getOnlyElement(
+        addToQueue(
+            TargetType.ZONE, ImmutableList.of(fullyQualifiedZoneName), fullyQualifiedZoneName));
+  }
+
+  private ImmutableList<TaskHandle> addToQueueByTld(
+      TargetType targetType, ImmutableSetMultimap<String, String> targetNamesByTld) {
+    ImmutableList.Builder<TaskHandle> handles = new ImmutableList.Builder<>();
+    for (Map.Entry<String, Collection<String>> entry : targetNamesByTld.asMap().entrySet()) {
+      handles.addAll(addToQueue(targetType, entry.getValue(), entry.getKey()));
+    }
+    return handles.build();
   }
 
   /** Returns handles for a batch of tasks, leased for the specified duration. */
   public List<TaskHandle> leaseTasks(Duration leaseDuration) {
     try {
       int numTasks = queue.fetchStatistics().getNumTasks();
+      DnsMetrics.recordQueueDepth(numTasks);
       logger.logfmt(
           (numTasks >= leaseTasksBatchSize) ? Level.WARNING : Level.INFO,
           "There are %d tasks in the DNS queue '%s'.",
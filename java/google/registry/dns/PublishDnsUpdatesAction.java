@@ -18,6 +18,7 @@ import static google.registry.request.Action.Method.POST;
 import static google.registry.request.RequestParameters.PARAM_TLD;
 import static google.registry.util.CollectionUtils.nullToEmpty;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.net.InternetDomainName;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.DnsMetrics.CommitStatus;
@@ -34,6 +35,7 @@ import google.registry.util.DomainNameUtils;
 import google.registry.util.FormattingLogger;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import org.joda.time.DateTime;
 import org.joda.time.Duration;
@@ -102,34 +104,26 @@ public final class PublishDnsUpdatesAction implements Runnable, Callable<Void> {
 
     DnsWriter writer = dnsWriterProxy.getByClassNameForTld(dnsWriter, tld);
 
-    int domainsPublished = 0;
-    int domainsRejected = 0;
-    for (String domain : nullToEmpty(domains)) {
-      if (!DomainNameUtils.isUnder(
-          InternetDomainName.from(domain), InternetDomainName.from(tld))) {
-        logger.severefmt("%s: skipping domain %s not under tld", tld, domain);
-        domainsRejected += 1;
-      } else {
-        writer.publishDomain(domain);
-        logger.infofmt("%s: published domain %s", tld, domain);
-        domainsPublished += 1;
-      }
+    ImmutableSet<String> domainsToPublish = getNamesUnderTld(domains, "domain");
+    ImmutableSet<String> hostsToPublish = getNamesUnderTld(hosts, "host");
+    int domainsPublished = domainsToPublish.size();
+    int domainsRejected = nullToEmpty(domains).size() - domainsPublished;
+    int hostsPublished = hostsToPublish.size();
+    int hostsRejected = nullToEmpty(hosts).size() - hostsPublished;
+
+    // Let the writer load everything it needs for the whole batch up front.
+    writer.prefetch(domainsToPublish, hostsToPublish);
+
+    for (String domain : domainsToPublish) {
+      writer.publishDomain(domain);
+      logger.infofmt("%s: published domain %s", tld, domain);
     }
     dnsMetrics.incrementPublishDomainRequests(domainsPublished, PublishStatus.ACCEPTED);
     dnsMetrics.incrementPublishDomainRequests(domainsRejected, PublishStatus.REJECTED);
 
-    int hostsPublished = 0;
-    int hostsRejected = 0;
-    for (String host : nullToEmpty(hosts)) {
-      if (!DomainNameUtils.isUnder(
-          InternetDomainName.from(host), InternetDomainName.from(tld))) {
-        logger.severefmt("%s: skipping host %s not under tld", tld, host);
-        hostsRejected += 1;
-      } else {
-        writer.publishHost(host);
-        logger.infofmt("%s: published host %s", tld, host);
-        hostsPublished += 1;
-      }
+    for (String host : hostsToPublish) {
+      writer.publishHost(host);
+      logger.infofmt("%s: published host %s", tld, host);
     }
     dnsMetrics.incrementPublishHostRequests(hostsPublished, PublishStatus.ACCEPTED);
     dnsMetrics.incrementPublishHostRequests(hostsRejected, PublishStatus.REJECTED);
@@ -159,4 +153,17 @@ public final class PublishDnsUpdatesAction implements Runnable, Callable<Void> {
           + "\nhostsRejected: " + hostsRejected);
     }
   }
+
+  /** Returns the given names that are under the TLD, logging the ones that aren't. */
+  private ImmutableSet<String> getNamesUnderTld(@Nullable Set<String> names, String type) {
+    ImmutableSet.Builder<String> namesUnderTld = new ImmutableSet.Builder<>();
+    for (String name : nullToEmpty(names)) {
+      if (DomainNameUtils.isUnder(InternetDomainName.from(name), InternetDomainName.from(tld))) {
+        namesUnderTld.add(name);
+      } else {
+        logger.severefmt("%s: skipping %s %s not under tld", tld, type, name);
+      }
+    }
+    return namesUnderTld.build();
+  }
 }
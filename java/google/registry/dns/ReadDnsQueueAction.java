@@ -14,25 +14,31 @@
 
 package google.registry.dns;
 
+import static com.google.appengine.api.taskqueue.QueueConstants.maxTasksPerAdd;
 import static com.google.appengine.api.taskqueue.TaskOptions.Builder.withUrl;
+import static com.google.common.collect.Iterables.getFirst;
 import static com.google.common.collect.Sets.difference;
 import static google.registry.dns.DnsConstants.DNS_PUBLISH_PUSH_QUEUE_NAME;
 import static google.registry.dns.DnsConstants.DNS_TARGET_NAME_PARAM;
 import static google.registry.dns.DnsConstants.DNS_TARGET_TYPE_PARAM;
 import static google.registry.model.registry.Registries.getTlds;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.TaskHandle;
 import com.google.appengine.api.taskqueue.TaskOptions;
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.SortedSetMultimap;
 import com.google.common.collect.TreeMultimap;
+import com.google.common.math.IntMath;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.DnsConstants.TargetType;
 import google.registry.model.registry.Registry;
@@ -40,18 +46,21 @@ import google.registry.request.Action;
 import google.registry.request.Parameter;
 import google.registry.request.RequestParameters;
 import google.registry.request.auth.Auth;
+import google.registry.util.Clock;
+import google.registry.util.Concurrent;
 import google.registry.util.FormattingLogger;
 import google.registry.util.TaskEnqueuer;
 import java.io.UnsupportedEncodingException;
+import java.math.RoundingMode;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Named;
+import org.joda.time.DateTime;
 import org.joda.time.Duration;
 
 /**
@@ -78,11 +87,21 @@ public final class ReadDnsQueueAction implements Runnable {
   private static final Random random = new Random();
   private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
 
+  /**
+   * The number of publish tasks per TLD that a large backlog is split into, before the batch size
+   * reaches its configured maximum.
+   */
+  private static final int TARGET_PUBLISH_TASKS_PER_TLD = 10;
+
   @Inject @Config("dnsTldUpdateBatchSize") int tldUpdateBatchSize;
+  @Inject @Config("dnsTldUpdateMaxBatchSize") int tldUpdateMaxBatchSize;
+  @Inject @Config("readDnsQueueActionRuntime") Duration requestedMaximumDuration;
   @Inject @Config("dnsWriteLockTimeout") Duration writeLockTimeout;
   @Inject @Named(DNS_PUBLISH_PUSH_QUEUE_NAME) Queue dnsPublishPushQueue;
   @Inject @Parameter(PARAM_JITTER_SECONDS) Optional<Integer> jitterSeconds;
   @Inject @Parameter(PARAM_KEEP_TASKS) boolean keepTasks;
+  @Inject Clock clock;
+  @Inject DnsMetrics dnsMetrics;
   @Inject DnsQueue dnsQueue;
   @Inject TaskEnqueuer taskEnqueuer;
   @Inject ReadDnsQueueAction() {}
@@ -107,22 +126,74 @@ public final class ReadDnsQueueAction implements Runnable {
     }
   }
 
-  /** Leases all tasks from the pull queue and creates per-tld update actions for them. */
+  /**
+   * Leases batches of tasks from the pull queue and creates per-tld update actions for them.
+   *
+   * <p>Batches are leased until the queue is drained or {@code readDnsQueueActionRuntime} has
+   * elapsed, whichever comes first; anything still on the queue is picked up by the next run.
+   */
   @Override
   public void run() {
+    DateTime timeAtStart = clock.nowUtc();
+    DateTime deadline = timeAtStart.plus(requestedMaximumDuration);
     Set<String> tldsOfInterest = getTlds();
-
-    List<TaskHandle> tasks = dnsQueue.leaseTasks(writeLockTimeout);
-    if (tasks.isEmpty()) {
-      return;
-    }
-    logger.infofmt("Leased %d DNS update tasks.", tasks.size());
     // Normally, all tasks will be deleted from the pull queue. But some might have to remain if
     // we are not interested in the associated TLD, or if the TLD is paused. Remember which these
-    // are.
+    // are. They keep their leases until the end of the run, so that we don't lease them again.
     Set<TaskHandle> tasksToKeep = new HashSet<>();
     // The paused TLDs for which we found at least one refresh request.
     Set<String> pausedTlds = new HashSet<>();
+    int numTasksDrained = 0;
+    while (true) {
+      List<TaskHandle> tasks = dnsQueue.leaseTasks(writeLockTimeout);
+      if (tasks.isEmpty()) {
+        break;
+      }
+      logger.infofmt("Leased %d DNS update tasks.", tasks.size());
+      Set<TaskHandle> tasksToKeepInBatch = processTasks(tasks, tldsOfInterest, pausedTlds);
+      Set<TaskHandle> tasksToDelete = difference(ImmutableSet.copyOf(tasks), tasksToKeepInBatch);
+      // In keepTasks mode, never delete any tasks. Since they all stay leased, leasing another
+      // batch would only find tasks that were already processed, so stop after the first one.
+      if (keepTasks) {
+        logger.infofmt("Would have deleted %d DNS update tasks.", tasksToDelete.size());
+        tasksToKeep.addAll(tasks);
+        break;
+      }
+      logger.infofmt("Deleting %d DNS update tasks.", tasksToDelete.size());
+      dnsQueue.deleteTasks(ImmutableList.copyOf(tasksToDelete));
+      tasksToKeep.addAll(tasksToKeepInBatch);
+      numTasksDrained += tasksToDelete.size();
+      if (tasks.size() < dnsQueue.leaseTasksBatchSize) {
+        break;
+      }
+      if (!clock.nowUtc().isBefore(deadline)) {
+        logger.infofmt(
+            "Ran out of time after draining %d DNS update tasks; leaving the rest for later.",
+            numTasksDrained);
+        break;
+      }
+    }
+    if (!pausedTlds.isEmpty()) {
+      logger.infofmt("The dns-pull queue is paused for TLDs: %s.", pausedTlds);
+    }
+    logger.infofmt("Dropping %d DNS update tasks.", tasksToKeep.size());
+    for (TaskHandle task : tasksToKeep) {
+      dnsQueue.dropTaskLease(task);
+    }
+    if (numTasksDrained > 0) {
+      dnsMetrics.recordQueueDrainRate(numTasksDrained, new Duration(timeAtStart, clock.nowUtc()));
+    }
+    logger.infofmt("Done processing DNS tasks.");
+  }
+
+  /**
+   * Creates per-tld update actions for one batch of leased tasks.
+   *
+   * @return the tasks that must remain on the pull queue
+   */
+  private Set<TaskHandle> processTasks(
+      List<TaskHandle> tasks, Set<String> tldsOfInterest, Set<String> pausedTlds) {
+    Set<TaskHandle> tasksToKeep = new HashSet<>();
     // Create a sorted multimap into which we will insert the refresh items, so that the items for
     // each TLD will be grouped together, and domains and hosts will be grouped within a TLD. The
     // grouping and ordering of domains and hosts is not technically necessary, but a predictable
@@ -131,8 +202,10 @@ public final class ReadDnsQueueAction implements Runnable {
     // Read all tasks on the DNS pull queue and load them into the refresh item multimap.
     for (TaskHandle task : tasks) {
       try {
-        Map<String, String> params = ImmutableMap.copyOf(task.extractParams());
-        String tld = params.get(RequestParameters.PARAM_TLD);
+        // Tasks may hold several target names, as repeated values of the target name param.
+        ImmutableListMultimap<String, String> params =
+            ImmutableListMultimap.<String, String>builder().putAll(task.extractParams()).build();
+        String tld = getFirst(params.get(RequestParameters.PARAM_TLD), null);
         if (tld == null) {
           logger.severe("Discarding invalid DNS refresh request; no TLD specified.");
         } else if (!tldsOfInterest.contains(tld)) {
@@ -141,13 +214,14 @@ public final class ReadDnsQueueAction implements Runnable {
           tasksToKeep.add(task);
           pausedTlds.add(tld);
         } else {
-          String typeString = params.get(DNS_TARGET_TYPE_PARAM);
-          String name = params.get(DNS_TARGET_NAME_PARAM);
+          String typeString = getFirst(params.get(DNS_TARGET_TYPE_PARAM), null);
           TargetType type = TargetType.valueOf(typeString);
           switch (type) {
             case DOMAIN:
             case HOST:
-              refreshItemMultimap.put(tld, RefreshItem.create(type, name));
+              for (String name : params.get(DNS_TARGET_NAME_PARAM)) {
+                refreshItemMultimap.put(tld, RefreshItem.create(type, name));
+              }
               break;
             default:
               logger.severefmt("Discarding DNS refresh request of type %s.", typeString);
@@ -158,50 +232,69 @@ public final class ReadDnsQueueAction implements Runnable {
         logger.severefmt(e, "Discarding invalid DNS refresh request (task %s).", task);
       }
     }
-    if (!pausedTlds.isEmpty()) {
-      logger.infofmt("The dns-pull queue is paused for TLDs: %s.", pausedTlds);
-    }
-    // Loop through the multimap by TLD and generate refresh tasks for the hosts and domains for
-    // each configured DNS writer.
-    for (Map.Entry<String, Collection<RefreshItem>> tldRefreshItemsEntry
-        : refreshItemMultimap.asMap().entrySet()) {
-      String tld = tldRefreshItemsEntry.getKey();
-      for (List<RefreshItem> chunk :
-          Iterables.partition(tldRefreshItemsEntry.getValue(), tldUpdateBatchSize)) {
-        for (String dnsWriter : Registry.get(tld).getDnsWriters()) {
-          TaskOptions options = withUrl(PublishDnsUpdatesAction.PATH)
-              .countdownMillis(jitterSeconds.isPresent()
-                  ? random.nextInt((int) SECONDS.toMillis(jitterSeconds.get()))
-                  : 0)
-              .param(RequestParameters.PARAM_TLD, tld)
-              .param(PublishDnsUpdatesAction.PARAM_DNS_WRITER, dnsWriter);
-          for (RefreshItem refreshItem : chunk) {
-            options.param(
-                (refreshItem.type() == TargetType.HOST)
-                    ? PublishDnsUpdatesAction.PARAM_HOSTS
-                    : PublishDnsUpdatesAction.PARAM_DOMAINS,
-                refreshItem.name());
-          }
-          taskEnqueuer.enqueue(dnsPublishPushQueue, options);
+    // Generate refresh tasks for the hosts and domains of each TLD for each configured DNS writer.
+    // The TLDs are independent of one another, so enqueue their tasks in parallel.
+    ImmutableList<Integer> numPublishTasks =
+        Concurrent.transform(
+            ImmutableList.copyOf(refreshItemMultimap.asMap().entrySet()),
+            tldRefreshItemsEntry ->
+                enqueuePublishTasks(
+                    tldRefreshItemsEntry.getKey(), tldRefreshItemsEntry.getValue()));
+    logger.infofmt(
+        "Enqueued %d publish tasks for %d TLDs.",
+        numPublishTasks.stream().mapToInt(Integer::intValue).sum(),
+        numPublishTasks.size());
+    return tasksToKeep;
+  }
+
+  /**
+   * Enqueues {@link PublishDnsUpdatesAction} tasks for the given refresh items of a single TLD.
+   *
+   * <p>The tasks are added as few at a time as App Engine allows, rather than one by one.
+   *
+   * @return the number of tasks enqueued
+   */
+  private int enqueuePublishTasks(String tld, Collection<RefreshItem> refreshItems) {
+    dnsMetrics.recordLeasedRefreshItems(tld, refreshItems.size(), !keepTasks);
+    int batchSize = getTldUpdateBatchSize(refreshItems.size());
+    ImmutableList.Builder<TaskOptions> publishTasks = new ImmutableList.Builder<>();
+    for (List<RefreshItem> chunk : Iterables.partition(refreshItems, batchSize)) {
+      for (String dnsWriter : Registry.get(tld).getDnsWriters()) {
+        TaskOptions options = withUrl(PublishDnsUpdatesAction.PATH)
+            .countdownMillis(jitterSeconds.isPresent()
+                ? random.nextInt((int) SECONDS.toMillis(jitterSeconds.get()))
+                : 0)
+            .param(RequestParameters.PARAM_TLD, tld)
+            .param(PublishDnsUpdatesAction.PARAM_DNS_WRITER, dnsWriter);
+        for (RefreshItem refreshItem : chunk) {
+          options.param(
+              (refreshItem.type() == TargetType.HOST)
+                  ? PublishDnsUpdatesAction.PARAM_HOSTS
+                  : PublishDnsUpdatesAction.PARAM_DOMAINS,
+              refreshItem.name());
         }
+        publishTasks.add(options);
       }
     }
-    Set<TaskHandle> tasksToDelete = difference(ImmutableSet.copyOf(tasks), tasksToKeep);
-    // In keepTasks mode, never delete any tasks.
-    if (keepTasks) {
-      logger.infofmt("Would have deleted %d DNS update tasks.", tasksToDelete.size());
-      for (TaskHandle task : tasks) {
-        dnsQueue.dropTaskLease(task);
-      }
-    // Otherwise, either delete or drop the lease of each task.
-    } else {
-      logger.infofmt("Deleting %d DNS update tasks.", tasksToDelete.size());
-      dnsQueue.deleteTasks(ImmutableList.copyOf(tasksToDelete));
-      logger.infofmt("Dropping %d DNS update tasks.", tasksToKeep.size());
-      for (TaskHandle task : tasksToKeep) {
-        dnsQueue.dropTaskLease(task);
-      }
-      logger.infofmt("Done processing DNS tasks.");
+    int numTasksEnqueued = 0;
+    for (List<TaskOptions> tasks : Iterables.partition(publishTasks.build(), maxTasksPerAdd())) {
+      numTasksEnqueued += taskEnqueuer.enqueue(dnsPublishPushQueue, tasks).size();
     }
+    return numTasksEnqueued;
+  }
+
+  /**
+   * Returns the number of refresh items to put in each publish task for a TLD with the given
+   * number of refresh items in a leased batch of tasks.
+   *
+   * <p>A small backlog uses {@code dnsTldUpdateBatchSize}. A larger backlog is split into about
+   * {@link #TARGET_PUBLISH_TASKS_PER_TLD} batches, up to {@code dnsTldUpdateMaxBatchSize} items
+   * each, so that a TLD that has fallen behind catches up in fewer, larger commits rather than
+   * flooding the publish queue with tasks that all contend for the same TLD lock.
+   */
+  @VisibleForTesting
+  int getTldUpdateBatchSize(int backlog) {
+    int batchSize = IntMath.divide(backlog, TARGET_PUBLISH_TASKS_PER_TLD, RoundingMode.CEILING);
+    return max(tldUpdateBatchSize, min(batchSize, tldUpdateMaxBatchSize));
   }
 }
@@ -0,0 +1,150 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.dns.writer;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.ImmutableSortedSet.toImmutableSortedSet;
+import static google.registry.model.EppResourceUtils.loadByForeignKeys;
+import static google.registry.model.ofy.ObjectifyService.ofy;
+import static java.util.Comparator.comparing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Streams;
+import com.googlecode.objectify.Key;
+import google.registry.model.domain.DomainResource;
+import google.registry.model.host.HostResource;
+import google.registry.model.registry.Registries;
+import google.registry.util.Clock;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import org.joda.time.DateTime;
+
+/**
+ * Loads the domains, and their nameserver hosts, that a {@link DnsWriter} publishes.
+ *
+ * <p>Everything loaded is kept for the life of the loader, which should be that of the writer.
+ * {@link #prefetch} loads a whole batch of domains with three bulk Datastore reads (the foreign
+ * key indexes, the domains, and their nameservers), however many domains there are. Domains that
+ * weren't prefetched are loaded the same way when they are first asked for.
+ */
+public final class DnsResourceLoader {
+
+  private final Clock clock;
+
+  /** Domains by name, with an empty value for names that have no active domain. */
+  private final Map<String, Optional<DomainResource>> domains = new HashMap<>();
+
+  private final Map<Key<HostResource>, HostResource> hosts = new HashMap<>();
+
+  public DnsResourceLoader(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the name of the superordinate domain of the given host, or empty if the host isn't
+   * under any of the registry's TLDs.
+   *
+   * <p>The host name must be in canonical form, i.e. lower-case and without a trailing dot, as
+   * host names on the DNS queue are. It isn't canonicalized here, so the domain name is returned
+   * in the same form.
+   *
+   * @see Registries#findTldForName(String)
+   */
+  public static Optional<String> getSuperordinateDomainName(String hostName) {
+    Optional<String> tld = Registries.findTldForName(hostName);
+    if (!tld.isPresent()) {
+      return Optional.empty();
+    }
+    // The TLD may have several dots, so the domain starts after the last dot before the TLD's.
+    int tldDotIndex = hostName.length() - tld.get().length() - 1;
+    return Optional.of(hostName.substring(hostName.lastIndexOf('.', tldDotIndex - 1) + 1));
+  }
+
+  /**
+   * Loads the given domains, and the superordinate domains of the given hosts, along with all of
+   * their nameservers, in bulk.
+   */
+  public void prefetch(Iterable<String> domainNames, Iterable<String> hostNames) {
+    ImmutableSet<String> namesToLoad =
+        Streams.concat(
+                Streams.stream(domainNames),
+                Streams.stream(hostNames)
+                    .map(DnsResourceLoader::getSuperordinateDomainName)
+                    .filter(Optional::isPresent)
+                    .map(Optional::get))
+            .filter(domainName -> !domains.containsKey(domainName))
+            .collect(toImmutableSet());
+    if (namesToLoad.isEmpty()) {
+      return;
+    }
+    DateTime now = clock.nowUtc();
+    ImmutableMap<String, DomainResource> loadedDomains =
+        loadByForeignKeys(DomainResource.class, namesToLoad, now);
+    for (String domainName : namesToLoad) {
+      domains.put(domainName, Optional.ofNullable(loadedDomains.get(domainName)));
+    }
+    loadHosts(
+        loadedDomains
+            .values()
+            .stream()
+            .flatMap(domain -> domain.getNameservers().stream())
+            .collect(toImmutableSet()));
+  }
+
+  /**
+   * Returns the domain with the given name, or null if there is no active domain with that name.
+   */
+  @Nullable
+  public DomainResource getDomain(String domainName) {
+    prefetch(ImmutableList.of(domainName), ImmutableList.of());
+    return domains.get(domainName).orElse(null);
+  }
+
+  /** Returns the nameservers of the given domain, sorted by host name. */
+  public ImmutableList<HostResource> getNameservers(DomainResource domain) {
+    loadHosts(domain.getNameservers());
+    return domain
+        .getNameservers()
+        .stream()
+        .map(hosts::get)
+        .filter(Objects::nonNull)
+        .sorted(comparing(HostResource::getFullyQualifiedHostName))
+        .collect(toImmutableList());
+  }
+
+  /** Returns the fully qualified host names of the nameservers of the given domain. */
+  public ImmutableSortedSet<String> getNameserverHostNames(DomainResource domain) {
+    return getNameservers(domain)
+        .stream()
+        .map(HostResource::getFullyQualifiedHostName)
+        .collect(toImmutableSortedSet(Ordering.natural()));
+  }
+
+  private void loadHosts(ImmutableSet<Key<HostResource>> hostKeys) {
+    ImmutableSet<Key<HostResource>> keysToLoad =
+        hostKeys.stream().filter(key -> !hosts.containsKey(key)).collect(toImmutableSet());
+    if (!keysToLoad.isEmpty()) {
+      hosts.putAll(ofy().load().keys(keysToLoad));
+    }
+  }
+}
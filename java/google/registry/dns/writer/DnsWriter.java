@@ -14,6 +14,8 @@
 
 package google.registry.dns.writer;
 
+import com.google.common.collect.ImmutableSet;
+
 /**
  * Transaction object for sending an atomic batch of updates for a single zone to the DNS server.
  *
@@ -30,6 +32,18 @@ package google.registry.dns.writer;
  */
 public interface DnsWriter {
 
+  /**
+   * Tells the writer about all of the domains and hosts in the batch that is about to be
+   * published, before {@link #publishDomain} or {@link #publishHost} is called for any of them.
+   *
+   * <p>Writers can use this to load what they need from Datastore in bulk (see {@link
+   * DnsResourceLoader}) rather than one name at a time. The default implementation does nothing.
+   *
+   * @param domainNames the fully qualified domain names that will be published
+   * @param hostNames the fully qualified host names that will be published
+   */
+  default void prefetch(ImmutableSet<String> domainNames, ImmutableSet<String> hostNames) {}
+
   /**
    * Loads {@code domainName} from Datastore and publishes its NS/DS records to the DNS server.
    * Replaces existing records for the exact name supplied with an NS record for each name server
@@ -15,7 +15,6 @@
 package google.registry.dns.writer.clouddns;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static google.registry.model.EppResourceUtils.loadByForeignKey;
 
 import com.google.api.client.googleapis.json.GoogleJsonError.ErrorInfo;
 import com.google.api.client.googleapis.json.GoogleJsonResponseException;
@@ -23,21 +22,19 @@ import com.google.api.services.dns.Dns;
 import com.google.api.services.dns.model.Change;
 import com.google.api.services.dns.model.ResourceRecordSet;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
-import com.google.common.net.InternetDomainName;
 import com.google.common.util.concurrent.RateLimiter;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.writer.BaseDnsWriter;
+import google.registry.dns.writer.DnsResourceLoader;
 import google.registry.dns.writer.DnsWriter;
 import google.registry.dns.writer.DnsWriterZone;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.host.HostResource;
-import google.registry.model.registry.Registries;
 import google.registry.util.Clock;
 import google.registry.util.FormattingLogger;
 import google.registry.util.Retrier;
@@ -72,7 +69,6 @@ public class CloudDnsWriter extends BaseDnsWriter {
   private static final ImmutableSet<String> RETRYABLE_EXCEPTION_REASONS =
       ImmutableSet.of("preconditionFailed", "notFound", "alreadyExists");
 
-  private final Clock clock;
   private final RateLimiter rateLimiter;
   // TODO(shikhman): This uses @Named("transientFailureRetries") which may not be tuned for this
   // application.
@@ -84,6 +80,7 @@ public class CloudDnsWriter extends BaseDnsWriter {
   private final String zoneName;
   private final Dns dnsConnection;
   private final HashMap<String, ImmutableSet<ResourceRecordSet>> desiredRecords = new HashMap<>();
+  private final DnsResourceLoader resourceLoader;
 
   @Inject
   CloudDnsWriter(
@@ -103,8 +100,13 @@ public class CloudDnsWriter extends BaseDnsWriter {
     this.defaultNsTtl = defaultNsTtl;
     this.defaultDsTtl = defaultDsTtl;
     this.rateLimiter = rateLimiter;
-    this.clock = clock;
     this.retrier = retrier;
+    this.resourceLoader = new DnsResourceLoader(clock);
+  }
+
+  @Override
+  public void prefetch(ImmutableSet<String> domainNames, ImmutableSet<String> hostNames) {
+    resourceLoader.prefetch(domainNames, hostNames);
   }
 
   /** Publish the domain and all subordinate hosts. */
@@ -115,7 +117,7 @@ public class CloudDnsWriter extends BaseDnsWriter {
 
     // Load the target domain. Note that it can be null if this domain was just deleted.
     Optional<DomainResource> domainResource =
-        Optional.ofNullable(loadByForeignKey(DomainResource.class, domainName, clock.nowUtc()));
+        Optional.ofNullable(resourceLoader.getDomain(domainName));
 
     // Return early if no DNS records should be published.
     // desiredRecordsBuilder is populated with an empty set to indicate that all existing records
@@ -148,15 +150,16 @@ public class CloudDnsWriter extends BaseDnsWriter {
 
 
     // Construct NS records (if any).
-    Set<String> nameserverData = domainResource.get().loadNameserverFullyQualifiedHostNames();
-    if (!nameserverData.isEmpty()) {
+    ImmutableList<HostResource> nameservers = resourceLoader.getNameservers(domainResource.get());
+    if (!nameservers.isEmpty()) {
       HashSet<String> nsRrData = new HashSet<>();
-      for (String hostName : nameserverData) {
+      for (HostResource nameserver : nameservers) {
+        String hostName = nameserver.getFullyQualifiedHostName();
         nsRrData.add(getAbsoluteHostName(hostName));
 
         // Construct glue records for subordinate NS hostnames (if any)
         if (hostName.endsWith(domainName)) {
-          publishSubordinateHost(hostName);
+          publishSubordinateHost(nameserver);
         }
       }
 
@@ -176,29 +179,18 @@ public class CloudDnsWriter extends BaseDnsWriter {
         "Will write %s records for domain %s", domainRecords.build().size(), absoluteDomainName);
   }
 
-  private void publishSubordinateHost(String hostName) {
+  private void publishSubordinateHost(HostResource host) {
+    String hostName = host.getFullyQualifiedHostName();
     logger.infofmt("Publishing glue records for %s", hostName);
     // Canonicalize name
     String absoluteHostName = getAbsoluteHostName(hostName);
 
-    // Load the target host. Note that it can be null if this host was just deleted.
-    // desiredRecords is populated with an empty set to indicate that all existing records
-    // should be deleted.
-    Optional<HostResource> host =
-        Optional.ofNullable(loadByForeignKey(HostResource.class, hostName, clock.nowUtc()));
-
-    // Return early if the host is deleted.
-    if (!host.isPresent()) {
-      desiredRecords.put(absoluteHostName, ImmutableSet.<ResourceRecordSet>of());
-      return;
-    }
-
     ImmutableSet.Builder<ResourceRecordSet> domainRecords = new ImmutableSet.Builder<>();
 
     // Construct A and AAAA records (if any).
     HashSet<String> aRrData = new HashSet<>();
     HashSet<String> aaaaRrData = new HashSet<>();
-    for (InetAddress ip : host.get().getInetAddresses()) {
+    for (InetAddress ip : host.getInetAddresses()) {
       if (ip instanceof Inet4Address) {
         aRrData.add(ip.toString());
       } else {
@@ -239,26 +231,17 @@ public class CloudDnsWriter extends BaseDnsWriter {
   @Override
   public void publishHost(String hostName) {
     // Get the superordinate domain name of the host.
-    InternetDomainName host = InternetDomainName.from(hostName);
-    Optional<InternetDomainName> tld = Registries.findTldForName(host);
+    Optional<String> domain = DnsResourceLoader.getSuperordinateDomainName(hostName);
 
     // Host not managed by our registry, no need to update DNS.
-    if (!tld.isPresent()) {
+    if (!domain.isPresent()) {
       logger.severefmt("publishHost called for invalid host %s", hostName);
       return;
     }
 
-    // Extract the superordinate domain name. The TLD and host may have several dots so this
-    // must calculate a sublist.
-    ImmutableList<String> hostParts = host.parts();
-    ImmutableList<String> tldParts = tld.get().parts();
-    ImmutableList<String> domainParts =
-        hostParts.subList(hostParts.size() - tldParts.size() - 1, hostParts.size());
-    String domain = Joiner.on(".").join(domainParts);
-
     // Refresh the superordinate domain, since we shouldn't be publishing glue records if we are not
     // authoritative for the superordinate domain.
-    publishDomain(domain);
+    publishDomain(domain.get());
   }
 
   /**
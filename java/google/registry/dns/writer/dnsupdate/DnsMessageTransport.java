@@ -16,28 +16,51 @@ package google.registry.dns.writer.dnsupdate;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
 import google.registry.config.RegistryConfig.Config;
 import java.io.DataInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import javax.inject.Inject;
 import javax.net.SocketFactory;
 import org.joda.time.Duration;
 import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
 import org.xbill.DNS.Opcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Update;
 
 /**
  * A transport for DNS messages. Sends/receives DNS messages over TCP using old-style {@link Socket}
  * s and the message framing defined in <a href="https://tools.ietf.org/html/rfc1035">RFC 1035</a>.
  * We would like use the dnsjava library's {@link org.xbill.DNS.SimpleResolver} class for this, but
  * it requires {@link java.nio.channels.SocketChannel} which is not supported on AppEngine.
+ *
+ * <p>Several messages can be sent at once with {@link #sendAll}, which pipelines them over one
+ * connection as allowed by <a href="https://tools.ietf.org/html/rfc7766">RFC 7766</a>, and
+ * matches the responses back to their queries by message ID. Each call opens its own connection
+ * and closes it before returning, so a connection is only shared by the messages of one call, such
+ * as the parts of a split update.
  */
 public class DnsMessageTransport {
 
@@ -47,7 +70,8 @@ public class DnsMessageTransport {
    * @see <a href="https://tools.ietf.org/html/rfc1035">RFC 1035</a>
    */
   static final int MESSAGE_LENGTH_FIELD_BYTES = 2;
-  private static final int MESSAGE_MAXIMUM_LENGTH = (1 << (MESSAGE_LENGTH_FIELD_BYTES * 8)) - 1;
+  @VisibleForTesting
+  static final int MESSAGE_MAXIMUM_LENGTH = (1 << (MESSAGE_LENGTH_FIELD_BYTES * 8)) - 1;
 
   /**
    * The standard DNS port number.
@@ -56,6 +80,17 @@ public class DnsMessageTransport {
    */
   @VisibleForTesting static final int DNS_PORT = 53;
 
+  /**
+   * The maximum number of queries that are written to the connection before their responses are
+   * read.
+   *
+   * <p>Responses are small, but bounding this keeps both ends from stalling on full TCP buffers.
+   */
+  @VisibleForTesting static final int MAX_QUERIES_IN_FLIGHT = 16;
+
+  /** Size of the fixed DNS message header. */
+  private static final int MESSAGE_HEADER_LENGTH = 12;
+
   private final SocketFactory factory;
   private final String updateHost;
   private final int updateTimeout;
@@ -87,21 +122,83 @@ public class DnsMessageTransport {
    * @throws IllegalArgumentException if the query is too large to be sent (> 65535 bytes)
    */
   public Message send(Message query) throws IOException {
+    return getOnlyElement(sendAll(ImmutableList.of(query)));
+  }
+
+  /**
+   * Sends an UPDATE message and returns the responses, splitting it into several messages first
+   * if it is too large to be sent as one.
+   *
+   * <p>Records for the same name are kept in the same message wherever possible. The parts are
+   * sent in order over a single connection, so the server applies them in order, but they are
+   * no longer applied as a single atomic update.
+   *
+   * @throws IOException if the Socket input/output streams throws one
+   * @throws IllegalArgumentException if the update can't be split, either because it has
+   *     prerequisites or because the records for a single name are too large for one message
+   */
+  public ImmutableList<Message> sendUpdate(Update update) throws IOException {
+    return sendAll(splitUpdate(update, MESSAGE_MAXIMUM_LENGTH));
+  }
+
+  /**
+   * Sends several DNS "query" messages over the same connection without waiting for each
+   * response before sending the next, and returns their responses in the same order as the
+   * queries. Each response is checked for matching ID and opcode.
+   *
+   * @param queries messages to send, each with a distinct ID
+   * @return the responses received from the server
+   * @throws IOException if the Socket input/output streams throws one
+   * @throws IllegalArgumentException if any query is too large to be sent (> 65535 bytes), or if
+   *     two queries have the same ID
+   */
+  public ImmutableList<Message> sendAll(List<? extends Message> queries) throws IOException {
+    Map<Integer, Message> queriesById = new LinkedHashMap<>();
+    for (Message query : queries) {
+      checkArgument(
+          queriesById.put(query.getHeader().getID(), query) == null,
+          "Duplicate DNS message ID %s",
+          query.getHeader().getID());
+    }
+    Map<Integer, Message> responsesById = new HashMap<>();
     try (Socket socket = factory.createSocket(InetAddress.getByName(updateHost), DNS_PORT)) {
       socket.setSoTimeout(updateTimeout);
-      writeMessage(socket.getOutputStream(), query);
-      Message response = readMessage(socket.getInputStream());
+      exchange(socket, queriesById.values(), responsesById);
+    }
+    return queriesById.keySet().stream().map(responsesById::get).collect(toImmutableList());
+  }
+
+  /**
+   * Sends the queries and reads their responses, keeping at most {@link #MAX_QUERIES_IN_FLIGHT}
+   * queries outstanding at once.
+   */
+  private void exchange(
+      Socket socket, Collection<Message> queries, Map<Integer, Message> responsesById)
+      throws IOException {
+    OutputStream outputStream = socket.getOutputStream();
+    DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+    Map<Integer, Message> inFlight = new LinkedHashMap<>();
+    Iterator<Message> unsent = queries.iterator();
+    while (unsent.hasNext() || !inFlight.isEmpty()) {
+      while (unsent.hasNext() && inFlight.size() < MAX_QUERIES_IN_FLIGHT) {
+        Message query = unsent.next();
+        writeMessage(outputStream, query);
+        inFlight.put(query.getHeader().getID(), query);
+      }
+      outputStream.flush();
+      Message response = readMessage(inputStream);
+      Message query = inFlight.remove(response.getHeader().getID());
+      verify(
+          query != null,
+          "response ID %s does not match query ID %s",
+          response.getHeader().getID(),
+          Joiner.on(", ").join(inFlight.keySet()));
       checkValidResponse(query, response);
-      return response;
+      responsesById.put(response.getHeader().getID(), response);
     }
   }
 
   private void checkValidResponse(Message query, Message response) {
-    verify(
-        response.getHeader().getID() == query.getHeader().getID(),
-        "response ID %s does not match query ID %s",
-        response.getHeader().getID(),
-        query.getHeader().getID());
     verify(
         response.getHeader().getOpcode() == query.getHeader().getOpcode(),
         "response opcode '%s' does not match query opcode '%s'",
@@ -122,11 +219,80 @@ public class DnsMessageTransport {
     outputStream.write(buffer.array());
   }
 
-  private Message readMessage(InputStream inputStream) throws IOException {
-    DataInputStream stream = new DataInputStream(inputStream);
+  private Message readMessage(DataInputStream stream) throws IOException {
     int length = stream.readUnsignedShort();
     byte[] messageData = new byte[length];
     stream.readFully(messageData);
     return new Message(messageData);
   }
+
+  /**
+   * Splits an UPDATE message into messages of at most {@code maxLength} bytes, each with a
+   * distinct ID. All of the records for a name go into the same message, in their original order,
+   * wherever they appear in the update.
+   */
+  @VisibleForTesting
+  static ImmutableList<Update> splitUpdate(Update update, int maxLength) {
+    if (update.toWire().length <= maxLength) {
+      return ImmutableList.of(update);
+    }
+    checkArgument(
+        update.getSectionArray(Section.PREREQ).length == 0,
+        "Can't split a DNS update with prerequisites");
+    Record zoneRecord = update.getQuestion();
+    // Name compression only makes the real messages smaller than these estimates.
+    int baseLength = MESSAGE_HEADER_LENGTH + zoneRecord.toWire(Section.ZONE).length;
+    ImmutableList.Builder<Update> updates = new ImmutableList.Builder<>();
+    Set<Integer> usedIds = new HashSet<>();
+    List<Record> currentRecords = new ArrayList<>();
+    int currentLength = baseLength;
+    for (List<Record> group : groupByName(update.getSectionArray(Section.UPDATE))) {
+      int groupLength =
+          group.stream().mapToInt(record -> record.toWire(Section.UPDATE).length).sum();
+      checkArgument(
+          baseLength + groupLength <= maxLength,
+          "DNS update records for %s larger than maximum of %s: %s",
+          group.get(0).getName(),
+          maxLength,
+          baseLength + groupLength);
+      if (currentLength + groupLength > maxLength) {
+        updates.add(createUpdate(zoneRecord, currentRecords, usedIds));
+        currentRecords.clear();
+        currentLength = baseLength;
+      }
+      currentRecords.addAll(group);
+      currentLength += groupLength;
+    }
+    if (!currentRecords.isEmpty()) {
+      updates.add(createUpdate(zoneRecord, currentRecords, usedIds));
+    }
+    return updates.build();
+  }
+
+  /**
+   * Groups the records by name, in the order each name first appears.
+   *
+   * <p>The order of the records for each name is kept, since a delete followed by an add of the
+   * same name only means the same thing in that order. Records for different names are
+   * independent, so moving them relative to each other doesn't change the update.
+   */
+  private static ImmutableList<List<Record>> groupByName(Record[] records) {
+    Map<Name, List<Record>> groups = new LinkedHashMap<>();
+    for (Record record : records) {
+      groups.computeIfAbsent(record.getName(), name -> new ArrayList<>()).add(record);
+    }
+    return ImmutableList.copyOf(groups.values());
+  }
+
+  private static Update createUpdate(
+      Record zoneRecord, List<Record> records, Set<Integer> usedIds) {
+    Update update = new Update(zoneRecord.getName(), zoneRecord.getDClass());
+    while (!usedIds.add(update.getHeader().getID())) {
+      update.getHeader().setID(ThreadLocalRandom.current().nextInt(1 << 16));
+    }
+    for (Record record : records) {
+      update.addRecord(record, Section.UPDATE);
+    }
+    return update;
+  }
 }
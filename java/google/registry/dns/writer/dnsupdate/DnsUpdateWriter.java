@@ -15,27 +15,21 @@
 package google.registry.dns.writer.dnsupdate;
 
 import static com.google.common.base.Verify.verify;
-import static com.google.common.collect.Sets.intersection;
 import static com.google.common.collect.Sets.union;
-import static google.registry.model.EppResourceUtils.loadByForeignKey;
 
-import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.net.InternetDomainName;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.dns.writer.BaseDnsWriter;
+import google.registry.dns.writer.DnsResourceLoader;
 import google.registry.dns.writer.DnsWriterZone;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.host.HostResource;
-import google.registry.model.registry.Registries;
 import google.registry.util.Clock;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
-import java.util.Optional;
 import javax.inject.Inject;
 import org.joda.time.Duration;
 import org.xbill.DNS.AAAARecord;
@@ -59,7 +53,8 @@ import org.xbill.DNS.Update;
  *
  * On call to {@link #commit()}, a single UPDATE message is created containing the records required
  * to "synchronize" the DNS with the current (at the time of processing) state of the registry, for
- * the supplied domain/host.
+ * the supplied domain/host. If that message is too large to send, the transport splits it into
+ * several messages, which it sends in order over a single connection.
  *
  * <p>The general strategy of the publish methods is to delete <em>all</em> resource records of any
  * <em>type</em> that match the exact domain/host name supplied. And then for create/update cases,
@@ -70,10 +65,11 @@ import org.xbill.DNS.Update;
  * <p>Only NS, DS, A, and AAAA records are published, and in particular no DNSSEC signing is done
  * assuming that this will be done by a third party DNS provider.
  *
- * <p>Each commit call is treated as an atomic update to the DNS. If a commit fails an exception
- * is thrown. The SOA record serial number is implicitly incremented by the server on each UPDATE
- * message, as required by RFC 2136. Care must be taken to make sure the SOA serial number does not
- * go backwards if the entire TLD (zone) is "reset" to empty and republished.
+ * <p>Each commit call is treated as an atomic update to the DNS, unless its UPDATE message had to
+ * be split. If a commit fails an exception is thrown. The SOA record serial number is implicitly
+ * incremented by the server on each UPDATE message, as required by RFC 2136. Care must be taken to
+ * make sure the SOA serial number does not go backwards if the entire TLD (zone) is "reset" to
+ * empty and republished.
  */
 public class DnsUpdateWriter extends BaseDnsWriter {
 
@@ -87,9 +83,9 @@ public class DnsUpdateWriter extends BaseDnsWriter {
   private final Duration dnsDefaultNsTtl;
   private final Duration dnsDefaultDsTtl;
   private final DnsMessageTransport transport;
-  private final Clock clock;
   private final Update update;
   private final String zoneName;
+  private final DnsResourceLoader resourceLoader;
 
   /**
    * Class constructor.
@@ -114,7 +110,12 @@ public class DnsUpdateWriter extends BaseDnsWriter {
     this.dnsDefaultNsTtl = dnsDefaultNsTtl;
     this.dnsDefaultDsTtl = dnsDefaultDsTtl;
     this.transport = transport;
-    this.clock = clock;
+    this.resourceLoader = new DnsResourceLoader(clock);
+  }
+
+  @Override
+  public void prefetch(ImmutableSet<String> domainNames, ImmutableSet<String> hostNames) {
+    resourceLoader.prefetch(domainNames, hostNames);
   }
 
   /**
@@ -126,7 +127,7 @@ public class DnsUpdateWriter extends BaseDnsWriter {
    *     this domain refresh request
    */
   private void publishDomain(String domainName, String requestingHostName) {
-    DomainResource domain = loadByForeignKey(DomainResource.class, domainName, clock.nowUtc());
+    DomainResource domain = resourceLoader.getDomain(domainName);
     update.delete(toAbsoluteName(domainName), Type.ANY);
     if (domain != null) {
       // As long as the domain exists, orphan glues should be cleaned.
@@ -146,35 +147,23 @@ public class DnsUpdateWriter extends BaseDnsWriter {
 
   @Override
   public void publishHost(String hostName) {
-    // Get the superordinate domain name of the host.
-    InternetDomainName host = InternetDomainName.from(hostName);
-    ImmutableList<String> hostParts = host.parts();
-    Optional<InternetDomainName> tld = Registries.findTldForName(host);
-
-    // host not managed by our registry, no need to update DNS.
-    if (!tld.isPresent()) {
-      return;
-    }
-
-    ImmutableList<String> tldParts = tld.get().parts();
-    ImmutableList<String> domainParts =
-        hostParts.subList(hostParts.size() - tldParts.size() - 1, hostParts.size());
-    String domain = Joiner.on(".").join(domainParts);
-
     // Refresh the superordinate domain, always delete the host first to ensure idempotency,
-    // and only publish the host if it is a glue record.
-    publishDomain(domain, hostName);
+    // and only publish the host if it is a glue record. Hosts that aren't managed by our registry
+    // don't need to be updated in DNS.
+    DnsResourceLoader.getSuperordinateDomainName(hostName)
+        .ifPresent(domainName -> publishDomain(domainName, hostName));
   }
 
   @Override
   protected void commitUnchecked() {
     try {
-      Message response = transport.send(update);
-      verify(
-          response.getRcode() == Rcode.NOERROR,
-          "DNS server failed domain update for '%s' rcode: %s",
-          zoneName,
-          Rcode.string(response.getRcode()));
+      for (Message response : transport.sendUpdate(update)) {
+        verify(
+            response.getRcode() == Rcode.NOERROR,
+            "DNS server failed domain update for '%s' rcode: %s",
+            zoneName,
+            Rcode.string(response.getRcode()));
+      }
     } catch (IOException e) {
       throw new RuntimeException("publishDomain failed for zone: " + zoneName, e);
     }
@@ -210,18 +199,17 @@ public class DnsUpdateWriter extends BaseDnsWriter {
   }
 
   private void addInBailiwickNameServerSet(DomainResource domain, Update update) {
-    for (String hostName :
-        intersection(
-            domain.loadNameserverFullyQualifiedHostNames(), domain.getSubordinateHosts())) {
-      HostResource host = loadByForeignKey(HostResource.class, hostName, clock.nowUtc());
-      update.add(makeAddressSet(host));
-      update.add(makeV6AddressSet(host));
+    for (HostResource host : resourceLoader.getNameservers(domain)) {
+      if (domain.getSubordinateHosts().contains(host.getFullyQualifiedHostName())) {
+        update.add(makeAddressSet(host));
+        update.add(makeV6AddressSet(host));
+      }
     }
   }
 
   private RRset makeNameServerSet(DomainResource domain) {
     RRset nameServerSet = new RRset();
-    for (String hostName : domain.loadNameserverFullyQualifiedHostNames()) {
+    for (String hostName : resourceLoader.getNameserverHostNames(domain)) {
       NSRecord record =
           new NSRecord(
               toAbsoluteName(domain.getFullyQualifiedDomainName()),
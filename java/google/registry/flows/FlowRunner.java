@@ -16,9 +16,12 @@ package google.registry.flows;
 
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.xml.XmlTransformer.prettyPrint;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
 import com.googlecode.objectify.Work;
+import google.registry.config.RegistryConfig.Config;
 import google.registry.flows.FlowModule.ClientId;
 import google.registry.flows.FlowModule.DryRun;
 import google.registry.flows.FlowModule.InputXml;
@@ -29,6 +32,8 @@ import google.registry.model.eppcommon.Trid;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.monitoring.whitebox.EppMetric;
 import google.registry.util.FormattingLogger;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
 import javax.inject.Inject;
 import javax.inject.Provider;
 
@@ -54,25 +59,32 @@ public class FlowRunner {
   @Inject SessionMetadata sessionMetadata;
   @Inject Trid trid;
   @Inject FlowReporter flowReporter;
+  @Inject @Config("eppCommandPrettyPrintRates") ImmutableMap<String, Double> prettyPrintRates;
   @Inject FlowRunner() {}
 
   /** Runs the EPP flow, and records metrics on the given builder. */
   public EppOutput run(final EppMetric.Builder eppMetricBuilder) throws EppException {
-    String prettyXml = prettyPrint(inputXmlBytes);
-    // This log line is very fragile since it's used for ICANN reporting - DO NOT CHANGE.
-    // New data to be logged should be added only to the JSON log statement below.
-    // TODO(b/20725722): remove this log statement entirely once we've transitioned to using the
-    //   log line below instead, or change this one to be for human consumption only.
-    logger.infofmt(
-        COMMAND_LOG_FORMAT,
-        trid.getServerTransactionId(),
-        clientId,
-        sessionMetadata,
-        prettyXml.replaceAll("\n", "\n\t"),
-        credentials,
-        eppRequestSource,
-        isDryRun ? "DRY_RUN" : "LIVE",
-        isSuperuser ? "SUPERUSER" : "NORMAL");
+    // Don't pay for decoding (and possibly re-parsing) the input XML if nothing will be logged.
+    if (logger.isLoggable(Level.INFO)) {
+      String inputXml =
+          shouldPrettyPrintInputXml()
+              ? prettyPrint(inputXmlBytes)
+              : new String(inputXmlBytes, UTF_8);
+      // This log line is very fragile since it's used for ICANN reporting - DO NOT CHANGE.
+      // New data to be logged should be added only to the JSON log statement below.
+      // TODO(b/20725722): remove this log statement entirely once we've transitioned to using the
+      //   log line below instead, or change this one to be for human consumption only.
+      logger.infofmt(
+          COMMAND_LOG_FORMAT,
+          trid.getServerTransactionId(),
+          clientId,
+          sessionMetadata,
+          inputXml.replaceAll("\n", "\n\t"),
+          credentials,
+          eppRequestSource,
+          isDryRun ? "DRY_RUN" : "LIVE",
+          isSuperuser ? "SUPERUSER" : "NORMAL");
+    }
     // Record flow info to the GAE request logs for reporting purposes if it's not a dry run.
     if (!isDryRun) {
       flowReporter.recordToLogs();
@@ -109,6 +121,17 @@ public class FlowRunner {
     }
   }
 
+  /**
+   * Returns whether the input XML should be pretty-printed in the EPP command log line.
+   *
+   * <p>Pretty-printing re-parses the entire command, so high-volume flows can be configured to
+   * only do it for a sample of commands and log the rest verbatim.
+   */
+  private boolean shouldPrettyPrintInputXml() {
+    Double rate = prettyPrintRates.get(flowClass.getSimpleName());
+    return rate == null || ThreadLocalRandom.current().nextDouble() < rate;
+  }
+
   /** Exception for canceling a transaction while capturing what the output would have been. */
   private static class DryRunException extends RuntimeException {
     final EppOutput output;
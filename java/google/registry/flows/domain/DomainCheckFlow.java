@@ -14,6 +14,7 @@
 
 package google.registry.flows.domain;
 
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static google.registry.flows.FlowUtils.validateClientIsLoggedIn;
 import static google.registry.flows.ResourceFlowUtils.verifyTargetIdCount;
 import static google.registry.flows.domain.DomainFlowUtils.checkAllowedAccessToTld;
@@ -23,13 +24,17 @@ import static google.registry.flows.domain.DomainFlowUtils.validateDomainName;
 import static google.registry.flows.domain.DomainFlowUtils.validateDomainNameWithIdnTables;
 import static google.registry.flows.domain.DomainFlowUtils.verifyNotInPredelegation;
 import static google.registry.model.EppResourceUtils.checkResourcesExist;
-import static google.registry.model.index.DomainApplicationIndex.loadActiveApplicationsByDomainName;
+import static google.registry.model.index.DomainApplicationIndex.loadActiveApplicationsByDomainNames;
+import static google.registry.model.registry.label.PremiumListUtils.prefetchPremiumListEntries;
 import static google.registry.model.registry.label.ReservationType.getTypeOfHighestSeverity;
 import static google.registry.pricing.PricingEngineProxy.isDomainPremium;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.net.InternetDomainName;
 import google.registry.config.RegistryConfig.Config;
@@ -43,6 +48,7 @@ import google.registry.flows.annotations.ReportingSpec;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic.BeforeResponseParameters;
 import google.registry.flows.custom.DomainCheckFlowCustomLogic.BeforeResponseReturnData;
+import google.registry.model.domain.DomainApplication;
 import google.registry.model.domain.DomainCommand.Check;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.fee.FeeCheckCommandExtension;
@@ -60,8 +66,11 @@ import google.registry.model.registry.Registry.TldState;
 import google.registry.model.registry.label.ReservationType;
 import google.registry.model.reporting.IcannReportingTypes.ActivityReportField;
 import google.registry.util.Clock;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import javax.inject.Inject;
@@ -148,9 +157,11 @@ public final class DomainCheckFlow implements Flow {
             .setAsOfDate(now)
             .build());
     Set<String> existingIds = checkResourcesExist(DomainResource.class, targetIds, now);
+    ImmutableMap<String, Optional<String>> messages =
+        getMessagesForChecks(domainNames, existingIds, now);
     ImmutableList.Builder<DomainCheck> checks = new ImmutableList.Builder<>();
     for (String targetId : targetIds) {
-      Optional<String> message = getMessageForCheck(domainNames.get(targetId), existingIds, now);
+      Optional<String> message = messages.get(targetId);
       checks.add(DomainCheck.create(!message.isPresent(), targetId, message.orElse(null)));
     }
     BeforeResponseReturnData responseData =
@@ -166,29 +177,74 @@ public final class DomainCheckFlow implements Flow {
         .build();
   }
 
-  private Optional<String> getMessageForCheck(
-      InternetDomainName domainName, Set<String> existingIds, DateTime now) {
-    if (existingIds.contains(domainName.toString())) {
-      return Optional.of("In use");
+  /**
+   * Returns the reason, if any, that each of the given domain names is unavailable, keyed by
+   * target ID.
+   *
+   * <p>The lookups are batched across all of the names rather than performed one name at a time:
+   * pending applications are loaded for every name in a single pass, and the premium list entries
+   * for each TLD are prefetched together before any name is priced.
+   */
+  private ImmutableMap<String, Optional<String>> getMessagesForChecks(
+      ImmutableMap<String, InternetDomainName> domainNames, Set<String> existingIds, DateTime now) {
+    Map<String, Registry> registries = new HashMap<>();
+    Set<String> namesToCheckForApplications = new HashSet<>();
+    for (InternetDomainName domainName : domainNames.values()) {
+      Registry registry =
+          registries.computeIfAbsent(domainName.parent().toString(), Registry::get);
+      if (!existingIds.contains(domainName.toString())
+          && PENDING_ALLOCATION_TLD_STATES.contains(registry.getTldState(now))) {
+        namesToCheckForApplications.add(domainName.toString());
+      }
     }
-    Registry registry = Registry.get(domainName.parent().toString());
-    if (PENDING_ALLOCATION_TLD_STATES.contains(registry.getTldState(now))
-        && loadActiveApplicationsByDomainName(domainName.toString(), now)
-            .stream()
-            .anyMatch(input -> !input.getApplicationStatus().isFinalStatus())) {
-      return Optional.of("Pending allocation");
+    ImmutableSetMultimap<String, DomainApplication> activeApplications =
+        namesToCheckForApplications.isEmpty()
+            ? ImmutableSetMultimap.<String, DomainApplication>of()
+            : loadActiveApplicationsByDomainNames(namesToCheckForApplications, now);
+    boolean isFeeCheck = eppInput.getSingleExtension(FeeCheckCommandExtension.class) != null;
+    Map<String, Optional<String>> messages = new LinkedHashMap<>();
+    // Names that are only unavailable if they turn out to be premium, grouped by TLD.
+    SetMultimap<String, String> premiumCandidates = LinkedHashMultimap.create();
+    for (Map.Entry<String, InternetDomainName> entry : domainNames.entrySet()) {
+      InternetDomainName domainName = entry.getValue();
+      String tld = domainName.parent().toString();
+      if (existingIds.contains(domainName.toString())) {
+        messages.put(entry.getKey(), Optional.of("In use"));
+      } else if (activeApplications
+          .get(domainName.toString())
+          .stream()
+          .anyMatch(input -> !input.getApplicationStatus().isFinalStatus())) {
+        messages.put(entry.getKey(), Optional.of("Pending allocation"));
+      } else {
+        ImmutableSet<ReservationType> reservationTypes = getReservationTypes(domainName);
+        if (!reservationTypes.isEmpty()) {
+          messages.put(
+              entry.getKey(),
+              Optional.of(getTypeOfHighestSeverity(reservationTypes).getMessageForCheck()));
+        } else if (registries.get(tld).getPremiumPriceAckRequired() && !isFeeCheck) {
+          premiumCandidates.put(tld, entry.getKey());
+        } else {
+          messages.put(entry.getKey(), Optional.<String>empty());
+        }
+      }
     }
-    ImmutableSet<ReservationType> reservationTypes = getReservationTypes(domainName);
-    if (reservationTypes.isEmpty()
-        && isDomainPremium(domainName.toString(), now)
-        && registry.getPremiumPriceAckRequired()
-        && eppInput.getSingleExtension(FeeCheckCommandExtension.class) == null) {
-      return Optional.of("Premium names require EPP ext.");
+    for (String tld : premiumCandidates.keySet()) {
+      prefetchPremiumListEntries(
+          premiumCandidates
+              .get(tld)
+              .stream()
+              .map(targetId -> domainNames.get(targetId).parts().get(0))
+              .collect(toImmutableList()),
+          registries.get(tld));
     }
-
-    return reservationTypes.isEmpty()
-        ? Optional.<String>empty()
-        : Optional.of(getTypeOfHighestSeverity(reservationTypes).getMessageForCheck());
+    for (String targetId : premiumCandidates.values()) {
+      messages.put(
+          targetId,
+          isDomainPremium(domainNames.get(targetId).toString(), now)
+              ? Optional.of("Premium names require EPP ext.")
+              : Optional.<String>empty());
+    }
+    return ImmutableMap.copyOf(messages);
   }
 
   /** Handle the fee check extension. */
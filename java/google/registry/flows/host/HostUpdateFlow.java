@@ -30,6 +30,7 @@ import static google.registry.model.index.ForeignKeyIndex.loadAndGetKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.CollectionUtils.isNullOrEmpty;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
 import google.registry.dns.DnsQueue;
@@ -258,18 +259,23 @@ public final class HostUpdateFlow implements TransactionalFlow {
   }
 
   private void enqueueTasks(HostResource existingHost, HostResource newHost) {
+    ImmutableList.Builder<String> hostsToRefresh = new ImmutableList.Builder<>();
     // Only update DNS for subordinate hosts. External hosts have no glue to write, so they
     // are only written as NS records from the referencing domain.
     if (existingHost.isSubordinate()) {
-      dnsQueue.addHostRefreshTask(existingHost.getFullyQualifiedHostName());
+      hostsToRefresh.add(existingHost.getFullyQualifiedHostName());
     }
     // In case of a rename, there are many updates we need to queue up.
-    if (((Update) resourceCommand).getInnerChange().getFullyQualifiedHostName() != null) {
-      // If the renamed host is also subordinate, then we must enqueue an update to write the new
-      // glue.
-      if (newHost.isSubordinate()) {
-        dnsQueue.addHostRefreshTask(newHost.getFullyQualifiedHostName());
-      }
+    boolean isRename =
+        ((Update) resourceCommand).getInnerChange().getFullyQualifiedHostName() != null;
+    // If the renamed host is also subordinate, then we must enqueue an update to write the new
+    // glue.
+    if (isRename && newHost.isSubordinate()) {
+      hostsToRefresh.add(newHost.getFullyQualifiedHostName());
+    }
+    // Enqueue both refreshes together, so that they share a single queue write.
+    dnsQueue.addHostRefreshTasks(hostsToRefresh.build());
+    if (isRename) {
       // We must also enqueue updates for all domains that use this host as their nameserver so
       // that their NS records can be updated to point at the new name.
       asyncFlowEnqueuer.enqueueAsyncDnsRefresh(existingHost, ofy().getTransactionTime());
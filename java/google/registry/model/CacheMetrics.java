@@ -0,0 +1,108 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import google.registry.monitoring.metrics.EventMetric;
+import google.registry.monitoring.metrics.LabelDescriptor;
+import google.registry.monitoring.metrics.Metric;
+import google.registry.monitoring.metrics.MetricRegistryImpl;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.joda.time.Duration;
+
+/** Instrumentation for the in-memory caches created by {@link CacheUtils}. */
+final class CacheMetrics {
+
+  /** Possible outcomes of refreshing a cache entry. */
+  enum RefreshOutcome {
+    /** The reloaded value had a new revision, so it replaced the old one. */
+    CHANGED,
+
+    /** The reloaded value had the same revision, so the old one was kept. */
+    UNCHANGED,
+
+    /** The value has no revision, so the reloaded value always replaced the old one. */
+    RELOADED,
+
+    /** The reload threw, so the old value was kept. */
+    FAILED
+  }
+
+  private static final ImmutableSet<LabelDescriptor> REQUEST_LABEL_DESCRIPTORS =
+      ImmutableSet.of(
+          LabelDescriptor.create("cache", "Cache name."),
+          LabelDescriptor.create("outcome", "Whether the request was a hit or a miss."));
+
+  private static final ImmutableSet<LabelDescriptor> REFRESH_LABEL_DESCRIPTORS =
+      ImmutableSet.of(
+          LabelDescriptor.create("cache", "Cache name."),
+          LabelDescriptor.create("outcome", "Outcome of the refresh."));
+
+  /** The caches whose hits and misses are reported, by name. */
+  private static final Map<String, Cache<?, ?>> caches = new ConcurrentHashMap<>();
+
+  /** Metric counting the cache hits and misses of each cache since the instance started. */
+  @SuppressWarnings("unused")
+  private static final Metric<Long> cacheRequests =
+      MetricRegistryImpl.getDefault()
+          .newGauge(
+              "/cache/requests",
+              "Count of cache requests",
+              "count",
+              REQUEST_LABEL_DESCRIPTORS,
+              () -> {
+                ImmutableMap.Builder<ImmutableList<String>, Long> builder =
+                    new ImmutableMap.Builder<>();
+                for (Map.Entry<String, Cache<?, ?>> entry : caches.entrySet()) {
+                  CacheStats stats = entry.getValue().stats();
+                  builder.put(ImmutableList.of(entry.getKey(), "hit"), stats.hitCount());
+                  builder.put(ImmutableList.of(entry.getKey(), "miss"), stats.missCount());
+                }
+                return builder.build();
+              },
+              Long.class);
+
+  /** Metric recording the time taken to refresh a cache entry. */
+  @VisibleForTesting
+  static final EventMetric cacheRefreshTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/cache/refresh_time",
+              "Cache entry refresh time",
+              "milliseconds",
+              REFRESH_LABEL_DESCRIPTORS,
+              EventMetric.DEFAULT_FITTER);
+
+  /**
+   * Starts reporting the hits and misses of the given cache, which must record its stats.
+   *
+   * <p>A cache registered under the name of an earlier one replaces it.
+   */
+  static void registerCache(String cacheName, Cache<?, ?> cache) {
+    caches.put(cacheName, cache);
+  }
+
+  static void recordRefresh(String cacheName, RefreshOutcome outcome, Duration duration) {
+    cacheRefreshTime.record(duration.getMillis(), cacheName, outcome.name());
+  }
+
+  private CacheMetrics() {}
+}
@@ -14,12 +14,26 @@
 
 package google.registry.model;
 
-import static com.google.common.base.Suppliers.memoizeWithExpiration;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static google.registry.config.RegistryConfig.getSingletonCacheRefreshDuration;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static org.joda.time.Duration.ZERO;
+import static org.joda.time.DateTimeZone.UTC;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import google.registry.model.CacheMetrics.RefreshOutcome;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.joda.time.DateTime;
 import org.joda.time.Duration;
 
 /** Utility methods related to caching Datastore entities. */
@@ -30,11 +44,103 @@ public class CacheUtils {
    *
    * <p>Use this for things that might change while code is running. (For example, the various
    * lists downloaded from the TMCH get updated in Datastore and the caches need to be refreshed.)
+   *
+   * <p>The value is refreshed as described in {@link #newRefreshingCache}, so only one thread at a
+   * time waits on a reload, and every other thread keeps getting the old value until it's done.
+   */
+  public static <T> Supplier<T> memoizeWithShortExpiration(
+      String cacheName, Supplier<T> original) {
+    LoadingCache<Boolean, Optional<T>> cache =
+        newRefreshingCache(
+            cacheName,
+            getSingletonCacheRefreshDuration(),
+            unused -> Optional.ofNullable(original.get()),
+            null);
+    return () -> {
+      try {
+        return cache.getUnchecked(true).orElse(null);
+      } catch (UncheckedExecutionException e) {
+        throwIfUnchecked(e.getCause());
+        throw e;
+      }
+    };
+  }
+
+  /**
+   * Creates a cache that refreshes its entries once they are older than the given duration.
+   *
+   * <p>Unlike a cache that expires its entries, a refresh only blocks the first thread to read a
+   * stale entry, which reloads it. Every other thread reading the entry in the meantime gets the
+   * old value. If a reload fails, the old value is kept, but it expires once it is twice the given
+   * duration old, after which it must be loaded again before it can be read. If the duration is
+   * zero, as it is in unit tests, nothing is cached at all.
+   *
+   * <p>If {@code revisionFunction} is given, it should extract a marker from each value that
+   * changes whenever the value does, such as a revision key or last update time. When a reloaded
+   * value has the same marker as the old value, the old value is kept, so anything that was
+   * computed from it and cached elsewhere stays valid.
+   *
+   * <p>The cache's hits, misses and refresh times are reported under the given name.
+   *
+   * @param loader loads the value for a key; it may return null if there is none, in which case
+   *     reads of that key throw {@link CacheLoader.InvalidCacheLoadException}
    */
-  public static <T> Supplier<T> memoizeWithShortExpiration(Supplier<T> original) {
-    Duration expiration = getSingletonCacheRefreshDuration();
-    return expiration.isEqual(ZERO)
-        ? original
-        : memoizeWithExpiration(original, expiration.getMillis(), MILLISECONDS);
+  public static <K, V> LoadingCache<K, V> newRefreshingCache(
+      String cacheName,
+      Duration refreshDuration,
+      Function<K, V> loader,
+      @Nullable Function<? super V, ?> revisionFunction) {
+    return newRefreshingCache(
+        cacheName, refreshDuration, loader, revisionFunction, Ticker.systemTicker());
+  }
+
+  @VisibleForTesting
+  static <K, V> LoadingCache<K, V> newRefreshingCache(
+      final String cacheName,
+      Duration refreshDuration,
+      final Function<K, V> loader,
+      @Nullable final Function<? super V, ?> revisionFunction,
+      Ticker ticker) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().ticker(ticker).recordStats();
+    if (refreshDuration.isEqual(Duration.ZERO)) {
+      builder.expireAfterWrite(0, MILLISECONDS);
+    } else {
+      builder
+          .refreshAfterWrite(refreshDuration.getMillis(), MILLISECONDS)
+          .expireAfterWrite(refreshDuration.getMillis() * 2, MILLISECONDS);
+    }
+    LoadingCache<K, V> cache =
+        builder.build(
+            new CacheLoader<K, V>() {
+              @Override
+              public V load(K key) {
+                return loader.apply(key);
+              }
+
+              @Override
+              public ListenableFuture<V> reload(K key, V oldValue) {
+                DateTime startTime = DateTime.now(UTC);
+                RefreshOutcome outcome = RefreshOutcome.FAILED;
+                try {
+                  V newValue = loader.apply(key);
+                  if (revisionFunction == null) {
+                    outcome = RefreshOutcome.RELOADED;
+                  } else if (newValue != null
+                      && Objects.equals(
+                          revisionFunction.apply(newValue), revisionFunction.apply(oldValue))) {
+                    outcome = RefreshOutcome.UNCHANGED;
+                    newValue = oldValue;
+                  } else {
+                    outcome = RefreshOutcome.CHANGED;
+                  }
+                  return Futures.immediateFuture(newValue);
+                } finally {
+                  CacheMetrics.recordRefresh(
+                      cacheName, outcome, new Duration(startTime, DateTime.now(UTC)));
+                }
+              }
+            });
+    CacheMetrics.registerCache(cacheName, cache);
+    return cache;
   }
 }
@@ -40,6 +40,7 @@ import google.registry.model.ofy.CommitLogCheckpointRoot;
 import google.registry.model.ofy.CommitLogManifest;
 import google.registry.model.ofy.CommitLogMutation;
 import google.registry.model.poll.PollMessage;
+import google.registry.model.rde.RdeFragmentCacheEntry;
 import google.registry.model.rde.RdeRevision;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registrar.RegistrarContact;
@@ -101,6 +102,7 @@ public final class EntityClasses {
           PremiumList.class,
           PremiumList.PremiumListEntry.class,
           PremiumList.PremiumListRevision.class,
+          RdeFragmentCacheEntry.class,
           RdeRevision.class,
           Registrar.class,
           RegistrarBillingEntry.class,
@@ -15,6 +15,7 @@
 package google.registry.model;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.Iterables.transform;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.DateTimeUtils.isAtOrAfter;
@@ -22,6 +23,7 @@ import static google.registry.util.DateTimeUtils.isBeforeOrAt;
 import static google.registry.util.DateTimeUtils.latestOf;
 
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.Result;
 import com.googlecode.objectify.cmd.Query;
@@ -42,6 +44,7 @@ import google.registry.model.transfer.TransferData;
 import google.registry.model.transfer.TransferStatus;
 import google.registry.util.FormattingLogger;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import javax.annotation.Nullable;
@@ -115,6 +118,43 @@ public final class EppResourceUtils {
         resource, latestOf(now, resource.getUpdateAutoTimestamp().getTimestamp()));
   }
 
+  /**
+   * Loads the last created versions of several {@link EppResource}s from Datastore by foreign key,
+   * using one batched read for the foreign key indexes and one for the resources.
+   *
+   * <p>The resources are checked for deletion and projected to time "now" exactly as in {@link
+   * #loadByForeignKey}. The returned map omits any foreign keys for which that would return null.
+   *
+   * @param clazz the resource type to load
+   * @param foreignKeys ids to match
+   * @param now the current logical time to project resources at
+   */
+  public static <T extends EppResource> ImmutableMap<String, T> loadByForeignKeys(
+      Class<T> clazz, Iterable<String> foreignKeys, DateTime now) {
+    checkArgument(
+        ForeignKeyedEppResource.class.isAssignableFrom(clazz),
+        "loadByForeignKeys may only be called for foreign keyed EPP resources");
+    // The value of fki.getResourceKey() might be null for hard-deleted prober data.
+    ImmutableMap<String, Key<T>> resourceKeys =
+        ForeignKeyIndex.load(clazz, foreignKeys, now)
+            .entrySet()
+            .stream()
+            .filter(entry -> entry.getValue().getResourceKey() != null)
+            .collect(toImmutableMap(Entry::getKey, entry -> entry.getValue().getResourceKey()));
+    Map<Key<T>, T> resources = ofy().load().keys(resourceKeys.values());
+    ImmutableMap.Builder<String, T> results = new ImmutableMap.Builder<>();
+    for (Entry<String, Key<T>> entry : resourceKeys.entrySet()) {
+      T resource = resources.get(entry.getValue());
+      if (resource != null && !isAtOrAfter(now, resource.getDeletionTime())) {
+        results.put(
+            entry.getKey(),
+            cloneProjectedAtTime(
+                resource, latestOf(now, resource.getUpdateAutoTimestamp().getTimestamp())));
+      }
+    }
+    return results.build();
+  }
+
   /**
    * Returns the domain application with the given application id if it exists, or null if it does
    * not or is soft-deleted as of the given time.
@@ -29,6 +29,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.FluentIterable;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
@@ -81,6 +82,14 @@ public class ModelUtils {
             return ImmutableMap.copyOf(fields);
           }});
 
+  /**
+   * Caches the same fields as {@link #ALL_FIELDS_CACHE} as a list, which can be iterated over by
+   * index without allocating an iterator.
+   */
+  private static final LoadingCache<Class<?>, ImmutableList<Field>> FIELD_LIST_CACHE =
+      CacheBuilder.newBuilder()
+          .build(CacheLoader.from((Class<?> clazz) -> getAllFields(clazz).values().asList()));
+
   /** Lists all instance fields on an object, including non-public and inherited fields. */
   static Map<String, Field> getAllFields(Class<?> clazz) {
     return ALL_FIELDS_CACHE.getUnchecked(clazz);
@@ -187,24 +196,100 @@ public class ModelUtils {
     // Don't make this ImmutableMap because field values can be null.
     Map<Field, Object> values = new LinkedHashMap<>();
     for (Field field : getAllFields(instance.getClass()).values()) {
-      Object value = getFieldValue(instance, field);
-      if (value != null && value.getClass().isArray()) {
-        // It's surprisingly difficult to convert arrays into lists if the array might be primitive.
-        final Object arrayValue = value;
-        value = new AbstractList<Object>() {
-            @Override
-            public Object get(int index) {
-              return Array.get(arrayValue, index);
-            }
+      values.put(field, arrayToList(getFieldValue(instance, field)));
+    }
+    return values;
+  }
 
-            @Override
-            public int size() {
-              return Array.getLength(arrayValue);
-            }};
+  /** Returns a list view of the value if it is an array, or else the value itself. */
+  private static Object arrayToList(Object value) {
+    if (value == null || !value.getClass().isArray()) {
+      return value;
+    }
+    // It's surprisingly difficult to convert arrays into lists if the array might be primitive.
+    final Object arrayValue = value;
+    return new AbstractList<Object>() {
+        @Override
+        public Object get(int index) {
+          return Array.get(arrayValue, index);
+        }
+
+        @Override
+        public int size() {
+          return Array.getLength(arrayValue);
+        }};
+  }
+
+  /**
+   * Returns whether two instances of the same class have equal field values.
+   *
+   * <p>This is equivalent to comparing the results of {@link #getFieldValues} for the two, but
+   * doesn't build the maps, which matters because {@link ImmutableObject#equals} is called a lot.
+   */
+  static boolean fieldValuesEqual(Object instance, Object other) {
+    ImmutableList<Field> fields = FIELD_LIST_CACHE.getUnchecked(instance.getClass());
+    for (int i = 0; i < fields.size(); i++) {
+      Field field = fields.get(i);
+      if (!valuesEqual(getFieldValue(instance, field), getFieldValue(other, field))) {
+        return false;
       }
-      values.put(field, value);
     }
-    return values;
+    return true;
+  }
+
+  /** Compares two field values, treating arrays as lists of their elements. */
+  private static boolean valuesEqual(Object value, Object other) {
+    if (value == other) {
+      return true;
+    }
+    if (value == null || other == null) {
+      return false;
+    }
+    boolean valueIsArray = value.getClass().isArray();
+    boolean otherIsArray = other.getClass().isArray();
+    if (valueIsArray && otherIsArray) {
+      int length = Array.getLength(value);
+      if (length != Array.getLength(other)) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (!Objects.equals(Array.get(value, i), Array.get(other, i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (valueIsArray || otherIsArray) {
+      // An array in a field of a type that can also hold a list.
+      return arrayToList(value).equals(arrayToList(other));
+    }
+    return value.equals(other);
+  }
+
+  /**
+   * Returns the hash code of the field values of an instance.
+   *
+   * <p>This is equal to {@code Arrays.hashCode(getFieldValues(instance).values().toArray())}, but
+   * is computed without building the map or the array.
+   */
+  static int fieldValuesHashCode(Object instance) {
+    ImmutableList<Field> fields = FIELD_LIST_CACHE.getUnchecked(instance.getClass());
+    int hashCode = 1;
+    for (int i = 0; i < fields.size(); i++) {
+      Object value = getFieldValue(instance, fields.get(i));
+      int valueHashCode = 0;
+      if (value != null && value.getClass().isArray()) {
+        // The same as the hash code of a list of the elements.
+        valueHashCode = 1;
+        for (int j = 0; j < Array.getLength(value); j++) {
+          valueHashCode = 31 * valueHashCode + Objects.hashCode(Array.get(value, j));
+        }
+      } else if (value != null) {
+        valueHashCode = value.hashCode();
+      }
+      hashCode = 31 * hashCode + valueHashCode;
+    }
+    return hashCode;
   }
 
   /** Functional helper for {@link #cloneEmptyToNull}. */
@@ -260,5 +345,6 @@ public class ModelUtils {
   @VisibleForTesting
   static void resetCaches() {
     ALL_FIELDS_CACHE.invalidateAll();
+    FIELD_LIST_CACHE.invalidateAll();
   }
 }
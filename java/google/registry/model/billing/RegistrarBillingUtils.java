@@ -36,6 +36,7 @@ public final class RegistrarBillingUtils {
 
   private static final Supplier<ImmutableSortedSet<CurrencyUnit>> CURRENCIES_CACHE =
       CacheUtils.memoizeWithShortExpiration(
+          "registry_currencies",
           () ->
               Registries.getTlds()
                   .stream()
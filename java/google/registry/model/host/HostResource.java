@@ -15,6 +15,7 @@
 package google.registry.model.host;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Sets.difference;
 import static com.google.common.collect.Sets.union;
 import static google.registry.util.CollectionUtils.nullToEmptyImmutableCopy;
@@ -26,6 +27,7 @@ import com.googlecode.objectify.Key;
 import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.IgnoreSave;
 import com.googlecode.objectify.annotation.Index;
+import com.googlecode.objectify.annotation.OnSave;
 import com.googlecode.objectify.condition.IfNull;
 import google.registry.model.EppResource;
 import google.registry.model.EppResource.ForeignKeyedEppResource;
@@ -66,6 +68,16 @@ public class HostResource extends EppResource implements ForeignKeyedEppResource
   @Index
   Set<InetAddress> inetAddresses;
 
+  /**
+   * The index values of {@link #inetAddresses}, for finding the hosts with an address in a CIDR
+   * block. This is recomputed from {@link #inetAddresses} whenever the host is saved, so hosts
+   * saved before it existed get it the next time they are resaved.
+   *
+   * @see InetAddressIndexes
+   */
+  @Index
+  Set<String> inetAddressIndex;
+
   /** The superordinate domain of this host, or null if this is an external host. */
   @Index
   @IgnoreSave(IfNull.class)
@@ -154,6 +166,20 @@ public class HostResource extends EppResource implements ForeignKeyedEppResource
         : getLastTransferTime();
   }
 
+  /** Recomputes {@link #inetAddressIndex} from {@link #inetAddresses} before every save. */
+  @OnSave
+  void updateInetAddressIndex() {
+    inetAddressIndex = getInetAddressIndex(inetAddresses);
+  }
+
+  @Nullable
+  private static ImmutableSet<String> getInetAddressIndex(
+      @Nullable Set<InetAddress> inetAddresses) {
+    return (inetAddresses == null)
+        ? null
+        : inetAddresses.stream().map(InetAddressIndexes::getIndexValue).collect(toImmutableSet());
+  }
+
   @Override
   public Builder asBuilder() {
     return new Builder(clone(this));
@@ -177,6 +203,7 @@ public class HostResource extends EppResource implements ForeignKeyedEppResource
 
     public Builder setInetAddresses(ImmutableSet<InetAddress> inetAddresses) {
       getInstance().inetAddresses = inetAddresses;
+      getInstance().inetAddressIndex = getInetAddressIndex(inetAddresses);
       return this;
     }
 
@@ -0,0 +1,50 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.host;
+
+import com.google.common.io.BaseEncoding;
+import google.registry.util.CidrAddressBlock;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * Index values for the IP addresses of {@link HostResource}s.
+ *
+ * <p>An index value is the address family followed by the bytes of the address in hex, so index
+ * values sort by address within each family, and the addresses of a CIDR block have a contiguous
+ * range of index values. The hosts with an address in a block can thus be found with a single
+ * range query on {@code inetAddressIndex}.
+ */
+public final class InetAddressIndexes {
+
+  private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+
+  /** Returns the index value of the given IP address. */
+  public static String getIndexValue(InetAddress address) {
+    return (address instanceof Inet4Address ? "4:" : "6:") + HEX.encode(address.getAddress());
+  }
+
+  /** Returns the lowest index value of the addresses in the given CIDR block. */
+  public static String getLowerBound(CidrAddressBlock block) {
+    return getIndexValue(block.getInetAddress());
+  }
+
+  /** Returns the highest index value of the addresses in the given CIDR block. */
+  public static String getUpperBound(CidrAddressBlock block) {
+    return getIndexValue(block.getAllOnesAddress());
+  }
+
+  private InetAddressIndexes() {}
+}
@@ -20,6 +20,7 @@ import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.CollectionUtils.isNullOrEmpty;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.Work;
 import com.googlecode.objectify.annotation.Entity;
@@ -28,6 +29,7 @@ import google.registry.model.BackupGroupRoot;
 import google.registry.model.annotations.ReportedOn;
 import google.registry.model.domain.DomainApplication;
 import google.registry.util.CollectionUtils;
+import java.util.Collection;
 import java.util.Set;
 import javax.annotation.Nullable;
 import org.joda.time.DateTime;
@@ -113,6 +115,39 @@ public class DomainApplicationIndex extends BackupGroupRoot {
         }});
   }
 
+  /**
+   * Returns all active DomainApplications for the given fully qualified domain names, keyed by
+   * fully qualified domain name.
+   *
+   * <p>This is the batched equivalent of {@link #loadActiveApplicationsByDomainName}: the indexes
+   * are loaded in a single keyed read, and all of the applications they reference in another,
+   * rather than performing two reads per name. The same transactionality caveats apply.
+   */
+  public static ImmutableSetMultimap<String, DomainApplication>
+      loadActiveApplicationsByDomainNames(
+          Iterable<String> fullyQualifiedDomainNames, final DateTime now) {
+    final Collection<DomainApplicationIndex> indexes =
+        ofy().load().type(DomainApplicationIndex.class).ids(fullyQualifiedDomainNames).values();
+    if (indexes.isEmpty()) {
+      return ImmutableSetMultimap.of();
+    }
+    // Perform eventually consistent query, to avoid overenlisting cross entity groups
+    return ofy().doTransactionless(() -> {
+      ImmutableSet.Builder<Key<DomainApplication>> keys = new ImmutableSet.Builder<>();
+      for (DomainApplicationIndex index : indexes) {
+        keys.addAll(index.getKeys());
+      }
+      ImmutableSetMultimap.Builder<String, DomainApplication> apps =
+          new ImmutableSetMultimap.Builder<>();
+      for (DomainApplication app : ofy().load().keys(keys.build()).values()) {
+        if (app.getDeletionTime().isAfter(now)) {
+          apps.put(app.getFullyQualifiedDomainName(), app);
+        }
+      }
+      return apps.build();
+    });
+  }
+
   /**
    * Returns the DomainApplicationIndex for the given fully qualified domain name.
    *
@@ -0,0 +1,94 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.rde;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.googlecode.objectify.Key;
+import com.googlecode.objectify.annotation.Entity;
+import com.googlecode.objectify.annotation.Id;
+import com.googlecode.objectify.annotation.Unindex;
+import google.registry.model.EppResource;
+import google.registry.model.ImmutableObject;
+import google.registry.model.annotations.NotBackedUp;
+import google.registry.model.annotations.NotBackedUp.Reason;
+
+/**
+ * Datastore entity caching the escrow deposit XML of an {@link EppResource}.
+ *
+ * <p>RDE staging marshals every resource in the registry every night, but most of them haven't
+ * changed since the night before. Each entry holds the XML that was last marshalled for a resource
+ * in a given mode, together with a fingerprint of everything the XML was marshalled from. Staging
+ * only marshals a resource again if its fingerprint has changed.
+ *
+ * <p>Entries are keyed by the resource and mode. They aren't backed up, since they can always be
+ * recreated by marshalling the resource again.
+ *
+ * @see google.registry.rde.RdeStagingMapper
+ */
+@Entity
+@Unindex
+@NotBackedUp(reason = Reason.TRANSIENT)
+public final class RdeFragmentCacheEntry extends ImmutableObject {
+
+  /** The web-safe key string of the resource, followed by an underscore and the mode. */
+  @Id
+  String id;
+
+  /** Fingerprint of the inputs that {@link #xml} was marshalled from. */
+  String fingerprint;
+
+  /** The marshalled XML fragment. */
+  String xml;
+
+  /** The error from validating {@link #xml}, or empty if it was valid. */
+  String error;
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public String getXml() {
+    return xml;
+  }
+
+  public String getError() {
+    return error;
+  }
+
+  /** Returns the key of the entry for the given resource and mode. */
+  public static Key<RdeFragmentCacheEntry> createKey(
+      Key<? extends EppResource> resourceKey, RdeMode mode) {
+    return Key.create(RdeFragmentCacheEntry.class, makeId(resourceKey, mode));
+  }
+
+  public static RdeFragmentCacheEntry create(
+      Key<? extends EppResource> resourceKey,
+      RdeMode mode,
+      String fingerprint,
+      String xml,
+      String error) {
+    RdeFragmentCacheEntry instance = new RdeFragmentCacheEntry();
+    instance.id = makeId(resourceKey, mode);
+    instance.fingerprint = checkNotNull(fingerprint, "fingerprint");
+    instance.xml = checkNotNull(xml, "xml");
+    instance.error = checkNotNull(error, "error");
+    return instance;
+  }
+
+  private static String makeId(Key<? extends EppResource> resourceKey, RdeMode mode) {
+    return resourceKey.getString() + "_" + mode;
+  }
+}
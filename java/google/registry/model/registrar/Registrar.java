@@ -205,6 +205,7 @@ public class Registrar extends ImmutableObject implements Buildable, Jsonifiable
    */
   private static final Supplier<ImmutableMap<String, Registrar>> CACHE_BY_CLIENT_ID =
       memoizeWithShortExpiration(
+          "registrars_by_client_id",
           () ->
               ofy()
                   .doTransactionless(
@@ -41,30 +41,43 @@ public final class Registries {
 
   private Registries() {}
 
-  /** Supplier of a cached registries map. */
-  private static Supplier<ImmutableMap<String, TldType>> cache = createFreshCache();
+  /** The TLDs, with their types, and a suffix trie of them for finding the TLD of a name. */
+  private static final class CachedTlds {
+    private final ImmutableMap<String, TldType> tldTypes;
+    private final TldSuffixTrie tldTrie;
+
+    private CachedTlds(ImmutableMap<String, TldType> tldTypes) {
+      this.tldTypes = tldTypes;
+      this.tldTrie = TldSuffixTrie.create(tldTypes.keySet());
+    }
+  }
+
+  /** Supplier of the cached TLDs. */
+  private static Supplier<CachedTlds> cache = createFreshCache();
 
   /**
-   * Returns a newly-created Supplier of a registries to types map.
+   * Returns a newly-created Supplier of the TLDs, with their types.
    *
    * <p>The supplier's get() method enters a transactionless context briefly to avoid enrolling the
-   * query inside an unrelated client-affecting transaction.
+   * query inside an unrelated client-affecting transaction. The suffix trie is built along with
+   * the map of types, so it is rebuilt only when the TLDs are reloaded.
    */
-  private static Supplier<ImmutableMap<String, TldType>> createFreshCache() {
+  private static Supplier<CachedTlds> createFreshCache() {
     return memoizeWithShortExpiration(
+        "tld_types",
         () ->
             ofy()
                 .doTransactionless(
-                    new Work<ImmutableMap<String, TldType>>() {
+                    new Work<CachedTlds>() {
                       @Override
-                      public ImmutableMap<String, TldType> run() {
+                      public CachedTlds run() {
                         ImmutableMap.Builder<String, TldType> builder =
                             new ImmutableMap.Builder<>();
                         for (Registry registry :
                             ofy().load().type(Registry.class).ancestor(getCrossTldKey())) {
                           builder.put(registry.getTldStr(), registry.getTldType());
                         }
-                        return builder.build();
+                        return new CachedTlds(builder.build());
                       }
                     }));
   }
@@ -76,11 +89,11 @@ public final class Registries {
   }
 
   public static ImmutableSet<String> getTlds() {
-    return cache.get().keySet();
+    return cache.get().tldTypes.keySet();
   }
 
   public static ImmutableSet<String> getTldsOfType(TldType type) {
-    return ImmutableSet.copyOf(filterValues(cache.get(), equalTo(type)).keySet());
+    return ImmutableSet.copyOf(filterValues(cache.get().tldTypes, equalTo(type)).keySet());
   }
 
   /** Pass-through check that the specified TLD exists, otherwise throw an IAE. */
@@ -116,14 +129,22 @@ public final class Registries {
    * @return TLD or absent if {@code domainName} has no labels under an authoritative TLD
    */
   public static Optional<InternetDomainName> findTldForName(InternetDomainName domainName) {
-    ImmutableSet<String> tlds = getTlds();
-    while (domainName.hasParent()) {
-      domainName = domainName.parent();
-      if (tlds.contains(domainName.toString())) {
-        return Optional.of(domainName);
-      }
-    }
-    return Optional.empty();
+    return findTldForName(domainName.toString()).map(InternetDomainName::from);
+  }
+
+  /**
+   * Returns TLD which the domain name or hostname falls under, no matter how many levels of
+   * sublabels there are.
+   *
+   * <p>This is the same as {@link #findTldForName(InternetDomainName)}, for callers that have the
+   * name as a string, which must be in the form returned by {@link InternetDomainName#toString}. It
+   * reads the name from right to left without parsing or copying it.
+   *
+   * @param domainName domain name or host name (but not TLD) under an authoritative TLD
+   * @return TLD or absent if {@code domainName} has no labels under an authoritative TLD
+   */
+  public static Optional<String> findTldForName(String domainName) {
+    return Optional.ofNullable(cache.get().tldTrie.findTld(domainName));
   }
 
   /**
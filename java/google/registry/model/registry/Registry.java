@@ -20,19 +20,17 @@ import static com.google.common.base.Predicates.equalTo;
 import static com.google.common.base.Predicates.not;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.config.RegistryConfig.getSingletonCacheRefreshDuration;
+import static google.registry.model.CacheUtils.newRefreshingCache;
 import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.CollectionUtils.nullToEmptyImmutableCopy;
 import static google.registry.util.DateTimeUtils.END_OF_TIME;
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static google.registry.util.PreconditionsUtils.checkArgumentNotNull;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.joda.money.CurrencyUnit.USD;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
@@ -232,30 +230,32 @@ public class Registry extends ImmutableObject implements Buildable {
     CACHE.invalidate(tldStr);
   }
 
-  /** A cache that loads the {@link Registry} for a given tld. */
+  /**
+   * A cache that loads the {@link Registry} for a given tld.
+   *
+   * <p>Entries are refreshed in the background of reads, rather than expired, so that only one
+   * request at a time waits on Datastore when they go stale.
+   */
   private static final LoadingCache<String, Optional<Registry>> CACHE =
-      CacheBuilder.newBuilder()
-          .expireAfterWrite(getSingletonCacheRefreshDuration().getMillis(), MILLISECONDS)
-          .build(
-              new CacheLoader<String, Optional<Registry>>() {
-                @Override
-                public Optional<Registry> load(final String tld) {
-                  // Enter a transactionless context briefly; we don't want to enroll every TLD in a
-                  // transaction that might be wrapping this call.
-                  return Optional.ofNullable(
-                      ofy()
-                          .doTransactionless(
-                              new Work<Registry>() {
-                                @Override
-                                public Registry run() {
-                                  return ofy()
-                                      .load()
-                                      .key(Key.create(getCrossTldKey(), Registry.class, tld))
-                                      .now();
-                                }
-                              }));
-                }
-              });
+      newRefreshingCache(
+          "registries",
+          getSingletonCacheRefreshDuration(),
+          (String tld) ->
+              // Enter a transactionless context briefly; we don't want to enroll every TLD in a
+              // transaction that might be wrapping this call.
+              Optional.ofNullable(
+                  ofy()
+                      .doTransactionless(
+                          new Work<Registry>() {
+                            @Override
+                            public Registry run() {
+                              return ofy()
+                                  .load()
+                                  .key(Key.create(getCrossTldKey(), Registry.class, tld))
+                                  .now();
+                            }
+                          })),
+          null);
 
   /**
    * The name of the pricing engine that this TLD uses.
@@ -0,0 +1,115 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry;
+
+import com.google.common.base.Ascii;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * A trie of the characters of a set of TLDs, read from right to left, for finding the TLD that a
+ * domain name or hostname is under.
+ *
+ * <p>A name is matched by reading its characters from the end, so finding its TLD takes one step
+ * per character of the TLD, however many labels the name has, and doesn't allocate anything.
+ */
+final class TldSuffixTrie {
+
+  /** A node of the trie, which is immutable once the trie is built. */
+  private static final class Node {
+
+    /** The characters of the edges to this node's children, in ascending order. */
+    private char[] edges = new char[0];
+
+    private Node[] children = new Node[0];
+
+    /** The TLD that is spelled by the path to this node, if any. */
+    @Nullable private String tld;
+
+    @Nullable
+    private Node getChild(char c) {
+      int index = Arrays.binarySearch(edges, c);
+      return (index < 0) ? null : children[index];
+    }
+
+    private Node getOrAddChild(char c) {
+      int index = Arrays.binarySearch(edges, c);
+      if (index >= 0) {
+        return children[index];
+      }
+      int insertionPoint = -(index + 1);
+      char[] newEdges = new char[edges.length + 1];
+      Node[] newChildren = new Node[children.length + 1];
+      System.arraycopy(edges, 0, newEdges, 0, insertionPoint);
+      System.arraycopy(children, 0, newChildren, 0, insertionPoint);
+      newEdges[insertionPoint] = c;
+      newChildren[insertionPoint] = new Node();
+      System.arraycopy(
+          edges, insertionPoint, newEdges, insertionPoint + 1, edges.length - insertionPoint);
+      System.arraycopy(
+          children,
+          insertionPoint,
+          newChildren,
+          insertionPoint + 1,
+          children.length - insertionPoint);
+      edges = newEdges;
+      children = newChildren;
+      return newChildren[insertionPoint];
+    }
+  }
+
+  private final Node root;
+
+  private TldSuffixTrie(Node root) {
+    this.root = root;
+  }
+
+  /** Builds a trie of the given TLDs, which must be in the form returned by {@link Registry}. */
+  static TldSuffixTrie create(Iterable<String> tlds) {
+    Node root = new Node();
+    for (String tld : tlds) {
+      Node node = root;
+      for (int i = tld.length() - 1; i >= 0; i--) {
+        node = node.getOrAddChild(tld.charAt(i));
+      }
+      if (node != root) {
+        node.tld = tld;
+      }
+    }
+    return new TldSuffixTrie(root);
+  }
+
+  /**
+   * Returns the longest TLD in the trie that the given name is under, or null if there is none.
+   *
+   * <p>The name is compared without regard to ASCII case, and a TLD is never a match for itself.
+   */
+  @Nullable
+  String findTld(CharSequence name) {
+    Node node = root;
+    String tld = null;
+    // The first character of the name can't start a TLD that it is under, so it is never read.
+    for (int i = name.length() - 1; i > 0; i--) {
+      node = node.getChild(Ascii.toLowerCase(name.charAt(i)));
+      if (node == null) {
+        break;
+      }
+      if (node.tld != null && name.charAt(i - 1) == '.') {
+        tld = node.tld;
+      }
+    }
+    return tld;
+  }
+}
@@ -30,16 +30,16 @@ class DomainLabelMetrics {
     /** Bloom filter knows it is not premium */
     BLOOM_FILTER_NEGATIVE,
 
-    /** Bloom filter thinks it might be premium, but it was already negatively cached */
+    /** Bloom filter thinks it might be premium, but it is not, per the cached price table */
     CACHED_NEGATIVE,
 
-    /** Bloom filter thinks it might be premium, and it is, and was already in the cache */
+    /** Bloom filter thinks it might be premium, and it is, per the cached price table */
     CACHED_POSITIVE,
 
-    /** Bloom filter thinks it might be premium, but it is not (though wasn't in the cache) */
+    /** Bloom filter thinks it might be premium, but it is not (price table wasn't cached) */
     UNCACHED_NEGATIVE,
 
-    /** Bloom filter thinks it might be premium, and it is, but wasn't in the cache */
+    /** Bloom filter thinks it might be premium, and it is (price table wasn't cached) */
     UNCACHED_POSITIVE
   }
 
@@ -19,6 +19,7 @@ import static com.google.common.hash.Funnels.unencodedCharsFunnel;
 import static google.registry.config.RegistryConfig.getDomainLabelListCacheDuration;
 import static google.registry.config.RegistryConfig.getSingletonCachePersistDuration;
 import static google.registry.config.RegistryConfig.getStaticPremiumListMaxCachedEntries;
+import static google.registry.model.CacheUtils.newRefreshingCache;
 import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
 import static google.registry.model.ofy.ObjectifyService.allocateId;
 import static google.registry.model.ofy.ObjectifyService.ofy;
@@ -40,6 +41,7 @@ import google.registry.model.Buildable;
 import google.registry.model.ImmutableObject;
 import google.registry.model.annotations.ReportedOn;
 import google.registry.model.registry.Registry;
+import google.registry.util.FormattingLogger;
 import google.registry.util.NonFinalForTesting;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -59,6 +61,8 @@ import org.joda.time.Duration;
 @Entity
 public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.PremiumListEntry> {
 
+  private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
+
   /** Stores the revision key for the set of currently used premium list entry entities. */
   Key<PremiumListRevision> revisionKey;
 
@@ -77,9 +81,8 @@ public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.Pr
      * A Bloom filter that is used to determine efficiently and quickly whether a label might be
      * premium.
      *
-     * <p>If the label might be premium, then the premium list entry must be loaded by key and
-     * checked for existence.  Otherwise, we know it's not premium, and no Datastore load is
-     * required.
+     * <p>If the label might be premium, then it must be looked up in the revision's {@link
+     * PremiumPriceTable}. Otherwise, we know it's not premium, and the table need not be loaded.
      */
     private BloomFilter<String> probablePremiumLabels;
 
@@ -130,26 +133,24 @@ public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.Pr
    * In-memory cache for premium lists.
    *
    * <p>This is cached for a shorter duration because we need to periodically reload this entity to
-   * check if a new revision has been published, and if so, then use that.
+   * check if a new revision has been published, and if so, then use that. A reloaded list that
+   * still points at the same revision is thrown away in favor of the one already cached.
    */
   static final LoadingCache<String, PremiumList> cachePremiumLists =
-      CacheBuilder.newBuilder()
-          .expireAfterWrite(getDomainLabelListCacheDuration().getMillis(), MILLISECONDS)
-          .build(
-              new CacheLoader<String, PremiumList>() {
-                @Override
-                public PremiumList load(final String listName) {
-                  return ofy()
-                      .doTransactionless(
-                          () ->
-                              ofy()
-                                  .load()
-                                  .type(PremiumList.class)
-                                  .parent(getCrossTldKey())
-                                  .id(listName)
-                                  .now());
-                }
-              });
+      newRefreshingCache(
+          "premium_lists",
+          getDomainLabelListCacheDuration(),
+          (String listName) ->
+              ofy()
+                  .doTransactionless(
+                      () ->
+                          ofy()
+                              .load()
+                              .type(PremiumList.class)
+                              .parent(getCrossTldKey())
+                              .id(listName)
+                              .now()),
+          PremiumList::getRevisionKey);
 
   /**
    * In-memory cache for {@link PremiumListRevision}s, used for retrieving Bloom filters quickly.
@@ -171,37 +172,63 @@ public final class PremiumList extends BaseDomainLabelList<Money, PremiumList.Pr
                   });
 
   /**
-   * In-memory cache for {@link PremiumListEntry}s for a given label and {@link PremiumListRevision}
+   * In-memory cache of the {@link PremiumPriceTable} of every {@link PremiumListRevision}.
    *
-   * <p>Because the PremiumList itself makes up part of the PremiumListRevision's key, this is
-   * specific to a given premium list. Premium list entries might not be present, as indicated by
-   * the Optional wrapper, and we want to cache that as well.
+   * <p>Each table holds all of the entries of its revision, so once it is loaded every premium
+   * price check against that revision is answered from memory. A new revision has a new key, so
+   * publishing a new version of a premium list swaps in a new table as soon as {@link
+   * #cachePremiumLists} picks up the new revision key.
    *
    * <p>This is cached for a long duration (essentially indefinitely) because a given {@link
    * PremiumListRevision} and its child {@link PremiumListEntry}s are immutable and cannot ever be
    * changed once created, so the cache need not ever expire.
    *
-   * <p>A maximum size is set here on the cache because it can potentially grow too big to fit in
-   * memory if there are a large number of distinct premium list entries being queried (both those
-   * that exist, as well as those that might exist according to the Bloom filter, must be cached).
-   * The entries judged least likely to be accessed again will be evicted first.
+   * <p>The cache is bounded by the total number of entries in the tables it holds. It uses a
+   * single segment, because Guava divides the maximum weight between segments, and would otherwise
+   * refuse to hold a table with more than a fraction of the configured maximum number of entries.
+   *
+   * <p>A revision with more entries than the cache can hold is cached as an empty table, rather
+   * than being loaded in full only to be evicted straight away; prices on such a revision are
+   * looked up one entry at a time, as they were before revisions were cached whole.
    */
   @NonFinalForTesting @VisibleForTesting
-  static LoadingCache<Key<PremiumListEntry>, Optional<PremiumListEntry>> cachePremiumListEntries =
-      createCachePremiumListEntries(getSingletonCachePersistDuration());
+  static LoadingCache<Key<PremiumListRevision>, Optional<PremiumPriceTable>>
+      cachePremiumPriceTables = createCachePremiumPriceTables(getSingletonCachePersistDuration());
 
   @VisibleForTesting
-  static LoadingCache<Key<PremiumListEntry>, Optional<PremiumListEntry>>
-      createCachePremiumListEntries(Duration cachePersistDuration) {
+  static LoadingCache<Key<PremiumListRevision>, Optional<PremiumPriceTable>>
+      createCachePremiumPriceTables(Duration cachePersistDuration) {
+    final int maxCachedEntries = getStaticPremiumListMaxCachedEntries();
     return CacheBuilder.newBuilder()
         .expireAfterWrite(cachePersistDuration.getMillis(), MILLISECONDS)
-        .maximumSize(getStaticPremiumListMaxCachedEntries())
+        .concurrencyLevel(1)
+        .maximumWeight(maxCachedEntries)
+        .weigher(
+            (Key<PremiumListRevision> revisionKey, Optional<PremiumPriceTable> table) ->
+                table.map(PremiumPriceTable::size).orElse(1))
         .build(
-            new CacheLoader<Key<PremiumListEntry>, Optional<PremiumListEntry>>() {
+            new CacheLoader<Key<PremiumListRevision>, Optional<PremiumPriceTable>>() {
               @Override
-              public Optional<PremiumListEntry> load(final Key<PremiumListEntry> entryKey) {
-                return ofy()
-                    .doTransactionless(() -> Optional.ofNullable(ofy().load().key(entryKey).now()));
+              public Optional<PremiumPriceTable> load(final Key<PremiumListRevision> revisionKey) {
+                // Load one entry more than can be cached, to find out whether there are too many.
+                List<PremiumListEntry> entries =
+                    ofy()
+                        .doTransactionless(
+                            () ->
+                                ofy()
+                                    .load()
+                                    .type(PremiumListEntry.class)
+                                    .ancestor(revisionKey)
+                                    .limit(maxCachedEntries + 1)
+                                    .list());
+                if (entries.size() > maxCachedEntries) {
+                  logger.warningfmt(
+                      "Premium list revision %s has more than the %d entries that can be cached; "
+                          + "its prices will be looked up one entry at a time",
+                      revisionKey, maxCachedEntries);
+                  return Optional.empty();
+                }
+                return Optional.of(PremiumPriceTable.create(entries));
               }
             });
   }
@@ -24,10 +24,9 @@ import static google.registry.model.registry.label.DomainLabelMetrics.PremiumLis
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.CACHED_POSITIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.UNCACHED_NEGATIVE;
 import static google.registry.model.registry.label.DomainLabelMetrics.PremiumListCheckOutcome.UNCACHED_POSITIVE;
-import static google.registry.model.registry.label.PremiumList.cachePremiumListEntries;
 import static google.registry.model.registry.label.PremiumList.cachePremiumListRevisions;
+import static google.registry.model.registry.label.PremiumList.cachePremiumPriceTables;
 import static google.registry.model.registry.label.PremiumList.cachePremiumLists;
-import static org.joda.time.DateTimeZone.UTC;
 
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
@@ -75,8 +74,41 @@ public final class PremiumListUtils {
     if (registry.getPremiumList() == null) {
       return Optional.<Money>empty();
     }
-    DateTime startTime = DateTime.now(UTC);
+    long startMillis = System.currentTimeMillis();
     String listName = registry.getPremiumList().getName();
+    PremiumListRevision revision = loadPremiumListRevision(listName);
+    CheckResults checkResults = checkStatus(revision, label);
+    DomainLabelMetrics.recordPremiumListCheckOutcome(
+        registry.getTldStr(),
+        listName,
+        checkResults.checkOutcome(),
+        System.currentTimeMillis() - startMillis);
+    return checkResults.premiumPrice();
+  }
+
+  /**
+   * Loads the price table of the premium list of the given registry into the cache, unless it is
+   * already cached.
+   *
+   * <p>This is an optimization for callers that are about to call {@link #getPremiumPrice} for
+   * many labels on the same TLD (e.g. a domain check of many names), so that the table is loaded
+   * up front instead of by whichever of those calls first needs it. If the revision's Bloom filter
+   * rules out all of the labels, the table is not needed, and so is not loaded.
+   */
+  public static void prefetchPremiumListEntries(Iterable<String> labels, Registry registry) {
+    if (registry.getPremiumList() == null) {
+      return;
+    }
+    PremiumListRevision revision = loadPremiumListRevision(registry.getPremiumList().getName());
+    if (Streams.stream(labels)
+        .noneMatch(label -> revision.getProbablePremiumLabels().mightContain(label))) {
+      return;
+    }
+    loadPremiumPriceTable(Key.create(revision));
+  }
+
+  /** Returns the current revision of the named premium list, with a non-null Bloom filter. */
+  private static PremiumListRevision loadPremiumListRevision(String listName) {
     Optional<PremiumList> optionalPremiumList = PremiumList.get(listName);
     checkState(optionalPremiumList.isPresent(), "Could not load premium list '%s'", listName);
     PremiumList premiumList = optionalPremiumList.get();
@@ -91,14 +123,7 @@ public final class PremiumListUtils {
         revision.getProbablePremiumLabels() != null,
         "Probable premium labels Bloom filter is null on revision '%s'",
         premiumList.getRevisionKey());
-
-    CheckResults checkResults = checkStatus(revision, label);
-    DomainLabelMetrics.recordPremiumListCheckOutcome(
-        registry.getTldStr(),
-        listName,
-        checkResults.checkOutcome(),
-        DateTime.now(UTC).getMillis() - startTime.getMillis());
-    return checkResults.premiumPrice();
+    return revision;
   }
 
   private static CheckResults checkStatus(PremiumListRevision premiumListRevision, String label) {
@@ -106,30 +131,44 @@ public final class PremiumListUtils {
       return CheckResults.create(BLOOM_FILTER_NEGATIVE, Optional.<Money>empty());
     }
 
-    Key<PremiumListEntry> entryKey =
-        Key.create(Key.create(premiumListRevision), PremiumListEntry.class, label);
+    Key<PremiumListRevision> revisionKey = Key.create(premiumListRevision);
+    // getIfPresent() returns null if the key is not in the cache
+    Optional<PremiumPriceTable> table = cachePremiumPriceTables.getIfPresent(revisionKey);
+    boolean wasCached = (table != null) && table.isPresent();
+    if (table == null) {
+      table = loadPremiumPriceTable(revisionKey);
+    }
+    // An empty table means that the revision is too large to cache, so look up just this label.
+    Optional<Money> price =
+        table.isPresent()
+            ? table.get().getPrice(label)
+            : loadPremiumListEntry(revisionKey, label).map(PremiumListEntry::getValue);
+    if (price.isPresent()) {
+      return CheckResults.create(wasCached ? CACHED_POSITIVE : UNCACHED_POSITIVE, price);
+    } else {
+      return CheckResults.create(wasCached ? CACHED_NEGATIVE : UNCACHED_NEGATIVE, price);
+    }
+  }
+
+  /**
+   * Returns the price table of the given revision, or empty if the revision has too many entries
+   * to be cached.
+   */
+  private static Optional<PremiumPriceTable> loadPremiumPriceTable(
+      Key<PremiumListRevision> revisionKey) {
     try {
-      // getIfPresent() returns null if the key is not in the cache
-      Optional<PremiumListEntry> entry = cachePremiumListEntries.getIfPresent(entryKey);
-      if (entry != null) {
-        if (entry.isPresent()) {
-          return CheckResults.create(CACHED_POSITIVE, Optional.of(entry.get().getValue()));
-        } else {
-          return CheckResults.create(CACHED_NEGATIVE, Optional.<Money>empty());
-        }
-      }
-
-      entry = cachePremiumListEntries.get(entryKey);
-      if (entry.isPresent()) {
-        return CheckResults.create(UNCACHED_POSITIVE, Optional.of(entry.get().getValue()));
-      } else {
-        return CheckResults.create(UNCACHED_NEGATIVE, Optional.<Money>empty());
-      }
+      return cachePremiumPriceTables.get(revisionKey);
     } catch (InvalidCacheLoadException | ExecutionException e) {
-      throw new RuntimeException("Could not load premium list entry " + entryKey, e);
+      throw new RuntimeException("Could not load premium prices of revision " + revisionKey, e);
     }
   }
 
+  private static Optional<PremiumListEntry> loadPremiumListEntry(
+      Key<PremiumListRevision> revisionKey, String label) {
+    Key<PremiumListEntry> entryKey = Key.create(revisionKey, PremiumListEntry.class, label);
+    return ofy().doTransactionless(() -> Optional.ofNullable(ofy().load().key(entryKey).now()));
+  }
+
   /**
    * Persists a new or updated PremiumList object and its descendant entities to Datastore.
    *
@@ -0,0 +1,106 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry.label;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Comparator.comparing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import google.registry.model.registry.label.PremiumList.PremiumListEntry;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import javax.annotation.Nullable;
+import org.joda.money.CurrencyUnit;
+import org.joda.money.Money;
+
+/**
+ * All of the prices of a single {@link PremiumList.PremiumListRevision}, held in memory.
+ *
+ * <p>The labels are kept in a sorted array and the prices in a parallel array of amounts in minor
+ * units, so a lookup is a binary search that allocates nothing but the returned {@link Money}, and
+ * each entry costs little more than its label. Nearly every premium list has prices in a single
+ * currency; lists with several also store the index of each price's currency.
+ */
+final class PremiumPriceTable {
+
+  private final String[] labels;
+  private final long[] amountsMinor;
+  private final CurrencyUnit[] currencies;
+
+  /** The index into {@link #currencies} of each price, or null if there is only one currency. */
+  @Nullable private final byte[] currencyIndexes;
+
+  private PremiumPriceTable(
+      String[] labels,
+      long[] amountsMinor,
+      CurrencyUnit[] currencies,
+      @Nullable byte[] currencyIndexes) {
+    this.labels = labels;
+    this.amountsMinor = amountsMinor;
+    this.currencies = currencies;
+    this.currencyIndexes = currencyIndexes;
+  }
+
+  /** Creates a table of the given entries, which must all have different labels. */
+  static PremiumPriceTable create(Iterable<PremiumListEntry> entries) {
+    PremiumListEntry[] sortedEntries = Iterables.toArray(entries, PremiumListEntry.class);
+    Arrays.sort(sortedEntries, comparing(PremiumListEntry::getLabel));
+    Map<CurrencyUnit, Byte> currencyIndexMap = new LinkedHashMap<>();
+    String[] labels = new String[sortedEntries.length];
+    long[] amountsMinor = new long[sortedEntries.length];
+    byte[] currencyIndexes = new byte[sortedEntries.length];
+    for (int i = 0; i < sortedEntries.length; i++) {
+      PremiumListEntry entry = sortedEntries[i];
+      checkArgument(
+          i == 0 || !labels[i - 1].equals(entry.getLabel()),
+          "Duplicate premium list label %s",
+          entry.getLabel());
+      CurrencyUnit currency = entry.getValue().getCurrencyUnit();
+      if (!currencyIndexMap.containsKey(currency)) {
+        checkArgument(
+            currencyIndexMap.size() <= Byte.MAX_VALUE, "Too many currencies in premium list");
+        currencyIndexMap.put(currency, (byte) currencyIndexMap.size());
+      }
+      labels[i] = entry.getLabel();
+      amountsMinor[i] = entry.getValue().getAmountMinorLong();
+      currencyIndexes[i] = currencyIndexMap.get(currency);
+    }
+    List<CurrencyUnit> currencies = ImmutableList.copyOf(currencyIndexMap.keySet());
+    return new PremiumPriceTable(
+        labels,
+        amountsMinor,
+        currencies.toArray(new CurrencyUnit[0]),
+        currencies.size() > 1 ? currencyIndexes : null);
+  }
+
+  /** Returns the premium price of the given label, or empty if it isn't premium. */
+  Optional<Money> getPrice(String label) {
+    int index = Arrays.binarySearch(labels, label);
+    if (index < 0) {
+      return Optional.empty();
+    }
+    CurrencyUnit currency = currencies[currencyIndexes == null ? 0 : currencyIndexes[index]];
+    return Optional.of(Money.ofMinor(currency, amountsMinor[index]));
+  }
+
+  /** Returns the number of premium labels in the table. */
+  int size() {
+    return labels.length;
+  }
+}
@@ -14,29 +14,32 @@
 
 package google.registry.model.registry.label;
 
+import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
-import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static google.registry.config.RegistryConfig.getDomainLabelListCacheDuration;
+import static google.registry.model.CacheUtils.newRefreshingCache;
 import static google.registry.model.common.EntityGroupRoot.getCrossTldKey;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.model.registry.label.ReservationType.FULLY_BLOCKED;
 import static google.registry.model.registry.label.ReservationType.NAMESERVER_RESTRICTED;
 import static google.registry.model.registry.label.ReservationType.RESERVED_FOR_ANCHOR_TENANT;
 import static google.registry.util.CollectionUtils.nullToEmpty;
+import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
-import static org.joda.time.DateTimeZone.UTC;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Sets;
 import com.google.common.net.InternetDomainName;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.googlecode.objectify.Key;
@@ -45,7 +48,7 @@ import com.googlecode.objectify.annotation.Entity;
 import com.googlecode.objectify.annotation.Mapify;
 import com.googlecode.objectify.mapper.Mapper;
 import google.registry.model.registry.Registry;
-import google.registry.model.registry.label.DomainLabelMetrics.MetricsReservedListMatch;
+import google.registry.model.registry.label.ReservedListIndex.LabelReservations;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -218,10 +221,7 @@ public final class ReservedList
     if (label.length() == 0) {
       return ImmutableSet.of(FULLY_BLOCKED);
     }
-    return getReservedListEntries(label, tld)
-        .stream()
-        .map(ReservedListEntry::getValue)
-        .collect(toImmutableSet());
+    return getLabelReservations(label, tld).reservationTypes();
   }
 
   /**
@@ -234,11 +234,8 @@ public final class ReservedList
       InternetDomainName domainName, String authCode) {
 
     ImmutableSet<String> domainAuthCodes =
-        getReservedListEntries(domainName.parts().get(0), domainName.parent().toString())
-            .stream()
-            .filter((entry) -> entry.reservationType == RESERVED_FOR_ANCHOR_TENANT)
-            .map(ReservedListEntry::getAuthCode)
-            .collect(toImmutableSet());
+        getLabelReservations(domainName.parts().get(0), domainName.parent().toString())
+            .anchorTenantAuthCodes();
     checkState(
         domainAuthCodes.size() <= 1, "There are conflicting auth codes for domain: %s", domainName);
 
@@ -253,41 +250,41 @@ public final class ReservedList
    * domain is not set with {@code NAMESERVER_RESTRICTED} reservation type.
    */
   public static ImmutableSet<String> getAllowedNameservers(InternetDomainName domainName) {
-    return getReservedListEntries(domainName.parts().get(0), domainName.parent().toString())
-        .stream()
-        .filter((entry) -> entry.reservationType == NAMESERVER_RESTRICTED)
-        .map(ReservedListEntry::getAllowedNameservers)
-        .reduce((types1, types2) -> Sets.intersection(types1, types2).immutableCopy())
-        .orElse(ImmutableSet.of());
+    return getLabelReservations(domainName.parts().get(0), domainName.parent().toString())
+        .allowedNameservers();
   }
 
   /**
-   * Helper function to retrieve the entries associated with this label and TLD, or an empty set if
-   * no such entry exists.
+   * Helper function to retrieve the reservations of this label across all of the reserved lists of
+   * this TLD, which are all empty if the label isn't reserved.
    */
-  private static ImmutableSet<ReservedListEntry> getReservedListEntries(String label, String tld) {
-    DateTime startTime = DateTime.now(UTC);
+  private static LabelReservations getLabelReservations(String label, String tld) {
+    long startMillis = System.currentTimeMillis();
     Registry registry = Registry.get(checkNotNull(tld, "tld must not be null"));
-    ImmutableSet.Builder<ReservedListEntry> entriesBuilder = new ImmutableSet.Builder<>();
-    ImmutableSet.Builder<MetricsReservedListMatch> metricMatchesBuilder =
-        new ImmutableSet.Builder<>();
-
-    // Loop through all reservation lists and add each of them.
-    for (ReservedList rl : loadReservedLists(registry.getReservedLists())) {
-      if (rl.getReservedListEntries().containsKey(label)) {
-        ReservedListEntry entry = rl.getReservedListEntries().get(label);
-        entriesBuilder.add(entry);
-        metricMatchesBuilder.add(
-            MetricsReservedListMatch.create(rl.getName(), entry.reservationType));
-      }
+    ImmutableList<ReservedList> reservedLists = loadReservedLists(registry.getReservedLists());
+    ImmutableMap<String, DateTime> listRevisions =
+        reservedLists
+            .stream()
+            .collect(
+                toImmutableMap(
+                    ReservedList::getName,
+                    list -> firstNonNull(list.getLastUpdateTime(), START_OF_TIME)));
+    LabelReservations reservations;
+    try {
+      reservations =
+          indexCache
+              .get(listRevisions, () -> ReservedListIndex.create(reservedLists))
+              .getReservations(label);
+    } catch (ExecutionException e) {
+      throw new UncheckedExecutionException(
+          "Could not build the reserved list index of " + listRevisions.keySet(), e);
     }
-    ImmutableSet<ReservedListEntry> entries = entriesBuilder.build();
     DomainLabelMetrics.recordReservedListCheckOutcome(
-        tld, metricMatchesBuilder.build(), DateTime.now(UTC).getMillis() - startTime.getMillis());
-    return entries;
+        tld, reservations.metricMatches(), System.currentTimeMillis() - startMillis);
+    return reservations;
   }
 
-  private static ImmutableSet<ReservedList> loadReservedLists(
+  private static ImmutableList<ReservedList> loadReservedLists(
       ImmutableSet<Key<ReservedList>> reservedListKeys) {
     return reservedListKeys
         .stream()
@@ -302,23 +299,31 @@ public final class ReservedList
                     e);
               }
             })
-        .collect(toImmutableSet());
+        .collect(toImmutableList());
   }
 
+  /** A cache that loads reserved lists by name. */
   private static LoadingCache<String, ReservedList> cache =
+      newRefreshingCache(
+          "reserved_lists",
+          getDomainLabelListCacheDuration(),
+          (String listName) ->
+              ofy().load().type(ReservedList.class).parent(getCrossTldKey()).id(listName).now(),
+          null);
+
+  /**
+   * A cache of the merged index of each set of reserved lists in use by a TLD, keyed by the names
+   * and last update times of the lists in {@link #cache} that it was built from.
+   *
+   * <p>A reserved list is saved with a new last update time whenever it changes, so an index is
+   * only built once per combination of list revisions, and is replaced as soon as {@link #cache}
+   * loads a new revision of one of its lists. Indexes of superseded revisions are dropped once
+   * they have gone unused for the caching duration.
+   */
+  private static final Cache<ImmutableMap<String, DateTime>, ReservedListIndex> indexCache =
       CacheBuilder.newBuilder()
-          .expireAfterWrite(getDomainLabelListCacheDuration().getMillis(), MILLISECONDS)
-          .build(
-              new CacheLoader<String, ReservedList>() {
-                @Override
-                public ReservedList load(String listName) {
-                  return ofy()
-                      .load()
-                      .type(ReservedList.class)
-                      .parent(getCrossTldKey())
-                      .id(listName)
-                      .now();
-                }});
+          .expireAfterAccess(getDomainLabelListCacheDuration().getMillis(), MILLISECONDS)
+          .build();
 
   /**
    * Gets the {@link ReservationType} of a label in a single ReservedList, or returns an absent
@@ -329,7 +334,7 @@ public final class ReservedList
    * lists.
    */
   public Optional<ReservationType> getReservationInList(String label) {
-    ReservedListEntry entry = getReservedListEntries().get(label);
+    ReservedListEntry entry = nullToEmpty(reservedListMap).get(label);
     return Optional.ofNullable(entry == null ? null : entry.reservationType);
   }
 
@@ -0,0 +1,121 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry.label;
+
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.collect.Maps.immutableEntry;
+import static google.registry.model.registry.label.ReservationType.NAMESERVER_RESTRICTED;
+import static google.registry.model.registry.label.ReservationType.RESERVED_FOR_ANCHOR_TENANT;
+import static google.registry.util.CollectionUtils.nullToEmpty;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.Sets;
+import google.registry.model.registry.label.DomainLabelMetrics.MetricsReservedListMatch;
+import google.registry.model.registry.label.ReservedList.ReservedListEntry;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The reservations of every label on a set of reserved lists, such as those of a TLD, merged into
+ * a single map.
+ *
+ * <p>Checking a label against the index is one map lookup, however many lists it was built from,
+ * and everything the checks need to know about the label is computed when the index is built.
+ */
+final class ReservedListIndex {
+
+  /** Everything that the reserved lists say about a single label. */
+  @AutoValue
+  abstract static class LabelReservations {
+
+    private static final LabelReservations NONE =
+        new AutoValue_ReservedListIndex_LabelReservations(
+            ImmutableSet.of(), ImmutableSet.of(), ImmutableSet.of(), ImmutableSet.of());
+
+    /** Creates the reservations of a label from its entries on the given lists, in list order. */
+    static LabelReservations create(List<Map.Entry<String, ReservedListEntry>> listEntries) {
+      ImmutableSet<ReservedListEntry> entries =
+          listEntries.stream().map(Map.Entry::getValue).collect(toImmutableSet());
+      return new AutoValue_ReservedListIndex_LabelReservations(
+          entries.stream().map(ReservedListEntry::getValue).collect(toImmutableSet()),
+          entries
+              .stream()
+              .filter(entry -> entry.reservationType == RESERVED_FOR_ANCHOR_TENANT)
+              .map(ReservedListEntry::getAuthCode)
+              .collect(toImmutableSet()),
+          entries
+              .stream()
+              .filter(entry -> entry.reservationType == NAMESERVER_RESTRICTED)
+              .map(ReservedListEntry::getAllowedNameservers)
+              .reduce((set1, set2) -> Sets.intersection(set1, set2).immutableCopy())
+              .orElse(ImmutableSet.of()),
+          listEntries
+              .stream()
+              .map(
+                  listEntry ->
+                      MetricsReservedListMatch.create(
+                          listEntry.getKey(), listEntry.getValue().reservationType))
+              .collect(toImmutableSet()));
+    }
+
+    abstract ImmutableSet<ReservationType> reservationTypes();
+
+    /** The auth codes of all of the label's anchor tenant reservations. */
+    abstract ImmutableSet<String> anchorTenantAuthCodes();
+
+    /**
+     * The nameservers allowed by all of the label's nameserver restricted reservations, or an empty
+     * set if it has none.
+     */
+    abstract ImmutableSet<String> allowedNameservers();
+
+    /** The lists that the label is on, and its reservation type on each, for metrics. */
+    abstract ImmutableSet<MetricsReservedListMatch> metricMatches();
+  }
+
+  private final ImmutableMap<String, LabelReservations> reservations;
+
+  private ReservedListIndex(ImmutableMap<String, LabelReservations> reservations) {
+    this.reservations = reservations;
+  }
+
+  /** Builds an index of the given reserved lists. */
+  static ReservedListIndex create(Collection<ReservedList> reservedLists) {
+    // Nearly every label is on a single list, so the value lists start with room for one entry.
+    ListMultimap<String, Map.Entry<String, ReservedListEntry>> entriesByLabel =
+        MultimapBuilder.hashKeys().arrayListValues(1).build();
+    for (ReservedList reservedList : reservedLists) {
+      for (ReservedListEntry entry : nullToEmpty(reservedList.reservedListMap).values()) {
+        entriesByLabel.put(entry.getLabel(), immutableEntry(reservedList.getName(), entry));
+      }
+    }
+    ImmutableMap.Builder<String, LabelReservations> reservations = new ImmutableMap.Builder<>();
+    for (String label : entriesByLabel.keySet()) {
+      reservations.put(label, LabelReservations.create(entriesByLabel.get(label)));
+    }
+    return new ReservedListIndex(reservations.build());
+  }
+
+  /** Returns the reservations of the given label, which are all empty if it isn't reserved. */
+  LabelReservations getReservations(String label) {
+    LabelReservations labelReservations = reservations.get(label);
+    return (labelReservations == null) ? LabelReservations.NONE : labelReservations;
+  }
+}
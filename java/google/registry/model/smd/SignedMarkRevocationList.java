@@ -93,6 +93,7 @@ public class SignedMarkRevocationList extends ImmutableObject {
    */
   private static final Supplier<SignedMarkRevocationList> CACHE =
       memoizeWithShortExpiration(
+          "signed_mark_revocation_list",
           () ->
               ofy()
                   .transactNewReadOnly(
@@ -0,0 +1,163 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.tmch;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable, compact index from claims labels to claims keys.
+ *
+ * <p>The labels are sorted and packed end to end into a single {@code char[]}, with a parallel
+ * array of offsets, so the index holds no per-label objects. The keys are held in an array in the
+ * same order. Lookups binary search the packed labels and don't allocate.
+ */
+final class ClaimsIndex {
+
+  static final ClaimsIndex EMPTY = create(ImmutableMap.of());
+
+  /** All labels, in sorted order, concatenated together. */
+  private final char[] labelChars;
+
+  /** The start offset of each label in {@link #labelChars}, plus a final end offset. */
+  private final int[] labelOffsets;
+
+  /** The claims key of each label. */
+  private final String[] keys;
+
+  private ClaimsIndex(char[] labelChars, int[] labelOffsets, String[] keys) {
+    this.labelChars = labelChars;
+    this.labelOffsets = labelOffsets;
+    this.keys = keys;
+  }
+
+  /** Builds an index from a map of labels to claims keys. */
+  static ClaimsIndex create(Map<String, String> labelsToKeys) {
+    return create(ImmutableList.of(labelsToKeys));
+  }
+
+  /**
+   * Builds an index from several maps of labels to claims keys, e.g. the shards of a claims list.
+   *
+   * @throws IllegalArgumentException if the same label appears in more than one map
+   */
+  static ClaimsIndex create(Iterable<? extends Map<String, String>> labelsToKeysMaps) {
+    List<Map.Entry<String, String>> entries = new ArrayList<>();
+    for (Map<String, String> labelsToKeys : labelsToKeysMaps) {
+      entries.addAll(labelsToKeys.entrySet());
+    }
+    entries.sort(Map.Entry.comparingByKey());
+    int totalLength = 0;
+    for (Map.Entry<String, String> entry : entries) {
+      totalLength += entry.getKey().length();
+    }
+    char[] labelChars = new char[totalLength];
+    int[] labelOffsets = new int[entries.size() + 1];
+    String[] keys = new String[entries.size()];
+    int offset = 0;
+    for (int i = 0; i < entries.size(); i++) {
+      String label = entries.get(i).getKey();
+      checkArgument(
+          i == 0 || !label.equals(entries.get(i - 1).getKey()), "Duplicate claims label %s", label);
+      label.getChars(0, label.length(), labelChars, offset);
+      labelOffsets[i] = offset;
+      keys[i] = entries.get(i).getValue();
+      offset += label.length();
+    }
+    labelOffsets[entries.size()] = offset;
+    return new ClaimsIndex(labelChars, labelOffsets, keys);
+  }
+
+  /** Returns the claims key for the given label, or null if the label isn't claimed. */
+  @Nullable
+  String getClaimKey(String label) {
+    int low = 0;
+    int high = keys.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = compareLabel(mid, label);
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return keys[mid];
+      }
+    }
+    return null;
+  }
+
+  /** Compares the label at the given position in the index with the given label. */
+  private int compareLabel(int position, String label) {
+    int start = labelOffsets[position];
+    int length = labelOffsets[position + 1] - start;
+    int commonLength = Math.min(length, label.length());
+    for (int i = 0; i < commonLength; i++) {
+      int comparison = labelChars[start + i] - label.charAt(i);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return length - label.length();
+  }
+
+  /** Returns the number of claims. */
+  int size() {
+    return keys.length;
+  }
+
+  /** Returns the contents of the index as a map, sorted by label. */
+  ImmutableMap<String, String> toMap() {
+    ImmutableMap.Builder<String, String> builder = new ImmutableMap.Builder<>();
+    for (int i = 0; i < keys.length; i++) {
+      builder.put(
+          new String(labelChars, labelOffsets[i], labelOffsets[i + 1] - labelOffsets[i]), keys[i]);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof ClaimsIndex)) {
+      return false;
+    }
+    ClaimsIndex that = (ClaimsIndex) other;
+    return Arrays.equals(labelChars, that.labelChars)
+        && Arrays.equals(labelOffsets, that.labelOffsets)
+        && Arrays.equals(keys, that.keys);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(
+        Arrays.hashCode(labelChars), Arrays.hashCode(labelOffsets), Arrays.hashCode(keys));
+  }
+
+  @Override
+  public String toString() {
+    return String.format("ClaimsIndex{size=%d}", keys.length);
+  }
+}
@@ -17,10 +17,14 @@ package google.registry.model.tmch;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static google.registry.config.RegistryConfig.getSingletonCacheRefreshDuration;
 import static google.registry.model.CacheUtils.memoizeWithShortExpiration;
 import static google.registry.model.ofy.ObjectifyService.allocateId;
 import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.util.CollectionUtils.nullToEmpty;
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
+import static org.joda.time.Duration.ZERO;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Supplier;
@@ -44,9 +48,9 @@ import google.registry.util.Concurrent;
 import google.registry.util.NonFinalForTesting;
 import google.registry.util.Retrier;
 import google.registry.util.SystemSleeper;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.Callable;
 import javax.annotation.Nullable;
 import org.joda.time.DateTime;
@@ -56,7 +60,8 @@ import org.joda.time.DateTime;
  *
  * <p>The claims list is actually sharded into multiple {@link ClaimsListShard} entities to work
  * around the Datastore limitation of 1M max size per entity. However, when calling {@link #get} all
- * of the shards are recombined into one {@link ClaimsListShard} object.
+ * of the shards are recombined into one {@link ClaimsListShard} object, backed by a compact {@link
+ * ClaimsIndex} rather than a map. That object is only reloaded when the live revision changes.
  *
  * <p>ClaimsList shards are tied to a specific revision and are persisted individually, then the
  * entire claims list is atomically shifted over to using the new shards by persisting the new
@@ -84,7 +89,7 @@ public class ClaimsListShard extends ImmutableObject {
   /** When the claims list was last updated. */
   DateTime creationTime;
 
-  /** A map from labels to claims keys. */
+  /** A map from labels to claims keys. Not set on the combined list returned by {@link #get}. */
   @EmbedMap
   Map<String, String> labelsToKeys;
 
@@ -92,75 +97,139 @@ public class ClaimsListShard extends ImmutableObject {
   @Ignore
   boolean isShard = false;
 
+  /**
+   * The index of all claims in the list.
+   *
+   * <p>This is set on lists created with {@link #create} and on the combined list returned by
+   * {@link #get}, which doesn't keep {@link #labelsToKeys} at all. Shards loaded from Datastore
+   * build it from their {@link #labelsToKeys} the first time it is needed.
+   */
+  @Ignore
+  ClaimsIndex index;
+
+  /**
+   * Whether {@link #get} reuses the last claims list it loaded, rather than reloading it, for as
+   * long as the same {@link ClaimsListRevision} is live. This is off when the singleton cache is
+   * disabled, as it is in unit tests, where revision ids are reused from test to test.
+   */
+  @VisibleForTesting
+  @NonFinalForTesting
+  static boolean reuseUnchangedRevisions = !getSingletonCacheRefreshDuration().isEqual(ZERO);
+
+  /** The claims list most recently loaded by {@link #get}. */
+  @Nullable
+  @NonFinalForTesting
+  private static volatile ClaimsListShard lastLoaded;
+
   private static final Retrier LOADER_RETRIER = new Retrier(new SystemSleeper(), 2);
 
-  private static final Callable<ClaimsListShard> LOADER_CALLABLE =
-      () -> {
-        // Find the most recent revision.
-        Key<ClaimsListRevision> revisionKey = getCurrentRevision();
-
-        Map<String, String> combinedLabelsToKeys = new HashMap<>();
-        DateTime creationTime = START_OF_TIME;
-        if (revisionKey != null) {
-          // Grab all of the keys for the shards that belong to the current revision.
-          final List<Key<ClaimsListShard>> shardKeys =
-              ofy().load().type(ClaimsListShard.class).ancestor(revisionKey).keys().list();
-
-          // Load all of the shards concurrently, each in a separate transaction.
-          List<ClaimsListShard> shards =
-              Concurrent.transform(
-                  shardKeys,
-                  (final Key<ClaimsListShard> key) ->
-                      ofy()
-                          .transactNewReadOnly(
-                              new Work<ClaimsListShard>() {
-                                @Override
-                                public ClaimsListShard run() {
-                                  ClaimsListShard claimsListShard = ofy().load().key(key).now();
-                                  checkState(
-                                      claimsListShard != null,
-                                      "Key not found when loading claims list shards.");
-                                  return claimsListShard;
-                                }
-                              }));
-
-          // Combine the shards together and return the concatenated ClaimsList.
-          if (!shards.isEmpty()) {
-            creationTime = shards.get(0).creationTime;
-            for (ClaimsListShard shard : shards) {
-              combinedLabelsToKeys.putAll(shard.labelsToKeys);
-              checkState(
-                  creationTime.equals(shard.creationTime),
-                  "Inconsistent claims list shard creation times.");
-            }
-          }
+  /**
+   * Loads all of the shards of the given revision and combines them into a single {@link
+   * ClaimsListShard} holding only a {@link ClaimsIndex} of their contents.
+   */
+  private static ClaimsListShard loadRevision(@Nullable Key<ClaimsListRevision> revisionKey) {
+    ClaimsIndex index = ClaimsIndex.EMPTY;
+    DateTime creationTime = START_OF_TIME;
+    if (revisionKey != null) {
+      // Grab all of the keys for the shards that belong to the current revision.
+      final List<Key<ClaimsListShard>> shardKeys =
+          ofy().load().type(ClaimsListShard.class).ancestor(revisionKey).keys().list();
+
+      // Load all of the shards concurrently, each in a separate transaction.
+      List<ClaimsListShard> shards =
+          Concurrent.transform(
+              shardKeys,
+              (final Key<ClaimsListShard> key) ->
+                  ofy()
+                      .transactNewReadOnly(
+                          new Work<ClaimsListShard>() {
+                            @Override
+                            public ClaimsListShard run() {
+                              ClaimsListShard claimsListShard = ofy().load().key(key).now();
+                              checkState(
+                                  claimsListShard != null,
+                                  "Key not found when loading claims list shards.");
+                              return claimsListShard;
+                            }
+                          }));
+
+      // Index the shards together, without ever copying them into one big map.
+      if (!shards.isEmpty()) {
+        creationTime = shards.get(0).creationTime;
+        for (ClaimsListShard shard : shards) {
+          checkState(
+              creationTime.equals(shard.creationTime),
+              "Inconsistent claims list shard creation times.");
         }
-        return create(creationTime, ImmutableMap.copyOf(combinedLabelsToKeys));
-      };
+        index =
+            ClaimsIndex.create(
+                shards.stream().map(shard -> shard.labelsToKeys).collect(toImmutableList()));
+      }
+    }
+    ClaimsListShard instance = new ClaimsListShard();
+    instance.id = allocateId();
+    instance.creationTime = creationTime;
+    instance.parent = revisionKey;
+    instance.index = index;
+    return instance;
+  }
 
   /**
-   * A cached supplier that fetches the claims list shards from Datastore and recombines them into a
-   * single {@link ClaimsListShard} object.
+   * Returns the claims list for the live revision, only loading it if that revision has changed
+   * since the last load.
+   *
+   * <p>Checking the revision is a single read of the {@link ClaimsListSingleton}, so this is much
+   * cheaper than reloading the whole list every time the cache expires.
+   */
+  private static ClaimsListShard loadIfRevisionChanged() {
+    final Key<ClaimsListRevision> revisionKey = getCurrentRevision();
+    ClaimsListShard cached = lastLoaded;
+    if (reuseUnchangedRevisions && cached != null && Objects.equals(cached.parent, revisionKey)) {
+      return cached;
+    }
+    Callable<ClaimsListShard> loader = () -> loadRevision(revisionKey);
+    ClaimsListShard loaded = LOADER_RETRIER.callWithRetry(loader, IllegalStateException.class);
+    lastLoaded = loaded;
+    return loaded;
+  }
+
+  /**
+   * A cached supplier that returns the claims list for the live revision as a single {@link
+   * ClaimsListShard} object.
    */
   private static final Supplier<ClaimsListShard> CACHE =
-      memoizeWithShortExpiration(
-          () -> LOADER_RETRIER.callWithRetry(LOADER_CALLABLE, IllegalStateException.class));
+      memoizeWithShortExpiration("claims_list", ClaimsListShard::loadIfRevisionChanged);
 
   public DateTime getCreationTime() {
     return creationTime;
   }
 
+  /** Returns the claims key for the given label, or null if the label isn't claimed. */
+  @Nullable
   public String getClaimKey(String label) {
-    return labelsToKeys.get(label);
+    return getIndex().getClaimKey(label);
   }
 
   public ImmutableMap<String, String> getLabelsToKeys() {
-    return ImmutableMap.copyOf(labelsToKeys);
+    return getIndex().toMap();
   }
 
   /** Returns the number of claims. */
   public int size() {
-    return labelsToKeys.size();
+    return getIndex().size();
+  }
+
+  /**
+   * Returns the index of this list, building it from {@link #labelsToKeys} if this is a shard
+   * loaded from Datastore.
+   *
+   * <p>Building the index is idempotent, so racing threads at worst build it more than once.
+   */
+  private ClaimsIndex getIndex() {
+    if (index == null) {
+      index = ClaimsIndex.create(nullToEmpty(labelsToKeys));
+    }
+    return index;
   }
 
   /**
@@ -174,14 +243,17 @@ public class ClaimsListShard extends ImmutableObject {
 
     // Save the ClaimsList shards in separate transactions.
     Concurrent.transform(
-        CollectionUtils.partitionMap(labelsToKeys, shardSize),
+        CollectionUtils.partitionMap(getLabelsToKeys(), shardSize),
         (final ImmutableMap<String, String> labelsToKeysShard) ->
             ofy()
                 .transactNew(
                     new Work<ClaimsListShard>() {
                       @Override
                       public ClaimsListShard run() {
-                        ClaimsListShard shard = create(creationTime, labelsToKeysShard);
+                        ClaimsListShard shard = new ClaimsListShard();
+                        shard.id = allocateId();
+                        shard.creationTime = creationTime;
+                        shard.labelsToKeys = labelsToKeysShard;
                         shard.isShard = true;
                         shard.parent = parentKey;
                         ofy().saveWithoutBackup().entity(shard);
@@ -212,6 +284,7 @@ public class ClaimsListShard extends ImmutableObject {
     instance.id = allocateId();
     instance.creationTime = checkNotNull(creationTime);
     instance.labelsToKeys = checkNotNull(labelsToKeys);
+    instance.index = ClaimsIndex.create(labelsToKeys);
     return instance;
   }
 
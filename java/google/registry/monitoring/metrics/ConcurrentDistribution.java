@@ -0,0 +1,106 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.metrics;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static google.registry.monitoring.metrics.MetricsUtils.checkDouble;
+import static google.registry.monitoring.metrics.MetricsUtils.createIntervalCounts;
+import static google.registry.monitoring.metrics.MetricsUtils.getBoundaries;
+import static google.registry.monitoring.metrics.MetricsUtils.getIntervalIndex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A distribution that many threads can add samples to at once without locking.
+ *
+ * <p>The interval counts are kept in an {@link AtomicLongArray}, and the sample count and sums in
+ * {@link LongAdder} and {@link DoubleAdder} cells, which spread contended updates across several
+ * variables. Reading the distribution is comparatively expensive, so it is only read as a whole,
+ * by {@link #snapshot}. A snapshot taken while samples are being added may include only part of a
+ * sample, e.g. its count but not its interval count, which is fine for monitoring purposes.
+ *
+ * <p>The mean and sum of squared deviation can't be updated atomically with Welford's method, as
+ * {@link MutableDistribution} does, so they are computed from the sum and sum of squares of the
+ * samples instead. To keep that numerically stable, each sample is first shifted by the first
+ * sample added, which is usually close to the mean.
+ */
+@ThreadSafe
+final class ConcurrentDistribution {
+
+  private static final long NO_SHIFT = Double.doubleToRawLongBits(Double.NaN);
+
+  private final DistributionFitter distributionFitter;
+  private final double[] boundaries;
+  private final AtomicLongArray intervalCounts;
+  private final LongAdder count = new LongAdder();
+
+  /** The raw bits of the value that samples are shifted by, or {@link #NO_SHIFT} if unset. */
+  private final AtomicLong shiftBits = new AtomicLong(NO_SHIFT);
+
+  private final DoubleAdder shiftedSum = new DoubleAdder();
+  private final DoubleAdder shiftedSumOfSquares = new DoubleAdder();
+
+  ConcurrentDistribution(DistributionFitter distributionFitter) {
+    this.distributionFitter = checkNotNull(distributionFitter);
+    this.boundaries = getBoundaries(distributionFitter);
+    // One interval between each pair of boundaries, plus the underflow and overflow intervals.
+    this.intervalCounts = new AtomicLongArray(boundaries.length + 1);
+  }
+
+  void add(double value, long numSamples) {
+    checkArgument(numSamples >= 0, "numSamples must be non-negative");
+    checkDouble(value);
+
+    if (numSamples == 0) {
+      return;
+    }
+
+    // The first thread to add a sample picks the shift; everyone else uses it.
+    if (shiftBits.get() == NO_SHIFT) {
+      shiftBits.compareAndSet(NO_SHIFT, Double.doubleToRawLongBits(value));
+    }
+    double delta = value - Double.longBitsToDouble(shiftBits.get());
+
+    intervalCounts.addAndGet(getIntervalIndex(boundaries, value), numSamples);
+    shiftedSum.add(delta * numSamples);
+    shiftedSumOfSquares.add(delta * delta * numSamples);
+    count.add(numSamples);
+  }
+
+  /** Returns the current state of the distribution. */
+  ImmutableDistribution snapshot() {
+    long count = this.count.sum();
+    if (count == 0) {
+      return ImmutableDistribution.create(
+          0.0, 0.0, 0L, createIntervalCounts(boundaries, intervalCounts::get), distributionFitter);
+    }
+    double shift = Double.longBitsToDouble(shiftBits.get());
+    double sum = shiftedSum.sum();
+    double mean = shift + sum / count;
+    // Rounding, or a snapshot taken in the middle of an add, could make this slightly negative.
+    double sumOfSquaredDeviation = Math.max(0.0, shiftedSumOfSquares.sum() - sum * sum / count);
+    return ImmutableDistribution.create(
+        mean,
+        sumOfSquaredDeviation,
+        count,
+        createIntervalCounts(boundaries, intervalCounts::get),
+        distributionFitter);
+  }
+}
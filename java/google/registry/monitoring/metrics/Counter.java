@@ -22,12 +22,10 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Ordering;
-import com.google.common.util.concurrent.AtomicLongMap;
-import com.google.common.util.concurrent.Striped;
 import google.registry.monitoring.metrics.MetricSchema.Kind;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.concurrent.ThreadSafe;
 import org.joda.time.Instant;
 
@@ -44,29 +42,25 @@ public final class Counter extends AbstractMetric<Long>
     implements SettableMetric<Long>, IncrementableMetric {
 
   /**
-   * A map of the {@link Counter} values, with a list of label values as the keys.
+   * The value of each tuple of label values, along with the time that it was created.
    *
-   * <p>This should be modified in a critical section with {@code valueStartTimestamps} so that the
-   * values are in sync.
+   * <p>Each value is a {@link LongAdder}, so that many threads can increment it at once without
+   * locking. Setting or resetting a value replaces it rather than modifying it, so an increment at
+   * the same moment as a set or reset may be lost, which is fine for monitoring purposes.
    */
-  private final AtomicLongMap<ImmutableList<String>> values = AtomicLongMap.create();
-
-  /**
-   * A map of the {@link Instant} that each value was created, with a list of label values as the
-   * keys. The start timestamp (as part of the {@link MetricPoint#interval()} can be used by
-   * implementations of {@link MetricWriter} to encode resets of monotonic counters.
-   */
-  private final ConcurrentHashMap<ImmutableList<String>, Instant> valueStartTimestamps =
+  private final ConcurrentHashMap<ImmutableList<String>, TimestampedValue> values =
       newConcurrentHashMap(DEFAULT_CONCURRENCY_LEVEL);
 
-  /**
-   * A fine-grained lock to ensure that {@code values} and {@code valueStartTimestamps} are modified
-   * and read in a critical section. The initialization parameter is the concurrency level, set to
-   * match the default concurrency level of {@link ConcurrentHashMap}.
-   *
-   * @see Striped
-   */
-  private final Striped<Lock> valueLocks = Striped.lock(DEFAULT_CONCURRENCY_LEVEL);
+  /** A counter value and the {@link Instant} that it was created. */
+  private static final class TimestampedValue {
+    final Instant startTimestamp;
+    final LongAdder value = new LongAdder();
+
+    TimestampedValue(Instant startTimestamp, long initialValue) {
+      this.startTimestamp = startTimestamp;
+      value.add(initialValue);
+    }
+  }
 
   /**
    * Constructs a new Counter.
@@ -83,15 +77,13 @@ public final class Counter extends AbstractMetric<Long>
 
   @VisibleForTesting
   void incrementBy(long offset, Instant startTimestamp, ImmutableList<String> labelValues) {
-    Lock lock = valueLocks.get(labelValues);
-    lock.lock();
-
-    try {
-      values.addAndGet(labelValues, offset);
-      valueStartTimestamps.putIfAbsent(labelValues, startTimestamp);
-    } finally {
-      lock.unlock();
+    // Check for an existing value first, because computeIfAbsent() locks even when there is one.
+    TimestampedValue timestampedValue = values.get(labelValues);
+    if (timestampedValue == null) {
+      timestampedValue =
+          values.computeIfAbsent(labelValues, k -> new TimestampedValue(startTimestamp, 0));
     }
+    timestampedValue.value.add(offset);
   }
 
   @Override
@@ -126,41 +118,30 @@ public final class Counter extends AbstractMetric<Long>
   @VisibleForTesting
   final ImmutableList<MetricPoint<Long>> getTimestampedValues(Instant endTimestamp) {
     ImmutableList.Builder<MetricPoint<Long>> timestampedValues = new ImmutableList.Builder<>();
-    for (Entry<ImmutableList<String>, Long> entry : values.asMap().entrySet()) {
+    for (Entry<ImmutableList<String>, TimestampedValue> entry : values.entrySet()) {
       ImmutableList<String> labelValues = entry.getKey();
-      valueLocks.get(labelValues).lock();
-
-      Instant startTimestamp;
-      try {
-        startTimestamp = valueStartTimestamps.get(labelValues);
-      } finally {
-        valueLocks.get(labelValues).unlock();
-      }
-
-      // There is an opportunity for endTimestamp to be less than startTimestamp if
-      // one of the modification methods is called on a value before the lock for that value is
-      // acquired but after getTimestampedValues has been invoked. Just set endTimestamp equal to
-      // startTimestamp if that happens.
+      Instant startTimestamp = entry.getValue().startTimestamp;
+
+      // There is an opportunity for endTimestamp to be less than startTimestamp if one of the
+      // modification methods is called on a value after getTimestampedValues has been invoked.
+      // Just set endTimestamp equal to startTimestamp if that happens.
       endTimestamp = Ordering.natural().max(startTimestamp, endTimestamp);
 
       timestampedValues.add(
-          MetricPoint.create(this, labelValues, startTimestamp, endTimestamp, entry.getValue()));
-
+          MetricPoint.create(
+              this, labelValues, startTimestamp, endTimestamp, entry.getValue().value.sum()));
     }
     return timestampedValues.build();
   }
 
   @VisibleForTesting
   final void set(Long value, Instant startTimestamp, ImmutableList<String> labelValues) {
-    Lock lock = valueLocks.get(labelValues);
-    lock.lock();
-
-    try {
-      this.values.put(labelValues, value);
-      valueStartTimestamps.putIfAbsent(labelValues, startTimestamp);
-    } finally {
-      lock.unlock();
-    }
+    // Keep the start timestamp of the existing value, if there is one.
+    values.compute(
+        labelValues,
+        (k, oldValue) ->
+            new TimestampedValue(
+                oldValue == null ? startTimestamp : oldValue.startTimestamp, value));
   }
 
   @Override
@@ -172,21 +153,8 @@ public final class Counter extends AbstractMetric<Long>
 
   @VisibleForTesting
   final void reset(Instant startTimestamp) {
-    // Lock the entire set of values so that all existing values will have a consistent timestamp
-    // after this call, without the possibility of interleaving with another reset() call.
-    for (int i = 0; i < valueLocks.size(); i++) {
-      valueLocks.getAt(i).lock();
-    }
-
-    try {
-      for (ImmutableList<String> labelValues : values.asMap().keySet()) {
-        this.values.put(labelValues, 0);
-        this.valueStartTimestamps.put(labelValues, startTimestamp);
-      }
-    } finally {
-      for (int i = 0; i < valueLocks.size(); i++) {
-        valueLocks.getAt(i).unlock();
-      }
+    for (ImmutableList<String> labelValues : values.keySet()) {
+      reset(startTimestamp, labelValues);
     }
   }
 
@@ -197,15 +165,7 @@ public final class Counter extends AbstractMetric<Long>
 
   @VisibleForTesting
   final void reset(Instant startTimestamp, ImmutableList<String> labelValues) {
-    Lock lock = valueLocks.get(labelValues);
-    lock.lock();
-
-    try {
-      this.values.put(labelValues, 0);
-      this.valueStartTimestamps.put(labelValues, startTimestamp);
-    } finally {
-      lock.unlock();
-    }
+    values.put(labelValues, new TimestampedValue(startTimestamp, 0));
   }
 
   @Override
@@ -21,11 +21,9 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Ordering;
-import com.google.common.util.concurrent.Striped;
 import google.registry.monitoring.metrics.MetricSchema.Kind;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.Lock;
 import org.joda.time.Instant;
 
 /**
@@ -36,7 +34,7 @@ import org.joda.time.Instant;
  * quantitative aspect of an event. For example, this metric would be suitable for recording the
  * latency distribution for a request over the network.
  *
- * <p>The {@link MutableDistribution} values tracked by this metric can be reset with {@link
+ * <p>The {@link Distribution} values tracked by this metric can be reset with {@link
  * EventMetric#reset()}.
  */
 public class EventMetric extends AbstractMetric<Distribution> {
@@ -48,21 +46,28 @@ public class EventMetric extends AbstractMetric<Distribution> {
    */
   public static final DistributionFitter DEFAULT_FITTER = ExponentialFitter.create(16, 4.0, 1.0);
 
-  private final ConcurrentHashMap<ImmutableList<String>, Instant> valueStartTimestamps =
-      newConcurrentHashMap(DEFAULT_CONCURRENCY_LEVEL);
-  private final ConcurrentHashMap<ImmutableList<String>, MutableDistribution> values =
+  /**
+   * The distribution of each tuple of label values, along with the time that it was created.
+   *
+   * <p>A reset replaces a tuple's value with a new one rather than modifying it, so that samples
+   * can be recorded without taking any locks. A sample recorded at the same moment as a reset may
+   * therefore be lost, which is fine for monitoring purposes.
+   */
+  private final ConcurrentHashMap<ImmutableList<String>, TimestampedDistribution> values =
       newConcurrentHashMap(DEFAULT_CONCURRENCY_LEVEL);
 
   private final DistributionFitter distributionFitter;
 
-  /**
-   * A fine-grained lock to ensure that {@code values} and {@code valueStartTimestamps} are modified
-   * and read in a critical section. The initialization parameter is the concurrency level, set to
-   * match the default concurrency level of {@link ConcurrentHashMap}.
-   *
-   * @see Striped
-   */
-  private final Striped<Lock> valueLocks = Striped.lock(DEFAULT_CONCURRENCY_LEVEL);
+  /** A {@link ConcurrentDistribution} and the time it was created. */
+  private static final class TimestampedDistribution {
+    final Instant startTimestamp;
+    final ConcurrentDistribution distribution;
+
+    TimestampedDistribution(Instant startTimestamp, DistributionFitter distributionFitter) {
+      this.startTimestamp = startTimestamp;
+      this.distribution = new ConcurrentDistribution(distributionFitter);
+    }
+  }
 
   EventMetric(
       String name,
@@ -90,24 +95,14 @@ public class EventMetric extends AbstractMetric<Distribution> {
     ImmutableList.Builder<MetricPoint<Distribution>> timestampedValues =
         new ImmutableList.Builder<>();
 
-    for (Entry<ImmutableList<String>, MutableDistribution> entry : values.entrySet()) {
+    for (Entry<ImmutableList<String>, TimestampedDistribution> entry : values.entrySet()) {
       ImmutableList<String> labelValues = entry.getKey();
-      Lock lock = valueLocks.get(labelValues);
-      lock.lock();
-
-      Instant startTimestamp;
-      ImmutableDistribution distribution;
-      try {
-        startTimestamp = valueStartTimestamps.get(labelValues);
-        distribution = ImmutableDistribution.copyOf(entry.getValue());
-      } finally {
-        lock.unlock();
-      }
-
-      // There is an opportunity for endTimestamp to be less than startTimestamp if
-      // one of the modification methods is called on a value before the lock for that value is
-      // acquired but after getTimestampedValues has been invoked. Just set endTimestamp equal to
-      // startTimestamp if that happens.
+      Instant startTimestamp = entry.getValue().startTimestamp;
+      ImmutableDistribution distribution = entry.getValue().distribution.snapshot();
+
+      // There is an opportunity for endTimestamp to be less than startTimestamp if one of the
+      // modification methods is called on a value after getTimestampedValues has been invoked.
+      // Just set endTimestamp equal to startTimestamp if that happens.
       endTimestamp = Ordering.natural().max(startTimestamp, endTimestamp);
 
       timestampedValues.add(
@@ -149,21 +144,18 @@ public class EventMetric extends AbstractMetric<Distribution> {
   @VisibleForTesting
   void recordMultiple(
       double sample, int count, Instant startTimestamp, ImmutableList<String> labelValues) {
-    Lock lock = valueLocks.get(labelValues);
-    lock.lock();
-
-    try {
-      values.computeIfAbsent(labelValues, k -> new MutableDistribution(distributionFitter));
-
-      values.get(labelValues).add(sample, count);
-      valueStartTimestamps.putIfAbsent(labelValues, startTimestamp);
-    } finally {
-      lock.unlock();
+    // Check for an existing value first, because computeIfAbsent() locks even when there is one.
+    TimestampedDistribution value = values.get(labelValues);
+    if (value == null) {
+      value =
+          values.computeIfAbsent(
+              labelValues, k -> new TimestampedDistribution(startTimestamp, distributionFitter));
     }
+    value.distribution.add(sample, count);
   }
 
   /**
-   * Atomically resets the value and start timestamp of the metric for all label values.
+   * Resets the value and start timestamp of the metric for all label values.
    *
    * <p>This is useful if the metric is tracking values that are reset as part of a retrying
    * transaction, for example.
@@ -174,21 +166,8 @@ public class EventMetric extends AbstractMetric<Distribution> {
 
   @VisibleForTesting
   final void reset(Instant startTime) {
-    // Lock the entire set of values so that all existing values will have a consistent timestamp
-    // after this call, without the possibility of interleaving with another reset() call.
-    for (int i = 0; i < valueLocks.size(); i++) {
-      valueLocks.getAt(i).lock();
-    }
-
-    try {
-      for (ImmutableList<String> labelValues : values.keySet()) {
-        this.values.put(labelValues, new MutableDistribution(distributionFitter));
-        this.valueStartTimestamps.put(labelValues, startTime);
-      }
-    } finally {
-      for (int i = 0; i < valueLocks.size(); i++) {
-        valueLocks.getAt(i).unlock();
-      }
+    for (ImmutableList<String> labelValues : values.keySet()) {
+      reset(startTime, labelValues);
     }
   }
 
@@ -206,14 +185,6 @@ public class EventMetric extends AbstractMetric<Distribution> {
 
   @VisibleForTesting
   final void reset(Instant startTimestamp, ImmutableList<String> labelValues) {
-    Lock lock = valueLocks.get(labelValues);
-    lock.lock();
-
-    try {
-      this.values.put(labelValues, new MutableDistribution(distributionFitter));
-      this.valueStartTimestamps.put(labelValues, startTimestamp);
-    } finally {
-      lock.unlock();
-    }
+    values.put(labelValues, new TimestampedDistribution(startTimestamp, distributionFitter));
   }
 }
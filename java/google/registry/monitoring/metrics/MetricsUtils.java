@@ -17,7 +17,13 @@ package google.registry.monitoring.metrics;
 import static com.google.common.base.Preconditions.checkArgument;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableRangeMap;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Range;
+import com.google.common.primitives.Doubles;
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntToLongFunction;
 
 /** Static helper methods for the Metrics library. */
 final class MetricsUtils {
@@ -28,9 +34,7 @@ final class MetricsUtils {
 
   /**
    * The below constants replicate the default initial capacity, load factor, and concurrency level
-   * for {@link ConcurrentHashMap} as of Java SE 7. They are recorded here so that a {@link
-   * com.google.common.util.concurrent.Striped} object can be constructed with a concurrency level
-   * matching the default concurrency level of a {@link ConcurrentHashMap}.
+   * for {@link ConcurrentHashMap} as of Java SE 7.
    */
   private static final int HASHMAP_INITIAL_CAPACITY = 16;
   private static final float HASHMAP_LOAD_FACTOR = 0.75f;
@@ -68,4 +72,47 @@ final class MetricsUtils {
   static <K, V> ConcurrentHashMap<K, V> newConcurrentHashMap(int concurrencyLevel) {
     return new ConcurrentHashMap<>(HASHMAP_INITIAL_CAPACITY, HASHMAP_LOAD_FACTOR, concurrencyLevel);
   }
+
+  /**
+   * Returns the sorted boundaries of the given {@link DistributionFitter} as an array.
+   *
+   * @throws IllegalArgumentException if the fitter has no boundaries.
+   */
+  static double[] getBoundaries(DistributionFitter distributionFitter) {
+    double[] boundaries = Doubles.toArray(distributionFitter.boundaries());
+    checkArgument(boundaries.length > 0);
+    checkArgument(Ordering.natural().isOrdered(Doubles.asList(boundaries)));
+    return boundaries;
+  }
+
+  /**
+   * Returns the index of the interval that the given value falls in, given the boundaries of a
+   * {@link DistributionFitter}.
+   *
+   * <p>Index 0 is the underflow interval, index {@code i} is the interval {@code [boundaries[i -
+   * 1], boundaries[i])}, and index {@code boundaries.length} is the overflow interval.
+   */
+  static int getIntervalIndex(double[] boundaries, double value) {
+    int index = Arrays.binarySearch(boundaries, value);
+    // A value equal to a boundary falls in the interval that starts at it.
+    return index >= 0 ? index + 1 : -(index + 1);
+  }
+
+  /**
+   * Returns the histogram for the given interval counts, which are indexed as described in {@link
+   * #getIntervalIndex}.
+   */
+  static ImmutableRangeMap<Double, Long> createIntervalCounts(
+      double[] boundaries, IntToLongFunction intervalCounts) {
+    ImmutableRangeMap.Builder<Double, Long> builder = new ImmutableRangeMap.Builder<>();
+    builder.put(Range.lessThan(boundaries[0]), intervalCounts.applyAsLong(0));
+    for (int i = 1; i < boundaries.length; i++) {
+      builder.put(
+          Range.closedOpen(boundaries[i - 1], boundaries[i]), intervalCounts.applyAsLong(i));
+    }
+    builder.put(
+        Range.atLeast(boundaries[boundaries.length - 1]),
+        intervalCounts.applyAsLong(boundaries.length));
+    return builder.build();
+  }
 }
@@ -17,14 +17,11 @@ package google.registry.monitoring.metrics;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static google.registry.monitoring.metrics.MetricsUtils.checkDouble;
+import static google.registry.monitoring.metrics.MetricsUtils.createIntervalCounts;
+import static google.registry.monitoring.metrics.MetricsUtils.getBoundaries;
+import static google.registry.monitoring.metrics.MetricsUtils.getIntervalIndex;
 
 import com.google.common.collect.ImmutableRangeMap;
-import com.google.common.collect.ImmutableSortedSet;
-import com.google.common.collect.Ordering;
-import com.google.common.collect.Range;
-import com.google.common.collect.TreeRangeMap;
-import com.google.common.primitives.Doubles;
-import java.util.Map;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /**
@@ -37,7 +34,8 @@ import javax.annotation.concurrent.NotThreadSafe;
 @NotThreadSafe
 public final class MutableDistribution implements Distribution {
 
-  private final TreeRangeMap<Double, Long> intervalCounts;
+  private final double[] boundaries;
+  private final long[] intervalCounts;
   private final DistributionFitter distributionFitter;
   private double sumOfSquaredDeviation = 0.0;
   private double mean = 0.0;
@@ -46,23 +44,9 @@ public final class MutableDistribution implements Distribution {
   /** Constructs an empty Distribution with the specified {@link DistributionFitter}. */
   public MutableDistribution(DistributionFitter distributionFitter) {
     this.distributionFitter = checkNotNull(distributionFitter);
-    ImmutableSortedSet<Double> boundaries = distributionFitter.boundaries();
-
-    checkArgument(boundaries.size() > 0);
-    checkArgument(Ordering.natural().isOrdered(boundaries));
-
-    this.intervalCounts = TreeRangeMap.create();
-
-    double[] boundariesArray = Doubles.toArray(distributionFitter.boundaries());
-
-    // Add underflow and overflow intervals
-    this.intervalCounts.put(Range.lessThan(boundariesArray[0]), 0L);
-    this.intervalCounts.put(Range.atLeast(boundariesArray[boundariesArray.length - 1]), 0L);
-
-    // Add finite intervals
-    for (int i = 1; i < boundariesArray.length; i++) {
-      this.intervalCounts.put(Range.closedOpen(boundariesArray[i - 1], boundariesArray[i]), 0L);
-    }
+    this.boundaries = getBoundaries(distributionFitter);
+    // One interval between each pair of boundaries, plus the underflow and overflow intervals.
+    this.intervalCounts = new long[boundaries.length + 1];
   }
 
   public void add(double value) {
@@ -79,8 +63,7 @@ public final class MutableDistribution implements Distribution {
       return;
     }
 
-    Map.Entry<Range<Double>, Long> entry = intervalCounts.getEntry(value);
-    intervalCounts.put(entry.getKey(), entry.getValue() + numSamples);
+    intervalCounts[getIntervalIndex(boundaries, value)] += numSamples;
     this.count += numSamples;
 
     // Update mean and sumOfSquaredDeviation using Welford's method
@@ -107,7 +90,7 @@ public final class MutableDistribution implements Distribution {
 
   @Override
   public ImmutableRangeMap<Double, Long> intervalCounts() {
-    return ImmutableRangeMap.copyOf(intervalCounts);
+    return createIntervalCounts(boundaries, i -> intervalCounts[i]);
   }
 
   @Override
@@ -14,11 +14,9 @@
 
 package google.registry.monitoring.whitebox;
 
-import static com.google.appengine.api.taskqueue.TaskOptions.Builder.withUrl;
-
-import com.google.appengine.api.modules.ModulesService;
 import com.google.appengine.api.taskqueue.Queue;
 import com.google.appengine.api.taskqueue.TaskOptions;
+import com.google.appengine.api.taskqueue.TaskOptions.Method;
 import com.google.appengine.api.taskqueue.TransientFailureException;
 import com.google.common.base.Supplier;
 import google.registry.util.FormattingLogger;
@@ -27,8 +25,12 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 /**
- * A collector of metric information. Enqueues collected metrics to a task queue to be written to
- * BigQuery asynchronously.
+ * A collector of metric information. Adds collected metrics to a pull queue, from which they are
+ * written to BigQuery in batches.
+ *
+ * <p>Each metric becomes a pull queue task tagged with its table ID, so that the metrics for one
+ * table can be leased together. The queue holds the metrics durably until they are written, so
+ * none are lost if the instance that collected them shuts down.
  *
  * @see MetricsExportAction
  */
@@ -36,25 +38,25 @@ public class BigQueryMetricsEnqueuer {
 
   private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
 
-  public static final String QUEUE_BIGQUERY_STREAMING_METRICS = "bigquery-streaming-metrics";
+  public static final String QUEUE_BIGQUERY_METRICS_PULL = "bigquery-metrics-pull";
+
+  /** The parameter holding the ID that BigQuery uses to deduplicate retried inserts of a row. */
+  static final String INSERT_ID_PARAM = "insertId";
 
-  @Inject ModulesService modulesService;
   @Inject @Named("insertIdGenerator") Supplier<String> idGenerator;
-  @Inject @Named(QUEUE_BIGQUERY_STREAMING_METRICS) Queue queue;
+  @Inject @Named(QUEUE_BIGQUERY_METRICS_PULL) Queue queue;
 
   @Inject BigQueryMetricsEnqueuer() {}
 
   public void export(BigQueryMetric metric) {
     try {
-      String hostname = modulesService.getVersionHostname("backend", null);
       TaskOptions opts =
-          withUrl(MetricsExportAction.PATH)
-              .header("Host", hostname)
-              .param("insertId", idGenerator.get());
+          TaskOptions.Builder.withMethod(Method.PULL)
+              .tag(metric.getTableId())
+              .param(INSERT_ID_PARAM, idGenerator.get());
       for (Entry<String, String> entry : metric.getBigQueryRowEncoding().entrySet()) {
         opts.param(entry.getKey(), entry.getValue());
       }
-      opts.param("tableId", metric.getTableId());
       queue.add(opts);
     } catch (TransientFailureException e) {
       // Log and swallow. We may drop some metrics here but this should be rare.
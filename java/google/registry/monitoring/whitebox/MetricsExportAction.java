@@ -14,77 +14,166 @@
 
 package google.registry.monitoring.whitebox;
 
-import static com.google.common.base.Predicates.in;
-import static com.google.common.base.Predicates.not;
-import static com.google.common.collect.Multimaps.filterKeys;
-import static google.registry.request.Action.Method.POST;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.INSERT_ID_PARAM;
+import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.QUEUE_BIGQUERY_METRICS_PULL;
+import static google.registry.util.CollectionUtils.nullToEmpty;
 import static google.registry.util.FormattingLogger.getLoggerForCallerClass;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.joining;
 
 import com.google.api.services.bigquery.Bigquery;
 import com.google.api.services.bigquery.model.TableDataInsertAllRequest;
 import com.google.api.services.bigquery.model.TableDataInsertAllResponse;
+import com.google.api.services.bigquery.model.TableDataInsertAllResponse.InsertErrors;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.TaskHandle;
+import com.google.appengine.api.taskqueue.TransientFailureException;
+import com.google.apphosting.api.DeadlineExceededException;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableListMultimap;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import google.registry.bigquery.BigqueryFactory;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.request.Action;
-import google.registry.request.Parameter;
-import google.registry.request.ParameterMap;
 import google.registry.request.auth.Auth;
+import google.registry.util.Clock;
 import google.registry.util.FormattingLogger;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import javax.inject.Inject;
+import javax.inject.Named;
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
 
-/** Action for exporting metrics to BigQuery. */
+/**
+ * Action for exporting metrics to BigQuery.
+ *
+ * <p>This runs as a cron job. It leases the metrics that {@link BigQueryMetricsEnqueuer} added to
+ * the pull queue, a table's worth at a time, and streams each batch into BigQuery with a single
+ * multi-row insert. It keeps going until the queue is drained or it runs out of time, so metrics
+ * are never held for much longer than the cron interval.
+ *
+ * <p>Tasks are only deleted once their rows have been inserted. If the insert fails, their leases
+ * expire and they are retried on a later run; BigQuery uses each row's insert ID to ignore rows
+ * that it has already received. Rows that BigQuery rejects are retried the same way, until the
+ * queue's retry limit drops them, so a bad row can't hold up the rest of its batch.
+ */
 @Action(
   path = MetricsExportAction.PATH,
-  method = POST,
+  automaticallyPrintOk = true,
   auth = Auth.AUTH_INTERNAL_ONLY
 )
 public class MetricsExportAction implements Runnable {
 
-  public static final String PATH = "/_dr/task/metrics";
+  public static final String PATH = "/_dr/cron/exportMetrics";
   private static final FormattingLogger logger = getLoggerForCallerClass();
   private static final String DATASET_ID = "metrics";
-  private static final ImmutableSet<String> SPECIAL_PARAMS = ImmutableSet.of("tableId", "insertId");
 
-  @Inject @Parameter("tableId") String tableId;
-  @Inject @Parameter("insertId") String insertId;
+  /** The maximum number of rows to insert at once, which is BigQuery's recommended maximum. */
+  @VisibleForTesting static final int MAX_ROWS_PER_INSERT = 500;
+
+  /** How long to keep leasing batches for, which leaves plenty of the cron interval to spare. */
+  private static final Duration MAX_RUNTIME = Duration.standardSeconds(45);
+
+  /** How long to lease each batch for, which must be long enough to insert it. */
+  private static final Duration LEASE_DURATION = Duration.standardMinutes(2);
+
   @Inject @Config("projectId") String projectId;
   @Inject BigqueryFactory bigqueryFactory;
-  @Inject @ParameterMap ImmutableListMultimap<String, String> parameters;
+  @Inject @Named(QUEUE_BIGQUERY_METRICS_PULL) Queue queue;
+  @Inject Clock clock;
   @Inject MetricsExportAction() {}
 
   /** Exports metrics to BigQuery. */
   @Override
   public void run() {
-    try {
-      Bigquery bigquery = bigqueryFactory.create(projectId, DATASET_ID, tableId);
-      // Filter out the special parameters that the Action is called with.  Everything that's left
-      // is returned in a Map that is suitable to pass to Bigquery as row data.
-      Map<String, Object> jsonRows =
-          ImmutableMap.<String, Object>copyOf(
-              filterKeys(parameters, not(in(SPECIAL_PARAMS))).entries());
-      TableDataInsertAllResponse response = bigquery.tabledata()
-          .insertAll(
-              projectId,
-              DATASET_ID,
-              tableId,
-              new TableDataInsertAllRequest()
-                  .setRows(
-                      ImmutableList.of(new TableDataInsertAllRequest.Rows()
-                          .setInsertId(insertId)
-                          .setJson(jsonRows))))
-          .execute();
+    DateTime deadline = clock.nowUtc().plus(MAX_RUNTIME);
+    int rowsExported = 0;
+    while (clock.nowUtc().isBefore(deadline)) {
+      List<TaskHandle> tasks;
+      try {
+        // Lease tasks with the same tag, i.e. table ID, as the oldest task in the queue.
+        tasks =
+            queue.leaseTasksByTag(
+                LEASE_DURATION.getMillis(), MILLISECONDS, MAX_ROWS_PER_INSERT, null);
+      } catch (TransientFailureException | DeadlineExceededException e) {
+        logger.severe(e, "Failed leasing metrics tasks");
+        break;
+      }
+      if (tasks.isEmpty()) {
+        break;
+      }
+      if (!exportBatch(tasks.get(0).getTag(), tasks)) {
+        break;
+      }
+      rowsExported += tasks.size();
+    }
+    logger.infofmt("Exported %d metrics rows to BigQuery.", rowsExported);
+  }
 
-      if (response.getInsertErrors() != null && !response.getInsertErrors().isEmpty()) {
-        throw new RuntimeException(
-            response
-                .getInsertErrors()
+  /**
+   * Inserts the rows held by the given tasks into the given table, and deletes the tasks of the
+   * rows that were inserted.
+   *
+   * <p>Tasks that can't be read are deleted without being inserted. Rows that BigQuery rejects
+   * don't stop the others from being inserted, and their tasks are left on the queue, which drops
+   * them once they have been leased too many times.
+   *
+   * @return false if the insert failed, in which case the tasks are left to be retried
+   */
+  private boolean exportBatch(String tableId, List<TaskHandle> tasks) {
+    List<TaskHandle> rowTasks = new ArrayList<>();
+    List<TaskHandle> tasksToDelete = new ArrayList<>();
+    ImmutableList.Builder<TableDataInsertAllRequest.Rows> rows = new ImmutableList.Builder<>();
+    for (TaskHandle task : tasks) {
+      try {
+        Map<String, Object> jsonRow = new LinkedHashMap<>();
+        String insertId = null;
+        for (Map.Entry<String, String> param : task.extractParams()) {
+          if (param.getKey().equals(INSERT_ID_PARAM)) {
+            insertId = param.getValue();
+          } else {
+            jsonRow.put(param.getKey(), param.getValue());
+          }
+        }
+        rows.add(new TableDataInsertAllRequest.Rows().setInsertId(insertId).setJson(jsonRow));
+        rowTasks.add(task);
+      } catch (IOException | RuntimeException e) {
+        logger.severefmt(e, "Discarding invalid metrics task %s", task.getName());
+        tasksToDelete.add(task);
+      }
+    }
+    if (!rowTasks.isEmpty()) {
+      TableDataInsertAllResponse response;
+      try {
+        Bigquery bigquery = bigqueryFactory.create(projectId, DATASET_ID, tableId);
+        response =
+            bigquery
+                .tabledata()
+                .insertAll(
+                    projectId,
+                    DATASET_ID,
+                    tableId,
+                    new TableDataInsertAllRequest()
+                        .setSkipInvalidRows(true)
+                        .setRows(rows.build()))
+                .execute();
+      } catch (Throwable e) {
+        logger.warningfmt(
+            e, "Failed inserting %d metrics rows into table %s", rowTasks.size(), tableId);
+        return false;
+      }
+      List<InsertErrors> insertErrors = nullToEmpty(response.getInsertErrors());
+      if (!insertErrors.isEmpty()) {
+        logger.warningfmt(
+            "Errors inserting metrics into table %s:\n%s",
+            tableId,
+            insertErrors
                 .stream()
                 .map(
                     error -> {
@@ -96,8 +185,27 @@ public class MetricsExportAction implements Runnable {
                     })
                 .collect(joining("\n")));
       }
-    } catch (Throwable e) {
-      logger.warningfmt("Caught Unknown Exception: %s", e);
+      ImmutableSet<Long> rejectedRows =
+          insertErrors
+              .stream()
+              .map(InsertErrors::getIndex)
+              .filter(Objects::nonNull)
+              .collect(toImmutableSet());
+      for (int i = 0; i < rowTasks.size(); i++) {
+        if (!rejectedRows.contains((long) i)) {
+          tasksToDelete.add(rowTasks.get(i));
+        }
+      }
+    }
+    if (tasksToDelete.isEmpty()) {
+      return true;
+    }
+    try {
+      queue.deleteTask(tasksToDelete);
+    } catch (TransientFailureException | DeadlineExceededException e) {
+      // The rows will be inserted again once the leases expire, but BigQuery will ignore them.
+      logger.severe(e, "Failed deleting metrics tasks");
     }
+    return true;
   }
 }
@@ -15,8 +15,7 @@
 package google.registry.monitoring.whitebox;
 
 import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
-import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.QUEUE_BIGQUERY_STREAMING_METRICS;
-import static google.registry.request.RequestParameters.extractRequiredParameter;
+import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.QUEUE_BIGQUERY_METRICS_PULL;
 
 import com.google.api.services.bigquery.model.TableFieldSchema;
 import com.google.appengine.api.taskqueue.Queue;
@@ -26,12 +25,10 @@ import dagger.Module;
 import dagger.Provides;
 import dagger.multibindings.IntoMap;
 import dagger.multibindings.StringKey;
-import google.registry.request.Parameter;
 import google.registry.request.RequestLogId;
 import google.registry.util.Clock;
 import java.util.UUID;
 import javax.inject.Named;
-import javax.servlet.http.HttpServletRequest;
 
 /**
  * Dagger module for injecting common settings for Whitebox tasks.
@@ -46,18 +43,6 @@ public class WhiteboxModule {
     return EppMetric.SCHEMA_FIELDS;
   }
 
-  @Provides
-  @Parameter("tableId")
-  static String provideTableId(HttpServletRequest req) {
-    return extractRequiredParameter(req, "tableId");
-  }
-
-  @Provides
-  @Parameter("insertId")
-  static String provideInsertId(HttpServletRequest req) {
-    return extractRequiredParameter(req, "insertId");
-  }
-
   @Provides
   @Named("insertIdGenerator")
   static Supplier<String> provideInsertIdGenerator() {
@@ -72,8 +57,8 @@ public class WhiteboxModule {
   }
 
   @Provides
-  @Named(QUEUE_BIGQUERY_STREAMING_METRICS)
-  static Queue provideBigQueryStreamingMetricsQueue() {
-    return getQueue(QUEUE_BIGQUERY_STREAMING_METRICS);
+  @Named(QUEUE_BIGQUERY_METRICS_PULL)
+  static Queue provideBigQueryMetricsPullQueue() {
+    return getQueue(QUEUE_BIGQUERY_METRICS_PULL);
   }
 }
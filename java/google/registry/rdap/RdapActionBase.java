@@ -17,6 +17,7 @@ package google.registry.rdap;
 import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.net.HttpHeaders.ACCESS_CONTROL_ALLOW_ORIGIN;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.DateTimeUtils.END_OF_TIME;
@@ -26,7 +27,9 @@ import static javax.servlet.http.HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
 import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.escape.Escaper;
 import com.google.common.net.MediaType;
+import com.google.common.net.UrlEscapers;
 import com.google.re2j.Pattern;
 import com.googlecode.objectify.Key;
 import com.googlecode.objectify.cmd.Query;
@@ -38,6 +41,7 @@ import google.registry.rdap.RdapSearchResults.IncompletenessWarningType;
 import google.registry.request.Action;
 import google.registry.request.FullServletPath;
 import google.registry.request.HttpException;
+import google.registry.request.HttpException.BadRequestException;
 import google.registry.request.HttpException.UnprocessableEntityException;
 import google.registry.request.Parameter;
 import google.registry.request.RequestMethod;
@@ -47,11 +51,16 @@ import google.registry.request.auth.AuthResult;
 import google.registry.request.auth.UserAuthInfo;
 import google.registry.ui.server.registrar.SessionUtils;
 import google.registry.util.FormattingLogger;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
@@ -85,8 +94,10 @@ public abstract class RdapActionBase implements Runnable {
   @Inject AuthResult authResult;
   @Inject SessionUtils sessionUtils;
   @Inject RdapJsonFormatter rdapJsonFormatter;
+  @Inject RdapMetrics rdapMetrics;
   @Inject @Parameter("registrar") Optional<String> registrarParam;
   @Inject @Parameter("includeDeleted") Optional<Boolean> includeDeletedParam;
+  @Inject @Parameter("cursor") Optional<String> cursorTokenParam;
   @Inject @Config("rdapWhoisServer") @Nullable String rdapWhoisServer;
   @Inject @Config("rdapResultSetMaxSize") int rdapResultSetMaxSize;
 
@@ -132,7 +143,7 @@ public abstract class RdapActionBase implements Runnable {
       response.setStatus(SC_OK);
       response.setContentType(RESPONSE_MEDIA_TYPE);
       if (requestMethod != Action.Method.HEAD) {
-        response.setPayload(JSONValue.toJSONString(rdapJson));
+        writeJson(rdapJson);
       }
     } catch (HttpException e) {
       setError(e.getResponseCode(), e.getResponseCodeString(), e.getMessage());
@@ -149,8 +160,7 @@ public abstract class RdapActionBase implements Runnable {
     response.setContentType(RESPONSE_MEDIA_TYPE);
     try {
       if (requestMethod != Action.Method.HEAD) {
-        response.setPayload(
-            JSONValue.toJSONString(rdapJsonFormatter.makeError(status, title, description)));
+        writeJson(rdapJsonFormatter.makeError(status, title, description));
       }
     } catch (Exception ex) {
       if (requestMethod != Action.Method.HEAD) {
@@ -159,6 +169,22 @@ public abstract class RdapActionBase implements Runnable {
     }
   }
 
+  /**
+   * Streams a JSON tree to the response payload.
+   *
+   * <p>Search responses can be large, so the tree is written out directly rather than being
+   * serialized into a string first.
+   */
+  private void writeJson(ImmutableMap<String, Object> rdapJson) {
+    try {
+      Writer writer = response.getPayloadWriter();
+      JSONValue.writeJSONString(rdapJson, writer);
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   RdapAuthorization getAuthorization() {
     if (!authResult.userAuthInfo().isPresent()) {
       return RdapAuthorization.PUBLIC_AUTHORIZATION;
@@ -256,6 +282,106 @@ public abstract class RdapActionBase implements Runnable {
         && (!registrarParam.isPresent() || registrarParam.get().equals(registrar.getClientId()));
   }
 
+  /**
+   * Returns the position after which a paged search should resume, or empty if this is the first
+   * page.
+   */
+  Optional<RdapSearchCursor> getCursor() {
+    if (!cursorTokenParam.isPresent()) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(RdapSearchCursor.decode(cursorTokenParam.get()));
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid value of cursor parameter");
+    }
+  }
+
+  /**
+   * Runs a query ordered by name for one page of a paged search, resuming after the cursor if
+   * there is one.
+   *
+   * <p>Datastore can't filter on a name and a repo ID at once, so the query fetches the resources
+   * from the cursor's name on, and those with that name which were already on an earlier page are
+   * skipped. They still count towards the query's limit.
+   *
+   * @param query an already-defined query ordered by name
+   * @param nameField the name of the field that the query is ordered by
+   * @param nameFunction returns the name that the query is ordered by
+   * @param checkForVisibility true if the results should be checked to make sure they are visible
+   * @param now the time as of which to evaluate the query
+   */
+  <T extends EppResource> RdapResultSet<T> getMatchingResourcesAfterCursor(
+      Query<T> query,
+      String nameField,
+      Function<T, String> nameFunction,
+      boolean checkForVisibility,
+      DateTime now) {
+    Optional<RdapSearchCursor> cursor = getCursor();
+    if (!cursor.isPresent()) {
+      return getMatchingResources(query, checkForVisibility, now);
+    }
+    return getMatchingResources(
+        query.filter(nameField + " >=", cursor.get().name()),
+        checkForVisibility,
+        resource -> cursor.get().isBefore(nameFunction.apply(resource), resource.getRepoId()),
+        now);
+  }
+
+  /**
+   * Returns the position after which the next page of a search ordered by name should start, or
+   * empty if the search has found everything there is to find.
+   *
+   * <p>If there were more visible results than fit on a page, the next page starts after the last
+   * result returned. Otherwise, if the query returned as many resources as its limit allowed, most
+   * of which must have been filtered out as not visible, the next page starts after the last
+   * resource that was looked at, so that the client can carry on past them.
+   *
+   * @param resultSet the results of the query
+   * @param querySizeLimit the limit that was set on the query
+   * @param nameFunction returns the name that the query was ordered by
+   */
+  <T extends EppResource> Optional<RdapSearchCursor> getNextPageCursor(
+      RdapResultSet<T> resultSet, int querySizeLimit, Function<T, String> nameFunction) {
+    if (resultSet.resources().size() > rdapResultSetMaxSize) {
+      T lastResult = resultSet.resources().get(rdapResultSetMaxSize - 1);
+      return Optional.of(
+          RdapSearchCursor.create(nameFunction.apply(lastResult), lastResult.getRepoId()));
+    }
+    if ((resultSet.numResourcesRetrieved() >= querySizeLimit)
+        && (resultSet.lastResourceRetrieved() != null)) {
+      T lastResource = resultSet.lastResourceRetrieved();
+      return Optional.of(
+          RdapSearchCursor.create(nameFunction.apply(lastResource), lastResource.getRepoId()));
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Returns the URL of the next page of a search, which repeats the search parameter and any
+   * registrar and includeDeleted parameters, and adds a cursor.
+   */
+  String makeNextPageUrl(
+      String searchParameterName, String searchValue, RdapSearchCursor nextPageCursor) {
+    Escaper escaper = UrlEscapers.urlFormParameterEscaper();
+    StringBuilder url = new StringBuilder(fullServletPath);
+    if (!fullServletPath.endsWith("/")) {
+      url.append('/');
+    }
+    url.append(getActionPath().substring(getActionPath().lastIndexOf('/') + 1))
+        .append('?')
+        .append(searchParameterName)
+        .append('=')
+        .append(escaper.escape(searchValue));
+    if (registrarParam.isPresent()) {
+      url.append("&registrar=").append(escaper.escape(registrarParam.get()));
+    }
+    if (includeDeletedParam.isPresent()) {
+      url.append("&includeDeleted=").append(includeDeletedParam.get());
+    }
+    return url.append("&cursor=").append(nextPageCursor.encode()).toString();
+  }
+
   String canonicalizeName(String name) {
     name = canonicalizeDomainName(name);
     if (name.endsWith(".")) {
@@ -325,6 +451,23 @@ public abstract class RdapActionBase implements Runnable {
     return setOtherQueryAttributes(query, includeDeleted, resultSetMaxSize);
   }
 
+  /** Variant of queryItems searching for values in an inclusive range of strings. */
+  static <T extends EppResource> Query<T> queryItemsInRange(
+      Class<T> clazz,
+      String filterField,
+      String lowerBound,
+      String upperBound,
+      boolean includeDeleted,
+      int resultSetMaxSize) {
+    Query<T> query =
+        ofy()
+            .load()
+            .type(clazz)
+            .filter(filterField + " >=", lowerBound)
+            .filter(filterField + " <=", upperBound);
+    return setOtherQueryAttributes(query, includeDeleted, resultSetMaxSize);
+  }
+
   /** Variant of queryItems where the field to be searched is the key. */
   static <T extends EppResource> Query<T> queryItemsByKey(
       Class<T> clazz,
@@ -393,24 +536,46 @@ public abstract class RdapActionBase implements Runnable {
    */
   <T extends EppResource> RdapResultSet<T> getMatchingResources(
       Query<T> query, boolean checkForVisibility, DateTime now) {
+    return getMatchingResources(query, checkForVisibility, resource -> true, now);
+  }
+
+  /**
+   * Runs the given query, skipping resources that don't satisfy the given predicate, and checks
+   * for permissioning if necessary.
+   *
+   * <p>Skipped resources count towards the number of resources retrieved, but aren't treated as
+   * excluded for the purposes of the incompleteness warning.
+   */
+  private <T extends EppResource> RdapResultSet<T> getMatchingResources(
+      Query<T> query, boolean checkForVisibility, Predicate<T> includeResource, DateTime now) {
     Optional<String> desiredRegistrar = getDesiredRegistrar();
     if (desiredRegistrar.isPresent()) {
       query = query.filter("currentSponsorClientId", desiredRegistrar.get());
     }
     if (!checkForVisibility) {
-      return RdapResultSet.create(query.list());
+      List<T> resources = query.list();
+      return RdapResultSet.create(
+          resources.stream().filter(includeResource).collect(toImmutableList()),
+          IncompletenessWarningType.NONE,
+          resources.size(),
+          resources.isEmpty() ? null : resources.get(resources.size() - 1));
     }
     // If we are including deleted resources, we need to check that we're authorized for each one.
     List<T> resources = new ArrayList<>();
     int numResourcesQueried = 0;
     boolean someExcluded = false;
+    T lastResourceQueried = null;
     for (T resource : query) {
+      lastResourceQueried = resource;
+      numResourcesQueried++;
+      if (!includeResource.test(resource)) {
+        continue;
+      }
       if (shouldBeVisible(resource, now)) {
         resources.add(resource);
       } else {
         someExcluded = true;
       }
-      numResourcesQueried++;
       if (resources.size() > rdapResultSetMaxSize) {
         break;
       }
@@ -420,6 +585,7 @@ public abstract class RdapActionBase implements Runnable {
         (someExcluded && (resources.size() < rdapResultSetMaxSize + 1))
             ? IncompletenessWarningType.MIGHT_BE_INCOMPLETE
             : IncompletenessWarningType.NONE,
-        numResourcesQueried);
+        numResourcesQueried,
+        lastResourceQueried);
   }
 }
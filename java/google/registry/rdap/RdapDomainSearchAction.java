@@ -20,7 +20,9 @@ import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.HEAD;
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
@@ -127,7 +129,12 @@ public class RdapDomainSearchAction extends RdapActionBase {
       } catch (Exception e) {
         throw new BadRequestException("Invalid value of nsLdhName parameter");
       }
+      Stopwatch stopwatch = Stopwatch.createStarted();
       results = searchByDomainName(RdapSearchPattern.create(asciiName, true), now);
+      rdapMetrics.recordSearchPageTime(
+          getEndpointType(),
+          !cursorTokenParam.isPresent(),
+          stopwatch.elapsed(MICROSECONDS) / 1000.0);
     } else if (nsLdhNameParam.isPresent()) {
       // syntax: /rdap/domains?nsLdhName=ns1.exam*.com
       // RFC 7482 appears to say that Unicode domains must be specified using punycode when
@@ -147,11 +154,19 @@ public class RdapDomainSearchAction extends RdapActionBase {
       }
       results = searchByNameserverIp(inetAddress, now);
     }
-    if (results.jsonList().isEmpty()) {
+    // A page can be empty if everything in it was filtered out, but there may be more pages.
+    if (results.jsonList().isEmpty() && !results.nextPageCursor().isPresent()) {
       throw new NotFoundException("No domains found");
     }
     ImmutableMap.Builder<String, Object> builder = new ImmutableMap.Builder<>();
     builder.put("domainSearchResults", results.jsonList());
+    if (results.nextPageCursor().isPresent()) {
+      builder.put(
+          RdapJsonFormatter.PAGING_METADATA,
+          RdapJsonFormatter.makePagingMetadata(
+              results.jsonList().size(),
+              makeNextPageUrl("name", nameParam.get(), results.nextPageCursor().get())));
+    }
     rdapJsonFormatter.addTopLevelEntries(
         builder,
         BoilerplateType.DOMAIN,
@@ -172,6 +187,9 @@ public class RdapDomainSearchAction extends RdapActionBase {
    *
    * <p>Searches which include deleted entries are effectively treated as if they have a wildcard,
    * since the same name can return multiple results.
+   *
+   * <p>Wildcard searches are paged. Each page is a single query for the resources after the cursor,
+   * if any, and the response links to the next page if the query didn't find everything.
    */
   private RdapSearchResults searchByDomainName(
       final RdapSearchPattern partialStringQuery, final DateTime now) {
@@ -223,23 +241,31 @@ public class RdapDomainSearchAction extends RdapActionBase {
     // fullyQualifiedDomainName. So we instead pick an arbitrary limit of
     // RESULT_SET_SIZE_SCALING_FACTOR times the result set size limit, fetch up to that many, and
     // weed out all deleted domains. If there still isn't a full result set's worth of domains, we
-    // give up and return just the ones we found. Don't use queryItems, because it checks that the
-    // initial string is at least a certain length, which we don't need in this case. Query the
-    // domains directly, rather than the foreign keys, because then we have an index on TLD if we
-    // need it.
-    // TODO(b/31546493): Add metrics to figure out how well this works.
+    // return just the ones we found, along with a cursor from which the client can carry on.
+    // Don't use queryItems, because it checks that the initial string is at least a certain
+    // length, which we don't need in this case. Query the domains directly, rather than the
+    // foreign keys, because then we have an index on TLD if we need it.
+    int querySizeLimit = RESULT_SET_SIZE_SCALING_FACTOR * rdapResultSetMaxSize;
     Query<DomainResource> query =
         ofy()
             .load()
             .type(DomainResource.class)
             .filter("fullyQualifiedDomainName <", partialStringQuery.getNextInitialString())
             .filter("fullyQualifiedDomainName >=", partialStringQuery.getInitialString())
-            .limit(RESULT_SET_SIZE_SCALING_FACTOR * rdapResultSetMaxSize);
+            .limit(querySizeLimit);
     if (partialStringQuery.getSuffix() != null) {
       query = query.filter("tld", partialStringQuery.getSuffix());
     }
     // Always check for visibility, because we couldn't look at the deletionTime in the query.
-    return makeSearchResults(getMatchingResources(query, true, now), now);
+    return makePagedSearchResults(
+        getMatchingResourcesAfterCursor(
+            query,
+            "fullyQualifiedDomainName",
+            DomainResource::getFullyQualifiedDomainName,
+            true,
+            now),
+        querySizeLimit,
+        now);
   }
 
   /** Searches for domains by domain name with a TLD suffix. */
@@ -248,14 +274,23 @@ public class RdapDomainSearchAction extends RdapActionBase {
     // back ordered by name, so we are still in the same boat as
     // searchByDomainNameWithInitialString, unable to perform an inequality query on deletion time.
     // Don't use queryItems, because it doesn't handle pending deletes.
+    int querySizeLimit = RESULT_SET_SIZE_SCALING_FACTOR * rdapResultSetMaxSize;
     Query<DomainResource> query =
         ofy()
             .load()
             .type(DomainResource.class)
             .filter("tld", tld)
             .order("fullyQualifiedDomainName")
-            .limit(RESULT_SET_SIZE_SCALING_FACTOR * rdapResultSetMaxSize);
-    return makeSearchResults(getMatchingResources(query, true, now), now);
+            .limit(querySizeLimit);
+    return makePagedSearchResults(
+        getMatchingResourcesAfterCursor(
+            query,
+            "fullyQualifiedDomainName",
+            DomainResource::getFullyQualifiedDomainName,
+            true,
+            now),
+        querySizeLimit,
+        now);
   }
 
   /**
@@ -474,10 +509,19 @@ public class RdapDomainSearchAction extends RdapActionBase {
     return makeSearchResults(domains, IncompletenessWarningType.NONE, now);
   }
 
-  /** Output JSON from data in an {@link RdapResultSet} object. */
-  private RdapSearchResults makeSearchResults(
-      RdapResultSet<DomainResource> resultSet, DateTime now) {
-    return makeSearchResults(resultSet.resources(), resultSet.incompletenessWarningType(), now);
+  /**
+   * Output JSON from data in an {@link RdapResultSet} object returned by a query ordered by domain
+   * name, with a cursor for the next page if there might be more results.
+   */
+  private RdapSearchResults makePagedSearchResults(
+      RdapResultSet<DomainResource> resultSet, int querySizeLimit, DateTime now) {
+    RdapSearchResults results =
+        makeSearchResults(resultSet.resources(), resultSet.incompletenessWarningType(), now);
+    return RdapSearchResults.create(
+        results.jsonList(),
+        results.incompletenessWarningType(),
+        getNextPageCursor(
+            resultSet, querySizeLimit, DomainResource::getFullyQualifiedDomainName));
   }
 
   /**
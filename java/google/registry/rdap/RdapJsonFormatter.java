@@ -115,6 +115,7 @@ public class RdapJsonFormatter {
   private static final String RDAP_CONFORMANCE_LEVEL = "rdap_level_0";
   private static final String VCARD_VERSION_NUMBER = "4.0";
   static final String NOTICES = "notices";
+  static final String PAGING_METADATA = "paging_metadata";
   private static final String REMARKS = "remarks";
 
   private enum RdapStatus {
@@ -1104,6 +1105,25 @@ public class RdapJsonFormatter {
         "type", "application/rdap+json");
   }
 
+  /**
+   * Creates the paging metadata for a page of search results, with a link to the next page.
+   *
+   * @param pageSize the number of results on this page
+   * @param nextPageUrl the URL of the next page of results
+   */
+  static ImmutableMap<String, Object> makePagingMetadata(int pageSize, String nextPageUrl) {
+    return ImmutableMap.of(
+        "pageSize",
+        pageSize,
+        "links",
+        ImmutableList.of(
+            ImmutableMap.of(
+                "value", nextPageUrl,
+                "rel", "next",
+                "href", nextPageUrl,
+                "type", "application/rdap+json")));
+  }
+
   /**
    * Creates a JSON error indication.
    *
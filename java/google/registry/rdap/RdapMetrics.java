@@ -14,6 +14,14 @@
 
 package google.registry.rdap;
 
+import static google.registry.monitoring.metrics.EventMetric.DEFAULT_FITTER;
+
+import com.google.common.collect.ImmutableSet;
+import google.registry.monitoring.metrics.EventMetric;
+import google.registry.monitoring.metrics.LabelDescriptor;
+import google.registry.monitoring.metrics.MetricRegistryImpl;
+import javax.inject.Inject;
+
 /** RDAP Instrumentation. */
 public class RdapMetrics {
 
@@ -28,4 +36,26 @@ public class RdapMetrics {
     NAMESERVER,
     NAMESERVERS
   }
+
+  private static final EventMetric searchPageTime =
+      MetricRegistryImpl.getDefault()
+          .newEventMetric(
+              "/rdap/search_page_time",
+              "RDAP Search Page Processing Time",
+              "milliseconds",
+              ImmutableSet.of(
+                  LabelDescriptor.create("endpoint_type", "The RDAP search endpoint."),
+                  LabelDescriptor.create(
+                      "page", "Whether this is the first page of results or a later one.")),
+              DEFAULT_FITTER);
+
+  @Inject
+  public RdapMetrics() {}
+
+  /** Records the time taken to query for, and render, one page of search results. */
+  public void recordSearchPageTime(
+      EndpointType endpointType, boolean isFirstPage, double milliseconds) {
+    searchPageTime.record(
+        milliseconds, endpointType.toString(), isFirstPage ? "first" : "subsequent");
+  }
 }
@@ -61,6 +61,12 @@ public final class RdapModule {
     return RequestParameters.extractOptionalParameter(req, "handle");
   }
 
+  @Provides
+  @Parameter("cursor")
+  static Optional<String> provideCursor(HttpServletRequest req) {
+    return RequestParameters.extractOptionalParameter(req, "cursor");
+  }
+
   @Provides
   @Parameter("registrar")
   static Optional<String> provideRegistrar(HttpServletRequest req) {
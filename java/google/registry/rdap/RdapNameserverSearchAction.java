@@ -17,7 +17,9 @@ package google.registry.rdap;
 import static google.registry.model.EppResourceUtils.loadByForeignKey;
 import static google.registry.request.Action.Method.GET;
 import static google.registry.request.Action.Method.HEAD;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
@@ -27,6 +29,7 @@ import com.google.common.primitives.Booleans;
 import com.googlecode.objectify.cmd.Query;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.host.HostResource;
+import google.registry.model.host.InetAddressIndexes;
 import google.registry.rdap.RdapJsonFormatter.BoilerplateType;
 import google.registry.rdap.RdapJsonFormatter.OutputDataType;
 import google.registry.rdap.RdapMetrics.EndpointType;
@@ -37,6 +40,7 @@ import google.registry.request.HttpException.NotFoundException;
 import google.registry.request.HttpException.UnprocessableEntityException;
 import google.registry.request.Parameter;
 import google.registry.request.auth.Auth;
+import google.registry.util.CidrAddressBlock;
 import google.registry.util.Clock;
 import google.registry.util.Idn;
 import java.net.InetAddress;
@@ -111,7 +115,21 @@ public class RdapNameserverSearchAction extends RdapActionBase {
             "Name parameter must contain only letters, dots"
                 + " and hyphens, and an optional single wildcard");
       }
+      Stopwatch stopwatch = Stopwatch.createStarted();
       results = searchByName(RdapSearchPattern.create(Idn.toASCII(nameParam.get()), true), now);
+      rdapMetrics.recordSearchPageTime(
+          getEndpointType(),
+          !cursorTokenParam.isPresent(),
+          stopwatch.elapsed(MICROSECONDS) / 1000.0);
+    } else if (ipParam.get().contains("/")) {
+      // syntax: /rdap/nameservers?ip=1.2.3.0/24
+      CidrAddressBlock cidrAddressBlock;
+      try {
+        cidrAddressBlock = new CidrAddressBlock(ipParam.get());
+      } catch (IllegalArgumentException e) {
+        throw new BadRequestException("Invalid value of ip parameter");
+      }
+      results = searchByCidrAddressBlock(cidrAddressBlock, now);
     } else {
       // syntax: /rdap/nameservers?ip=1.2.3.4
       InetAddress inetAddress;
@@ -122,11 +140,19 @@ public class RdapNameserverSearchAction extends RdapActionBase {
       }
       results = searchByIp(inetAddress, now);
     }
-    if (results.jsonList().isEmpty()) {
+    // A page can be empty if everything in it was filtered out, but there may be more pages.
+    if (results.jsonList().isEmpty() && !results.nextPageCursor().isPresent()) {
       throw new NotFoundException("No nameservers found");
     }
     ImmutableMap.Builder<String, Object> jsonBuilder = new ImmutableMap.Builder<>();
     jsonBuilder.put("nameserverSearchResults", results.jsonList());
+    if (results.nextPageCursor().isPresent()) {
+      jsonBuilder.put(
+          RdapJsonFormatter.PAGING_METADATA,
+          RdapJsonFormatter.makePagingMetadata(
+              results.jsonList().size(),
+              makeNextPageUrl("name", nameParam.get(), results.nextPageCursor().get())));
+    }
     rdapJsonFormatter.addTopLevelEntries(
         jsonBuilder,
         BoilerplateType.NAMESERVER,
@@ -219,20 +245,36 @@ public class RdapNameserverSearchAction extends RdapActionBase {
    * Searches for nameservers by name with a prefix and wildcard.
    *
    * <p>There are no pending deletes for hosts, so we can call {@link RdapActionBase#queryItems}.
+   *
+   * <p>These searches are paged. Each page is a single query for the resources after the cursor,
+   * if any, and the response links to the next page if the query didn't find everything.
    */
   private RdapSearchResults searchByNameUsingPrefix(
       final RdapSearchPattern partialStringQuery, final DateTime now) {
     // Add 1 so we can detect truncation.
+    int querySizeLimit =
+        shouldIncludeDeleted()
+            ? (RESULT_SET_SIZE_SCALING_FACTOR * (rdapResultSetMaxSize + 1))
+            : (rdapResultSetMaxSize + 1);
     Query<HostResource> query =
         queryItems(
             HostResource.class,
             "fullyQualifiedHostName",
             partialStringQuery,
             shouldIncludeDeleted(),
-            shouldIncludeDeleted()
-                ? (RESULT_SET_SIZE_SCALING_FACTOR * (rdapResultSetMaxSize + 1))
-                : (rdapResultSetMaxSize + 1));
-    return makeSearchResults(getMatchingResources(query, shouldIncludeDeleted(), now), now);
+            querySizeLimit);
+    RdapResultSet<HostResource> resultSet =
+        getMatchingResourcesAfterCursor(
+            query,
+            "fullyQualifiedHostName",
+            HostResource::getFullyQualifiedHostName,
+            shouldIncludeDeleted(),
+            now);
+    RdapSearchResults results = makeSearchResults(resultSet, now);
+    return RdapSearchResults.create(
+        results.jsonList(),
+        results.incompletenessWarningType(),
+        getNextPageCursor(resultSet, querySizeLimit, HostResource::getFullyQualifiedHostName));
   }
 
   /** Searches for nameservers by IP address, returning a JSON array of nameserver info maps. */
@@ -250,6 +292,29 @@ public class RdapNameserverSearchAction extends RdapActionBase {
     return makeSearchResults(getMatchingResources(query, shouldIncludeDeleted(), now), now);
   }
 
+  /**
+   * Searches for nameservers with an IP address in a CIDR block, returning a JSON array of
+   * nameserver info maps.
+   *
+   * <p>This is a range query on the host IP address index, so it costs about the same as a search
+   * for a single address.
+   */
+  private RdapSearchResults searchByCidrAddressBlock(
+      final CidrAddressBlock cidrAddressBlock, DateTime now) {
+    // Add 1 so we can detect truncation.
+    Query<HostResource> query =
+        queryItemsInRange(
+            HostResource.class,
+            "inetAddressIndex",
+            InetAddressIndexes.getLowerBound(cidrAddressBlock),
+            InetAddressIndexes.getUpperBound(cidrAddressBlock),
+            shouldIncludeDeleted(),
+            shouldIncludeDeleted()
+                ? (RESULT_SET_SIZE_SCALING_FACTOR * (rdapResultSetMaxSize + 1))
+                : (rdapResultSetMaxSize + 1));
+    return makeSearchResults(getMatchingResources(query, shouldIncludeDeleted(), now), now);
+  }
+
   /** Output JSON for a lists of hosts contained in an {@link RdapResultSet}. */
   private RdapSearchResults makeSearchResults(RdapResultSet<HostResource> resultSet, DateTime now) {
     return makeSearchResults(resultSet.resources(), resultSet.incompletenessWarningType(), now);
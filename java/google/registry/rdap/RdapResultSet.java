@@ -18,20 +18,26 @@ import com.google.auto.value.AutoValue;
 import google.registry.model.EppResource;
 import google.registry.rdap.RdapSearchResults.IncompletenessWarningType;
 import java.util.List;
+import javax.annotation.Nullable;
 
 @AutoValue
 abstract class RdapResultSet<T extends EppResource> {
 
   static <S extends EppResource> RdapResultSet<S> create(List<S> resources) {
-    return create(resources, IncompletenessWarningType.NONE, resources.size());
+    return create(
+        resources,
+        IncompletenessWarningType.NONE,
+        resources.size(),
+        resources.isEmpty() ? null : resources.get(resources.size() - 1));
   }
 
   static <S extends EppResource> RdapResultSet<S> create(
       List<S> resources,
       IncompletenessWarningType incompletenessWarningType,
-      int numResourcesRetrieved) {
+      int numResourcesRetrieved,
+      @Nullable S lastResourceRetrieved) {
     return new AutoValue_RdapResultSet<>(
-        resources, incompletenessWarningType, numResourcesRetrieved);
+        resources, incompletenessWarningType, numResourcesRetrieved, lastResourceRetrieved);
   }
 
   /** List of EPP resources. */
@@ -42,5 +48,12 @@ abstract class RdapResultSet<T extends EppResource> {
 
   /** Number of resources retrieved from the database in the process of assembling the data set. */
   abstract int numResourcesRetrieved();
+
+  /**
+   * The last resource retrieved from the database, whether or not it was visible, or null if none
+   * were retrieved.
+   */
+  @Nullable
+  abstract T lastResourceRetrieved();
 }
 
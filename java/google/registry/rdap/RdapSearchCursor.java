@@ -0,0 +1,76 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rdap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.auto.value.AutoValue;
+import java.util.Base64;
+
+/**
+ * The position in a search ordered by name after which the next page of results starts.
+ *
+ * <p>Several resources can have the same name, if all but one of them have been deleted, so a
+ * cursor holds the repo ID of the last resource on the page as well as its name. Datastore returns
+ * resources with the same name in key order, which for EPP resources is repo ID order, so the pair
+ * identifies a unique position in the results.
+ *
+ * <p>Cursors are opaque to clients; they are encoded as the base64url encoding of the name and the
+ * repo ID, separated by a slash, which can't appear in either.
+ */
+@AutoValue
+abstract class RdapSearchCursor {
+
+  private static final char SEPARATOR = '/';
+
+  static RdapSearchCursor create(String name, String repoId) {
+    return new AutoValue_RdapSearchCursor(name, repoId);
+  }
+
+  /**
+   * Decodes a cursor from the form used in URLs.
+   *
+   * @throws IllegalArgumentException if the string isn't a valid cursor
+   */
+  static RdapSearchCursor decode(String encodedCursor) {
+    String decoded = new String(Base64.getUrlDecoder().decode(encodedCursor), UTF_8);
+    int separatorIndex = decoded.lastIndexOf(SEPARATOR);
+    checkArgument(separatorIndex >= 0, "Cursor has no repo ID");
+    return create(decoded.substring(0, separatorIndex), decoded.substring(separatorIndex + 1));
+  }
+
+  /** The name of the last resource on the page. */
+  abstract String name();
+
+  /** The repo ID of the last resource on the page. */
+  abstract String repoId();
+
+  /** Encodes the cursor in a form that can be used in a URL. */
+  String encode() {
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString((name() + SEPARATOR + repoId()).getBytes(UTF_8));
+  }
+
+  /**
+   * Returns whether a resource with the given name and repo ID comes after the cursor, and so
+   * belongs on a later page.
+   */
+  boolean isBefore(String name, String repoId) {
+    int nameComparison = name.compareTo(name());
+    return (nameComparison > 0) || ((nameComparison == 0) && (repoId.compareTo(repoId()) > 0));
+  }
+}
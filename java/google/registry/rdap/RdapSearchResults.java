@@ -20,6 +20,7 @@ import static google.registry.rdap.RdapIcannStandardInformation.TRUNCATION_NOTIC
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import java.util.Optional;
 
 /**
  * Holds domain, nameserver and entity search results.
@@ -52,7 +53,14 @@ abstract class RdapSearchResults {
   static RdapSearchResults create(
       ImmutableList<ImmutableMap<String, Object>> jsonList,
       IncompletenessWarningType incompletenessWarningType) {
-    return new AutoValue_RdapSearchResults(jsonList, incompletenessWarningType);
+    return create(jsonList, incompletenessWarningType, Optional.empty());
+  }
+
+  static RdapSearchResults create(
+      ImmutableList<ImmutableMap<String, Object>> jsonList,
+      IncompletenessWarningType incompletenessWarningType,
+      Optional<RdapSearchCursor> nextPageCursor) {
+    return new AutoValue_RdapSearchResults(jsonList, incompletenessWarningType, nextPageCursor);
   }
 
   /** List of JSON result object representations. */
@@ -61,6 +69,15 @@ abstract class RdapSearchResults {
   /** Type of warning to display regarding possible incomplete data. */
   abstract IncompletenessWarningType incompletenessWarningType();
 
+  /**
+   * The position after which the next page of results starts, or empty if there are no more
+   * results.
+   *
+   * <p>This is only set by searches that are ordered by name, which can resume from a name with a
+   * single keyset query.
+   */
+  abstract Optional<RdapSearchCursor> nextPageCursor();
+
   /** Convenience method to get the appropriate warnings for the incompleteness warning type. */
   ImmutableList<ImmutableMap<String, Object>> getIncompletenessWarnings() {
     if (incompletenessWarningType() == IncompletenessWarningType.TRUNCATED) {
@@ -53,8 +53,23 @@ final class DomainResourceToXjcConverter {
     return new XjcRdeDomainElement(convertDomain(domain, mode));
   }
 
+  /**
+   * Converts {@link DomainResource} to {@link XjcRdeDomainElement}, using the given names of its
+   * nameservers rather than loading them.
+   */
+  static XjcRdeDomainElement convert(
+      DomainResource domain, ImmutableSet<String> nameserverHostNames, RdeMode mode) {
+    return new XjcRdeDomainElement(convertDomain(domain, nameserverHostNames, mode));
+  }
+
   /** Converts {@link DomainResource} to {@link XjcRdeDomain}. */
   static XjcRdeDomain convertDomain(DomainResource model, RdeMode mode) {
+    return convertDomain(model, model.loadNameserverFullyQualifiedHostNames(), mode);
+  }
+
+  /** Converts {@link DomainResource} with the given nameserver names to {@link XjcRdeDomain}. */
+  private static XjcRdeDomain convertDomain(
+      DomainResource model, ImmutableSet<String> linkedNameserverHostNames, RdeMode mode) {
     XjcRdeDomain bean = new XjcRdeDomain();
 
     // o  A <name> element that contains the fully qualified name of the
@@ -140,7 +155,6 @@ final class DomainResourceToXjcConverter {
     //    it is that with host attributes, you inline the nameserver data
     //    on each domain; with host objects, you normalize the nameserver
     //    data to a separate EPP object.
-    ImmutableSet<String> linkedNameserverHostNames = model.loadNameserverFullyQualifiedHostNames();
     if (!linkedNameserverHostNames.isEmpty()) {
       XjcDomainNsType nameservers = new XjcDomainNsType();
       for (String hostName : linkedNameserverHostNames) {
@@ -0,0 +1,114 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.Ordering;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import google.registry.model.EppResource;
+import google.registry.model.rde.RdeFragmentCacheEntry;
+import google.registry.model.rde.RdeMode;
+import google.registry.xml.ValidationMode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Fingerprints of the inputs that the XML of an {@link RdeFragmentCacheEntry} is marshalled from.
+ *
+ * <p>A resource is fingerprinted from its {@link EppResource#toDiffableFieldMap}, encoded so that
+ * the result doesn't depend on the order of its fields, of the entries of its maps, or of the
+ * elements of its sets, none of which are guaranteed to be stable from one run to the next. Every
+ * value is tagged with its kind and strings are length-prefixed, so that different structures
+ * can't encode to the same bytes.
+ */
+final class RdeFragmentFingerprints {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+  /** Returns the fingerprint of the given resource, as marshalled with the given other inputs. */
+  static String fingerprint(
+      String appVersion,
+      ValidationMode validationMode,
+      RdeMode mode,
+      EppResource resource,
+      Collection<String> otherInputs) {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    putValue(hasher, appVersion);
+    putValue(hasher, validationMode.name());
+    putValue(hasher, mode.name());
+    putValue(hasher, resource.getClass().getName());
+    putValue(hasher, resource.toDiffableFieldMap());
+    putValue(hasher, otherInputs);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Adds a value from a diffable field map to the hasher.
+   *
+   * <p>The values of such maps are all nulls, strings, numbers, booleans, or maps and collections
+   * of these.
+   */
+  private static void putValue(Hasher hasher, @Nullable Object value) {
+    if (value == null) {
+      hasher.putChar('n');
+    } else if (value instanceof Map) {
+      Map<?, ?> map = (Map<?, ?>) value;
+      hasher.putChar('m').putInt(map.size());
+      List<Map.Entry<?, ?>> entries = new ArrayList<>(map.entrySet());
+      entries.sort(Ordering.natural().onResultOf(entry -> String.valueOf(entry.getKey())));
+      for (Map.Entry<?, ?> entry : entries) {
+        putValue(hasher, String.valueOf(entry.getKey()));
+        putValue(hasher, entry.getValue());
+      }
+    } else if (value instanceof Set) {
+      Set<?> set = (Set<?>) value;
+      hasher.putChar('s').putInt(set.size());
+      // Hash each element separately and add the hashes in sorted order, so that the order that
+      // the set iterates in doesn't matter.
+      List<HashCode> elementHashes = new ArrayList<>();
+      for (Object element : set) {
+        Hasher elementHasher = HASH_FUNCTION.newHasher();
+        putValue(elementHasher, element);
+        elementHashes.add(elementHasher.hash());
+      }
+      elementHashes.sort(Ordering.natural().onResultOf(HashCode::toString));
+      elementHashes.forEach(elementHash -> hasher.putBytes(elementHash.asBytes()));
+    } else if (value instanceof Collection) {
+      Collection<?> list = (Collection<?>) value;
+      hasher.putChar('l').putInt(list.size());
+      list.forEach(element -> putValue(hasher, element));
+    } else {
+      // Leaf values are strings, or numbers and booleans, which are kept apart from the strings
+      // that look like them by their class name.
+      String string = value.toString();
+      hasher
+          .putChar('v')
+          .putString(value instanceof String ? "" : value.getClass().getName(), UTF_8)
+          .putChar(':')
+          .putInt(string.length())
+          .putString(string, UTF_8);
+    }
+  }
+
+  private RdeFragmentFingerprints() {}
+}
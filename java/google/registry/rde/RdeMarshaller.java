@@ -17,6 +17,7 @@ package google.registry.rde;
 import static com.google.common.base.Verify.verify;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
 import google.registry.model.ImmutableObject;
 import google.registry.model.contact.ContactResource;
@@ -129,6 +130,16 @@ public final class RdeMarshaller implements Serializable {
         DomainResourceToXjcConverter.convert(domain, mode));
   }
 
+  /**
+   * Turns {@link DomainResource} object into an XML fragment, using the given names of its
+   * nameservers rather than loading them.
+   */
+  public DepositFragment marshalDomain(
+      DomainResource domain, ImmutableSet<String> nameserverHostNames, RdeMode mode) {
+    return marshalResource(RdeResourceType.DOMAIN, domain,
+        DomainResourceToXjcConverter.convert(domain, nameserverHostNames, mode));
+  }
+
   /** Turns {@link HostResource} object into an XML fragment. */
   public DepositFragment marshalSubordinateHost(
       HostResource host, DomainResource superordinateDomain) {
@@ -14,6 +14,7 @@
 
 package google.registry.rde;
 
+import static com.google.appengine.api.ThreadManager.currentRequestThreadFactory;
 import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
 import static google.registry.request.RequestParameters.extractBooleanParameter;
 import static google.registry.request.RequestParameters.extractOptionalIntParameter;
@@ -28,6 +29,7 @@ import dagger.Module;
 import dagger.Provides;
 import google.registry.request.Parameter;
 import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
 import javax.inject.Named;
 import javax.servlet.http.HttpServletRequest;
 import org.joda.time.DateTime;
@@ -100,4 +102,10 @@ public final class RdeModule {
   static Queue provideQueueRdeReport() {
     return getQueue("rde-report");
   }
+
+  @Provides
+  @Named("requestThreadFactory")
+  static ThreadFactory provideRequestThreadFactory() {
+    return currentRequestThreadFactory();
+  }
 }
@@ -66,6 +66,11 @@ import org.joda.time.Duration;
  * <p>There is one map worker for each {@code EppResourceIndexBucket} entity group shard. There is
  * one reduce worker for each deposit being generated.
  *
+ * <p>Marshalling and validating the XML of every resource is most of the work, but most resources
+ * are unchanged from one deposit to the next. So the XML of each resource is cached in an {@link
+ * google.registry.model.rde.RdeFragmentCacheEntry}, and a resource is only marshalled again when
+ * the point-in-time resource, or anything else its XML is made from, has changed.
+ *
  * <p>{@link ContactResource} and {@link HostResource} are emitted on all TLDs, even when the
  * domains on a TLD don't reference them. BRDA {@link RdeMode#THIN thin} deposits exclude contacts
  * and hosts entirely.
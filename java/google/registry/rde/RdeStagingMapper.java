@@ -19,6 +19,7 @@ import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 
+import com.google.appengine.api.utils.SystemProperty;
 import com.google.appengine.tools.mapreduce.Mapper;
 import com.google.auto.value.AutoValue;
 import com.google.common.collect.ImmutableMap;
@@ -26,17 +27,22 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Streams;
+import com.googlecode.objectify.Key;
 import com.googlecode.objectify.Result;
 import google.registry.model.EppResource;
 import google.registry.model.contact.ContactResource;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.host.HostResource;
+import google.registry.model.rde.RdeFragmentCacheEntry;
 import google.registry.model.rde.RdeMode;
 import google.registry.model.registrar.Registrar;
 import google.registry.xml.ValidationMode;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 import org.joda.time.DateTime;
 
 /** Mapper for {@link RdeStagingAction}. */
@@ -44,15 +50,37 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
 
   private static final long serialVersionUID = -1518185703789372524L;
 
+  /** The number of fragment cache entries that are saved or deleted at a time. */
+  private static final int CACHE_WRITE_BATCH_SIZE = 100;
+
   private final RdeMarshaller marshaller;
+  private final ValidationMode validationMode;
   private final ImmutableSetMultimap<String, PendingDeposit> pendings;
 
+  /** Fragment cache entries waiting to be saved, which is done in batches. */
+  private transient List<RdeFragmentCacheEntry> cacheEntriesToSave;
+
+  /** Keys of fragment cache entries waiting to be deleted, which is done in batches. */
+  private transient List<Key<RdeFragmentCacheEntry>> cacheKeysToDelete;
+
   RdeStagingMapper(
       ValidationMode validationMode, ImmutableSetMultimap<String, PendingDeposit> pendings) {
     this.marshaller = new RdeMarshaller(validationMode);
+    this.validationMode = validationMode;
     this.pendings = pendings;
   }
 
+  @Override
+  public void beginSlice() {
+    cacheEntriesToSave = new ArrayList<>();
+    cacheKeysToDelete = new ArrayList<>();
+  }
+
+  @Override
+  public void endSlice() {
+    flushCacheWrites();
+  }
+
   @Override
   public final void map(final EppResource resource) {
     // The mapreduce has one special input that provides a null resource. This is used as a sentinel
@@ -107,8 +135,20 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
     ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes =
         ImmutableMap.copyOf(Maps.asMap(dates, input -> loadAtPointInTime(resource, input)));
 
+    // Launch a single asynchronous fetch of the cached fragments of the resource in each mode that
+    // it's marshalled in. Contacts and hosts are only marshalled in FULL mode.
+    ImmutableSet<Key<RdeFragmentCacheEntry>> cacheKeys =
+        tlds.stream()
+            .flatMap(tld -> pendings.get(tld).stream())
+            .map(PendingDeposit::mode)
+            .filter(mode -> resource instanceof DomainResource || mode == RdeMode.FULL)
+            .map(mode -> RdeFragmentCacheEntry.createKey(Key.create(resource), mode))
+            .collect(toImmutableSet());
+    Map<Key<RdeFragmentCacheEntry>, RdeFragmentCacheEntry> cacheEntries =
+        ofy().load().keys(cacheKeys);
+
     // Convert resource to an XML fragment for each watermark/mode pair lazily and cache the result.
-    Fragmenter fragmenter = new Fragmenter(resourceAtTimes);
+    Fragmenter fragmenter = new Fragmenter(resourceAtTimes, cacheEntries);
 
     // Emit resource as an XML fragment for all TLDs and modes pending deposit.
     for (String tld : tlds) {
@@ -125,17 +165,47 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
       }
     }
 
+    // A resource that used none of its cached fragments no longer has any to cache, because it
+    // has been deleted or has become a subordinate host, so its entries are deleted.
+    if (!fragmenter.usedCache) {
+      cacheKeys.stream().filter(cacheEntries::containsKey).forEach(cacheKeysToDelete::add);
+    }
+    if (cacheEntriesToSave.size() + cacheKeysToDelete.size() >= CACHE_WRITE_BATCH_SIZE) {
+      flushCacheWrites();
+    }
+
     // Avoid running out of memory.
     ofy().clearSessionCache();
   }
 
+  /** Saves and deletes the fragment cache entries waiting to be written. */
+  private void flushCacheWrites() {
+    if (!cacheEntriesToSave.isEmpty()) {
+      ofy().saveWithoutBackup().entities(cacheEntriesToSave).now();
+      cacheEntriesToSave.clear();
+    }
+    if (!cacheKeysToDelete.isEmpty()) {
+      ofy().deleteWithoutBackup().keys(cacheKeysToDelete).now();
+      cacheKeysToDelete.clear();
+    }
+  }
+
   /** Loading cache that turns a resource into XML for the various points in time and modes. */
   private class Fragmenter {
     private final Map<WatermarkModePair, Optional<DepositFragment>> cache = new HashMap<>();
     private final ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes;
 
-    Fragmenter(ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes) {
+    /** The resource's entries in the fragment cache, which are replaced when they're stale. */
+    private final Map<Key<RdeFragmentCacheEntry>, RdeFragmentCacheEntry> cacheEntries;
+
+    /** Whether any fragment was read from or written to the fragment cache. */
+    boolean usedCache = false;
+
+    Fragmenter(
+        ImmutableMap<DateTime, Result<EppResource>> resourceAtTimes,
+        Map<Key<RdeFragmentCacheEntry>, RdeFragmentCacheEntry> cacheEntries) {
       this.resourceAtTimes = resourceAtTimes;
+      this.cacheEntries = new HashMap<>(cacheEntries);
     }
 
     Optional<DepositFragment> marshal(DateTime watermark, RdeMode mode) {
@@ -151,23 +221,49 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
         return result;
       }
       if (resource instanceof DomainResource) {
-        result = Optional.of(marshaller.marshalDomain((DomainResource) resource, mode));
+        DomainResource domain = (DomainResource) resource;
+        // Domains are marshalled with the current names of their nameservers, which can change
+        // without the domain changing, so they are part of the fingerprint too.
+        ImmutableSet<String> nameserverHostNames = domain.loadNameserverFullyQualifiedHostNames();
+        result =
+            Optional.of(
+                marshalWithCache(
+                    RdeResourceType.DOMAIN,
+                    domain,
+                    mode,
+                    nameserverHostNames,
+                    () -> marshaller.marshalDomain(domain, nameserverHostNames, mode)));
         cache.put(WatermarkModePair.create(watermark, mode), result);
         return result;
       } else if (resource instanceof ContactResource) {
-        result = Optional.of(marshaller.marshalContact((ContactResource) resource));
+        ContactResource contact = (ContactResource) resource;
+        result =
+            Optional.of(
+                marshalWithCache(
+                    RdeResourceType.CONTACT,
+                    contact,
+                    RdeMode.FULL,
+                    ImmutableSet.of(),
+                    () -> marshaller.marshalContact(contact)));
         cache.put(WatermarkModePair.create(watermark, RdeMode.FULL), result);
         cache.put(WatermarkModePair.create(watermark, RdeMode.THIN), result);
         return result;
       } else if (resource instanceof HostResource) {
         HostResource host = (HostResource) resource;
+        // Subordinate hosts aren't cached, since they're marshalled with their superordinate
+        // domain.
         result = Optional.of(host.isSubordinate()
             ? marshaller.marshalSubordinateHost(
                 host,
                 // Note that loadAtPointInTime() does cloneProjectedAtTime(watermark) for us.
                 loadAtPointInTime(
                     ofy().load().key(host.getSuperordinateDomain()).now(), watermark).now())
-            : marshaller.marshalExternalHost(host));
+            : marshalWithCache(
+                RdeResourceType.HOST,
+                host,
+                RdeMode.FULL,
+                ImmutableSet.of(),
+                () -> marshaller.marshalExternalHost(host)));
         cache.put(WatermarkModePair.create(watermark, RdeMode.FULL), result);
         cache.put(WatermarkModePair.create(watermark, RdeMode.THIN), result);
         return result;
@@ -175,6 +271,43 @@ public final class RdeStagingMapper extends Mapper<EppResource, PendingDeposit,
         throw new AssertionError(resource.toString());
       }
     }
+
+    /**
+     * Returns the fragment for a point-in-time resource, marshalling it only if it has changed
+     * since the fragment in its {@link RdeFragmentCacheEntry} was marshalled.
+     *
+     * <p>The fingerprint covers the resource's fields, any other data that the resource's XML is
+     * marshalled from, the mode and validation mode, and the app version, since a new version
+     * might marshal resources differently. New entries are saved in batches by the mapper.
+     */
+    private DepositFragment marshalWithCache(
+        RdeResourceType type,
+        EppResource resource,
+        RdeMode mode,
+        ImmutableSet<String> otherInputs,
+        Supplier<DepositFragment> marshalFunction) {
+      usedCache = true;
+      String fingerprint =
+          RdeFragmentFingerprints.fingerprint(
+              nullToEmpty(SystemProperty.applicationVersion.get()),
+              validationMode,
+              mode,
+              resource,
+              otherInputs);
+      Key<RdeFragmentCacheEntry> cacheKey =
+          RdeFragmentCacheEntry.createKey(Key.create(resource), mode);
+      RdeFragmentCacheEntry entry = cacheEntries.get(cacheKey);
+      if (entry != null && entry.getFingerprint().equals(fingerprint)) {
+        return DepositFragment.create(type, entry.getXml(), entry.getError());
+      }
+      DepositFragment fragment = marshalFunction.get();
+      entry =
+          RdeFragmentCacheEntry.create(
+              Key.create(resource), mode, fingerprint, fragment.xml(), fragment.error());
+      cacheEntries.put(cacheKey, entry);
+      cacheEntriesToSave.add(entry);
+      return fragment;
+    }
   }
 
   /** Map key for {@link Fragmenter} cache. */
@@ -52,6 +52,7 @@ import google.registry.request.auth.Auth;
 import google.registry.util.Clock;
 import google.registry.util.FormattingLogger;
 import google.registry.util.Retrier;
+import google.registry.util.StreamPipeline;
 import google.registry.util.TaskEnqueuer;
 import google.registry.util.TeeOutputStream;
 import java.io.ByteArrayInputStream;
@@ -59,6 +60,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.concurrent.ThreadFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 import org.bouncycastle.openpgp.PGPKeyPair;
@@ -86,6 +88,9 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
 
   static final String PATH = "/_dr/task/rdeUpload";
 
+  /** The number of buffers each upload stage may fill before waiting for the next stage. */
+  private static final int PIPELINE_BUFFER_COUNT = 4;
+
   private static final FormattingLogger logger = FormattingLogger.getLoggerForCallerClass();
 
   @Inject Clock clock;
@@ -116,10 +121,12 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
   @Inject @Config("rdeUploadLockTimeout") Duration timeout;
   @Inject @Config("rdeUploadSftpCooldown") Duration sftpCooldown;
   @Inject @Config("rdeUploadUrl") URI uploadUrl;
+  @Inject @Config("rdeUploadPipelineBufferSize") int pipelineBufferSize;
   @Inject @Key("rdeReceiverKey") PGPPublicKey receiverKey;
   @Inject @Key("rdeSigningKey") PGPKeyPair signingKey;
   @Inject @Key("rdeStagingDecryptionKey") PGPPrivateKey stagingDecryptionKey;
   @Inject @Named("rde-report") Queue reportQueue;
+  @Inject @Named("requestThreadFactory") ThreadFactory threadFactory;
   @Inject RdeUploadAction() {}
 
   @Override
@@ -184,6 +191,12 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
    * simultaneously uploading it to the SFTP endpoint, and then using {@link ByteStreams#copy} to
    * blocking-copy bytes from the cloud storage {@code InputStream} to the RyDE/SFTP pipeline.
    *
+   * <p>The conversion is CPU-bound, so it's split into three stages that run on separate threads
+   * in a {@link StreamPipeline}: decrypting and decompressing the staged file; tarring and
+   * compressing the XML; and encrypting, signing and uploading the RyDE file. Compression is
+   * done by the middle stage and the encryption layer reads its output from the pipeline, which
+   * writes the same bytes as layering the streams directly.
+   *
    * <p>In psuedoshell, the whole process looks like the following:
    *
    * <pre>   {@code
@@ -200,10 +213,33 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
   protected void upload(
       GcsFilename xmlFile, long xmlLength, DateTime watermark, String name) throws Exception {
     logger.infofmt("Uploading %s to %s", xmlFile, uploadUrl);
-    try (InputStream gcsInput = gcsUtils.openInputStream(xmlFile);
-        Ghostryde.Decryptor decryptor = ghostryde.openDecryptor(gcsInput, stagingDecryptionKey);
-        Ghostryde.Decompressor decompressor = ghostryde.openDecompressor(decryptor);
-        Ghostryde.Input xmlInput = ghostryde.openInput(decompressor)) {
+    try (StreamPipeline pipeline =
+        new StreamPipeline(threadFactory, pipelineBufferSize, PIPELINE_BUFFER_COUNT)) {
+      // Decrypt and decompress the staged XML file on one thread...
+      InputStream xmlInput =
+          pipeline.fork(
+              output -> {
+                try (InputStream gcsInput = gcsUtils.openInputStream(xmlFile);
+                    Ghostryde.Decryptor decryptor =
+                        ghostryde.openDecryptor(gcsInput, stagingDecryptionKey);
+                    Ghostryde.Decompressor decompressor = ghostryde.openDecompressor(decryptor);
+                    Ghostryde.Input ghostrydeInput = ghostryde.openInput(decompressor)) {
+                  ByteStreams.copy(ghostrydeInput, output);
+                }
+              });
+      // ...tar and compress it on another...
+      InputStream compressedInput =
+          pipeline.fork(
+              output -> {
+                try (OutputStream kompressor = pgpCompressionFactory.create(output);
+                    OutputStream fileLayer =
+                        pgpFileFactory.create(kompressor, watermark, name + ".tar");
+                    OutputStream tarLayer =
+                        tarFactory.create(fileLayer, xmlLength, watermark, name + ".xml")) {
+                  ByteStreams.copy(xmlInput, tarLayer);
+                }
+              });
+      // ...and encrypt, sign and upload it on this one.
       try (JSchSshSession session = jschSshSessionFactory.create(lazyJsch.get(), uploadUrl);
           JSchSftpChannel ftpChan = session.openSftpChannel()) {
         byte[] signature;
@@ -213,12 +249,8 @@ public final class RdeUploadAction implements Runnable, EscrowTask {
             OutputStream gcsOutput = gcsUtils.openOutputStream(rydeGcsFilename);
             TeeOutputStream teeOutput = new TeeOutputStream(asList(ftpOutput, gcsOutput));
             RydePgpSigningOutputStream signer = pgpSigningFactory.create(teeOutput, signingKey)) {
-          try (OutputStream encryptLayer = pgpEncryptionFactory.create(signer, receiverKey);
-              OutputStream kompressor = pgpCompressionFactory.create(encryptLayer);
-              OutputStream fileLayer = pgpFileFactory.create(kompressor, watermark, name + ".tar");
-              OutputStream tarLayer =
-                  tarFactory.create(fileLayer, xmlLength, watermark, name + ".xml")) {
-            ByteStreams.copy(xmlInput, tarLayer);
+          try (OutputStream encryptLayer = pgpEncryptionFactory.create(signer, receiverKey)) {
+            ByteStreams.copy(compressedInput, encryptLayer);
           }
           signature = signer.getSignature();
           logger.infofmt("uploaded %,d bytes: %s.ryde", signer.getBytesWritten(), name);
@@ -87,16 +87,30 @@ public class RdeContactInput extends Input<JaxbFragment<XjcRdeContactElement>> {
     ImmutableList.Builder<RdeContactReader> builder = new ImmutableList.Builder<>();
     int contactsPerReader =
         Math.max(MINIMUM_RECORDS_PER_READER, divide(numberOfContacts, numReaders, CEILING));
+    RdeDepositIndex index = newIndex(contactsPerReader).orElse(null);
     int offset = 0;
     for (int i = 0; i < numReaders; i++) {
-      builder = builder.add(newReader(offset, contactsPerReader));
+      builder = builder.add(newReader(offset, contactsPerReader, index));
       offset += contactsPerReader;
     }
     return builder.build();
   }
 
-  private RdeContactReader newReader(int offset, int maxResults) {
-    return new RdeContactReader(importBucketName, importFileName, offset, maxResults);
+  private RdeContactReader newReader(int offset, int maxResults, RdeDepositIndex index) {
+    return new RdeContactReader(importBucketName, importFileName, offset, maxResults, index);
+  }
+
+  /** Indexes the first contact of each reader, so that readers don't have to parse up to it. */
+  private Optional<RdeDepositIndex> newIndex(int contactsPerReader) {
+    GcsUtils utils = new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize());
+    GcsFilename filename = new GcsFilename(importBucketName, importFileName);
+    try (InputStream xmlInput = utils.openInputStream(filename)) {
+      return RdeDepositIndex.create(
+          xmlInput, RdeParser.RDE_CONTACT_URI, "contact", contactsPerReader);
+    } catch (Exception e) {
+      throw new InitializationException(
+          String.format("Error indexing rde file %s/%s", importBucketName, importFileName), e);
+    }
   }
 
   private RdeParser newParser() {
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 
 /** Mapreduce {@link InputReader} for reading contacts from escrow files */
@@ -46,6 +47,9 @@ public class RdeContactReader extends InputReader<JaxbFragment<XjcRdeContactElem
   final int offset;
   final int maxResults;
 
+  /** Index of the offsets of the contacts in the file, or null to skip from the start. */
+  @Nullable final RdeDepositIndex index;
+
   private int count = 0;
 
   transient RdeParser parser;
@@ -54,10 +58,18 @@ public class RdeContactReader extends InputReader<JaxbFragment<XjcRdeContactElem
    * Creates a new instance of {@link RdeParser}
    */
   private RdeParser newParser() {
-    GcsUtils utils = new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize());
+    int bufferSize = ConfigModule.provideGcsBufferSize();
     GcsFilename filename = new GcsFilename(importBucketName, importFileName);
-    InputStream xmlInput = utils.openInputStream(filename);
     try {
+      if (index != null && index.containsElement(offset)) {
+        // Start parsing at the first contact of this reader, and skip any records that were already
+        // processed if the reader has been rehydrated after doing some work.
+        RdeParser parser = new RdeParser(
+            index.openStreamAtElement(GCS_SERVICE, filename, offset, bufferSize));
+        parser.skipContacts(count);
+        return parser;
+      }
+      InputStream xmlInput = new GcsUtils(GCS_SERVICE, bufferSize).openInputStream(filename);
       RdeParser parser = new RdeParser(xmlInput);
       // skip the file offset and count
       // if count is greater than 0, the reader has been rehydrated after doing some work.
@@ -75,10 +87,20 @@ public class RdeContactReader extends InputReader<JaxbFragment<XjcRdeContactElem
       String importFileName,
       int offset,
       int maxResults) {
+    this(importBucketName, importFileName, offset, maxResults, null);
+  }
+
+  RdeContactReader(
+      String importBucketName,
+      String importFileName,
+      int offset,
+      int maxResults,
+      @Nullable RdeDepositIndex index) {
     this.importBucketName = importBucketName;
     this.importFileName = importFileName;
     this.offset = offset;
     this.maxResults = maxResults;
+    this.index = index;
   }
 
   @Override
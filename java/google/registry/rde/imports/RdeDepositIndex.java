@@ -0,0 +1,220 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde.imports;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.nio.channels.Channels;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Byte offsets of every Nth element of one type (such as domains) in an escrow deposit file.
+ *
+ * <p>The index is built with a single pass over the raw bytes of the file, which is much cheaper
+ * than parsing it. With it, a reader can start parsing at the first element of its shard, instead
+ * of parsing and discarding every element before it, which makes the total work of all readers
+ * linear in the size of the file rather than quadratic.
+ *
+ * <p>Parsing from the middle of a file only works with the namespace declarations and the header
+ * in front, so {@link #openStreamAtElement} prepends everything up to the end of the header. This
+ * is well-formed as long as the indexed elements are siblings that follow the header, which they
+ * are in any deposit, where both are children of {@code <rde:contents>}. The scan relies on the
+ * namespaces being declared on the root element, as they are by every escrow agent we know of; if
+ * they aren't, no index is created and readers fall back to skipping from the start of the file.
+ */
+final class RdeDepositIndex implements Serializable {
+
+  private static final long serialVersionUID = -4417409287561346024L;
+
+  private static final String RDE_HEADER_NAME = "header";
+
+  /** Matches a namespace declaration within the start tag of the root element. */
+  private static final Pattern NAMESPACE_DECLARATION =
+      Pattern.compile("xmlns(?::([^\\s=]+))?\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+
+  private final int interval;
+  private final long headerEndOffset;
+  private final ImmutableList<Long> elementOffsets;
+
+  private RdeDepositIndex(int interval, long headerEndOffset, ImmutableList<Long> elementOffsets) {
+    this.interval = interval;
+    this.headerEndOffset = headerEndOffset;
+    this.elementOffsets = elementOffsets;
+  }
+
+  /**
+   * Scans an escrow deposit file for the elements with the given namespace URI and name, recording
+   * the offset of every {@code interval}th one, starting with the first.
+   *
+   * @return the index, or empty if the file has none of the elements, or if their namespace or the
+   *     header's isn't declared on the root element, or if the header doesn't come first
+   */
+  static Optional<RdeDepositIndex> create(
+      InputStream xmlInput, String uri, String name, int interval) throws IOException {
+    checkArgument(interval > 0, "interval must be greater than zero");
+    CountingInputStream input = new CountingInputStream(new BufferedInputStream(xmlInput));
+    String elementName = null;
+    String headerName = null;
+    long headerEndOffset = -1;
+    int elementCount = 0;
+    ImmutableList.Builder<Long> elementOffsets = new ImmutableList.Builder<>();
+    int b;
+    while ((b = input.read()) != -1) {
+      if (b != '<') {
+        continue;
+      }
+      long tagOffset = input.getCount() - 1;
+      b = input.read();
+      if (b == '?') {
+        skipPast(input, "?>");
+      } else if (b == '!') {
+        // A comment, a CDATA section or a document type declaration, none of which can be nested.
+        b = input.read();
+        skipPast(input, b == '-' ? "-->" : (b == '[' ? "]]>" : ">"));
+      } else if (b == '/') {
+        StringBuilder tagName = new StringBuilder();
+        b = readName(input, -1, tagName);
+        if (headerEndOffset == -1 && tagName.toString().equals(headerName)) {
+          if (b != '>') {
+            skipPast(input, ">");
+          }
+          headerEndOffset = input.getCount();
+        }
+      } else if (elementName == null) {
+        // This is the root element, which declares the namespaces.
+        Map<String, String> prefixes = readNamespacePrefixes(input, b);
+        if (!prefixes.containsKey(uri) || !prefixes.containsKey(RdeParser.RDE_HEADER_URI)) {
+          return Optional.empty();
+        }
+        elementName = qualify(prefixes.get(uri), name);
+        headerName = qualify(prefixes.get(RdeParser.RDE_HEADER_URI), RDE_HEADER_NAME);
+      } else {
+        StringBuilder tagName = new StringBuilder();
+        readName(input, b, tagName);
+        if (tagName.toString().equals(elementName)) {
+          if (headerEndOffset == -1) {
+            return Optional.empty();
+          }
+          if (elementCount % interval == 0) {
+            elementOffsets.add(tagOffset);
+          }
+          elementCount++;
+        }
+      }
+    }
+    return elementCount == 0
+        ? Optional.empty()
+        : Optional.of(new RdeDepositIndex(interval, headerEndOffset, elementOffsets.build()));
+  }
+
+  /** Returns whether a reader can seek straight to the element with the given index. */
+  boolean containsElement(int elementIndex) {
+    return elementIndex % interval == 0 && elementIndex / interval < elementOffsets.size();
+  }
+
+  /**
+   * Opens the file for parsing from the element with the given index.
+   *
+   * <p>The stream holds the start of the file, up to the end of the header, followed by the rest
+   * of the file from the element on, so an {@link RdeParser} reads the header and then finds the
+   * element as the first one of its type.
+   */
+  InputStream openStreamAtElement(
+      GcsService gcsService, GcsFilename filename, int elementIndex, int bufferSize) {
+    checkArgument(containsElement(elementIndex), "Element %s is not indexed", elementIndex);
+    InputStream header =
+        ByteStreams.limit(
+            Channels.newInputStream(gcsService.openPrefetchingReadChannel(filename, 0, bufferSize)),
+            headerEndOffset);
+    InputStream elements =
+        Channels.newInputStream(
+            gcsService.openPrefetchingReadChannel(
+                filename, elementOffsets.get(elementIndex / interval), bufferSize));
+    return new SequenceInputStream(header, elements);
+  }
+
+  private static String qualify(String prefix, String name) {
+    return prefix.isEmpty() ? name : prefix + ":" + name;
+  }
+
+  /**
+   * Reads an XML name into the builder, starting with the given byte if it isn't -1.
+   *
+   * @return the byte that ended the name, or -1 at the end of the input
+   */
+  private static int readName(InputStream input, int b, StringBuilder name) throws IOException {
+    if (b == -1) {
+      b = input.read();
+    }
+    while (b != -1 && b != '>' && b != '/' && !Character.isWhitespace(b)) {
+      name.append((char) b);
+      b = input.read();
+    }
+    return b;
+  }
+
+  /** Reads the rest of the root element's start tag, returning its namespace prefixes by URI. */
+  private static Map<String, String> readNamespacePrefixes(InputStream input, int b)
+      throws IOException {
+    ByteArrayOutputStream tag = new ByteArrayOutputStream();
+    int quote = -1;
+    while (b != -1 && (b != '>' || quote != -1)) {
+      tag.write(b);
+      if (b == '"' || b == '\'') {
+        quote = (quote == -1) ? b : (quote == b ? -1 : quote);
+      }
+      b = input.read();
+    }
+    Map<String, String> prefixes = new HashMap<>();
+    Matcher matcher = NAMESPACE_DECLARATION.matcher(new String(tag.toByteArray(), UTF_8));
+    while (matcher.find()) {
+      String prefix = (matcher.group(1) == null) ? "" : matcher.group(1);
+      String uri = (matcher.group(2) != null) ? matcher.group(2) : matcher.group(3);
+      prefixes.putIfAbsent(uri, prefix);
+    }
+    return prefixes;
+  }
+
+  /** Skips past the next occurrence of the given ASCII delimiter. */
+  private static void skipPast(InputStream input, String delimiter) throws IOException {
+    StringBuilder lastBytes = new StringBuilder();
+    int b;
+    while ((b = input.read()) != -1) {
+      lastBytes.append((char) b);
+      if (lastBytes.length() > delimiter.length()) {
+        lastBytes.deleteCharAt(0);
+      }
+      if (lastBytes.toString().equals(delimiter)) {
+        return;
+      }
+    }
+  }
+}
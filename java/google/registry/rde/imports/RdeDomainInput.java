@@ -87,16 +87,30 @@ public class RdeDomainInput extends Input<JaxbFragment<XjcRdeDomainElement>> {
     ImmutableList.Builder<RdeDomainReader> builder = new ImmutableList.Builder<>();
     int domainsPerReader =
         Math.max(MINIMUM_RECORDS_PER_READER, divide(numberOfDomains, numReaders, CEILING));
+    RdeDepositIndex index = newIndex(domainsPerReader).orElse(null);
     int offset = 0;
     for (int i = 0; i < numReaders; i++) {
-      builder = builder.add(newReader(offset, domainsPerReader));
+      builder = builder.add(newReader(offset, domainsPerReader, index));
       offset += domainsPerReader;
     }
     return builder.build();
   }
 
-  private RdeDomainReader newReader(int offset, int maxResults) {
-    return new RdeDomainReader(importBucketName, importFileName, offset, maxResults);
+  private RdeDomainReader newReader(int offset, int maxResults, RdeDepositIndex index) {
+    return new RdeDomainReader(importBucketName, importFileName, offset, maxResults, index);
+  }
+
+  /** Indexes the first domain of each reader, so that readers don't have to parse up to it. */
+  private Optional<RdeDepositIndex> newIndex(int domainsPerReader) {
+    GcsUtils utils = new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize());
+    GcsFilename filename = new GcsFilename(importBucketName, importFileName);
+    try (InputStream xmlInput = utils.openInputStream(filename)) {
+      return RdeDepositIndex.create(
+          xmlInput, RdeParser.RDE_DOMAIN_URI, "domain", domainsPerReader);
+    } catch (Exception e) {
+      throw new InitializationException(
+          String.format("Error indexing rde file %s/%s", importBucketName, importFileName), e);
+    }
   }
 
   private RdeParser newParser() {
@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.NoSuchElementException;
+import javax.annotation.Nullable;
 
 /** Mapreduce {@link InputReader} for reading domains from escrow files */
 public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElement>>
@@ -43,6 +44,9 @@ public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElemen
   final int offset;
   final int maxResults;
 
+  /** Index of the offsets of the domains in the file, or null to skip from the start. */
+  @Nullable final RdeDepositIndex index;
+
   private int count = 0;
 
   transient RdeParser parser;
@@ -51,10 +55,18 @@ public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElemen
    * Creates a new instance of {@link RdeParser}
    */
   private RdeParser newParser() {
-    GcsUtils utils = new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize());
+    int bufferSize = ConfigModule.provideGcsBufferSize();
     GcsFilename filename = new GcsFilename(importBucketName, importFileName);
-    InputStream xmlInput = utils.openInputStream(filename);
     try {
+      if (index != null && index.containsElement(offset)) {
+        // Start parsing at the first domain of this reader, and skip any records that were already
+        // processed if the reader has been rehydrated after doing some work.
+        RdeParser parser = new RdeParser(
+            index.openStreamAtElement(GCS_SERVICE, filename, offset, bufferSize));
+        parser.skipDomains(count);
+        return parser;
+      }
+      InputStream xmlInput = new GcsUtils(GCS_SERVICE, bufferSize).openInputStream(filename);
       RdeParser parser = new RdeParser(xmlInput);
       // skip the file offset and count
       // if count is greater than 0, the reader has been rehydrated after doing some work.
@@ -72,10 +84,20 @@ public class RdeDomainReader extends InputReader<JaxbFragment<XjcRdeDomainElemen
       String importFileName,
       int offset,
       int maxResults) {
+    this(importBucketName, importFileName, offset, maxResults, null);
+  }
+
+  RdeDomainReader(
+      String importBucketName,
+      String importFileName,
+      int offset,
+      int maxResults,
+      @Nullable RdeDepositIndex index) {
     this.importBucketName = importBucketName;
     this.importFileName = importFileName;
     this.offset = offset;
     this.maxResults = maxResults;
+    this.index = index;
   }
 
   @Override
@@ -87,16 +87,30 @@ public class RdeHostInput extends Input<JaxbFragment<XjcRdeHostElement>> {
     ImmutableList.Builder<RdeHostReader> builder = new ImmutableList.Builder<>();
     int hostsPerReader =
         Math.max(MINIMUM_RECORDS_PER_READER, (int) Math.ceil((double) numberOfHosts / numReaders));
+    RdeDepositIndex index = createIndex(hostsPerReader).orElse(null);
     int offset = 0;
     for (int i = 0; i < numReaders; i++) {
-      builder = builder.add(createReader(offset, hostsPerReader));
+      builder = builder.add(createReader(offset, hostsPerReader, index));
       offset += hostsPerReader;
     }
     return builder.build();
   }
 
-  private RdeHostReader createReader(int offset, int maxResults) {
-    return new RdeHostReader(importBucketName, importFileName, offset, maxResults);
+  private RdeHostReader createReader(int offset, int maxResults, RdeDepositIndex index) {
+    return new RdeHostReader(importBucketName, importFileName, offset, maxResults, index);
+  }
+
+  /** Indexes the first host of each reader, so that readers don't have to parse up to it. */
+  private Optional<RdeDepositIndex> createIndex(int hostsPerReader) {
+    GcsUtils utils = new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize());
+    GcsFilename filename = new GcsFilename(importBucketName, importFileName);
+    try (InputStream xmlInput = utils.openInputStream(filename)) {
+      return RdeDepositIndex.create(
+          xmlInput, RdeParser.RDE_HOST_URI, "host", hostsPerReader);
+    } catch (Exception e) {
+      throw new InitializationException(
+          String.format("Error indexing rde file %s/%s", importBucketName, importFileName), e);
+    }
   }
 
   private RdeParser createParser() {
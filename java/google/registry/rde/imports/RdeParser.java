@@ -77,14 +77,14 @@ import javax.xml.stream.XMLStreamReader;
 @NotThreadSafe
 public class RdeParser implements Closeable {
 
-  private static final String RDE_DOMAIN_URI = "urn:ietf:params:xml:ns:rdeDomain-1.0";
-  private static final String RDE_HOST_URI = "urn:ietf:params:xml:ns:rdeHost-1.0";
-  private static final String RDE_CONTACT_URI = "urn:ietf:params:xml:ns:rdeContact-1.0";
+  static final String RDE_DOMAIN_URI = "urn:ietf:params:xml:ns:rdeDomain-1.0";
+  static final String RDE_HOST_URI = "urn:ietf:params:xml:ns:rdeHost-1.0";
+  static final String RDE_CONTACT_URI = "urn:ietf:params:xml:ns:rdeContact-1.0";
   private static final String RDE_REGISTRAR_URI = "urn:ietf:params:xml:ns:rdeRegistrar-1.0";
   private static final String RDE_IDN_URI = "urn:ietf:params:xml:ns:rdeIDN-1.0";
   private static final String RDE_NNDN_URI = "urn:ietf:params:xml:ns:rdeNNDN-1.0";
   private static final String RDE_EPP_PARAMS_URI = "urn:ietf:params:xml:ns:rdeEppParams-1.0";
-  private static final String RDE_HEADER_URI = "urn:ietf:params:xml:ns:rdeHeader-1.0";
+  static final String RDE_HEADER_URI = "urn:ietf:params:xml:ns:rdeHeader-1.0";
 
   /** List of packages to initialize JAXBContext. **/
   private static final String JAXB_CONTEXT_PACKAGES = Joiner.on(":")
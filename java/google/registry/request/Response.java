@@ -15,6 +15,7 @@
 package google.registry.request;
 
 import com.google.common.net.MediaType;
+import java.io.Writer;
 import javax.servlet.http.HttpServletResponse;
 import org.joda.time.DateTime;
 
@@ -38,6 +39,14 @@ public interface Response {
    */
   void setPayload(String payload);
 
+  /**
+   * Returns a writer for streaming the HTTP payload, for use instead of {@link #setPayload} when
+   * the payload is too large to build up as a single string first.
+   *
+   * @throws IllegalStateException if you've already written the payload
+   */
+  Writer getPayloadWriter();
+
   /**
    * Writes an HTTP header to the response.
    *
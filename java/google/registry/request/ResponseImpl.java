@@ -16,6 +16,7 @@ package google.registry.request;
 
 import com.google.common.net.MediaType;
 import java.io.IOException;
+import java.io.Writer;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletResponse;
 import org.joda.time.DateTime;
@@ -53,6 +54,15 @@ public final class ResponseImpl implements Response {
     }
   }
 
+  @Override
+  public Writer getPayloadWriter() {
+    try {
+      return rsp.getWriter();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
   @Override
   public void setHeader(String header, String value) {
     rsp.setHeader(header, value);
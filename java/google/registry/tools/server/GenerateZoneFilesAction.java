@@ -15,9 +15,7 @@
 package google.registry.tools.server;
 
 import static com.google.appengine.tools.cloudstorage.GcsServiceFactory.createGcsService;
-import static com.google.common.base.Predicates.notNull;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.Iterators.filter;
 import static com.google.common.io.BaseEncoding.base16;
 import static google.registry.mapreduce.inputs.EppResourceInputs.createEntityInput;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
@@ -28,18 +26,20 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.joda.time.DateTimeZone.UTC;
 
 import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.appengine.tools.cloudstorage.RetryParams;
 import com.google.appengine.tools.mapreduce.Mapper;
+import com.google.appengine.tools.mapreduce.OutputWriter;
 import com.google.appengine.tools.mapreduce.Reducer;
 import com.google.appengine.tools.mapreduce.ReducerInput;
+import com.google.appengine.tools.mapreduce.outputs.NoOutput;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.googlecode.objectify.Result;
 import google.registry.config.RegistryConfig.Config;
 import google.registry.gcs.GcsUtils;
 import google.registry.mapreduce.MapreduceRunner;
-import google.registry.mapreduce.inputs.NullInput;
-import google.registry.model.EppResource;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.host.HostResource;
@@ -51,11 +51,11 @@ import google.registry.util.Clock;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.Writer;
 import java.net.Inet4Address;
 import java.net.InetAddress;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import javax.inject.Inject;
@@ -68,6 +68,11 @@ import org.joda.time.Duration;
  * <p>Zone files for each requested TLD are written to GCS. TLDs without entries produce zone files
  * with only a header. The export time must be at least two minutes in the past and no more than
  * 29 days in the past, and must be at midnight UTC.
+ *
+ * <p>Each TLD is split into {@link #SHARDS_PER_TLD} shards by a hash of the domain label, so that
+ * the records of a large TLD are written by many reducers in parallel, each to its own partial zone
+ * file. Once all reducers are done, the partial files are composed into the final zone file behind
+ * its header, and deleted.
  */
 @Action(
   path = GenerateZoneFilesAction.PATH,
@@ -78,23 +83,30 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
 
   public static final String PATH = "/_dr/task/generateZoneFiles";
 
+  /**
+   * The number of shards, and hence partial zone files, that each TLD is split into.
+   *
+   * <p>GCS can compose at most 32 objects at once, and the header takes one of those.
+   */
+  static final int SHARDS_PER_TLD = 16;
+
   /** Format for the zone file name. */
   private static final String FILENAME_FORMAT = "%s-%s.zone";
 
+  /** Format for the name of the header of a zone file, relative to the zone file name. */
+  private static final String HEADER_FILENAME_FORMAT = "%s.header";
+
+  /** Format for the name of a partial zone file, relative to the zone file name. */
+  private static final String PART_FILENAME_FORMAT = "%s.part%02d";
+
   /** Format for the GCS path to a file. */
   private static final String GCS_PATH_FORMAT = "gs://%s/%s";
 
   /** Format for the zone file header. */
   private static final String HEADER_FORMAT = "$ORIGIN\t%s.\n\n";
 
-  /** Format for NS records. */
-  private static final String NS_FORMAT = "%s\t%d\tIN\tNS\t%s.\n";
-
-  /** Format for DS records. */
-  private static final String DS_FORMAT = "%s\t%d\tIN\tDS\t%d %d %d %s\n";
-
-  /** Format for A and AAAA records. */
-  private static final String A_FORMAT = "%s\t%d\tIN\t%s\t%s\n";
+  /** Format for the reducer key of a shard of a TLD. */
+  private static final String SHARD_KEY_FORMAT = "%s/%d";
 
   @Inject MapreduceRunner mrRunner;
   @Inject JsonActionRunner jsonActionRunner;
@@ -135,36 +147,43 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
     String jobId = mrRunner
         .setJobName("Generate bind file stanzas")
         .setModuleName("tools")
-        .setDefaultReduceShards(tlds.size())
+        .setDefaultReduceShards(tlds.size() * SHARDS_PER_TLD)
         .runMapreduce(
             new GenerateBindFileMapper(
                 tlds, exportTime, dnsDefaultATtl, dnsDefaultNsTtl, dnsDefaultDsTtl),
             new GenerateBindFileReducer(bucket, exportTime, gcsBufferSize),
-            ImmutableList.of(
-                new NullInput<>(),
-                createEntityInput(DomainResource.class)));
+            ImmutableList.of(createEntityInput(DomainResource.class)),
+            new ZoneFileAssemblingOutput(tlds, bucket, exportTime, gcsBufferSize));
     ImmutableList<String> filenames =
         tlds.stream()
-            .map(
-                tld ->
-                    String.format(
-                        GCS_PATH_FORMAT, bucket, String.format(FILENAME_FORMAT, tld, exportTime)))
+            .map(tld -> String.format(GCS_PATH_FORMAT, bucket, getZoneFilename(tld, exportTime)))
             .collect(toImmutableList());
     return ImmutableMap.<String, Object>of(
         "jobPath", createJobPath(jobId),
         "filenames", filenames);
   }
 
+  private static String getZoneFilename(String tld, DateTime exportTime) {
+    return String.format(FILENAME_FORMAT, tld, exportTime);
+  }
+
+  private static String getPartFilename(String tld, DateTime exportTime, int shard) {
+    return String.format(PART_FILENAME_FORMAT, getZoneFilename(tld, exportTime), shard);
+  }
+
   /** Mapper to find domains that were active at a given time. */
-  static class GenerateBindFileMapper extends Mapper<EppResource, String, String> {
+  static class GenerateBindFileMapper extends Mapper<DomainResource, String, String> {
 
     private static final long serialVersionUID = 4647941823789859913L;
 
     private final ImmutableSet<String> tlds;
     private final DateTime exportTime;
-    private final Duration dnsDefaultATtl;
-    private final Duration dnsDefaultNsTtl;
-    private final Duration dnsDefaultDsTtl;
+    private final long aTtlSeconds;
+    private final long nsTtlSeconds;
+    private final long dsTtlSeconds;
+
+    /** Buffer that every record is formatted into, reused across domains to avoid garbage. */
+    private transient StringBuilder stanza;
 
     GenerateBindFileMapper(
         ImmutableSet<String> tlds,
@@ -174,20 +193,9 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
         Duration dnsDefaultDsTtl) {
       this.tlds = tlds;
       this.exportTime = exportTime;
-      this.dnsDefaultATtl = dnsDefaultATtl;
-      this.dnsDefaultNsTtl = dnsDefaultNsTtl;
-      this.dnsDefaultDsTtl = dnsDefaultDsTtl;
-    }
-
-    @Override
-    public void map(EppResource resource) {
-      if (resource == null) {  // Force the reducer to always generate a bind header for each tld.
-        for (String tld : tlds) {
-          emit(tld, null);
-        }
-      } else {
-        mapDomain((DomainResource) resource);
-      }
+      this.aTtlSeconds = dnsDefaultATtl.getStandardSeconds();
+      this.nsTtlSeconds = dnsDefaultNsTtl.getStandardSeconds();
+      this.dsTtlSeconds = dnsDefaultDsTtl.getStandardSeconds();
     }
 
     // Originally, we mapped over domains and hosts separately, emitting the necessary information
@@ -195,41 +203,126 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
     // be emitted in the final file, which is incorrect. Rather, to match the actual DNS glue
     // records, we only want to emit host information for in-bailiwick hosts in the specified
     // TLD(s), meaning those that act as nameservers for their respective superordinate domains.
-    private void mapDomain(DomainResource domain) {
+    @Override
+    public void map(DomainResource domain) {
       // Domains never change their tld, so we can check if it's from the wrong tld right away.
-      if (tlds.contains(domain.getTld())) {
-        domain = loadAtPointInTime(domain, exportTime).now();
-        // A null means the domain was deleted (or not created) at this time.
-        if (domain != null && domain.shouldPublishToDns()) {
-          String stanza = domainStanza(domain, exportTime, dnsDefaultNsTtl, dnsDefaultDsTtl);
-          if (!stanza.isEmpty()) {
-            emit(domain.getTld(), stanza);
-            getContext().incrementCounter(domain.getTld() + " domains");
-          }
-          emitForSubordinateHosts(domain);
+      if (!tlds.contains(domain.getTld())) {
+        return;
+      }
+      domain = loadAtPointInTime(domain, exportTime).now();
+      // A null means the domain was deleted (or not created) at this time.
+      if (domain == null || !domain.shouldPublishToDns()) {
+        return;
+      }
+      String tld = domain.getTld();
+      String domainLabel = stripTld(domain.getFullyQualifiedDomainName(), tld);
+      String shardKey =
+          String.format(
+              SHARD_KEY_FORMAT, tld, Math.floorMod(domainLabel.hashCode(), SHARDS_PER_TLD));
+      // Load the nameservers at the export time in case they've been renamed or deleted. All of
+      // the loads are started before any is waited on, and the projections are used for both the
+      // NS records and the glue records.
+      List<Result<HostResource>> nameserverResults = new ArrayList<>();
+      for (HostResource nameserver : ofy().load().keys(domain.getNameservers()).values()) {
+        nameserverResults.add(loadAtPointInTime(nameserver, exportTime));
+      }
+      List<HostResource> nameservers = new ArrayList<>(nameserverResults.size());
+      for (Result<HostResource> nameserverResult : nameserverResults) {
+        nameservers.add(nameserverResult.now());
+      }
+      if (formatDomainStanza(domain, domainLabel, nameservers)) {
+        emit(shardKey, stanza.toString());
+        getContext().incrementCounter(tld + " domains");
+      }
+      ImmutableSet<String> subordinateHosts = domain.getSubordinateHosts();
+      for (HostResource host : nameservers) {
+        // A null means the host was deleted (or not created) at this time.
+        if (host != null
+            && subordinateHosts.contains(host.getFullyQualifiedHostName())
+            && formatHostStanza(host, tld)) {
+          emit(shardKey, stanza.toString());
+          getContext().incrementCounter(tld + " hosts");
         }
       }
     }
 
-    private void emitForSubordinateHosts(DomainResource domain) {
-      ImmutableSet<String> subordinateHosts = domain.getSubordinateHosts();
-      if (!subordinateHosts.isEmpty()) {
-        for (HostResource unprojectedHost : ofy().load().keys(domain.getNameservers()).values()) {
-          HostResource host = loadAtPointInTime(unprojectedHost, exportTime).now();
-          // A null means the host was deleted (or not created) at this time.
-          if ((host != null) && subordinateHosts.contains(host.getFullyQualifiedHostName())) {
-            String stanza = hostStanza(host, dnsDefaultATtl, domain.getTld());
-            if (!stanza.isEmpty()) {
-              emit(domain.getTld(), stanza);
-              getContext().incrementCounter(domain.getTld() + " hosts");
-            }
-          }
-        }
+    /** Clears the stanza buffer, creating it if this mapper was just deserialized. */
+    private StringBuilder resetStanza() {
+      if (stanza == null) {
+        stanza = new StringBuilder();
+      }
+      stanza.setLength(0);
+      return stanza;
+    }
+
+    /**
+     * Formats the DNS records for a domain (NS and DS) into the stanza buffer, returning whether
+     * there were any.
+     *
+     * For domain foo.tld, these look like this:
+     * {@code
+     *   foo 180 IN NS ns.example.com.
+     *   foo 86400 IN DS 1 2 3 000102
+     * }
+     */
+    private boolean formatDomainStanza(
+        DomainResource domain, String domainLabel, List<HostResource> nameservers) {
+      StringBuilder result = resetStanza();
+      for (HostResource nameserver : nameservers) {
+        result
+            .append(domainLabel)
+            .append('\t')
+            .append(nsTtlSeconds)
+            .append("\tIN\tNS\t")
+            .append(nameserver.getFullyQualifiedHostName())
+            .append(".\n");
+      }
+      for (DelegationSignerData dsData : domain.getDsData()) {
+        result
+            .append(domainLabel)
+            .append('\t')
+            .append(dsTtlSeconds)
+            .append("\tIN\tDS\t")
+            .append(dsData.getKeyTag())
+            .append(' ')
+            .append(dsData.getAlgorithm())
+            .append(' ')
+            .append(dsData.getDigestType())
+            .append(' ')
+            .append(base16().encode(dsData.getDigest()))
+            .append('\n');
+      }
+      return result.length() > 0;
+    }
+
+    /**
+     * Formats the DNS records for a host (A and AAAA) into the stanza buffer, returning whether
+     * there were any.
+     *
+     * <p>These look like this:
+     * {@code
+     *   ns.foo.tld 3600 IN A 127.0.0.1
+     *   ns.foo.tld 3600 IN AAAA 0:0:0:0:0:0:0:1
+     * }
+     */
+    private boolean formatHostStanza(HostResource host, String tld) {
+      StringBuilder result = resetStanza();
+      String hostLabel = stripTld(host.getFullyQualifiedHostName(), tld);
+      for (InetAddress addr : host.getInetAddresses()) {
+        result
+            .append(hostLabel)
+            .append('\t')
+            .append(aTtlSeconds)
+            // must be either IPv4 or IPv6
+            .append((addr instanceof Inet4Address) ? "\tIN\tA\t" : "\tIN\tAAAA\t")
+            .append(addr.getHostAddress())
+            .append('\n');
       }
+      return result.length() > 0;
     }
   }
 
-  /** Reducer to write zone files to GCS. */
+  /** Reducer to write partial zone files to GCS, one per shard of a TLD. */
   static class GenerateBindFileReducer extends Reducer<String, String, Void> {
 
     private static final long serialVersionUID = -8489050680083119352L;
@@ -245,18 +338,19 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
     }
 
     @Override
-    public void reduce(String tld, ReducerInput<String> stanzas) {
+    public void reduce(String shardKey, ReducerInput<String> stanzas) {
+      int separator = shardKey.lastIndexOf('/');
+      String tld = shardKey.substring(0, separator);
+      int shard = Integer.parseInt(shardKey.substring(separator + 1));
       String stanzaCounter = tld + " stanzas";
-      GcsFilename filename =
-          new GcsFilename(bucket, String.format(FILENAME_FORMAT, tld, exportTime));
+      GcsFilename filename = new GcsFilename(bucket, getPartFilename(tld, exportTime, shard));
       GcsUtils cloudStorage =
           new GcsUtils(createGcsService(RetryParams.getDefaultInstance()), gcsBufferSize);
       try (OutputStream gcsOutput = cloudStorage.openOutputStream(filename);
-          Writer osWriter = new OutputStreamWriter(gcsOutput, UTF_8);
-          PrintWriter writer = new PrintWriter(osWriter)) {
-        writer.printf(HEADER_FORMAT, tld);
-        for (Iterator<String> stanzaIter = filter(stanzas, notNull()); stanzaIter.hasNext(); ) {
-          writer.println(stanzaIter.next());
+          Writer writer = new OutputStreamWriter(gcsOutput, UTF_8)) {
+        while (stanzas.hasNext()) {
+          writer.write(stanzas.next());
+          writer.write('\n');
           getContext().incrementCounter(stanzaCounter);
         }
         writer.flush();
@@ -267,64 +361,94 @@ public class GenerateZoneFilesAction implements Runnable, JsonActionRunner.JsonA
   }
 
   /**
-   * Generates DNS records for a domain (NS and DS).
+   * Output that assembles the zone file of each TLD once all of the reducers are done.
+   *
+   * <p>The header is written on its own and composed with whichever partial zone files exist (a
+   * shard with no domains has none) into the final zone file. Composition happens inside GCS, so
+   * the records are not read back.
    *
-   * For domain foo.tld, these look like this:
-   * {@code
-   *   foo 180 IN NS ns.example.com.
-   *   foo 86400 IN DS 1 2 3 000102
-   * }
+   * <p>The mapreduce framework retries {@link #finish} if it fails, so assembly must be safe to
+   * rerun. The pieces are only deleted once every TLD's zone file has been composed, and a TLD
+   * whose zone file already exists was composed by an earlier attempt and is skipped, since its
+   * pieces may already be gone.
    */
-  private static String domainStanza(
-      DomainResource domain,
-      DateTime exportTime,
-      Duration dnsDefaultNsTtl,
-      Duration dnsDefaultDsTtl) {
-    StringBuilder result = new StringBuilder();
-    String domainLabel = stripTld(domain.getFullyQualifiedDomainName(), domain.getTld());
-    for (HostResource nameserver : ofy().load().keys(domain.getNameservers()).values()) {
-      result.append(String.format(
-          NS_FORMAT,
-          domainLabel,
-          dnsDefaultNsTtl.getStandardSeconds(),
-          // Load the nameservers at the export time in case they've been renamed or deleted.
-          loadAtPointInTime(nameserver, exportTime).now().getFullyQualifiedHostName()));
+  static class ZoneFileAssemblingOutput extends NoOutput<Void, Void> {
+
+    private static final long serialVersionUID = 2967491743590367012L;
+
+    private final ImmutableSet<String> tlds;
+    private final String bucket;
+    private final DateTime exportTime;
+    private final int gcsBufferSize;
+
+    ZoneFileAssemblingOutput(
+        ImmutableSet<String> tlds, String bucket, DateTime exportTime, int gcsBufferSize) {
+      this.tlds = tlds;
+      this.bucket = bucket;
+      this.exportTime = exportTime;
+      this.gcsBufferSize = gcsBufferSize;
     }
-    for (DelegationSignerData dsData : domain.getDsData()) {
-      result.append(String.format(
-          DS_FORMAT,
-          domainLabel,
-          dnsDefaultDsTtl.getStandardSeconds(),
-          dsData.getKeyTag(),
-          dsData.getAlgorithm(),
-          dsData.getDigestType(),
-          base16().encode((dsData.getDigest()))));
+
+    @Override
+    public Void finish(Collection<? extends OutputWriter<Void>> writers) {
+      GcsService gcsService = createGcsService(RetryParams.getDefaultInstance());
+      GcsUtils cloudStorage = new GcsUtils(gcsService, gcsBufferSize);
+      try {
+        for (String tld : tlds) {
+          assembleZoneFile(tld, gcsService, cloudStorage);
+        }
+        for (String tld : tlds) {
+          deletePieces(tld, gcsService);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      return null;
     }
-    return result.toString();
-  }
 
-  /**
-   * Generates DNS records for a domain (A and AAAA).
-   *
-   * <p>These look like this:
-   * {@code
-   *   ns.foo.tld 3600 IN A 127.0.0.1
-   *   ns.foo.tld 3600 IN AAAA 0:0:0:0:0:0:0:1
-   * }
-   */
-  private static String hostStanza(HostResource host, Duration dnsDefaultATtl, String tld) {
-    StringBuilder result = new StringBuilder();
-    for (InetAddress addr : host.getInetAddresses()) {
-      // must be either IPv4 or IPv6
-      String rrSetClass = (addr instanceof Inet4Address) ? "A" : "AAAA";
-      result.append(String.format(
-          A_FORMAT,
-          stripTld(host.getFullyQualifiedHostName(), tld),
-          dnsDefaultATtl.getStandardSeconds(),
-          rrSetClass,
-          addr.getHostAddress()));
+    private void assembleZoneFile(String tld, GcsService gcsService, GcsUtils cloudStorage)
+        throws IOException {
+      GcsFilename zoneFilename = new GcsFilename(bucket, getZoneFilename(tld, exportTime));
+      // The zone file always holds at least the header, so it's only empty if it doesn't exist.
+      if (cloudStorage.existsAndNotEmpty(zoneFilename)) {
+        return;
+      }
+      byte[] header = String.format(HEADER_FORMAT, tld).getBytes(UTF_8);
+      ImmutableList.Builder<GcsFilename> parts = new ImmutableList.Builder<>();
+      for (int shard = 0; shard < SHARDS_PER_TLD; shard++) {
+        GcsFilename part = new GcsFilename(bucket, getPartFilename(tld, exportTime, shard));
+        if (cloudStorage.existsAndNotEmpty(part)) {
+          parts.add(part);
+        }
+      }
+      ImmutableList<GcsFilename> partFilenames = parts.build();
+      if (partFilenames.isEmpty()) {
+        cloudStorage.createFromBytes(zoneFilename, header);
+        return;
+      }
+      GcsFilename headerFilename = getHeaderFilename(tld);
+      cloudStorage.createFromBytes(headerFilename, header);
+      gcsService.compose(
+          ImmutableList.<String>builder()
+              .add(headerFilename.getObjectName())
+              .addAll(
+                  partFilenames.stream().map(GcsFilename::getObjectName).collect(toImmutableList()))
+              .build(),
+          zoneFilename);
+    }
+
+    /** Deletes the header and the partial zone files of a TLD, if they exist. */
+    private void deletePieces(String tld, GcsService gcsService) throws IOException {
+      gcsService.delete(getHeaderFilename(tld));
+      for (int shard = 0; shard < SHARDS_PER_TLD; shard++) {
+        gcsService.delete(new GcsFilename(bucket, getPartFilename(tld, exportTime, shard)));
+      }
+    }
+
+    private GcsFilename getHeaderFilename(String tld) {
+      return new GcsFilename(
+          bucket, String.format(HEADER_FILENAME_FORMAT, getZoneFilename(tld, exportTime)));
     }
-    return result.toString();
   }
 
   /**
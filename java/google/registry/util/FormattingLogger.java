@@ -54,6 +54,11 @@ public class FormattingLogger {
     }
   }
 
+  /** Returns whether a message at the given level would actually be logged. */
+  public boolean isLoggable(Level level) {
+    return logger.isLoggable(level);
+  }
+
   public void fine(String msg) {
     log(Level.FINE, null, msg);
   }
@@ -0,0 +1,288 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * Runs the stages of a streaming conversion on separate threads, connected by bounded buffers.
+ *
+ * <p>Each call to {@link #fork} starts a {@link Stage} on a new thread and returns a stream from
+ * which another thread can read what that stage writes. The bytes are handed over in chunks of
+ * {@code bufferSize} bytes, and at most {@code bufferCount} chunks are held for each stage, so a
+ * stage blocks when it gets too far ahead of its reader. Chaining stages this way lets a
+ * CPU-bound conversion, such as decryption followed by compression, use one core per stage.
+ *
+ * <p>If a stage fails, its reader gets an {@link IOException} caused by the failure instead of
+ * the end of the stream. The pipeline must be closed once the final stage is done, which stops
+ * any stages that are still running (e.g. because the reader gave up early) and waits for their
+ * threads to exit.
+ */
+public final class StreamPipeline implements AutoCloseable {
+
+  /** A stage of a pipeline, which writes its output to a stream. */
+  public interface Stage {
+
+    /** Writes the output of this stage, without closing the stream. */
+    void run(@WillNotClose OutputStream output) throws Exception;
+  }
+
+  private final ThreadFactory threadFactory;
+  private final int bufferSize;
+  private final int bufferCount;
+  private final List<Pipe> pipes = new ArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
+  private boolean isClosed;
+
+  /**
+   * Creates a new pipeline.
+   *
+   * @param threadFactory the factory for the stage threads, which on App Engine must be {@link
+   *     com.google.appengine.api.ThreadManager#currentRequestThreadFactory}
+   * @param bufferSize the number of bytes handed from a stage to its reader at once
+   * @param bufferCount the number of chunks each stage may get ahead of its reader
+   */
+  public StreamPipeline(ThreadFactory threadFactory, int bufferSize, int bufferCount) {
+    checkArgument(bufferSize > 0, "bufferSize must be positive");
+    checkArgument(bufferCount > 0, "bufferCount must be positive");
+    this.threadFactory = checkNotNull(threadFactory, "threadFactory");
+    this.bufferSize = bufferSize;
+    this.bufferCount = bufferCount;
+  }
+
+  /** Starts the given stage on a new thread, and returns a stream of its output. */
+  public InputStream fork(Stage stage) {
+    checkState(!isClosed, "pipeline closed");
+    Pipe pipe = new Pipe();
+    Thread thread =
+        threadFactory.newThread(
+            () -> {
+              try {
+                stage.run(pipe.output);
+                // Only signal the end of the stream once the stage has succeeded, so that a failed
+                // stage's output can't be mistaken for a complete one.
+                pipe.output.close();
+              } catch (Throwable e) {
+                pipe.fail(e);
+              }
+            });
+    pipes.add(pipe);
+    threads.add(thread);
+    thread.start();
+    return pipe.input;
+  }
+
+  /** Stops any stages that are still running and waits for them to exit. */
+  @Override
+  public void close() {
+    isClosed = true;
+    for (Pipe pipe : pipes) {
+      pipe.closeReader();
+    }
+    for (Thread thread : threads) {
+      Uninterruptibles.joinUninterruptibly(thread);
+    }
+  }
+
+  /** A bounded queue of chunks of bytes, written by one thread and read by another. */
+  private final class Pipe {
+
+    @GuardedBy("this")
+    private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<>();
+
+    @GuardedBy("this")
+    private boolean isWriterClosed;
+
+    @GuardedBy("this")
+    private boolean isReaderClosed;
+
+    @GuardedBy("this")
+    @Nullable
+    private Throwable failure;
+
+    final OutputStream output = new PipeOutputStream();
+    final InputStream input = new PipeInputStream();
+
+    synchronized void put(ByteBuffer chunk) throws IOException {
+      checkState(!isWriterClosed, "outputstream closed");
+      while (chunks.size() >= bufferCount && !isReaderClosed) {
+        await();
+      }
+      if (isReaderClosed) {
+        throw new IOException("Pipeline reader closed");
+      }
+      chunks.add(chunk);
+      notifyAll();
+    }
+
+    /** Returns the next chunk, or null at the end of the stream. */
+    @Nullable
+    synchronized ByteBuffer take() throws IOException {
+      while (chunks.isEmpty() && !isWriterClosed && failure == null && !isReaderClosed) {
+        await();
+      }
+      if (isReaderClosed) {
+        throw new IOException("Pipeline closed");
+      }
+      if (failure != null) {
+        throw new IOException("Pipeline stage failed", failure);
+      }
+      ByteBuffer chunk = chunks.poll();
+      notifyAll();
+      return chunk;
+    }
+
+    synchronized void closeWriter() {
+      isWriterClosed = true;
+      notifyAll();
+    }
+
+    synchronized void closeReader() {
+      isReaderClosed = true;
+      chunks.clear();
+      notifyAll();
+    }
+
+    synchronized void fail(Throwable e) {
+      failure = e;
+      isWriterClosed = true;
+      notifyAll();
+    }
+
+    @GuardedBy("this")
+    private void await() throws InterruptedIOException {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for pipeline");
+      }
+    }
+
+    /** The writing end of the pipe, which buffers writes into chunks. */
+    private final class PipeOutputStream extends OutputStream {
+
+      private byte[] buffer = new byte[bufferSize];
+      private int position;
+      private boolean isClosed;
+
+      @Override
+      public void write(int b) throws IOException {
+        if (position == buffer.length) {
+          flush();
+        }
+        buffer[position++] = (byte) b;
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+          if (position == buffer.length) {
+            flush();
+          }
+          int count = Math.min(len, buffer.length - position);
+          System.arraycopy(b, off, buffer, position, count);
+          position += count;
+          off += count;
+          len -= count;
+        }
+      }
+
+      /** Hands any buffered bytes to the reader. */
+      @Override
+      public void flush() throws IOException {
+        if (position > 0) {
+          put(ByteBuffer.wrap(buffer, 0, position));
+          buffer = new byte[bufferSize];
+          position = 0;
+        }
+      }
+
+      /** Hands any buffered bytes to the reader, followed by the end of the stream. */
+      @Override
+      public void close() throws IOException {
+        if (!isClosed) {
+          flush();
+          isClosed = true;
+          closeWriter();
+        }
+      }
+    }
+
+    /** The reading end of the pipe. */
+    private final class PipeInputStream extends InputStream {
+
+      @Nullable private ByteBuffer chunk;
+      private boolean isEndOfStream;
+
+      @Override
+      public int read() throws IOException {
+        if (!nextChunk()) {
+          return -1;
+        }
+        return chunk.get() & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        if (!nextChunk()) {
+          return -1;
+        }
+        int count = Math.min(len, chunk.remaining());
+        chunk.get(b, off, count);
+        return count;
+      }
+
+      @Override
+      public int available() {
+        return chunk == null ? 0 : chunk.remaining();
+      }
+
+      /** Stops the stage writing to this stream. */
+      @Override
+      public void close() {
+        closeReader();
+      }
+
+      /** Makes sure there are bytes to read, and returns false at the end of the stream. */
+      private boolean nextChunk() throws IOException {
+        while (!isEndOfStream && (chunk == null || !chunk.hasRemaining())) {
+          chunk = take();
+          isEndOfStream = chunk == null;
+        }
+        return !isEndOfStream;
+      }
+    }
+  }
+}
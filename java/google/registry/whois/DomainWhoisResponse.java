@@ -16,6 +16,7 @@ package google.registry.whois;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.util.CollectionUtils.isNullOrEmpty;
 import static google.registry.xml.UtcDateTimeAdapter.getFormattedString;
@@ -31,10 +32,12 @@ import google.registry.model.domain.DesignatedContact.Type;
 import google.registry.model.domain.DomainResource;
 import google.registry.model.domain.GracePeriod;
 import google.registry.model.eppcommon.StatusValue;
+import google.registry.model.host.HostResource;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registrar.RegistrarContact;
 import google.registry.model.translators.EnumToAttributeAdapter.EppEnum;
 import google.registry.util.FormattingLogger;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -71,6 +74,11 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
         "Could not load registrar %s",
         domain.getCurrentSponsorClientId());
     Registrar registrar = registrarOptional.get();
+    // Start loading the contacts and nameservers together, rather than one at a time as they are
+    // emitted.
+    Map<Key<ContactResource>, ContactResource> contacts =
+        ofy().load().keys(domain.getReferencedContacts());
+    Map<Key<HostResource>, HostResource> nameservers = ofy().load().keys(domain.getNameservers());
     Optional<RegistrarContact> abuseContact =
         registrar
             .getContacts()
@@ -100,13 +108,17 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
                 "Registrar Abuse Contact Phone",
                 abuseContact.isPresent() ? abuseContact.get().getPhoneNumber() : null)
             .emitStatusValues(domain.getStatusValues(), domain.getGracePeriods())
-            .emitContact("Registrant", domain.getRegistrant(), preferUnicode)
-            .emitContact("Admin", getContactReference(Type.ADMIN), preferUnicode)
-            .emitContact("Tech", getContactReference(Type.TECH), preferUnicode)
-            .emitContact("Billing", getContactReference(Type.BILLING), preferUnicode)
+            .emitContact("Registrant", domain.getRegistrant(), contacts, preferUnicode)
+            .emitContact("Admin", getContactReference(Type.ADMIN), contacts, preferUnicode)
+            .emitContact("Tech", getContactReference(Type.TECH), contacts, preferUnicode)
+            .emitContact("Billing", getContactReference(Type.BILLING), contacts, preferUnicode)
             .emitSet(
                 "Name Server",
-                domain.loadNameserverFullyQualifiedHostNames(),
+                nameservers
+                    .values()
+                    .stream()
+                    .map(HostResource::getFullyQualifiedHostName)
+                    .collect(toImmutableSet()),
                 hostName -> maybeFormatHostname(hostName, preferUnicode))
             .emitField(
                 "DNSSEC", isNullOrEmpty(domain.getDsData()) ? "unsigned" : "signedDelegation")
@@ -142,6 +154,7 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
     DomainEmitter emitContact(
         String contactType,
         @Nullable Key<ContactResource> contact,
+        Map<Key<ContactResource>, ContactResource> contacts,
         boolean preferUnicode) {
       if (contact == null) {
         return this;
@@ -149,7 +162,7 @@ final class DomainWhoisResponse extends WhoisResponseImpl {
       // If we refer to a contact that doesn't exist, that's a bug. It means referential integrity
       // has somehow been broken. We skip the rest of this contact, but log it to hopefully bring it
       // someone's attention.
-      ContactResource contactResource = ofy().load().key(contact).now();
+      ContactResource contactResource = contacts.get(contact);
       if (contactResource == null) {
         logger.severefmt("(BUG) Broken reference found from domain %s to contact %s",
             domain.getFullyQualifiedDomainName(), contact);
@@ -46,6 +46,7 @@ final class RegistrarLookupCommand implements WhoisCommand {
    */
   private static final Supplier<Map<String, Registrar>> REGISTRAR_BY_NORMALIZED_NAME_CACHE =
       memoizeWithShortExpiration(
+          "whois_registrars_by_name",
           () -> {
             Map<String, Registrar> map = new HashMap<>();
             // Use the normalized registrar name as a key, and ignore inactive and hidden
@@ -32,8 +32,10 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import javax.annotation.Nullable;
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
@@ -75,6 +77,23 @@ public class XmlTransformer {
   /** A {@link Schema} to validate XML. */
   private final Schema schema;
 
+  /**
+   * Per-thread {@link Unmarshaller} that has already been configured with {@link #schema}.
+   *
+   * <p>Unmarshallers aren't thread-safe, but creating one and attaching the schema costs more than
+   * parsing a typical EPP command, so each thread reuses its own instance.
+   */
+  private final ThreadLocal<Unmarshaller> unmarshallers = new ThreadLocal<>();
+
+  /**
+   * Per-thread {@link Marshaller}s, keyed by the configuration they were created with.
+   *
+   * <p>There are only a handful of distinct configurations (see the {@code marshal} methods), so
+   * these maps stay tiny.
+   */
+  private final ThreadLocal<Map<MarshallerConfig, Marshaller>> marshallers =
+      ThreadLocal.withInitial(HashMap::new);
+
   /**
    * Create a new XmlTransformer that validates using the given schemas, but uses the given classes
    * (rather than generated ones) for marshaling and unmarshaling.
@@ -274,8 +293,18 @@ public class XmlTransformer {
     return JAXBContext.newInstance(prefix + Joiner.on(':' + prefix).join(schemaNames));
   }
 
-  /** Get a {@link Unmarshaller} instance with the default configuration. */
+  /** Get the calling thread's {@link Unmarshaller} instance, creating it if necessary. */
   private Unmarshaller getUnmarshaller() throws JAXBException {
+    Unmarshaller unmarshaller = unmarshallers.get();
+    if (unmarshaller == null) {
+      unmarshaller = createUnmarshaller();
+      unmarshallers.set(unmarshaller);
+    }
+    return unmarshaller;
+  }
+
+  /** Create a new {@link Unmarshaller} instance with the default configuration. */
+  private Unmarshaller createUnmarshaller() throws JAXBException {
     Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
     unmarshaller.setSchema(schema);
     // This handler was the default in JAXB 1.0. It fails on any exception thrown while
@@ -285,9 +314,25 @@ public class XmlTransformer {
     return unmarshaller;
   }
 
-  /** Get a {@link Marshaller} instance with the given configuration. */
+  /**
+   * Get the calling thread's {@link Marshaller} instance for the given configuration, creating it
+   * if necessary.
+   */
   private Marshaller getMarshaller(@Nullable Schema schemaParam, Map<String, ?> properties)
       throws JAXBException {
+    MarshallerConfig config = new MarshallerConfig(schemaParam, properties);
+    Map<MarshallerConfig, Marshaller> threadMarshallers = marshallers.get();
+    Marshaller marshaller = threadMarshallers.get(config);
+    if (marshaller == null) {
+      marshaller = createMarshaller(schemaParam, properties);
+      threadMarshallers.put(config, marshaller);
+    }
+    return marshaller;
+  }
+
+  /** Create a new {@link Marshaller} instance with the given configuration. */
+  private Marshaller createMarshaller(@Nullable Schema schemaParam, Map<String, ?> properties)
+      throws JAXBException {
     Marshaller marshaller = jaxbContext.createMarshaller();
     for (Map.Entry<String, ?> entry : properties.entrySet()) {
       marshaller.setProperty(entry.getKey(), entry.getValue());
@@ -297,6 +342,31 @@ public class XmlTransformer {
     return marshaller;
   }
 
+  /** Key identifying the configuration of a cached {@link Marshaller}. */
+  private static final class MarshallerConfig {
+    final boolean validating;
+    final ImmutableMap<String, Object> properties;
+
+    MarshallerConfig(@Nullable Schema schema, Map<String, ?> properties) {
+      this.validating = schema != null;
+      this.properties = ImmutableMap.copyOf(properties);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof MarshallerConfig)) {
+        return false;
+      }
+      MarshallerConfig other = (MarshallerConfig) obj;
+      return validating == other.validating && properties.equals(other.properties);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(validating, properties);
+    }
+  }
+
   /** Pretty print xml. */
   public static String prettyPrint(String xmlString) {
     StringWriter prettyXml = new StringWriter();
@@ -33,6 +33,7 @@ import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.tools.cloudstorage.GcsFileOptions;
 import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -246,6 +247,56 @@ public class RestoreCommitLogsActionTest {
     assertInDatastore(asList(CommitLogCheckpointRoot.create(now)));
   }
 
+  @Test
+  public void testRestore_manyTransactions_restoredInSeveralBatches() throws Exception {
+    ImmutableList.Builder<ImmutableObject> commitLogs = new ImmutableList.Builder<>();
+    ImmutableList.Builder<String> ids = new ImmutableList.Builder<>();
+    for (int i = 0; i < 300; i++) {
+      DateTime commitTime = now.minusMillis(300 - i);
+      Key<CommitLogManifest> manifestKey =
+          CommitLogManifest.createKey(getBucketKey(1), commitTime);
+      commitLogs.add(CommitLogManifest.create(getBucketKey(1), commitTime, null));
+      commitLogs.add(CommitLogMutation.create(manifestKey, TestObject.create("id" + i)));
+      ids.add("id" + i);
+    }
+    saveDiffFileNotToRestore(now.minusMinutes(1));
+    Iterable<ImmutableObject> savedCommitLogs =
+        saveDiffFile(createCheckpoint(now), commitLogs.build().toArray(new ImmutableObject[0]));
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds(ids.build().toArray(new String[0]));
+    assertInDatastore(savedCommitLogs);
+    assertInDatastore(asList(CommitLogCheckpointRoot.create(now)));
+    assertCommitLogBuckets(ImmutableMap.of(1, now.minusMillis(1)));
+  }
+
+  @Test
+  public void testRestore_skipsAlreadyRestoredDiffFiles() throws Exception {
+    Key<CommitLogManifest> manifest1Key =
+        CommitLogManifest.createKey(getBucketKey(2), now.minusMinutes(2));
+    Key<CommitLogManifest> manifest2Key =
+        CommitLogManifest.createKey(getBucketKey(1), now.minusMinutes(1));
+    saveDiffFileNotToRestore(now.minusMinutes(2));
+    CommitLogCheckpoint restoredCheckpoint = createCheckpoint(now.minusMinutes(1));
+    saveDiffFile(
+        restoredCheckpoint,
+        CommitLogManifest.create(getBucketKey(2), now.minusMinutes(2), null),
+        CommitLogMutation.create(manifest1Key, TestObject.create("already restored")));
+    Iterable<ImmutableObject> file2CommitLogs = saveDiffFile(
+        createCheckpoint(now),
+        CommitLogManifest.create(getBucketKey(1), now.minusMinutes(1), null),
+        CommitLogMutation.create(manifest2Key, TestObject.create("a")));
+    // Simulate a restore that was interrupted after the first file.
+    ofy().saveWithoutBackup().entity(restoredCheckpoint).now();
+    action.fromTime = now.minusMinutes(1).minusMillis(1);
+    action.run();
+    ofy().clearSessionCache();
+    assertExpectedIds("a");
+    assertInDatastore(file2CommitLogs);
+    assertInDatastore(asList(CommitLogCheckpointRoot.create(now)));
+    assertCommitLogBuckets(ImmutableMap.of(1, now.minusMinutes(1), 2, now.minusMinutes(2)));
+  }
+
   private CommitLogCheckpoint createCheckpoint(DateTime now) {
     return CommitLogCheckpoint.create(now, toMap(getBucketIds(), constant(now)));
   }
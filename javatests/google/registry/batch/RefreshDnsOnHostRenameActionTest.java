@@ -15,6 +15,7 @@
 package google.registry.batch;
 
 import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
+import static com.google.common.truth.Truth.assertThat;
 import static google.registry.flows.async.AsyncFlowEnqueuer.QUEUE_ASYNC_DELETE;
 import static google.registry.flows.async.AsyncFlowEnqueuer.QUEUE_ASYNC_HOST_RENAME;
 import static google.registry.flows.async.AsyncFlowMetrics.OperationType.DNS_REFRESH;
@@ -33,6 +34,7 @@ import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.time.Duration.millis;
 import static org.joda.time.Duration.standardHours;
+import static org.joda.time.Duration.standardMinutes;
 import static org.joda.time.Duration.standardSeconds;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -41,18 +43,18 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
-import google.registry.batch.RefreshDnsOnHostRenameAction.RefreshDnsOnHostRenameReducer;
+import google.registry.dns.DnsQueue;
 import google.registry.flows.async.AsyncFlowEnqueuer;
 import google.registry.flows.async.AsyncFlowMetrics;
 import google.registry.flows.async.AsyncFlowMetrics.OperationResult;
 import google.registry.model.host.HostResource;
+import google.registry.testing.AppEngineRule;
 import google.registry.testing.ExceptionRule;
 import google.registry.testing.FakeClock;
 import google.registry.testing.FakeResponse;
 import google.registry.testing.FakeSleeper;
 import google.registry.testing.InjectRule;
 import google.registry.testing.TaskQueueHelper.TaskMatcher;
-import google.registry.testing.mapreduce.MapreduceTestCase;
 import google.registry.util.Retrier;
 import google.registry.util.Sleeper;
 import google.registry.util.SystemSleeper;
@@ -66,16 +68,23 @@ import org.junit.runners.JUnit4;
 
 /** Unit tests for {@link RefreshDnsOnHostRenameAction}. */
 @RunWith(JUnit4.class)
-public class RefreshDnsOnHostRenameActionTest
-    extends MapreduceTestCase<RefreshDnsOnHostRenameAction> {
+public class RefreshDnsOnHostRenameActionTest {
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder()
+      .withDatastore()
+      .withTaskQueue()
+      .build();
 
   @Rule
   public final ExceptionRule thrown = new ExceptionRule();
 
   @Rule
-  public InjectRule inject = new InjectRule();
+  public final InjectRule inject = new InjectRule();
 
   private AsyncFlowEnqueuer enqueuer;
+  private RefreshDnsOnHostRenameAction action;
+  private final FakeResponse response = new FakeResponse();
   private final FakeClock clock = new FakeClock(DateTime.parse("2015-01-15T11:22:33Z"));
 
   @Before
@@ -87,27 +96,23 @@ public class RefreshDnsOnHostRenameActionTest
             getQueue(QUEUE_ASYNC_HOST_RENAME),
             Duration.ZERO,
             new Retrier(new FakeSleeper(clock), 1));
-    AsyncFlowMetrics asyncFlowMetricsMock = mock(AsyncFlowMetrics.class);
     action = new RefreshDnsOnHostRenameAction();
-    action.asyncFlowMetrics = asyncFlowMetricsMock;
-    inject.setStaticField(
-        RefreshDnsOnHostRenameReducer.class, "asyncFlowMetrics", asyncFlowMetricsMock);
+    action.asyncFlowMetrics = mock(AsyncFlowMetrics.class);
     action.clock = clock;
-    action.mrRunner = makeDefaultRunner();
+    action.dnsQueue = DnsQueue.create();
+    action.maxRunningTime = standardMinutes(3);
     action.pullQueue = getQueue(QUEUE_ASYNC_HOST_RENAME);
-    action.response = new FakeResponse();
+    action.response = response;
     action.retrier = new Retrier(new FakeSleeper(clock), 1);
   }
 
-  private void runMapreduce() throws Exception {
+  private void runAction() throws Exception {
     clock.advanceOneMilli();
     // Use hard sleeps to ensure that the tasks are enqueued properly and will be leased.
     Sleeper sleeper = new SystemSleeper();
     sleeper.sleep(millis(50));
     action.run();
     sleeper.sleep(millis(50));
-    executeTasksUntilEmpty("mapreduce", clock);
-    sleeper.sleep(millis(50));
     clock.advanceBy(standardSeconds(5));
     ofy().clearSessionCache();
   }
@@ -125,8 +130,9 @@ public class RefreshDnsOnHostRenameActionTest
     persistResource(newDomainResource("untouched.tld", persistActiveHost("ns2.example.tld")));
     DateTime timeEnqueued = clock.nowUtc();
     enqueuer.enqueueAsyncDnsRefresh(host, timeEnqueued);
-    runMapreduce();
+    runAction();
     assertDnsTasksEnqueued("example.tld", "otherexample.tld");
+    assertThat(response.getPayload()).isEqualTo("Enqueued DNS refreshes for 2 domains.");
     assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
     verify(action.asyncFlowMetrics).recordDnsRefreshBatchSize(1L);
     verify(action.asyncFlowMetrics)
@@ -147,7 +153,7 @@ public class RefreshDnsOnHostRenameActionTest
     enqueuer.enqueueAsyncDnsRefresh(host1, timeEnqueued);
     enqueuer.enqueueAsyncDnsRefresh(host2, timeEnqueued);
     enqueuer.enqueueAsyncDnsRefresh(host3, laterTimeEnqueued);
-    runMapreduce();
+    runAction();
     assertDnsTasksEnqueued("example1.tld", "example2.tld", "example3.tld");
     assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
     verify(action.asyncFlowMetrics).recordDnsRefreshBatchSize(3L);
@@ -158,13 +164,60 @@ public class RefreshDnsOnHostRenameActionTest
     verifyNoMoreInteractions(action.asyncFlowMetrics);
   }
 
+  @Test
+  public void testSuccess_outOfTime_continuesFromCursor() throws Exception {
+    inject.setStaticField(RefreshDnsOnHostRenameAction.class, "domainBatchSize", 2);
+    action.maxRunningTime = Duration.ZERO;
+    HostResource host = persistActiveHost("ns1.example.tld");
+    persistResource(newDomainResource("example1.tld", host));
+    persistResource(newDomainResource("example2.tld", host));
+    persistResource(newDomainResource("example3.tld", host));
+    DateTime timeEnqueued = clock.nowUtc();
+    enqueuer.enqueueAsyncDnsRefresh(host, timeEnqueued);
+    runAction();
+    assertThat(response.getPayload()).isEqualTo("Enqueued DNS refreshes for 2 domains.");
+    assertTasksEnqueued(
+        QUEUE_ASYNC_HOST_RENAME,
+        new TaskMatcher()
+            .param("hostKey", Key.create(host).getString())
+            .param("requestedTime", timeEnqueued.toString())
+            .param("queryTime", host.getUpdateAutoTimestamp().getTimestamp().toString()));
+    verify(action.asyncFlowMetrics).recordDnsRefreshBatchSize(1L);
+    verifyNoMoreInteractions(action.asyncFlowMetrics);
+
+    runAction();
+    assertDnsTasksEnqueued("example1.tld", "example2.tld", "example3.tld");
+    assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
+    verify(action.asyncFlowMetrics, times(2)).recordDnsRefreshBatchSize(1L);
+    verify(action.asyncFlowMetrics)
+        .recordAsyncFlowResult(DNS_REFRESH, OperationResult.SUCCESS, timeEnqueued);
+    verifyNoMoreInteractions(action.asyncFlowMetrics);
+  }
+
+  @Test
+  public void testSuccess_outOfTime_leavesUnstartedHostsOnQueue() throws Exception {
+    action.maxRunningTime = Duration.ZERO;
+    HostResource host1 = persistActiveHost("ns1.example.tld");
+    HostResource host2 = persistActiveHost("ns2.example.tld");
+    persistResource(newDomainResource("example1.tld", host1));
+    persistResource(newDomainResource("example2.tld", host2));
+    enqueuer.enqueueAsyncDnsRefresh(host1, clock.nowUtc());
+    enqueuer.enqueueAsyncDnsRefresh(host2, clock.nowUtc());
+    runAction();
+    assertThat(getQueue(QUEUE_ASYNC_HOST_RENAME).fetchStatistics().getNumTasks()).isEqualTo(1);
+    assertThat(response.getPayload()).isEqualTo("Enqueued DNS refreshes for 1 domains.");
+    runAction();
+    assertDnsTasksEnqueued("example1.tld", "example2.tld");
+    assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
+  }
+
   @Test
   public void testSuccess_deletedHost_doesntTriggerDnsRefresh() throws Exception {
     HostResource host = persistDeletedHost("ns11.fakesss.tld", clock.nowUtc().minusDays(4));
     persistResource(newDomainResource("example1.tld", host));
     DateTime timeEnqueued = clock.nowUtc();
     enqueuer.enqueueAsyncDnsRefresh(host, timeEnqueued);
-    runMapreduce();
+    runAction();
     assertNoDnsTasksEnqueued();
     assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
     verify(action.asyncFlowMetrics).recordDnsRefreshBatchSize(1L);
@@ -182,7 +235,7 @@ public class RefreshDnsOnHostRenameActionTest
             .setDeletionTime(START_OF_TIME)
             .build());
     enqueuer.enqueueAsyncDnsRefresh(renamedHost, clock.nowUtc());
-    runMapreduce();
+    runAction();
     assertNoDnsTasksEnqueued();
     assertNoTasksEnqueued(QUEUE_ASYNC_HOST_RENAME);
   }
@@ -191,7 +244,7 @@ public class RefreshDnsOnHostRenameActionTest
   public void testRun_hostDoesntExist_delaysTask() throws Exception {
     HostResource host = newHostResource("ns1.example.tld");
     enqueuer.enqueueAsyncDnsRefresh(host, clock.nowUtc());
-    runMapreduce();
+    runAction();
     assertNoDnsTasksEnqueued();
     assertTasksEnqueued(
         QUEUE_ASYNC_HOST_RENAME,
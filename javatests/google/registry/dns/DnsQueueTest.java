@@ -14,10 +14,13 @@
 
 package google.registry.dns;
 
+import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.createTlds;
 import static google.registry.testing.TaskQueueHelper.assertNoTasksEnqueued;
 import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
 
+import com.google.common.collect.ImmutableList;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.ExceptionRule;
 import google.registry.testing.TaskQueueHelper.TaskMatcher;
@@ -92,5 +95,49 @@ public class DnsQueueTest {
       assertNoTasksEnqueued("dns-pull");
     }
   }
-}
 
+  @Test
+  public void test_addDomainRefreshTasks_groupsByTldAndDedups() throws Exception {
+    createTlds("tld", "foo");
+    dnsQueue.addDomainRefreshTasks(
+        ImmutableList.of("octopus.tld", "squid.foo", "octopus.tld", "kraken.tld"));
+    assertTasksEnqueued(
+        "dns-pull",
+        new TaskMatcher()
+            .param("Target-Type", "DOMAIN")
+            .param("Target-Name", "octopus.tld")
+            .param("Target-Name", "kraken.tld")
+            .param("tld", "tld"),
+        new TaskMatcher()
+            .param("Target-Type", "DOMAIN")
+            .param("Target-Name", "squid.foo")
+            .param("tld", "foo"));
+  }
+
+  @Test
+  public void test_addHostRefreshTasks_splitsLargeBatches() throws Exception {
+    createTld("tld");
+    ImmutableList.Builder<String> hostNames = new ImmutableList.Builder<>();
+    for (int i = 0; i < DnsQueue.MAX_TARGETS_PER_TASK + 1; i++) {
+      hostNames.add(String.format("ns%d.octopus.tld", i));
+    }
+    assertThat(dnsQueue.addHostRefreshTasks(hostNames.build())).hasSize(2);
+  }
+
+  @Test
+  public void test_addDomainRefreshTasks_empty() throws Exception {
+    assertThat(dnsQueue.addDomainRefreshTasks(ImmutableList.of())).isEmpty();
+    assertNoTasksEnqueued("dns-pull");
+  }
+
+  @Test
+  public void test_addDomainRefreshTasks_failsOnUnknownTld() throws Exception {
+    createTld("tld");
+    thrown.expect(IllegalArgumentException.class, "TLD notatld does not exist");
+    try {
+      dnsQueue.addDomainRefreshTasks(ImmutableList.of("octopus.tld", "fake.notatld"));
+    } finally {
+      assertNoTasksEnqueued("dns-pull");
+    }
+  }
+}
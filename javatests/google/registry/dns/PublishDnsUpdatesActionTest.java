@@ -100,6 +100,7 @@ public class PublishDnsUpdatesActionTest {
     action.hosts = ImmutableSet.of("ns1.example.xn--q9jyb4c");
     action.run();
 
+    verify(dnsWriter).prefetch(ImmutableSet.of(), ImmutableSet.of("ns1.example.xn--q9jyb4c"));
     verify(dnsWriter).publishHost("ns1.example.xn--q9jyb4c");
     verify(dnsWriter).commit();
     verifyNoMoreInteractions(dnsWriter);
@@ -118,6 +119,7 @@ public class PublishDnsUpdatesActionTest {
     action.domains = ImmutableSet.of("example.xn--q9jyb4c");
     action.run();
 
+    verify(dnsWriter).prefetch(ImmutableSet.of("example.xn--q9jyb4c"), ImmutableSet.of());
     verify(dnsWriter).publishDomain("example.xn--q9jyb4c");
     verify(dnsWriter).commit();
     verifyNoMoreInteractions(dnsWriter);
@@ -138,6 +140,11 @@ public class PublishDnsUpdatesActionTest {
         "ns1.example.xn--q9jyb4c", "ns2.example.xn--q9jyb4c", "ns1.example2.xn--q9jyb4c");
     action.run();
 
+    verify(dnsWriter)
+        .prefetch(
+            ImmutableSet.of("example.xn--q9jyb4c", "example2.xn--q9jyb4c"),
+            ImmutableSet.of(
+                "ns1.example.xn--q9jyb4c", "ns2.example.xn--q9jyb4c", "ns1.example2.xn--q9jyb4c"));
     verify(dnsWriter).publishDomain("example.xn--q9jyb4c");
     verify(dnsWriter).publishDomain("example2.xn--q9jyb4c");
     verify(dnsWriter).publishHost("ns1.example.xn--q9jyb4c");
@@ -161,6 +168,7 @@ public class PublishDnsUpdatesActionTest {
     action.hosts = ImmutableSet.of("ns1.example.com", "ns2.example.com", "ns1.example2.com");
     action.run();
 
+    verify(dnsWriter).prefetch(ImmutableSet.of(), ImmutableSet.of());
     verify(dnsWriter).commit();
     verifyNoMoreInteractions(dnsWriter);
 
@@ -16,6 +16,7 @@ package google.registry.dns;
 
 import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
 import static com.google.common.collect.Lists.transform;
+import static com.google.common.truth.Truth.assertThat;
 import static google.registry.dns.DnsConstants.DNS_PUBLISH_PUSH_QUEUE_NAME;
 import static google.registry.dns.DnsConstants.DNS_PULL_QUEUE_NAME;
 import static google.registry.dns.DnsConstants.DNS_TARGET_NAME_PARAM;
@@ -24,6 +25,7 @@ import static google.registry.testing.DatastoreHelper.createTlds;
 import static google.registry.testing.DatastoreHelper.persistResource;
 import static google.registry.testing.TaskQueueHelper.assertNoTasksEnqueued;
 import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
+import static org.mockito.Mockito.mock;
 
 import com.google.appengine.api.taskqueue.QueueFactory;
 import com.google.appengine.api.taskqueue.TaskOptions;
@@ -33,6 +35,7 @@ import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.net.InternetDomainName;
 import google.registry.dns.DnsConstants.TargetType;
 import google.registry.model.registry.Registry;
@@ -61,7 +64,9 @@ import org.junit.runners.JUnit4;
 public class ReadDnsQueueActionTest {
 
   private static final int TEST_TLD_UPDATE_BATCH_SIZE = 100;
+  private static final int TEST_TLD_UPDATE_MAX_BATCH_SIZE = 300;
   private DnsQueue dnsQueue;
+  private Duration requestedMaximumDuration = Duration.standardSeconds(45);
   private FakeClock clock = new FakeClock(DateTime.now(DateTimeZone.UTC));
 
   @Rule
@@ -99,15 +104,24 @@ public class ReadDnsQueueActionTest {
     dnsQueue = DnsQueue.create();
   }
 
-  private void run(boolean keepTasks) throws Exception {
+  private ReadDnsQueueAction createAction(boolean keepTasks) {
     ReadDnsQueueAction action = new ReadDnsQueueAction();
     action.tldUpdateBatchSize = TEST_TLD_UPDATE_BATCH_SIZE;
+    action.tldUpdateMaxBatchSize = TEST_TLD_UPDATE_MAX_BATCH_SIZE;
+    action.requestedMaximumDuration = requestedMaximumDuration;
+    action.clock = clock;
+    action.dnsMetrics = mock(DnsMetrics.class);
     action.writeLockTimeout = Duration.standardSeconds(10);
     action.dnsQueue = dnsQueue;
     action.dnsPublishPushQueue = QueueFactory.getQueue(DNS_PUBLISH_PUSH_QUEUE_NAME);
     action.taskEnqueuer = new TaskEnqueuer(new Retrier(null, 1));
     action.jitterSeconds = Optional.empty();
     action.keepTasks = keepTasks;
+    return action;
+  }
+
+  private void run(boolean keepTasks) throws Exception {
+    ReadDnsQueueAction action = createAction(keepTasks);
     // Advance the time a little, to ensure that leaseTasks() returns all tasks.
     clock.setTo(DateTime.now(DateTimeZone.UTC).plusMillis(1));
     action.run();
@@ -213,6 +227,23 @@ public class ReadDnsQueueActionTest {
         new TaskMatcher().url(PublishDnsUpdatesAction.PATH).param("hosts", "ns1.domain.com"));
   }
 
+  @Test
+  public void testSuccess_multipleTargetsInOneTask() throws Exception {
+    dnsQueue.addDomainRefreshTasks(ImmutableList.of("domain1.com", "domain2.com"));
+    dnsQueue.addHostRefreshTasks(ImmutableList.of("ns1.domain1.com", "ns2.domain1.com"));
+    run(false);
+    assertNoTasksEnqueued(DNS_PULL_QUEUE_NAME);
+    assertTasksEnqueued(
+        DNS_PUBLISH_PUSH_QUEUE_NAME,
+        new TaskMatcher()
+            .url(PublishDnsUpdatesAction.PATH)
+            .param("tld", "com")
+            .param("domains", "domain1.com")
+            .param("domains", "domain2.com")
+            .param("hosts", "ns1.domain1.com")
+            .param("hosts", "ns2.domain1.com"));
+  }
+
   @Test
   public void testSuccess_manyDomainsAndHosts() throws Exception {
     List<TaskMatcher> expectedTasks = new ArrayList<>();
@@ -258,4 +289,96 @@ public class ReadDnsQueueActionTest {
     assertNoTasksEnqueued(DNS_PULL_QUEUE_NAME);
     assertTasksEnqueued(DNS_PUBLISH_PUSH_QUEUE_NAME, expectedTasks);
   }
+
+  @Test
+  public void testSuccess_drainsQueueInSeveralBatches() throws Exception {
+    dnsQueue.leaseTasksBatchSize = 2;
+    dnsQueue.addDomainRefreshTask("domain.com");
+    dnsQueue.addDomainRefreshTask("domain.net");
+    dnsQueue.addDomainRefreshTask("domain.example");
+    run(false);
+    assertNoTasksEnqueued(DNS_PULL_QUEUE_NAME);
+    assertTldsEnqueuedInPushQueue(
+        ImmutableMultimap.of("com", "comWriter", "net", "netWriter", "example", "exampleWriter"));
+  }
+
+  @Test
+  public void testSuccess_stopsDrainingAtDeadline() throws Exception {
+    requestedMaximumDuration = Duration.ZERO;
+    dnsQueue.leaseTasksBatchSize = 2;
+    dnsQueue.addDomainRefreshTask("domain.com");
+    dnsQueue.addDomainRefreshTask("domain.net");
+    dnsQueue.addDomainRefreshTask("domain.example");
+    run(false);
+    assertTasksEnqueued(DNS_PULL_QUEUE_NAME, new TaskMatcher());
+    assertTasksEnqueued(
+        DNS_PUBLISH_PUSH_QUEUE_NAME,
+        new TaskMatcher().url(PublishDnsUpdatesAction.PATH),
+        new TaskMatcher().url(PublishDnsUpdatesAction.PATH));
+  }
+
+  @Test
+  public void testSuccess_pausedTldTasksAreNotLeasedTwice() throws Exception {
+    persistResource(Registry.get("net").asBuilder().setDnsPaused(true).build());
+    dnsQueue.leaseTasksBatchSize = 1;
+    dnsQueue.addDomainRefreshTask("domain.net");
+    dnsQueue.addDomainRefreshTask("domain.com");
+    run(false);
+    assertTasksEnqueued(DNS_PULL_QUEUE_NAME, new TaskMatcher().param("tld", "net"));
+    assertTldsEnqueuedInPushQueue(ImmutableMultimap.of("com", "comWriter"));
+  }
+
+  @Test
+  public void testSuccess_largeBacklogUsesLargerBatches() throws Exception {
+    ImmutableList.Builder<String> domainNames = new ImmutableList.Builder<>();
+    for (int i = 0; i < 2000; i++) {
+      domainNames.add(String.format("domain%04d.com", i));
+    }
+    dnsQueue.addDomainRefreshTasks(domainNames.build());
+    run(false);
+    assertNoTasksEnqueued(DNS_PULL_QUEUE_NAME);
+    List<TaskMatcher> expectedTasks = new ArrayList<>();
+    for (List<String> chunk : Iterables.partition(domainNames.build(), 200)) {
+      TaskMatcher task = new TaskMatcher().url(PublishDnsUpdatesAction.PATH).param("tld", "com");
+      for (String domainName : chunk) {
+        task.param("domains", domainName);
+      }
+      expectedTasks.add(task);
+    }
+    assertTasksEnqueued(DNS_PUBLISH_PUSH_QUEUE_NAME, expectedTasks);
+  }
+
+  @Test
+  public void testSuccess_moreThanOneAddOfPublishTasks() throws Exception {
+    ImmutableList.Builder<String> domainNames = new ImmutableList.Builder<>();
+    for (int i = 0; i < 150; i++) {
+      domainNames.add(String.format("domain%04d.com", i));
+    }
+    dnsQueue.addDomainRefreshTasks(domainNames.build());
+    ReadDnsQueueAction action = createAction(false);
+    action.tldUpdateBatchSize = 1;
+    action.tldUpdateMaxBatchSize = 1;
+    clock.setTo(DateTime.now(DateTimeZone.UTC).plusMillis(1));
+    action.run();
+    assertNoTasksEnqueued(DNS_PULL_QUEUE_NAME);
+    List<TaskMatcher> expectedTasks = new ArrayList<>();
+    for (String domainName : domainNames.build()) {
+      expectedTasks.add(
+          new TaskMatcher()
+              .url(PublishDnsUpdatesAction.PATH)
+              .param("tld", "com")
+              .param("domains", domainName));
+    }
+    assertTasksEnqueued(DNS_PUBLISH_PUSH_QUEUE_NAME, expectedTasks);
+  }
+
+  @Test
+  public void testGetTldUpdateBatchSize() throws Exception {
+    ReadDnsQueueAction action = createAction(false);
+    assertThat(action.getTldUpdateBatchSize(1)).isEqualTo(100);
+    assertThat(action.getTldUpdateBatchSize(1000)).isEqualTo(100);
+    assertThat(action.getTldUpdateBatchSize(1001)).isEqualTo(101);
+    assertThat(action.getTldUpdateBatchSize(2000)).isEqualTo(200);
+    assertThat(action.getTldUpdateBatchSize(100000)).isEqualTo(300);
+  }
 }
@@ -18,6 +18,7 @@ import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.io.BaseEncoding.base16;
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.deleteResource;
 import static google.registry.testing.DatastoreHelper.newDomainResource;
 import static google.registry.testing.DatastoreHelper.newHostResource;
 import static google.registry.testing.DatastoreHelper.persistResource;
@@ -343,6 +344,19 @@ public class CloudDnsWriterTest {
     verifyZone(fakeDomainRecords("example.tld", 0, 0, 1, 1));
   }
 
+  @Test
+  public void testLoadDomain_prefetched() throws Exception {
+    DomainResource domain =
+        persistResource(
+            fakeDomain("example.tld", ImmutableSet.of(persistResource(fakeHost("0.external"))), 1));
+    writer.prefetch(ImmutableSet.of("example.tld"), ImmutableSet.of());
+    // Publishing uses the prefetched domain, so it doesn't notice the domain going away.
+    deleteResource(domain);
+    writer.publishDomain("example.tld");
+
+    verifyZone(fakeDomainRecords("example.tld", 0, 0, 1, 1));
+  }
+
   @Test
   public void testLoadDomain_withInBailiwickNs_IPv4() throws Exception {
     persistResource(
@@ -17,21 +17,34 @@ package google.registry.dns.writer.dnsupdate;
 import static com.google.common.io.BaseEncoding.base16;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.base.VerifyException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import google.registry.testing.ExceptionRule;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
 import java.io.EOFException;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.net.SocketFactory;
 import org.joda.time.Duration;
 import org.junit.Before;
@@ -43,10 +56,12 @@ import org.xbill.DNS.ARecord;
 import org.xbill.DNS.DClass;
 import org.xbill.DNS.Flags;
 import org.xbill.DNS.Message;
+import org.xbill.DNS.NSRecord;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.Opcode;
 import org.xbill.DNS.Rcode;
 import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
 import org.xbill.DNS.Type;
 import org.xbill.DNS.Update;
 
@@ -139,14 +154,7 @@ public class DnsMessageTransportTest {
 
   @Test
   public void testSentMessageTooLongThrowsException() throws Exception {
-    Update oversize = new Update(Name.fromString("tld", Name.root));
-    for (int i = 0; i < 2000; i++) {
-      oversize.add(
-          ARecord.newRecord(
-              Name.fromString("test-extremely-long-name-" + i + ".tld", Name.root),
-              Type.A,
-              DClass.IN));
-    }
+    Update oversize = createOversizeUpdate();
     ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     when(mockSocket.getOutputStream()).thenReturn(outputStream);
     thrown.expect(IllegalArgumentException.class, "message larger than maximum");
@@ -183,6 +191,216 @@ public class DnsMessageTransportTest {
     resolver.send(simpleQuery);
   }
 
+  @Test
+  public void testSend_closesConnection() throws Exception {
+    ByteArrayInputStream inputStream =
+        new ByteArrayInputStream(messageToBytesWithLength(expectedResponse));
+    when(mockSocket.getInputStream()).thenReturn(inputStream);
+    when(mockSocket.getOutputStream()).thenReturn(new ByteArrayOutputStream());
+
+    resolver.send(simpleQuery);
+
+    verify(mockSocket).close();
+  }
+
+  @Test
+  public void testSendAll_matchesOutOfOrderResponsesById() throws Exception {
+    try (FakeDnsServer server = new FakeDnsServer(2)) {
+      DnsMessageTransport transport = server.createTransport();
+      ImmutableList<Message> responses =
+          transport.sendAll(ImmutableList.of(queryWithId(1), queryWithId(2)));
+      assertThat(responses.get(0).getHeader().getID()).isEqualTo(1);
+      assertThat(responses.get(1).getHeader().getID()).isEqualTo(2);
+      assertThat(server.getConnectionCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testSendAll_duplicateIdsThrowsException() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Duplicate DNS message ID 1");
+
+    resolver.sendAll(ImmutableList.of(queryWithId(1), queryWithId(1)));
+  }
+
+  @Test
+  public void testSendUpdate_splitsOversizeUpdate() throws Exception {
+    try (FakeDnsServer server = new FakeDnsServer(1)) {
+      DnsMessageTransport transport = server.createTransport();
+      assertThat(transport.sendUpdate(createOversizeUpdate())).hasSize(2);
+      assertThat(server.getConnectionCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testSplitUpdate_smallUpdateIsUnchanged() throws Exception {
+    Update update = new Update(Name.fromString("tld", Name.root));
+    update.delete(Name.fromString("example.tld", Name.root), Type.ANY);
+
+    assertThat(DnsMessageTransport.splitUpdate(update, DnsMessageTransport.MESSAGE_MAXIMUM_LENGTH))
+        .containsExactly(update);
+  }
+
+  @Test
+  public void testSplitUpdate_keepsRecordsInOrder() throws Exception {
+    Update oversize = createOversizeUpdate();
+
+    ImmutableList<Update> updates =
+        DnsMessageTransport.splitUpdate(oversize, DnsMessageTransport.MESSAGE_MAXIMUM_LENGTH);
+
+    assertThat(updates).hasSize(2);
+    List<Record> records = new ArrayList<>();
+    Set<Integer> ids = new HashSet<>();
+    for (Update update : updates) {
+      assertThat(update.toWire().length).isAtMost(DnsMessageTransport.MESSAGE_MAXIMUM_LENGTH);
+      assertThat(update.getQuestion()).isEqualTo(oversize.getQuestion());
+      records.addAll(Arrays.asList(update.getSectionArray(Section.UPDATE)));
+      ids.add(update.getHeader().getID());
+    }
+    assertThat(records)
+        .containsExactlyElementsIn(oversize.getSectionArray(Section.UPDATE))
+        .inOrder();
+    assertThat(ids).hasSize(2);
+  }
+
+  @Test
+  public void testSplitUpdate_keepsRecordsForSameNameTogether() throws Exception {
+    Update update = new Update(Name.fromString("tld", Name.root));
+    Name name1 = Name.fromString("example1.tld", Name.root);
+    Name name2 = Name.fromString("example2.tld", Name.root);
+    update.delete(name1, Type.ANY);
+    update.add(new ARecord(name1, DClass.IN, 60, InetAddress.getByName("10.0.0.1")));
+    update.delete(name2, Type.ANY);
+    update.add(new ARecord(name2, DClass.IN, 60, InetAddress.getByName("10.0.0.2")));
+
+    ImmutableList<Update> updates =
+        DnsMessageTransport.splitUpdate(update, update.toWire().length - 1);
+
+    assertThat(updates).hasSize(2);
+    assertThat(updates.get(0).getSectionArray(Section.UPDATE)[0].getName()).isEqualTo(name1);
+    assertThat(updates.get(0).getSectionArray(Section.UPDATE)).hasLength(2);
+    assertThat(updates.get(1).getSectionArray(Section.UPDATE)[0].getName()).isEqualTo(name2);
+    assertThat(updates.get(1).getSectionArray(Section.UPDATE)).hasLength(2);
+  }
+
+  @Test
+  public void testSplitUpdate_keepsInterleavedRecordsForSameNameTogether() throws Exception {
+    // DnsUpdateWriter deletes the domain and its hosts before adding any of their records.
+    Update update = new Update(Name.fromString("tld", Name.root));
+    Name name1 = Name.fromString("example.tld", Name.root);
+    Name name2 = Name.fromString("ns1.example.tld", Name.root);
+    update.delete(name1, Type.ANY);
+    update.delete(name2, Type.ANY);
+    update.add(new NSRecord(name1, DClass.IN, 60, name2));
+    update.add(new ARecord(name2, DClass.IN, 60, InetAddress.getByName("10.0.0.2")));
+    Record[] records = update.getSectionArray(Section.UPDATE);
+
+    ImmutableList<Update> updates =
+        DnsMessageTransport.splitUpdate(update, update.toWire().length - 1);
+
+    assertThat(updates).hasSize(2);
+    assertThat(updates.get(0).getSectionArray(Section.UPDATE))
+        .asList()
+        .containsExactly(records[0], records[2])
+        .inOrder();
+    assertThat(updates.get(1).getSectionArray(Section.UPDATE))
+        .asList()
+        .containsExactly(records[1], records[3])
+        .inOrder();
+  }
+
+  @Test
+  public void testSplitUpdate_recordsForOneNameTooLongThrowsException() throws Exception {
+    Update update = new Update(Name.fromString("tld", Name.root));
+    Name name = Name.fromString("example.tld", Name.root);
+    update.delete(name, Type.ANY);
+    update.add(new ARecord(name, DClass.IN, 60, InetAddress.getByName("10.0.0.1")));
+    update.add(new ARecord(name, DClass.IN, 60, InetAddress.getByName("10.0.0.2")));
+    thrown.expect(IllegalArgumentException.class, "larger than maximum");
+
+    DnsMessageTransport.splitUpdate(update, update.toWire().length - 1);
+  }
+
+  private static Message queryWithId(int id) throws Exception {
+    Message query =
+        Message.newQuery(Record.newRecord(Name.fromString("example.com."), Type.A, DClass.IN));
+    query.getHeader().setID(id);
+    return query;
+  }
+
+  private static Update createOversizeUpdate() throws Exception {
+    Update oversize = new Update(Name.fromString("tld", Name.root));
+    for (int i = 0; i < 2000; i++) {
+      oversize.add(
+          ARecord.newRecord(
+              Name.fromString("test-extremely-long-name-" + i + ".tld", Name.root),
+              Type.A,
+              DClass.IN));
+    }
+    return oversize;
+  }
+
+  /**
+   * A minimal in-process DNS server that answers every message it receives with NOERROR.
+   *
+   * <p>It reads {@code messagesPerBatch} messages before answering them, in reverse order.
+   */
+  private final class FakeDnsServer implements Closeable {
+
+    private final ServerSocket serverSocket;
+    private final int messagesPerBatch;
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    FakeDnsServer(int messagesPerBatch) throws IOException {
+      this.serverSocket = new ServerSocket(0, 0, InetAddress.getByName(UPDATE_HOST));
+      this.messagesPerBatch = messagesPerBatch;
+      Thread thread = new Thread(this::serve);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    DnsMessageTransport createTransport() throws IOException {
+      SocketFactory factory = mock(SocketFactory.class);
+      doAnswer(invocation -> new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort()))
+          .when(factory)
+          .createSocket(InetAddress.getByName(UPDATE_HOST), DnsMessageTransport.DNS_PORT);
+      return new DnsMessageTransport(factory, UPDATE_HOST, Duration.standardSeconds(10));
+    }
+
+    int getConnectionCount() {
+      return connectionCount.get();
+    }
+
+    private void serve() {
+      while (!serverSocket.isClosed()) {
+        try (Socket socket = serverSocket.accept()) {
+          connectionCount.incrementAndGet();
+          DataInputStream inputStream = new DataInputStream(socket.getInputStream());
+          OutputStream outputStream = socket.getOutputStream();
+          while (true) {
+            List<Message> queries = new ArrayList<>();
+            for (int i = 0; i < messagesPerBatch; i++) {
+              byte[] messageData = new byte[inputStream.readUnsignedShort()];
+              inputStream.readFully(messageData);
+              queries.add(new Message(messageData));
+            }
+            for (Message query : Lists.reverse(queries)) {
+              outputStream.write(
+                  messageToBytesWithLength(responseMessageWithCode(query, Rcode.NOERROR)));
+            }
+            outputStream.flush();
+          }
+        } catch (IOException e) {
+          // The client closed the connection, or the server was shut down.
+        }
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      serverSocket.close();
+    }
+  }
+
   private Message responseMessageWithCode(Message query, int responseCode) {
     Message message = new Message(query.getHeader().getID());
     message.getHeader().setOpcode(query.getHeader().getOpcode());
@@ -18,6 +18,7 @@ import static com.google.common.io.BaseEncoding.base16;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.Truth.assert_;
 import static google.registry.testing.DatastoreHelper.createTld;
+import static google.registry.testing.DatastoreHelper.deleteResource;
 import static google.registry.testing.DatastoreHelper.newDomainResource;
 import static google.registry.testing.DatastoreHelper.newHostResource;
 import static google.registry.testing.DatastoreHelper.persistActiveDomain;
@@ -96,7 +97,8 @@ public class DnsUpdateWriterTest {
     inject.setStaticField(Ofy.class, "clock", clock);
 
     createTld("tld");
-    when(mockResolver.send(any(Update.class))).thenReturn(messageWithResponseCode(Rcode.NOERROR));
+    when(mockResolver.sendUpdate(any(Update.class)))
+        .thenReturn(ImmutableList.of(messageWithResponseCode(Rcode.NOERROR)));
 
     writer = new DnsUpdateWriter(
         "tld", Duration.ZERO, Duration.ZERO, Duration.ZERO, mockResolver, clock);
@@ -116,7 +118,7 @@ public class DnsUpdateWriterTest {
     writer.publishDomain("example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -124,6 +126,40 @@ public class DnsUpdateWriterTest {
     assertThatTotalUpdateSetsIs(update, 2); // The delete and NS sets
   }
 
+  @Test
+  public void testPublishHostAndDomain_prefetched() throws Exception {
+    HostResource host =
+        persistResource(
+            newHostResource("ns1.example.tld")
+                .asBuilder()
+                .setInetAddresses(ImmutableSet.of(InetAddresses.forString("10.0.0.1")))
+                .build());
+    persistResource(
+        newDomainResource("example.tld")
+            .asBuilder()
+            .addSubordinateHost("ns1.example.tld")
+            .addNameservers(ImmutableSet.of(Key.create(host)))
+            .build());
+    persistActiveDomain("example2.tld");
+
+    writer.prefetch(ImmutableSet.of("example2.tld"), ImmutableSet.of("ns1.example.tld"));
+    // Publishing uses the prefetched resources, so it doesn't notice them going away.
+    deleteResource(host);
+    writer.publishHost("ns1.example.tld");
+    writer.publishDomain("example2.tld");
+    writer.commit();
+
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
+    Update update = updateCaptor.getValue();
+    assertThatUpdatedZoneIs(update, "tld.");
+    assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
+    assertThatUpdateDeletes(update, "ns1.example.tld.", Type.ANY);
+    assertThatUpdateAdds(update, "ns1.example.tld.", Type.A, "10.0.0.1");
+    assertThatUpdateAdds(update, "example.tld.", Type.NS, "ns1.example.tld.");
+    assertThatUpdateDeletes(update, "example2.tld.", Type.ANY);
+    assertThatTotalUpdateSetsIs(update, 5);
+  }
+
   @Test
   public void testPublishAtomic_noCommit() throws Exception {
     HostResource host1 = persistActiveHost("ns.example1.tld");
@@ -170,7 +206,7 @@ public class DnsUpdateWriterTest {
     writer.publishDomain("example2.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example1.tld.", Type.ANY);
@@ -195,7 +231,7 @@ public class DnsUpdateWriterTest {
     writer.publishDomain("example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -217,7 +253,7 @@ public class DnsUpdateWriterTest {
     writer.publishDomain("example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -231,7 +267,7 @@ public class DnsUpdateWriterTest {
     writer.publishDomain("example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -260,7 +296,7 @@ public class DnsUpdateWriterTest {
     writer.publishHost("ns1.example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -279,7 +315,7 @@ public class DnsUpdateWriterTest {
     writer.publishHost("ns1.example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -299,7 +335,7 @@ public class DnsUpdateWriterTest {
     writer.publishHost("ns1.example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -333,7 +369,7 @@ public class DnsUpdateWriterTest {
     writer.publishDomain("example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -368,7 +404,7 @@ public class DnsUpdateWriterTest {
     writer.publishDomain("example.tld");
     writer.commit();
 
-    verify(mockResolver).send(updateCaptor.capture());
+    verify(mockResolver).sendUpdate(updateCaptor.capture());
     Update update = updateCaptor.getValue();
     assertThatUpdatedZoneIs(update, "tld.");
     assertThatUpdateDeletes(update, "example.tld.", Type.ANY);
@@ -388,7 +424,8 @@ public class DnsUpdateWriterTest {
             .setNameservers(ImmutableSet.of(Key.create(persistActiveHost("ns1.example.tld"))))
             .build();
     persistResource(domain);
-    when(mockResolver.send(any(Message.class))).thenReturn(messageWithResponseCode(Rcode.SERVFAIL));
+    when(mockResolver.sendUpdate(any(Update.class)))
+        .thenReturn(ImmutableList.of(messageWithResponseCode(Rcode.SERVFAIL)));
     thrown.expect(VerifyException.class, "SERVFAIL");
 
     writer.publishDomain("example.tld");
@@ -403,7 +440,8 @@ public class DnsUpdateWriterTest {
             .setInetAddresses(ImmutableSet.of(InetAddresses.forString("10.0.0.1")))
             .build();
     persistResource(host);
-    when(mockResolver.send(any(Message.class))).thenReturn(messageWithResponseCode(Rcode.SERVFAIL));
+    when(mockResolver.sendUpdate(any(Update.class)))
+        .thenReturn(ImmutableList.of(messageWithResponseCode(Rcode.SERVFAIL)));
     thrown.expect(VerifyException.class, "SERVFAIL");
 
     writer.publishHost("ns1.example.tld");
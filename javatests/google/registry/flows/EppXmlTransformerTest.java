@@ -16,13 +16,20 @@
 package google.registry.flows;
 
 import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assert_;
 import static google.registry.flows.EppXmlTransformer.unmarshal;
 import static google.registry.util.ResourceUtils.readResourceBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import google.registry.model.eppinput.EppInput;
 import google.registry.model.eppoutput.EppOutput;
 import google.registry.testing.ExceptionRule;
 import google.registry.testing.ShardableTestCase;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -42,6 +49,34 @@ public class EppXmlTransformerTest extends ShardableTestCase {
     assertThat(input.getCommandType()).isEqualTo("info");
   }
 
+  @Test
+  public void testUnmarshalingEppInput_afterSyntaxError() throws Exception {
+    try {
+      unmarshal(EppInput.class, "<epp><command>".getBytes(UTF_8));
+      assert_().fail("Expected EppException");
+    } catch (EppException expected) {}
+    EppInput input = unmarshal(
+        EppInput.class, readResourceBytes(getClass(), "testdata/contact_info.xml").read());
+    assertThat(input.getCommandType()).isEqualTo("info");
+  }
+
+  @Test
+  public void testUnmarshalingEppInput_concurrently() throws Exception {
+    final byte[] xml = readResourceBytes(getClass(), "testdata/contact_info.xml").read();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        results.add(executor.submit(() -> unmarshal(EppInput.class, xml).getCommandType()));
+      }
+      for (Future<String> result : results) {
+        assertThat(result.get()).isEqualTo("info");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   @Test
   public void testUnmarshalingWrongClassThrows() throws Exception {
     thrown.expect(ClassCastException.class);
@@ -84,6 +84,7 @@ public class FlowRunnerTest extends ShardableTestCase {
         new StatelessRequestSessionMetadata("TheRegistrar", ImmutableSet.<String>of());
     flowRunner.trid = Trid.create("client-123", "server-456");
     flowRunner.flowReporter = Mockito.mock(FlowReporter.class);
+    flowRunner.prettyPrintRates = ImmutableMap.of();
   }
 
   @Test
@@ -191,4 +192,29 @@ public class FlowRunnerTest extends ShardableTestCase {
     String xml = Joiner.on('\n').join(lines.subList(3, lines.size() - 3));
     assertThat(xml).isEqualTo(domainCreateXml);
   }
+
+  @Test
+  public void testRun_legacyLoggingStatement_prettyPrintDisabledForFlow() throws Exception {
+    flowRunner.prettyPrintRates = ImmutableMap.of("TestCommandFlow", 0.0);
+    flowRunner.run(eppMetricBuilder);
+    assertThat(Splitter.on("\n\t").split(findFirstLogMessageByPrefix(handler, "EPP Command\n\t")))
+        .containsExactly(
+            "server-456",
+            "TheRegistrar",
+            "StatelessRequestSessionMetadata"
+                + "{clientId=TheRegistrar, failedLoginAttempts=0, serviceExtensionUris=}",
+            "<xml/>",
+            "PasswordOnlyTransportCredentials{}",
+            "UNIT_TEST",
+            "LIVE")
+        .inOrder();
+  }
+
+  @Test
+  public void testRun_legacyLoggingStatement_prettyPrintDisabledForOtherFlow() throws Exception {
+    flowRunner.prettyPrintRates = ImmutableMap.of("DomainCheckFlow", 0.0);
+    flowRunner.run(eppMetricBuilder);
+    assertThat(Splitter.on("\n\t").split(findFirstLogMessageByPrefix(handler, "EPP Command\n\t")))
+        .contains("<?xml version=\"1.0\" encoding=\"UTF-8\"?><xml/>");
+  }
 }
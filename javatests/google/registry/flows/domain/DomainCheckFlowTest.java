@@ -421,6 +421,22 @@ public class DomainCheckFlowTest
     doCheckTest(create(false, "rich.example", "Premium names require EPP ext."));
   }
 
+  @Test
+  public void testAvailExtension_premiumDomainsAcrossMultipleTlds() throws Exception {
+    sessionMetadata.setServiceExtensionUris(ImmutableSet.<String>of());
+    createTld("example");
+    persistActiveDomain("diamond.example");
+    setEppInput("domain_check_premium_multiple_tlds.xml");
+    doCheckTest(
+        create(false, "rich.example", "Premium names require EPP ext."),
+        create(false, "silver.example", "Premium names require EPP ext."),
+        create(false, "diamond.example", "In use"),
+        create(true, "example1.example", null),
+        create(false, "gold.tld", "Premium names require EPP ext."),
+        create(false, "reserved.tld", "Reserved"),
+        create(true, "example1.tld", null));
+  }
+
   /**
    * Test that premium names are always shown as available if the TLD does not require the premium
    * pricing extension to register premium names.
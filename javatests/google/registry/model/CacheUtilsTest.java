@@ -0,0 +1,139 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.CacheMetrics.cacheRefreshTime;
+import static google.registry.model.CacheUtils.memoizeWithShortExpiration;
+import static google.registry.model.CacheUtils.newRefreshingCache;
+import static google.registry.monitoring.metrics.contrib.DistributionMetricSubject.assertThat;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.google.common.base.Supplier;
+import com.google.common.cache.LoadingCache;
+import com.google.common.testing.FakeTicker;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import google.registry.testing.ExceptionRule;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.joda.time.Duration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CacheUtils}. */
+@RunWith(JUnit4.class)
+public class CacheUtilsTest {
+
+  @Rule
+  public final ExceptionRule thrown = new ExceptionRule();
+
+  private final FakeTicker ticker = new FakeTicker();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  /** A loader that returns the key and the number of loads so far, e.g. "foo:1". */
+  private final Function<String, String> loader = key -> key + ":" + loads.incrementAndGet();
+
+  @Test
+  public void testRefreshingCache_zeroDuration_loadsEveryTime() throws Exception {
+    LoadingCache<String, String> cache =
+        newRefreshingCache("test_zero", Duration.ZERO, loader, null, ticker);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:1");
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:2");
+  }
+
+  @Test
+  public void testRefreshingCache_refreshesStaleEntries() throws Exception {
+    LoadingCache<String, String> cache =
+        newRefreshingCache("test_refresh", Duration.standardSeconds(10), loader, null, ticker);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:1");
+    ticker.advance(9, SECONDS);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:1");
+    ticker.advance(2, SECONDS);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:2");
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:2");
+    assertThat(cacheRefreshTime).hasAnyValueForLabels("test_refresh", "RELOADED");
+  }
+
+  @Test
+  public void testRefreshingCache_unchangedRevision_keepsOldValue() throws Exception {
+    // Every value of a key has the same revision, so the first one loaded is kept forever.
+    LoadingCache<String, String> cache =
+        newRefreshingCache(
+            "test_unchanged",
+            Duration.standardSeconds(10),
+            loader,
+            value -> value.substring(0, value.indexOf(':')),
+            ticker);
+    String value = cache.getUnchecked("foo");
+    ticker.advance(11, SECONDS);
+    assertThat(cache.getUnchecked("foo")).isSameAs(value);
+    assertThat(loads.get()).isEqualTo(2);
+    assertThat(cacheRefreshTime).hasAnyValueForLabels("test_unchanged", "UNCHANGED");
+  }
+
+  @Test
+  public void testRefreshingCache_changedRevision_replacesOldValue() throws Exception {
+    LoadingCache<String, String> cache =
+        newRefreshingCache(
+            "test_changed", Duration.standardSeconds(10), loader, Function.identity(), ticker);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:1");
+    ticker.advance(11, SECONDS);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo:2");
+    assertThat(cacheRefreshTime).hasAnyValueForLabels("test_changed", "CHANGED");
+  }
+
+  @Test
+  public void testRefreshingCache_failedRefresh_servesOldValueUntilExpiry() throws Exception {
+    LoadingCache<String, String> cache =
+        newRefreshingCache(
+            "test_failed",
+            Duration.standardSeconds(10),
+            key -> {
+              if (loads.incrementAndGet() > 1) {
+                throw new IllegalStateException("Datastore is down");
+              }
+              return key;
+            },
+            null,
+            ticker);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo");
+    ticker.advance(11, SECONDS);
+    assertThat(cache.getUnchecked("foo")).isEqualTo("foo");
+    assertThat(cacheRefreshTime).hasAnyValueForLabels("test_failed", "FAILED");
+    ticker.advance(10, SECONDS);
+    thrown.expect(UncheckedExecutionException.class, "Datastore is down");
+    cache.getUnchecked("foo");
+  }
+
+  @Test
+  public void testMemoizeWithShortExpiration_rethrowsLoaderExceptions() throws Exception {
+    Supplier<String> supplier =
+        memoizeWithShortExpiration(
+            "test_memoize_failure",
+            () -> {
+              throw new IllegalStateException("Datastore is down");
+            });
+    thrown.expect(IllegalStateException.class, "Datastore is down");
+    supplier.get();
+  }
+
+  @Test
+  public void testMemoizeWithShortExpiration_allowsNull() throws Exception {
+    Supplier<String> supplier = memoizeWithShortExpiration("test_memoize_null", () -> null);
+    assertThat(supplier.get()).isNull();
+  }
+}
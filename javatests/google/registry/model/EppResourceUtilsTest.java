@@ -16,13 +16,20 @@ package google.registry.model;
 
 import static com.google.common.truth.Truth.assertThat;
 import static google.registry.model.EppResourceUtils.loadAtPointInTime;
+import static google.registry.model.EppResourceUtils.loadByForeignKey;
+import static google.registry.model.EppResourceUtils.loadByForeignKeys;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.newHostResource;
+import static google.registry.testing.DatastoreHelper.persistActiveHost;
+import static google.registry.testing.DatastoreHelper.persistDeletedHost;
 import static google.registry.testing.DatastoreHelper.persistResource;
 import static google.registry.testing.DatastoreHelper.persistResourceWithCommitLog;
 import static google.registry.util.DateTimeUtils.START_OF_TIME;
 import static org.joda.time.DateTimeZone.UTC;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import google.registry.model.domain.DomainApplication;
 import google.registry.model.host.HostResource;
 import google.registry.model.ofy.Ofy;
 import google.registry.testing.AppEngineRule;
@@ -183,4 +190,29 @@ public class EppResourceUtilsTest {
           .now().getUpdateAutoTimestamp().getTimestamp())
               .isEqualTo(host.getRevisions().firstKey());
   }
+
+  @Test
+  public void testLoadByForeignKeys_omitsMissingAndDeletedResources() throws Exception {
+    HostResource host1 = persistActiveHost("ns1.cat.tld");
+    HostResource host2 = persistActiveHost("ns2.cat.tld");
+    persistDeletedHost("ns3.cat.tld", clock.nowUtc().minusDays(1));
+    ImmutableMap<String, HostResource> hosts =
+        loadByForeignKeys(
+            HostResource.class,
+            ImmutableList.of("ns1.cat.tld", "ns2.cat.tld", "ns3.cat.tld", "ns4.cat.tld"),
+            clock.nowUtc());
+    assertThat(hosts.keySet()).containsExactly("ns1.cat.tld", "ns2.cat.tld");
+    assertThat(hosts.get("ns1.cat.tld"))
+        .isEqualTo(loadByForeignKey(HostResource.class, "ns1.cat.tld", clock.nowUtc()));
+    assertThat(hosts.get("ns2.cat.tld").getRepoId()).isEqualTo(host2.getRepoId());
+    assertThat(hosts.get("ns1.cat.tld").getRepoId()).isEqualTo(host1.getRepoId());
+  }
+
+  @Test
+  public void testLoadByForeignKeys_notForeignKeyed() throws Exception {
+    thrown.expect(
+        IllegalArgumentException.class,
+        "loadByForeignKeys may only be called for foreign keyed EPP resources");
+    loadByForeignKeys(DomainApplication.class, ImmutableList.of("example.tld"), clock.nowUtc());
+  }
 }
@@ -16,11 +16,13 @@ package google.registry.model;
 
 import static com.google.common.truth.Truth.assertThat;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.googlecode.objectify.annotation.Id;
 import google.registry.testing.AppEngineRule;
 import google.registry.testing.ExceptionRule;
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
@@ -83,6 +85,21 @@ public class ModelUtilsTest {
     }
   }
 
+  /** Test class with array fields. */
+  public static class ArrayTestClass extends ImmutableObject {
+    byte[] bytes;
+    String[] strings;
+    Object value;
+  }
+
+  private static ArrayTestClass newArrayTestClass(byte[] bytes, String[] strings, Object value) {
+    ArrayTestClass instance = new ArrayTestClass();
+    instance.bytes = bytes;
+    instance.strings = strings;
+    instance.value = value;
+    return instance;
+  }
+
   @Before
   public void resetCaches() {
     ModelUtils.resetCaches();
@@ -138,4 +155,36 @@ public class ModelUtilsTest {
     // The hashCode is now cached and is stale (but that's the expected behavior).
     assertThat(cloned.hashCode()).isNotEqualTo(original.hashCode());
   }
+
+  @Test
+  public void testFieldValuesEqual_matchesGetFieldValues() {
+    ArrayTestClass instance = newArrayTestClass(new byte[] {1, 2}, new String[] {"a"}, "x");
+    ImmutableList<ArrayTestClass> others =
+        ImmutableList.of(
+            newArrayTestClass(new byte[] {1, 2}, new String[] {"a"}, "x"),
+            newArrayTestClass(new byte[] {1, 3}, new String[] {"a"}, "x"),
+            newArrayTestClass(new byte[] {1}, new String[] {"a"}, "x"),
+            newArrayTestClass(null, new String[] {"a"}, "x"),
+            newArrayTestClass(new byte[] {1, 2}, new String[] {"b"}, "x"),
+            newArrayTestClass(new byte[] {1, 2}, new String[] {"a"}, null),
+            newArrayTestClass(new byte[] {1, 2}, new String[] {"a"}, new int[] {1}),
+            newArrayTestClass(new byte[] {1, 2}, new String[] {"a"}, ImmutableList.of("x")));
+    for (ArrayTestClass other : others) {
+      assertThat(ModelUtils.fieldValuesEqual(instance, other))
+          .isEqualTo(ModelUtils.getFieldValues(instance).equals(ModelUtils.getFieldValues(other)));
+      assertThat(ModelUtils.fieldValuesHashCode(other))
+          .isEqualTo(Arrays.hashCode(ModelUtils.getFieldValues(other).values().toArray()));
+    }
+    assertThat(ModelUtils.fieldValuesEqual(instance, others.get(0))).isTrue();
+    assertThat(ModelUtils.fieldValuesEqual(instance, others.get(1))).isFalse();
+  }
+
+  @Test
+  public void testFieldValuesEqual_arrayAndList() {
+    ArrayTestClass withArray = newArrayTestClass(null, null, new String[] {"a", "b"});
+    ArrayTestClass withList = newArrayTestClass(null, null, ImmutableList.of("a", "b"));
+    assertThat(ModelUtils.fieldValuesEqual(withArray, withList)).isTrue();
+    assertThat(ModelUtils.fieldValuesHashCode(withArray))
+        .isEqualTo(ModelUtils.fieldValuesHashCode(withList));
+  }
 }
@@ -104,6 +104,7 @@ public class HostResourceTest extends EntityTestCase {
         "deletionTime",
         "fullyQualifiedHostName",
         "inetAddresses",
+        "inetAddressIndex",
         "superordinateDomain",
         "currentSponsorClientId");
   }
@@ -135,6 +136,38 @@ public class HostResourceTest extends EntityTestCase {
         .isNotNull();
   }
 
+  @Test
+  public void testInetAddressIndex_followsInetAddresses() throws Exception {
+    HostResource withAddresses =
+        new HostResource.Builder()
+            .setInetAddresses(
+                ImmutableSet.of(
+                    InetAddresses.forString("192.0.2.1"), InetAddresses.forString("2001:db8::1")))
+            .build();
+    assertThat(withAddresses.inetAddressIndex)
+        .containsExactly("4:c0000201", "6:20010db8000000000000000000000001");
+    assertThat(
+            withAddresses
+                .asBuilder()
+                .removeInetAddresses(ImmutableSet.of(InetAddresses.forString("2001:db8::1")))
+                .build()
+                .inetAddressIndex)
+        .containsExactly("4:c0000201");
+    assertThat(withAddresses.asBuilder().setInetAddresses(null).build().inetAddressIndex).isNull();
+  }
+
+  @Test
+  public void testInetAddressIndex_backfilledOnSave() throws Exception {
+    // Simulate a host that was saved before the index existed.
+    HostResource withoutIndex = host.asBuilder().build();
+    withoutIndex.inetAddressIndex = null;
+    persistResource(withoutIndex);
+    assertThat(
+            loadByForeignKey(HostResource.class, host.getForeignKey(), clock.nowUtc())
+                .inetAddressIndex)
+        .containsExactly("4:7f000001");
+  }
+
   @Test
   public void testImplicitStatusValues() {
     // OK is implicit if there's no other statuses.
@@ -0,0 +1,74 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.host;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.host.InetAddressIndexes.getIndexValue;
+import static google.registry.model.host.InetAddressIndexes.getLowerBound;
+import static google.registry.model.host.InetAddressIndexes.getUpperBound;
+
+import com.google.common.net.InetAddresses;
+import google.registry.util.CidrAddressBlock;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link InetAddressIndexes}. */
+@RunWith(JUnit4.class)
+public class InetAddressIndexesTest {
+
+  @Test
+  public void testGetIndexValue() {
+    assertThat(getIndexValue(InetAddresses.forString("10.0.0.255"))).isEqualTo("4:0a0000ff");
+    assertThat(getIndexValue(InetAddresses.forString("2001:db8::ff")))
+        .isEqualTo("6:20010db80000000000000000000000ff");
+  }
+
+  @Test
+  public void testIndexValues_sortByAddress() {
+    assertThat(
+            getIndexValue(InetAddresses.forString("9.255.255.255"))
+                .compareTo(getIndexValue(InetAddresses.forString("10.0.0.0"))))
+        .isLessThan(0);
+    assertThat(
+            getIndexValue(InetAddresses.forString("10.0.0.9"))
+                .compareTo(getIndexValue(InetAddresses.forString("10.0.0.10"))))
+        .isLessThan(0);
+  }
+
+  @Test
+  public void testBounds_ipv4Block() {
+    CidrAddressBlock block = CidrAddressBlock.create("192.0.2.128/25");
+    assertThat(getLowerBound(block)).isEqualTo("4:c0000280");
+    assertThat(getUpperBound(block)).isEqualTo("4:c00002ff");
+  }
+
+  @Test
+  public void testBounds_ipv6Block() {
+    CidrAddressBlock block = CidrAddressBlock.create("2001:db8::/32");
+    assertThat(getLowerBound(block)).isEqualTo("6:20010db8000000000000000000000000");
+    assertThat(getUpperBound(block)).isEqualTo("6:20010db8ffffffffffffffffffffffff");
+  }
+
+  @Test
+  public void testBounds_excludeOtherFamily() {
+    String ipv6Value = getIndexValue(InetAddresses.forString("c000:200::"));
+    CidrAddressBlock block = CidrAddressBlock.create("192.0.2.0/24");
+    assertThat(
+            ipv6Value.compareTo(getLowerBound(block)) >= 0
+                && ipv6Value.compareTo(getUpperBound(block)) <= 0)
+        .isFalse();
+  }
+}
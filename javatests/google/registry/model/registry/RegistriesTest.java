@@ -82,4 +82,16 @@ public class RegistriesTest {
     // Substring tld matches aren't considered.
     assertThat(Registries.findTldForName(InternetDomainName.from("example.barfoo"))).isEmpty();
   }
+
+  @Test
+  public void testFindTldForName_string() {
+    initTestTlds();
+    assertThat(Registries.findTldForName("example.foo")).hasValue("foo");
+    assertThat(Registries.findTldForName("x.y.a.b.c")).hasValue("a.b.c");
+    assertThat(Registries.findTldForName("foo.example")).isEmpty();
+    assertThat(Registries.findTldForName("foo")).isEmpty();
+    assertThat(Registries.findTldForName("x.y.a.b")).isEmpty();
+    assertThat(Registries.findTldForName("x.y.b.c")).isEmpty();
+    assertThat(Registries.findTldForName("example.barfoo")).isEmpty();
+  }
 }
@@ -0,0 +1,68 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TldSuffixTrie}. */
+@RunWith(JUnit4.class)
+public class TldSuffixTrieTest {
+
+  private final TldSuffixTrie trie =
+      TldSuffixTrie.create(ImmutableList.of("foo", "a.b.c", "c", "xn--q9jyb4c", "bar.foo"));
+
+  @Test
+  public void testFindTld_singleLabelTld() {
+    assertThat(trie.findTld("example.foo")).isEqualTo("foo");
+    assertThat(trie.findTld("ns1.example.xn--q9jyb4c")).isEqualTo("xn--q9jyb4c");
+  }
+
+  @Test
+  public void testFindTld_multipartTld() {
+    assertThat(trie.findTld("x.y.a.b.c")).isEqualTo("a.b.c");
+    assertThat(trie.findTld("x.y.b.c")).isEqualTo("c");
+    // A multipart TLD is itself under any shorter TLD that it ends with.
+    assertThat(trie.findTld("a.b.c")).isEqualTo("c");
+  }
+
+  @Test
+  public void testFindTld_longestTldWins() {
+    assertThat(trie.findTld("example.bar.foo")).isEqualTo("bar.foo");
+    assertThat(trie.findTld("bar.foo")).isEqualTo("foo");
+  }
+
+  @Test
+  public void testFindTld_ignoresAsciiCase() {
+    assertThat(trie.findTld("Example.FOO")).isEqualTo("foo");
+  }
+
+  @Test
+  public void testFindTld_noMatch() {
+    assertThat(trie.findTld("foo")).isNull();
+    assertThat(trie.findTld("foo.example")).isNull();
+    assertThat(trie.findTld("example.barfoo")).isNull();
+    assertThat(trie.findTld("")).isNull();
+  }
+
+  @Test
+  public void testFindTld_emptyTrie() {
+    assertThat(TldSuffixTrie.create(ImmutableList.of()).findTld("example.foo")).isNull();
+  }
+}
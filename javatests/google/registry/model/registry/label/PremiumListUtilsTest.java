@@ -27,6 +27,7 @@ import static google.registry.model.registry.label.DomainLabelMetrics.premiumLis
 import static google.registry.model.registry.label.PremiumListUtils.deletePremiumList;
 import static google.registry.model.registry.label.PremiumListUtils.doesPremiumListExist;
 import static google.registry.model.registry.label.PremiumListUtils.getPremiumPrice;
+import static google.registry.model.registry.label.PremiumListUtils.prefetchPremiumListEntries;
 import static google.registry.model.registry.label.PremiumListUtils.savePremiumListAndEntries;
 import static google.registry.monitoring.metrics.contrib.DistributionMetricSubject.assertThat;
 import static google.registry.monitoring.metrics.contrib.LongMetricSubject.assertThat;
@@ -66,8 +67,8 @@ public class PremiumListUtilsTest {
   @Before
   public void before() throws Exception {
     // createTld() overwrites the premium list, so call it first.
-    PremiumList.cachePremiumListEntries =
-        PremiumList.createCachePremiumListEntries(standardMinutes(1));
+    PremiumList.cachePremiumPriceTables =
+        PremiumList.createCachePremiumPriceTables(standardMinutes(1));
     createTld("tld");
     PremiumList pl =
         persistPremiumList(
@@ -124,6 +125,19 @@ public class PremiumListUtilsTest {
     assertMetricOutcomeCount(1, UNCACHED_POSITIVE);
   }
 
+  @Test
+  public void testGetPremiumPrice_tooManyEntriesToCache_looksUpEachEntry() throws Exception {
+    // The unit test config caches at most 50 entries.
+    PremiumList premiumList = persistHumongousPremiumList("tld", 60);
+    assertThat(getPremiumPrice("7", Registry.get("tld"))).hasValue(Money.parse("USD 100"));
+    assertThat(getPremiumPrice("8", Registry.get("tld"))).hasValue(Money.parse("USD 100"));
+    assertThat(PremiumList.cachePremiumPriceTables.get(premiumList.getRevisionKey())).isEmpty();
+    assertThat(premiumListChecks)
+        .hasValueForLabels(2, "tld", "tld", UNCACHED_POSITIVE.toString())
+        .and()
+        .hasNoOtherValues();
+  }
+
   @Test
   public void testSave_updateTime_isUpdatedOnEverySave() throws Exception {
     PremiumList pl =
@@ -162,11 +176,9 @@ public class PremiumListUtilsTest {
     // "missingno" shouldn't be in the Bloom filter, thus it should return not premium without
     // attempting to load the entity that is actually present.
     assertThat(getPremiumPrice("missingno", Registry.get("tld"))).isEmpty();
-    // However, if we manually query the cache to force an entity load, it should be found.
-    assertThat(
-            PremiumList.cachePremiumListEntries.get(
-                Key.create(pl.getRevisionKey(), PremiumListEntry.class, "missingno")))
-        .hasValue(entry);
+    // However, if we manually query the cache to force the price table to load, it should be found.
+    PremiumPriceTable table = PremiumList.cachePremiumPriceTables.get(pl.getRevisionKey()).get();
+    assertThat(table.getPrice("missingno")).hasValue(entry.getValue());
     assertMetricOutcomeCount(1, BLOOM_FILTER_NEGATIVE);
   }
 
@@ -188,6 +200,34 @@ public class PremiumListUtilsTest {
         .hasNoOtherValues();
   }
 
+  @Test
+  public void testGetPremiumPrice_otherLabelsOfRevision_areCached() throws Exception {
+    assertThat(getPremiumPrice("rich", Registry.get("tld"))).hasValue(Money.parse("USD 1999"));
+    assertThat(getPremiumPrice("lol", Registry.get("tld"))).hasValue(Money.parse("USD 999"));
+    assertThat(getPremiumPrice("icann", Registry.get("tld"))).hasValue(Money.parse("JPY 100"));
+    assertThat(premiumListChecks)
+        .hasValueForLabels(1, "tld", "tld", UNCACHED_POSITIVE.toString())
+        .and()
+        .hasValueForLabels(2, "tld", "tld", CACHED_POSITIVE.toString())
+        .and()
+        .hasNoOtherValues();
+  }
+
+  @Test
+  public void testGetPremiumPrice_afterPrefetch_isCached() throws Exception {
+    prefetchPremiumListEntries(ImmutableList.of("rich", "lol", "notpremium"), Registry.get("tld"));
+    assertThat(getPremiumPrice("rich", Registry.get("tld"))).hasValue(Money.parse("USD 1999"));
+    assertThat(getPremiumPrice("lol", Registry.get("tld"))).hasValue(Money.parse("USD 999"));
+    assertMetricOutcomeCount(2, CACHED_POSITIVE);
+  }
+
+  @Test
+  public void testPrefetchPremiumListEntries_noPremiumListConfigured() throws Exception {
+    persistResource(Registry.get("tld").asBuilder().setPremiumList(null).build());
+    prefetchPremiumListEntries(ImmutableList.of("rich"), Registry.get("tld"));
+    assertThat(getPremiumPrice("rich", Registry.get("tld"))).isEmpty();
+  }
+
   @Test
   public void testGetPremiumPrice_bloomFilterFalsePositive() throws Exception {
     // Remove one of the premium list entries from behind the Bloom filter's back.
@@ -258,7 +298,9 @@ public class PremiumListUtilsTest {
             .now())
         .isNull();
     assertThat(premiumListChecks)
-        .hasValueForLabels(4, "tld", "tld", UNCACHED_POSITIVE.toString())
+        .hasValueForLabels(2, "tld", "tld", UNCACHED_POSITIVE.toString())
+        .and()
+        .hasValueForLabels(2, "tld", "tld", CACHED_POSITIVE.toString())
         .and()
         .hasValueForLabels(1, "tld", "tld", BLOOM_FILTER_NEGATIVE.toString())
         .and()
@@ -266,6 +308,8 @@ public class PremiumListUtilsTest {
     assertThat(premiumListProcessingTime)
         .hasAnyValueForLabels("tld", "tld", UNCACHED_POSITIVE.toString())
         .and()
+        .hasAnyValueForLabels("tld", "tld", CACHED_POSITIVE.toString())
+        .and()
         .hasAnyValueForLabels("tld", "tld", BLOOM_FILTER_NEGATIVE.toString())
         .and()
         .hasNoOtherValues();
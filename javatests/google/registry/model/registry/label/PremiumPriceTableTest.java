@@ -0,0 +1,76 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry.label;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth8.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.model.registry.label.PremiumList.PremiumListEntry;
+import google.registry.testing.ExceptionRule;
+import org.joda.money.Money;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PremiumPriceTable}. */
+@RunWith(JUnit4.class)
+public class PremiumPriceTableTest {
+
+  @Rule public final ExceptionRule thrown = new ExceptionRule();
+
+  private static PremiumListEntry entry(String label, String price) {
+    return new PremiumListEntry.Builder().setLabel(label).setPrice(Money.parse(price)).build();
+  }
+
+  @Test
+  public void testGetPrice_singleCurrency() {
+    PremiumPriceTable table =
+        PremiumPriceTable.create(
+            ImmutableList.of(
+                entry("rich", "USD 1999"), entry("lol", "USD 999"), entry("cheap", "USD 0.50")));
+    assertThat(table.size()).isEqualTo(3);
+    assertThat(table.getPrice("rich")).hasValue(Money.parse("USD 1999"));
+    assertThat(table.getPrice("lol")).hasValue(Money.parse("USD 999"));
+    assertThat(table.getPrice("cheap")).hasValue(Money.parse("USD 0.50"));
+    assertThat(table.getPrice("poor")).isEmpty();
+    assertThat(table.getPrice("")).isEmpty();
+  }
+
+  @Test
+  public void testGetPrice_mixedCurrencies() {
+    PremiumPriceTable table =
+        PremiumPriceTable.create(
+            ImmutableList.of(
+                entry("genius", "USD 10"), entry("dolt", "JPY 1000"), entry("savant", "EUR 9.99")));
+    assertThat(table.getPrice("genius")).hasValue(Money.parse("USD 10"));
+    assertThat(table.getPrice("dolt")).hasValue(Money.parse("JPY 1000"));
+    assertThat(table.getPrice("savant")).hasValue(Money.parse("EUR 9.99"));
+  }
+
+  @Test
+  public void testGetPrice_emptyTable() {
+    PremiumPriceTable table = PremiumPriceTable.create(ImmutableList.of());
+    assertThat(table.size()).isEqualTo(0);
+    assertThat(table.getPrice("rich")).isEmpty();
+  }
+
+  @Test
+  public void testCreate_duplicateLabel_throws() {
+    thrown.expect(IllegalArgumentException.class, "Duplicate premium list label lol");
+    PremiumPriceTable.create(ImmutableList.of(entry("lol", "USD 1"), entry("lol", "USD 2")));
+  }
+}
@@ -0,0 +1,102 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.registry.label;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.registry.label.ReservationType.ALLOWED_IN_SUNRISE;
+import static google.registry.model.registry.label.ReservationType.FULLY_BLOCKED;
+import static google.registry.model.registry.label.ReservationType.NAMESERVER_RESTRICTED;
+import static google.registry.model.registry.label.ReservationType.RESERVED_FOR_ANCHOR_TENANT;
+
+import com.google.common.collect.ImmutableList;
+import google.registry.model.registry.label.DomainLabelMetrics.MetricsReservedListMatch;
+import google.registry.model.registry.label.ReservedListIndex.LabelReservations;
+import google.registry.testing.AppEngineRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ReservedListIndex}. */
+@RunWith(JUnit4.class)
+public class ReservedListIndexTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private static ReservedList reservedList(String name, String... lines) {
+    return new ReservedList.Builder()
+        .setName(name)
+        .setReservedListMapFromLines(ImmutableList.copyOf(lines))
+        .build();
+  }
+
+  private final ReservedListIndex index =
+      ReservedListIndex.create(
+          ImmutableList.of(
+              reservedList(
+                  "list1",
+                  "lol,FULLY_BLOCKED",
+                  "anchor,RESERVED_FOR_ANCHOR_TENANT,foo",
+                  "restricted,NAMESERVER_RESTRICTED,ns1.example.com:ns2.example.com"),
+              reservedList(
+                  "list2",
+                  "lol,ALLOWED_IN_SUNRISE",
+                  "anchor,RESERVED_FOR_ANCHOR_TENANT,bar",
+                  "restricted,NAMESERVER_RESTRICTED,ns2.example.com:ns3.example.com")));
+
+  @Test
+  public void testGetReservations_unreservedLabel_isEmpty() {
+    LabelReservations reservations = index.getReservations("free");
+    assertThat(reservations.reservationTypes()).isEmpty();
+    assertThat(reservations.anchorTenantAuthCodes()).isEmpty();
+    assertThat(reservations.allowedNameservers()).isEmpty();
+    assertThat(reservations.metricMatches()).isEmpty();
+  }
+
+  @Test
+  public void testGetReservations_mergesTypesOfAllLists() {
+    LabelReservations reservations = index.getReservations("lol");
+    assertThat(reservations.reservationTypes()).containsExactly(FULLY_BLOCKED, ALLOWED_IN_SUNRISE);
+    assertThat(reservations.metricMatches())
+        .containsExactly(
+            MetricsReservedListMatch.create("list1", FULLY_BLOCKED),
+            MetricsReservedListMatch.create("list2", ALLOWED_IN_SUNRISE));
+  }
+
+  @Test
+  public void testGetReservations_collectsAnchorTenantAuthCodes() {
+    LabelReservations reservations = index.getReservations("anchor");
+    assertThat(reservations.reservationTypes()).containsExactly(RESERVED_FOR_ANCHOR_TENANT);
+    assertThat(reservations.anchorTenantAuthCodes()).containsExactly("foo", "bar");
+    assertThat(reservations.allowedNameservers()).isEmpty();
+  }
+
+  @Test
+  public void testGetReservations_intersectsAllowedNameservers() {
+    LabelReservations reservations = index.getReservations("restricted");
+    assertThat(reservations.reservationTypes()).containsExactly(NAMESERVER_RESTRICTED);
+    assertThat(reservations.allowedNameservers()).containsExactly("ns2.example.com");
+    assertThat(reservations.anchorTenantAuthCodes()).isEmpty();
+  }
+
+  @Test
+  public void testCreate_noLists() {
+    assertThat(
+            ReservedListIndex.create(ImmutableList.of())
+                .getReservations("lol")
+                .reservationTypes())
+        .isEmpty();
+  }
+}
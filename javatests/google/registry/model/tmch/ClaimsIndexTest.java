@@ -0,0 +1,86 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.model.tmch;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import google.registry.testing.ExceptionRule;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ClaimsIndex}. */
+@RunWith(JUnit4.class)
+public class ClaimsIndexTest {
+
+  @Rule
+  public final ExceptionRule thrown = new ExceptionRule();
+
+  @Test
+  public void testGetClaimKey() throws Exception {
+    ClaimsIndex index =
+        ClaimsIndex.create(ImmutableMap.of("foo", "key1", "fo", "key2", "foobar", "key3"));
+    assertThat(index.getClaimKey("fo")).isEqualTo("key2");
+    assertThat(index.getClaimKey("foo")).isEqualTo("key1");
+    assertThat(index.getClaimKey("foobar")).isEqualTo("key3");
+    assertThat(index.getClaimKey("f")).isNull();
+    assertThat(index.getClaimKey("foob")).isNull();
+    assertThat(index.getClaimKey("zzz")).isNull();
+    assertThat(index.getClaimKey("")).isNull();
+    assertThat(index.size()).isEqualTo(3);
+  }
+
+  @Test
+  public void testGetClaimKey_empty() throws Exception {
+    assertThat(ClaimsIndex.EMPTY.getClaimKey("foo")).isNull();
+    assertThat(ClaimsIndex.EMPTY.size()).isEqualTo(0);
+    assertThat(ClaimsIndex.EMPTY.toMap()).isEmpty();
+  }
+
+  @Test
+  public void testGetClaimKey_manyLabels() throws Exception {
+    Map<String, String> labelsToKeys = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      labelsToKeys.put("label" + i, "key" + i);
+    }
+    ClaimsIndex index = ClaimsIndex.create(labelsToKeys);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(index.getClaimKey("label" + i)).isEqualTo("key" + i);
+    }
+    assertThat(index.getClaimKey("label1000")).isNull();
+    assertThat(index.toMap()).isEqualTo(labelsToKeys);
+  }
+
+  @Test
+  public void testCreate_combinesShards() throws Exception {
+    ClaimsIndex index =
+        ClaimsIndex.create(
+            ImmutableList.of(
+                ImmutableMap.of("b", "key-b", "d", "key-d"), ImmutableMap.of("a", "key-a")));
+    assertThat(index.toMap()).containsExactly("a", "key-a", "b", "key-b", "d", "key-d").inOrder();
+    assertThat(index).isEqualTo(ClaimsIndex.create(index.toMap()));
+  }
+
+  @Test
+  public void testCreate_duplicateLabelAcrossShards_fails() throws Exception {
+    thrown.expect(IllegalArgumentException.class, "Duplicate claims label a");
+    ClaimsIndex.create(ImmutableList.of(ImmutableMap.of("a", "1"), ImmutableMap.of("a", "2")));
+  }
+}
@@ -73,7 +73,7 @@ public class ClaimsListShardTest {
 
   @Test
   public void testGet_safelyLoadsEmptyClaimsList_whenNoShardsExist() throws Exception {
-    assertThat(ClaimsListShard.get().labelsToKeys).isEmpty();
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).isEmpty();
     assertThat(ClaimsListShard.get().creationTime).isEqualTo(START_OF_TIME);
   }
 
@@ -88,7 +88,7 @@ public class ClaimsListShardTest {
     // Save it with sharding, and make sure that reloading it works.
     ClaimsListShard unsharded = ClaimsListShard.create(now, ImmutableMap.copyOf(labelsToKeys));
     unsharded.save();
-    assertThat(ClaimsListShard.get().labelsToKeys).isEqualTo(unsharded.labelsToKeys);
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).isEqualTo(unsharded.labelsToKeys);
     List<ClaimsListShard> shards1 = ofy().load().type(ClaimsListShard.class).list();
     assertThat(shards1).hasSize(4);
     assertThat(ClaimsListShard.get().getClaimKey("1")).isEqualTo("1");
@@ -103,8 +103,8 @@ public class ClaimsListShardTest {
     unsharded = ClaimsListShard.create(now.plusDays(1), ImmutableMap.copyOf(labelsToKeys));
     unsharded.save();
     ofy().clearSessionCache();
-    assertThat(ClaimsListShard.get().labelsToKeys).hasSize(unsharded.labelsToKeys.size());
-    assertThat(ClaimsListShard.get().labelsToKeys).isEqualTo(unsharded.labelsToKeys);
+    assertThat(ClaimsListShard.get().size()).isEqualTo(unsharded.size());
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).isEqualTo(unsharded.labelsToKeys);
     List<ClaimsListShard> shards2 = ofy().load().type(ClaimsListShard.class).list();
     assertThat(shards2).hasSize(2);
 
@@ -112,6 +112,52 @@ public class ClaimsListShardTest {
     assertThat(ClaimsListShard.getCurrentRevision()).isEqualTo(shards2.get(0).parent);
   }
 
+  @Test
+  public void testShardLoadedFromDatastore_buildsIndexWhenNeeded() throws Exception {
+    ClaimsListShard.create(DateTime.now(UTC), ImmutableMap.of("a", "1", "b", "2")).save();
+    ofy().clearSessionCache();
+    ClaimsListShard shard = ofy().load().type(ClaimsListShard.class).first().now();
+    assertThat(shard.index).isNull();
+    assertThat(shard.getClaimKey("a")).isEqualTo("1");
+    assertThat(shard.getClaimKey("c")).isNull();
+    assertThat(shard.size()).isEqualTo(2);
+    assertThat(shard.getLabelsToKeys()).containsExactly("a", "1", "b", "2");
+  }
+
+  @Test
+  public void testGet_reusesListUntilRevisionChanges() throws Exception {
+    inject.setStaticField(ClaimsListShard.class, "reuseUnchangedRevisions", true);
+    inject.setStaticField(ClaimsListShard.class, "lastLoaded", null);
+    DateTime now = DateTime.now(UTC);
+    ClaimsListShard.create(now, ImmutableMap.of("a", "1")).save();
+    ClaimsListShard loaded = ClaimsListShard.get();
+    assertThat(loaded.getClaimKey("a")).isEqualTo("1");
+
+    // Add a shard to the live revision behind the cache's back, which it shouldn't notice.
+    ofy()
+        .saveWithoutBackup()
+        .entity(
+            createTestClaimsListShard(
+                now, ImmutableMap.of("b", "2"), ClaimsListShard.getCurrentRevision()))
+        .now();
+    ofy().clearSessionCache();
+    assertThat(ClaimsListShard.get()).isSameAs(loaded);
+
+    // Saving a new list switches revisions, so it gets loaded.
+    ClaimsListShard.create(now.plusDays(1), ImmutableMap.of("c", "3")).save();
+    ofy().clearSessionCache();
+    assertThat(ClaimsListShard.get().getLabelsToKeys()).containsExactly("c", "3");
+    assertThat(ClaimsListShard.get().getCreationTime()).isEqualTo(now.plusDays(1));
+  }
+
+  @Test
+  public void testGet_reloadsEveryTime_whenReuseIsDisabled() throws Exception {
+    DateTime now = DateTime.now(UTC);
+    ClaimsListShard.create(now, ImmutableMap.of("a", "1")).save();
+    ClaimsListShard loaded = ClaimsListShard.get();
+    assertThat(ClaimsListShard.get()).isNotSameAs(loaded);
+  }
+
   /**
    * Returns a created claims list shard with the specified parent key for testing purposes only.
    */
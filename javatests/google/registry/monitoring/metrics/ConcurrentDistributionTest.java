@@ -0,0 +1,144 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.monitoring.metrics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableRangeMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Range;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link ConcurrentDistribution}. */
+@RunWith(JUnit4.class)
+public class ConcurrentDistributionTest {
+
+  private final DistributionFitter distributionFitter =
+      CustomFitter.create(ImmutableSet.of(3.0, 5.0));
+  private final ConcurrentDistribution distribution =
+      new ConcurrentDistribution(distributionFitter);
+
+  @Rule public final ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testSnapshot_empty() {
+    ImmutableDistribution snapshot = distribution.snapshot();
+
+    assertThat(snapshot.count()).isEqualTo(0);
+    assertThat(snapshot.mean()).isWithin(0.0).of(0.0);
+    assertThat(snapshot.sumOfSquaredDeviation()).isWithin(0.0).of(0.0);
+    assertThat(snapshot.intervalCounts())
+        .isEqualTo(
+            ImmutableRangeMap.<Double, Long>builder()
+                .put(Range.lessThan(3.0), 0L)
+                .put(Range.closedOpen(3.0, 5.0), 0L)
+                .put(Range.atLeast(5.0), 0L)
+                .build());
+  }
+
+  @Test
+  public void testAdd_matchesMutableDistribution() {
+    MutableDistribution expected = new MutableDistribution(distributionFitter);
+    double[] samples = {1.0, 3.0, 4.5, 5.0, 100.0, 2.0, 3.0, 0.0};
+    for (int i = 0; i < samples.length; i++) {
+      distribution.add(samples[i], i + 1);
+      expected.add(samples[i], i + 1);
+    }
+
+    ImmutableDistribution snapshot = distribution.snapshot();
+
+    assertThat(snapshot.count()).isEqualTo(expected.count());
+    assertThat(snapshot.mean()).isWithin(1e-6).of(expected.mean());
+    assertThat(snapshot.sumOfSquaredDeviation())
+        .isWithin(1e-6)
+        .of(expected.sumOfSquaredDeviation());
+    assertThat(snapshot.intervalCounts()).isEqualTo(expected.intervalCounts());
+    assertThat(snapshot.distributionFitter()).isEqualTo(distributionFitter);
+  }
+
+  @Test
+  public void testAdd_largeValues_staysNumericallyStable() {
+    // Naively summing squares of values this large loses all precision in the deviation.
+    distribution.add(1e9 + 1, 1);
+    distribution.add(1e9 + 3, 1);
+
+    ImmutableDistribution snapshot = distribution.snapshot();
+
+    assertThat(snapshot.mean()).isWithin(0.0).of(1e9 + 2);
+    assertThat(snapshot.sumOfSquaredDeviation()).isWithin(0.0).of(2.0);
+  }
+
+  @Test
+  public void testAdd_zeroSamples_doesNothing() {
+    distribution.add(4.0, 0);
+
+    assertThat(distribution.snapshot().count()).isEqualTo(0);
+  }
+
+  @Test
+  public void testAdd_negativeSamples_throwsException() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("numSamples must be non-negative");
+
+    distribution.add(4.0, -1);
+  }
+
+  @Test
+  public void testAdd_concurrentWriters_countsEverySample() throws Exception {
+    int threads = 16;
+    int samplesPerThread = 10000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < samplesPerThread; j++) {
+                    distribution.add(j % 2 == 0 ? 2.0 : 4.0, 1);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    ImmutableDistribution snapshot = distribution.snapshot();
+
+    long total = (long) threads * samplesPerThread;
+    assertThat(snapshot.count()).isEqualTo(total);
+    assertThat(snapshot.mean()).isWithin(0.0).of(3.0);
+    assertThat(snapshot.sumOfSquaredDeviation()).isWithin(0.0).of(total);
+    assertThat(snapshot.intervalCounts())
+        .isEqualTo(
+            ImmutableRangeMap.<Double, Long>builder()
+                .put(Range.lessThan(3.0), total / 2)
+                .put(Range.closedOpen(3.0, 5.0), total / 2)
+                .put(Range.atLeast(5.0), 0L)
+                .build());
+  }
+}
@@ -18,6 +18,11 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.joda.time.Instant;
 import org.junit.Rule;
 import org.junit.Test;
@@ -184,4 +189,43 @@ public class CounterTest {
             MetricPoint.create(
                 counter, ImmutableList.of("moo"), new Instant(1338), new Instant(1400), 5L));
   }
+
+  @Test
+  public void testIncrement_concurrentWriters_countsEveryIncrement() throws Exception {
+    Counter counter =
+        new Counter(
+            "/metric",
+            "description",
+            "vdn",
+            ImmutableSet.of(LabelDescriptor.create("label1", "bar")));
+    int threads = 16;
+    int incrementsPerThread = 10000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  for (int j = 0; j < incrementsPerThread; j++) {
+                    counter.incrementBy(1, new Instant(1337), ImmutableList.of("foo"));
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(counter.getTimestampedValues(new Instant(1400)))
+        .containsExactly(
+            MetricPoint.create(
+                counter,
+                ImmutableList.of("foo"),
+                new Instant(1337),
+                new Instant(1400),
+                (long) threads * incrementsPerThread));
+  }
 }
@@ -16,13 +16,10 @@ package google.registry.monitoring.whitebox;
 
 import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
 import static google.registry.bigquery.BigqueryUtils.toBigqueryTimestamp;
-import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.QUEUE_BIGQUERY_STREAMING_METRICS;
+import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.QUEUE_BIGQUERY_METRICS_PULL;
 import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 import com.google.api.services.bigquery.model.TableFieldSchema;
-import com.google.appengine.api.modules.ModulesService;
 import com.google.auto.value.AutoValue;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
@@ -36,7 +33,6 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
-import org.mockito.Matchers;
 
 /** Unit tests for {@link BigQueryMetricsEnqueuer}. */
 @RunWith(JUnit4.class)
@@ -48,22 +44,16 @@ public class BigQueryMetricsEnqueuerTest {
   @Rule
   public final AppEngineRule appEngine = AppEngineRule.builder()
       .withDatastore()
-      .withLocalModules()
       .withTaskQueue()
       .build();
 
-  private final ModulesService modulesService = mock(ModulesService.class);
-
   private BigQueryMetricsEnqueuer enqueuer;
 
   @Before
   public void setUp() {
     enqueuer = new BigQueryMetricsEnqueuer();
     enqueuer.idGenerator = Suppliers.ofInstance("laffo");
-    enqueuer.modulesService = modulesService;
-    enqueuer.queue = getQueue(QUEUE_BIGQUERY_STREAMING_METRICS);
-    when(modulesService.getVersionHostname(Matchers.anyString(), Matchers.anyString()))
-        .thenReturn("1.backend.test.localhost");
+    enqueuer.queue = getQueue(QUEUE_BIGQUERY_METRICS_PULL);
   }
 
   @Test
@@ -74,11 +64,9 @@ public class BigQueryMetricsEnqueuerTest {
 
     enqueuer.export(metric);
 
-    assertTasksEnqueued("bigquery-streaming-metrics",
+    assertTasksEnqueued("bigquery-metrics-pull",
         new TaskMatcher()
-            .url("/_dr/task/metrics")
-            .header("Host", "1.backend.test.localhost")
-            .param("tableId", "test")
+            .tag("test")
             .param("startTime", "472176000.000000")
             .param("endTime", "472176000.001000")
             .param("insertId", "laffo"));
@@ -14,34 +14,45 @@
 
 package google.registry.monitoring.whitebox;
 
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static com.google.appengine.api.taskqueue.QueueFactory.getQueue;
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.monitoring.whitebox.BigQueryMetricsEnqueuer.QUEUE_BIGQUERY_METRICS_PULL;
+import static google.registry.testing.TaskQueueHelper.assertNoTasksEnqueued;
+import static google.registry.testing.TaskQueueHelper.assertTasksEnqueued;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
-import com.google.api.client.http.HttpRequestInitializer;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.json.JsonFactory;
 import com.google.api.services.bigquery.Bigquery;
 import com.google.api.services.bigquery.Bigquery.Tabledata;
 import com.google.api.services.bigquery.Bigquery.Tabledata.InsertAll;
 import com.google.api.services.bigquery.model.TableDataInsertAllRequest;
 import com.google.api.services.bigquery.model.TableDataInsertAllResponse;
 import com.google.api.services.bigquery.model.TableDataInsertAllResponse.InsertErrors;
+import com.google.appengine.api.taskqueue.Queue;
+import com.google.appengine.api.taskqueue.TaskOptions;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import google.registry.bigquery.BigqueryFactory;
 import google.registry.testing.AppEngineRule;
+import google.registry.testing.FakeClock;
+import google.registry.testing.TaskQueueHelper.TaskMatcher;
+import java.io.IOException;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
-import org.mockito.runners.MockitoJUnitRunner;
 
 /** Unit tests for {@link MetricsExportAction}. */
-@RunWith(MockitoJUnitRunner.class)
+@RunWith(JUnit4.class)
 public class MetricsExportActionTest {
 
   @Rule
@@ -54,65 +65,134 @@ public class MetricsExportActionTest {
   private final Bigquery bigquery = mock(Bigquery.class);
   private final Tabledata tabledata = mock(Tabledata.class);
   private final InsertAll insertAll = mock(InsertAll.class);
+  private final Queue queue = getQueue(QUEUE_BIGQUERY_METRICS_PULL);
 
   private TableDataInsertAllResponse response = new TableDataInsertAllResponse();
-  private long currentTimeMillis = 1000000000000L;
-
-  private ImmutableListMultimap<String, String> parameters =
-      new ImmutableListMultimap.Builder<String, String>()
-          .put("startTime", String.valueOf(MILLISECONDS.toSeconds(currentTimeMillis - 100)))
-          .put("endTime", String.valueOf(MILLISECONDS.toSeconds(currentTimeMillis)))
-          .put("jobname", "test job")
-          .put("status", "success")
-          .put("tld", "test")
-          .build();
 
   MetricsExportAction action;
 
   @Before
   public void setup() throws Exception {
     when(bigqueryFactory.create(anyString(), anyString(), anyString())).thenReturn(bigquery);
-    when(bigqueryFactory.create(
-        anyString(),
-        Matchers.any(HttpTransport.class),
-        Matchers.any(JsonFactory.class),
-        Matchers.any(HttpRequestInitializer.class)))
-            .thenReturn(bigquery);
-
     when(bigquery.tabledata()).thenReturn(tabledata);
     when(tabledata.insertAll(
         anyString(),
         anyString(),
         anyString(),
         Matchers.any(TableDataInsertAllRequest.class))).thenReturn(insertAll);
+    when(insertAll.execute()).thenReturn(response);
     action = new MetricsExportAction();
     action.bigqueryFactory = bigqueryFactory;
-    action.insertId = "insert id";
-    action.parameters = parameters;
     action.projectId = "project id";
-    action.tableId = "eppMetrics";
+    action.queue = queue;
+    action.clock = new FakeClock();
+  }
+
+  private void enqueueMetric(String tableId, String insertId, String tld) {
+    queue.add(
+        TaskOptions.Builder.withMethod(TaskOptions.Method.PULL)
+            .tag(tableId)
+            .param("insertId", insertId)
+            .param("status", "success")
+            .param("tld", tld));
+  }
+
+  /** Returns the requests that were sent to the given table, in order. */
+  private List<TableDataInsertAllRequest> getInsertRequests(String tableId, int count)
+      throws Exception {
+    ArgumentCaptor<TableDataInsertAllRequest> captor =
+        ArgumentCaptor.forClass(TableDataInsertAllRequest.class);
+    verify(tabledata, times(count))
+        .insertAll(eq("project id"), eq("metrics"), eq(tableId), captor.capture());
+    return captor.getAllValues();
   }
 
   @Test
-  public void testSuccess_nullErrors() throws Exception {
-    when(insertAll.execute()).thenReturn(response);
-    response.setInsertErrors(null);
+  public void testSuccess_noMetrics() throws Exception {
+    action.run();
+    verifyZeroInteractions(bigqueryFactory);
+  }
+
+  @Test
+  public void testSuccess_insertsRowsInOneRequest() throws Exception {
+    enqueueMetric("eppMetrics", "id1", "foo");
+    enqueueMetric("eppMetrics", "id2", "bar");
     action.run();
+    List<TableDataInsertAllRequest> requests = getInsertRequests("eppMetrics", 1);
+    assertThat(requests.get(0).getRows())
+        .containsExactly(
+            new TableDataInsertAllRequest.Rows()
+                .setInsertId("id1")
+                .setJson(ImmutableMap.of("status", "success", "tld", "foo")),
+            new TableDataInsertAllRequest.Rows()
+                .setInsertId("id2")
+                .setJson(ImmutableMap.of("status", "success", "tld", "bar")));
     verify(insertAll).execute();
+    assertNoTasksEnqueued(QUEUE_BIGQUERY_METRICS_PULL);
+  }
+
+  @Test
+  public void testSuccess_separatesTables() throws Exception {
+    enqueueMetric("eppMetrics", "id1", "foo");
+    enqueueMetric("otherMetrics", "id2", "bar");
+    enqueueMetric("eppMetrics", "id3", "baz");
+    action.run();
+    assertThat(getInsertRequests("eppMetrics", 1).get(0).getRows()).hasSize(2);
+    assertThat(getInsertRequests("otherMetrics", 1).get(0).getRows()).hasSize(1);
+    assertNoTasksEnqueued(QUEUE_BIGQUERY_METRICS_PULL);
+  }
+
+  @Test
+  public void testSuccess_splitsLargeBatches() throws Exception {
+    for (int i = 0; i < MetricsExportAction.MAX_ROWS_PER_INSERT + 1; i++) {
+      enqueueMetric("eppMetrics", "id" + i, "foo");
+    }
+    action.run();
+    List<TableDataInsertAllRequest> requests = getInsertRequests("eppMetrics", 2);
+    assertThat(requests.get(0).getRows()).hasSize(MetricsExportAction.MAX_ROWS_PER_INSERT);
+    assertThat(requests.get(1).getRows()).hasSize(1);
+    assertNoTasksEnqueued(QUEUE_BIGQUERY_METRICS_PULL);
   }
 
   @Test
   public void testSuccess_emptyErrors() throws Exception {
-    when(insertAll.execute()).thenReturn(response);
     response.setInsertErrors(ImmutableList.<InsertErrors>of());
+    enqueueMetric("eppMetrics", "id1", "foo");
     action.run();
     verify(insertAll).execute();
+    assertNoTasksEnqueued(QUEUE_BIGQUERY_METRICS_PULL);
   }
 
   @Test
-  public void testFailure_errors() throws Exception {
-    when(insertAll.execute()).thenReturn(response);
-    response.setInsertErrors(ImmutableList.of(new InsertErrors()));
+  public void testFailure_insertErrors_leavesOnlyRejectedRowsForRetry() throws Exception {
+    response.setInsertErrors(ImmutableList.of(new InsertErrors().setIndex(1L)));
+    enqueueMetric("eppMetrics", "id1", "foo");
+    enqueueMetric("eppMetrics", "id2", "bar");
+    enqueueMetric("eppMetrics", "id3", "baz");
+    action.run();
+    TableDataInsertAllRequest request = getInsertRequests("eppMetrics", 1).get(0);
+    assertThat(request.getSkipInvalidRows()).isTrue();
+    assertThat(request.getRows()).hasSize(3);
+    assertTasksEnqueued(QUEUE_BIGQUERY_METRICS_PULL, new TaskMatcher().param("insertId", "id2"));
+  }
+
+  @Test
+  public void testFailure_unreadableTasks_areDroppedWithoutInsert() throws Exception {
+    queue.add(
+        TaskOptions.Builder.withMethod(TaskOptions.Method.PULL)
+            .tag("eppMetrics")
+            .payload("insertId=%zz"));
+    action.run();
+    verifyZeroInteractions(bigqueryFactory);
+    assertNoTasksEnqueued(QUEUE_BIGQUERY_METRICS_PULL);
+  }
+
+  @Test
+  public void testFailure_insertFails_leavesTasksForRetry() throws Exception {
+    when(insertAll.execute()).thenThrow(new IOException("The BigQuery is down"));
+    enqueueMetric("eppMetrics", "id1", "foo");
     action.run();
+    verify(insertAll).execute();
+    assertTasksEnqueued(QUEUE_BIGQUERY_METRICS_PULL, new TaskMatcher().param("insertId", "id1"));
   }
 }
@@ -16,6 +16,7 @@ package google.registry.rdap;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.ofy.ObjectifyService.ofy;
 import static google.registry.testing.DatastoreHelper.createTld;
 import static google.registry.testing.DatastoreHelper.persistDomainAsDeleted;
 import static google.registry.testing.DatastoreHelper.persistResource;
@@ -28,7 +29,10 @@ import static google.registry.testing.FullFieldsTestEntityHelper.makeHistoryEntr
 import static google.registry.testing.FullFieldsTestEntityHelper.makeRegistrar;
 import static google.registry.testing.FullFieldsTestEntityHelper.makeRegistrarContacts;
 import static google.registry.testing.TestDataHelper.loadFileWithSubstitutions;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.appengine.api.users.User;
@@ -46,6 +50,7 @@ import google.registry.model.ofy.Ofy;
 import google.registry.model.registrar.Registrar;
 import google.registry.model.registry.Registry;
 import google.registry.model.reporting.HistoryEntry;
+import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.request.auth.AuthLevel;
 import google.registry.request.auth.AuthResult;
 import google.registry.request.auth.UserAuthInfo;
@@ -88,6 +93,7 @@ public class RdapDomainSearchActionTest {
   private final FakeResponse response = new FakeResponse();
   private final FakeClock clock = new FakeClock(DateTime.parse("2000-01-01T00:00:00Z"));
   private final SessionUtils sessionUtils = mock(SessionUtils.class);
+  private final RdapMetrics rdapMetrics = mock(RdapMetrics.class);
   private final User user = new User("rdap.user@example.com", "gmail.com", "12345");
   private final UserAuthInfo userAuthInfo = UserAuthInfo.create(user, false);
   private final UserAuthInfo adminUserAuthInfo = UserAuthInfo.create(user, true);
@@ -366,6 +372,8 @@ public class RdapDomainSearchActionTest {
     action.response = response;
     action.registrarParam = Optional.empty();
     action.includeDeletedParam = Optional.empty();
+    action.cursorTokenParam = Optional.empty();
+    action.rdapMetrics = rdapMetrics;
     action.rdapJsonFormatter = RdapTestHelper.getTestRdapJsonFormatter();
     action.rdapWhoisServer = null;
     action.sessionUtils = sessionUtils;
@@ -570,6 +578,40 @@ public class RdapDomainSearchActionTest {
             .build()));
   }
 
+  /** Adds paging metadata, linking to the page after the given domain, to the expected JSON. */
+  @SuppressWarnings("unchecked")
+  private Object withNextPage(
+      Object expectedJson, int pageSize, String queryString, String lastDomainName) {
+    ((Map<String, Object>) expectedJson)
+        .put(
+            "paging_metadata",
+            JSONValue.parse(
+                loadFileWithSubstitutions(
+                    this.getClass(),
+                    "rdap_paging_metadata.json",
+                    ImmutableMap.of(
+                        "PAGESIZE",
+                        Integer.toString(pageSize),
+                        "NEXTPAGEURL",
+                        "https://example.com/rdap/domains?name="
+                            + queryString
+                            + "&cursor="
+                            + cursorAfter(lastDomainName).encode()))));
+    return expectedJson;
+  }
+
+  /** Returns the cursor for a page that ends with the domain with the given name. */
+  private static RdapSearchCursor cursorAfter(String domainName) {
+    DomainResource domain =
+        ofy()
+            .load()
+            .type(DomainResource.class)
+            .filter("fullyQualifiedDomainName", domainName)
+            .first()
+            .now();
+    return RdapSearchCursor.create(domainName, domain.getRepoId());
+  }
+
   private void checkNumberOfDomainsInResult(Object obj, int expected) {
     assertThat(obj).isInstanceOf(Map.class);
 
@@ -909,12 +951,16 @@ public class RdapDomainSearchActionTest {
   public void testDomainMatch_catstar_found() throws Exception {
     assertThat(generateActualJson(RequestType.NAME, "cat*"))
         .isEqualTo(
-            generateExpectedJsonForFourDomains(
-                "cat.1.test", "39-1_TEST",
-                "cat.example", "21-EXAMPLE",
-                "cat.lol", "C-LOL",
-                "cat.xn--q9jyb4c", "2D-Q9JYB4C",
-                "rdap_domains_four_with_one_unicode_truncated.json"));
+            withNextPage(
+                generateExpectedJsonForFourDomains(
+                    "cat.1.test", "39-1_TEST",
+                    "cat.example", "21-EXAMPLE",
+                    "cat.lol", "C-LOL",
+                    "cat.xn--q9jyb4c", "2D-Q9JYB4C",
+                    "rdap_domains_four_with_one_unicode_truncated.json"),
+                4,
+                "cat*",
+                "cat.xn--q9jyb4c"));
     assertThat(response.getStatus()).isEqualTo(200);
   }
 
@@ -1012,21 +1058,26 @@ public class RdapDomainSearchActionTest {
   @Test
   public void testDomainMatch_manyDeletedDomains_partialResultSetDueToFetchingLimit()
       throws Exception {
-    // This is not exactly desired behavior, but expected: There are enough domains to fill a full
-    // result set, but there are so many deleted domains that we run out of patience before we work
-    // our way through all of them.
+    // There are enough domains to fill a full result set, but there are so many deleted domains
+    // that we run out of patience before we work our way through all of them. The response links
+    // to a next page that starts after the last domain looked at.
     createManyDomainsAndHosts(4, 50, 2);
     assertThat(generateActualJson(RequestType.NAME, "domain*.lol"))
-        .isEqualTo(readMultiDomainFile(
-            "rdap_incomplete_domain_result_set.json",
-            "domain100.lol",
-            "A7-LOL",
-            "domain150.lol",
-            "75-LOL",
-            "domain200.lol",
-            "43-LOL",
-            "domainunused.lol",
-            "unused-LOL"));
+        .isEqualTo(
+            withNextPage(
+                readMultiDomainFile(
+                    "rdap_incomplete_domain_result_set.json",
+                    "domain100.lol",
+                    "A7-LOL",
+                    "domain150.lol",
+                    "75-LOL",
+                    "domain200.lol",
+                    "43-LOL",
+                    "domainunused.lol",
+                    "unused-LOL"),
+                3,
+                "domain*.lol",
+                "domain26.lol"));
     assertThat(response.getStatus()).isEqualTo(200);
   }
 
@@ -1046,30 +1097,44 @@ public class RdapDomainSearchActionTest {
   @Test
   public void testDomainMatch_truncatedResultsSet() throws Exception {
     createManyDomainsAndHosts(5, 1, 2);
-    runSuccessfulTestWithFourDomains(
-        RequestType.NAME,
-        "domain*.lol",
-        "47-LOL",
-        "46-LOL",
-        "45-LOL",
-        "44-LOL",
-        "rdap_domains_four_truncated.json");
+    assertThat(generateActualJson(RequestType.NAME, "domain*.lol"))
+        .isEqualTo(
+            withNextPage(
+                readMultiDomainFile(
+                    "rdap_domains_four_truncated.json",
+                    "domain1.lol",
+                    "47-LOL",
+                    "domain2.lol",
+                    "46-LOL",
+                    "domain3.lol",
+                    "45-LOL",
+                    "domain4.lol",
+                    "44-LOL"),
+                4,
+                "domain*.lol",
+                "domain4.lol"));
+    assertThat(response.getStatus()).isEqualTo(200);
   }
 
   @Test
   public void testDomainMatch_tldSearchOrderedProperly() throws Exception {
     createManyDomainsAndHosts(4, 1, 2);
     assertThat(generateActualJson(RequestType.NAME, "*.lol"))
-        .isEqualTo(readMultiDomainFile(
-            "rdap_domains_four_truncated.json",
-            "cat.lol",
-            "C-LOL",
-            "cat2.lol",
-            "17-LOL",
-            "domain1.lol",
-            "46-LOL",
-            "domain2.lol",
-            "45-LOL"));
+        .isEqualTo(
+            withNextPage(
+                readMultiDomainFile(
+                    "rdap_domains_four_truncated.json",
+                    "cat.lol",
+                    "C-LOL",
+                    "cat2.lol",
+                    "17-LOL",
+                    "domain1.lol",
+                    "46-LOL",
+                    "domain2.lol",
+                    "45-LOL"),
+                4,
+                "*.lol",
+                "domain2.lol"));
   }
 
   @Test
@@ -1077,31 +1142,109 @@ public class RdapDomainSearchActionTest {
     // Don't use 10 or more domains for this test, because domain10.lol will come before
     // domain2.lol, and you'll get the wrong domains in the result set.
     createManyDomainsAndHosts(9, 1, 2);
-    runSuccessfulTestWithFourDomains(
-        RequestType.NAME,
-        "domain*.lol",
-        "4B-LOL",
-        "4A-LOL",
-        "49-LOL",
-        "48-LOL",
-        "rdap_domains_four_truncated.json");
+    assertThat(generateActualJson(RequestType.NAME, "domain*.lol"))
+        .isEqualTo(
+            withNextPage(
+                readMultiDomainFile(
+                    "rdap_domains_four_truncated.json",
+                    "domain1.lol",
+                    "4B-LOL",
+                    "domain2.lol",
+                    "4A-LOL",
+                    "domain3.lol",
+                    "49-LOL",
+                    "domain4.lol",
+                    "48-LOL"),
+                4,
+                "domain*.lol",
+                "domain4.lol"));
+    assertThat(response.getStatus()).isEqualTo(200);
   }
 
   @Test
   public void testDomainMatch_truncatedResultsAfterMultipleChunks() throws Exception {
     createManyDomainsAndHosts(5, 6, 2);
     assertThat(generateActualJson(RequestType.NAME, "domain*.lol"))
-        .isEqualTo(readMultiDomainFile(
-            "rdap_domains_four_truncated.json",
-            "domain12.lol",
-            "55-LOL",
-            "domain18.lol",
-            "4F-LOL",
-            "domain24.lol",
-            "49-LOL",
-            "domain30.lol",
-            "43-LOL"));
+        .isEqualTo(
+            withNextPage(
+                readMultiDomainFile(
+                    "rdap_domains_four_truncated.json",
+                    "domain12.lol",
+                    "55-LOL",
+                    "domain18.lol",
+                    "4F-LOL",
+                    "domain24.lol",
+                    "49-LOL",
+                    "domain30.lol",
+                    "43-LOL"),
+                4,
+                "domain*.lol",
+                "domain30.lol"));
+    assertThat(response.getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  public void testDomainMatch_cursor_returnsNextPage() throws Exception {
+    createManyDomainsAndHosts(5, 1, 2);
+    action.cursorTokenParam = Optional.of(cursorAfter("domain4.lol").encode());
+    Object obj = generateActualJson(RequestType.NAME, "domain*.lol");
     assertThat(response.getStatus()).isEqualTo(200);
+    checkNumberOfDomainsInResult(obj, 1);
+    assertThat((Map<?, ?>) obj).doesNotContainKey("paging_metadata");
+    verify(rdapMetrics).recordSearchPageTime(eq(EndpointType.DOMAINS), eq(false), anyDouble());
+  }
+
+  @Test
+  public void testDomainMatch_cursor_continuesPastFetchingLimit() throws Exception {
+    createManyDomainsAndHosts(4, 50, 2);
+    action.cursorTokenParam = Optional.of(cursorAfter("domain26.lol").encode());
+    Object obj = generateActualJson(RequestType.NAME, "domain*.lol");
+    assertThat(response.getStatus()).isEqualTo(200);
+    // Only domain50.lol is left after domain26.lol.
+    checkNumberOfDomainsInResult(obj, 1);
+    assertThat((Map<?, ?>) obj).doesNotContainKey("paging_metadata");
+  }
+
+  @Test
+  public void testDomainMatch_cursor_tldSearch() throws Exception {
+    createManyDomainsAndHosts(4, 1, 2);
+    action.cursorTokenParam = Optional.of(cursorAfter("domain2.lol").encode());
+    Object obj = generateActualJson(RequestType.NAME, "*.lol");
+    assertThat(response.getStatus()).isEqualTo(200);
+    checkNumberOfDomainsInResult(obj, 2);
+    assertThat((Map<?, ?>) obj).doesNotContainKey("paging_metadata");
+  }
+
+  @Test
+  public void testDomainMatch_cursor_doesntSkipOtherDomainsWithSameName() throws Exception {
+    // A deleted domain with the same name as cat.lol, whose repo ID comes first, ended the last
+    // page.
+    persistDomainAsDeleted(
+        domainCatLol.asBuilder().setRepoId("1-LOL").build(), clock.nowUtc().minusDays(1));
+    action.cursorTokenParam = Optional.of(RdapSearchCursor.create("cat.lol", "1-LOL").encode());
+    Object obj = generateActualJson(RequestType.NAME, "cat.l*");
+    assertThat(response.getStatus()).isEqualTo(200);
+    checkNumberOfDomainsInResult(obj, 1);
+  }
+
+  @Test
+  public void testDomainMatch_cursor_pastLastDomain_notFound() throws Exception {
+    createManyDomainsAndHosts(4, 1, 2);
+    action.cursorTokenParam = Optional.of(cursorAfter("domain4.lol").encode());
+    runNotFoundTest(RequestType.NAME, "domain*.lol", "No domains found");
+  }
+
+  @Test
+  public void testDomainMatch_invalidCursor_rejected() throws Exception {
+    action.cursorTokenParam = Optional.of("not*a*cursor");
+    generateActualJson(RequestType.NAME, "cat*");
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  public void testDomainMatch_firstPage_recordsMetric() throws Exception {
+    generateActualJson(RequestType.NAME, "cat*");
+    verify(rdapMetrics).recordSearchPageTime(eq(EndpointType.DOMAINS), eq(true), anyDouble());
   }
 
   @Test
@@ -26,7 +26,10 @@ import static google.registry.testing.FullFieldsTestEntityHelper.makeHostResourc
 import static google.registry.testing.FullFieldsTestEntityHelper.makeRegistrar;
 import static google.registry.testing.FullFieldsTestEntityHelper.makeRegistrarContacts;
 import static google.registry.testing.TestDataHelper.loadFileWithSubstitutions;
+import static org.mockito.Matchers.anyDouble;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.appengine.api.users.User;
@@ -38,6 +41,7 @@ import google.registry.model.domain.DomainResource;
 import google.registry.model.host.HostResource;
 import google.registry.model.ofy.Ofy;
 import google.registry.model.registrar.Registrar;
+import google.registry.rdap.RdapMetrics.EndpointType;
 import google.registry.request.auth.AuthLevel;
 import google.registry.request.auth.AuthResult;
 import google.registry.request.auth.UserAuthInfo;
@@ -46,6 +50,8 @@ import google.registry.testing.FakeClock;
 import google.registry.testing.FakeResponse;
 import google.registry.testing.InjectRule;
 import google.registry.ui.server.registrar.SessionUtils;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServletRequest;
@@ -69,6 +75,7 @@ public class RdapNameserverSearchActionTest {
   private final FakeResponse response = new FakeResponse();
   private final FakeClock clock = new FakeClock(DateTime.parse("2000-01-01T00:00:00Z"));
   private final SessionUtils sessionUtils = mock(SessionUtils.class);
+  private final RdapMetrics rdapMetrics = mock(RdapMetrics.class);
   private final User user = new User("rdap.user@example.com", "gmail.com", "12345");
   private final UserAuthInfo userAuthInfo = UserAuthInfo.create(user, false);
   private final UserAuthInfo adminUserAuthInfo = UserAuthInfo.create(user, true);
@@ -152,6 +159,8 @@ public class RdapNameserverSearchActionTest {
     action.nameParam = Optional.empty();
     action.registrarParam = Optional.empty();
     action.includeDeletedParam = Optional.empty();
+    action.cursorTokenParam = Optional.empty();
+    action.rdapMetrics = rdapMetrics;
     action.authResult = AuthResult.create(AuthLevel.USER, userAuthInfo);
     action.sessionUtils = sessionUtils;
   }
@@ -452,6 +461,42 @@ public class RdapNameserverSearchActionTest {
     assertThat(response.getStatus()).isEqualTo(200);
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testNameMatch_ns1_castar_truncated_linksToNextPage() throws Exception {
+    // Five hosts match, in the order ns1.cat.1.test, ns1.cat.external, ns1.cat.lol,
+    // ns1.cat.xn--q9jyb4c and ns1.cat2.lol.
+    Map<String, Object> obj = (Map<String, Object>) generateActualJsonWithName("ns1.ca*");
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat((List<Object>) obj.get("nameserverSearchResults")).hasSize(4);
+    assertThat(obj.get("paging_metadata"))
+        .isEqualTo(
+            JSONValue.parse(
+                loadFileWithSubstitutions(
+                    this.getClass(),
+                    "rdap_paging_metadata.json",
+                    ImmutableMap.of(
+                        "PAGESIZE",
+                        "4",
+                        "NEXTPAGEURL",
+                        "https://example.tld/rdap/nameservers?name=ns1.ca*&cursor="
+                            + RdapSearchCursor.create("ns1.cat.xn--q9jyb4c", "B-ROID").encode()))));
+    verify(rdapMetrics).recordSearchPageTime(eq(EndpointType.NAMESERVERS), eq(true), anyDouble());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testNameMatch_ns1_castar_withCursor_returnsNextPage() throws Exception {
+    action.cursorTokenParam =
+        Optional.of(RdapSearchCursor.create("ns1.cat.xn--q9jyb4c", "B-ROID").encode());
+    Map<String, Object> obj = (Map<String, Object>) generateActualJsonWithName("ns1.ca*");
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat((List<Object>) obj.get("nameserverSearchResults")).hasSize(1);
+    assertThat(obj).doesNotContainKey("paging_metadata");
+    verify(rdapMetrics)
+        .recordSearchPageTime(eq(EndpointType.NAMESERVERS), eq(false), anyDouble());
+  }
+
   @Test
   public void testNameMatch_dogstar_notFound() throws Exception {
     generateActualJsonWithName("dog*");
@@ -620,6 +665,43 @@ public class RdapNameserverSearchActionTest {
     assertThat(response.getStatus()).isEqualTo(200);
   }
 
+  @Test
+  public void testAddressMatch_invalidCidrBlock() throws Exception {
+    generateActualJsonWithIp("1.2.3.4/24");
+    assertThat(response.getStatus()).isEqualTo(400);
+  }
+
+  @Test
+  public void testAddressMatchV4CidrBlock_singleAddress_found() throws Exception {
+    assertThat(generateActualJsonWithIp("1.2.3.4/32"))
+        .isEqualTo(
+            generateExpectedJsonForNameserver(
+                "ns1.cat.lol", null, "2-ROID", "v4", "1.2.3.4", "rdap_host_linked.json"));
+    assertThat(response.getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  public void testAddressMatchV4CidrBlock_foundMultiple() throws Exception {
+    generateActualJsonWithIp("1.2.3.0/29");
+    assertThat(response.getStatus()).isEqualTo(200);
+    assertThat(response.getPayload()).contains("\"ns1.cat.lol\"");
+    assertThat(response.getPayload()).contains("\"ns1.cat2.lol\"");
+    assertThat(response.getPayload()).doesNotContain("\"ns2.cat.lol\"");
+  }
+
+  @Test
+  public void testAddressMatchV6CidrBlock_foundMultiple() throws Exception {
+    assertThat(generateActualJsonWithIp("bad:f00d:cafe::/48"))
+        .isEqualTo(generateExpectedJson("rdap_multiple_hosts.json"));
+    assertThat(response.getStatus()).isEqualTo(200);
+  }
+
+  @Test
+  public void testAddressMatchCidrBlock_notFound() throws Exception {
+    generateActualJsonWithIp("127.0.0.0/8");
+    assertThat(response.getStatus()).isEqualTo(404);
+  }
+
   @Test
   public void testAddressMatchLocalhost_notFound() throws Exception {
     generateActualJsonWithIp("127.0.0.1");
@@ -0,0 +1,86 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.model.rde.RdeMode.FULL;
+import static google.registry.model.rde.RdeMode.THIN;
+import static google.registry.xml.ValidationMode.STRICT;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.net.InetAddresses;
+import google.registry.model.host.HostResource;
+import google.registry.testing.AppEngineRule;
+import java.net.InetAddress;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RdeFragmentFingerprints}. */
+@RunWith(JUnit4.class)
+public class RdeFragmentFingerprintsTest {
+
+  @Rule public final AppEngineRule appEngine = AppEngineRule.builder().withDatastore().build();
+
+  private static HostResource host(String... addresses) {
+    ImmutableSet.Builder<InetAddress> inetAddresses = new ImmutableSet.Builder<>();
+    for (String address : addresses) {
+      inetAddresses.add(InetAddresses.forString(address));
+    }
+    return new HostResource.Builder()
+        .setRepoId("1-ROID")
+        .setFullyQualifiedHostName("ns1.example.tld")
+        .setInetAddresses(inetAddresses.build())
+        .build();
+  }
+
+  private static String fingerprint(HostResource host) {
+    return fingerprint(host, "v1");
+  }
+
+  private static String fingerprint(HostResource host, String appVersion) {
+    return RdeFragmentFingerprints.fingerprint(appVersion, STRICT, FULL, host, ImmutableList.of());
+  }
+
+  @Test
+  public void testFingerprint_sameResource_isStable() {
+    assertThat(fingerprint(host("192.0.2.1"))).isEqualTo(fingerprint(host("192.0.2.1")));
+  }
+
+  @Test
+  public void testFingerprint_doesntDependOnSetOrder() {
+    assertThat(fingerprint(host("192.0.2.1", "192.0.2.2")))
+        .isEqualTo(fingerprint(host("192.0.2.2", "192.0.2.1")));
+  }
+
+  @Test
+  public void testFingerprint_changesWithResource() {
+    assertThat(fingerprint(host("192.0.2.1"))).isNotEqualTo(fingerprint(host("192.0.2.2")));
+  }
+
+  @Test
+  public void testFingerprint_changesWithOtherInputs() {
+    HostResource host = host("192.0.2.1");
+    assertThat(fingerprint(host)).isNotEqualTo(fingerprint(host, "v2"));
+    assertThat(RdeFragmentFingerprints.fingerprint("v1", STRICT, THIN, host, ImmutableList.of()))
+        .isNotEqualTo(fingerprint(host));
+    assertThat(
+            RdeFragmentFingerprints.fingerprint(
+                "v1", STRICT, FULL, host, ImmutableList.of("ns1.example.tld")))
+        .isNotEqualTo(fingerprint(host));
+  }
+}
@@ -19,6 +19,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static google.registry.model.common.Cursor.CursorType.BRDA;
 import static google.registry.model.common.Cursor.CursorType.RDE_STAGING;
 import static google.registry.model.ofy.ObjectifyService.ofy;
+import static google.registry.model.rde.RdeMode.FULL;
 import static google.registry.rde.RdeFixtures.makeContactResource;
 import static google.registry.rde.RdeFixtures.makeDomainResource;
 import static google.registry.rde.RdeFixtures.makeHostResource;
@@ -44,6 +45,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.net.InetAddresses;
+import com.googlecode.objectify.Key;
 import com.googlecode.objectify.VoidWork;
 import google.registry.keyring.api.Keyring;
 import google.registry.keyring.api.PgpHelper;
@@ -51,6 +53,7 @@ import google.registry.model.common.Cursor;
 import google.registry.model.common.Cursor.CursorType;
 import google.registry.model.host.HostResource;
 import google.registry.model.ofy.Ofy;
+import google.registry.model.rde.RdeFragmentCacheEntry;
 import google.registry.model.registry.Registry;
 import google.registry.request.HttpException.BadRequestException;
 import google.registry.request.RequestParameters;
@@ -668,6 +671,90 @@ public class RdeStagingActionTest extends MapreduceTestCase<RdeStagingAction> {
     assertThat(deposit.getResend()).isEqualTo(1);
   }
 
+  @Test
+  public void testMapReduce_unchangedResource_reusesCachedFragment() throws Exception {
+    clock.setTo(DateTime.parse("1999-12-31TZ"));
+    createTldWithEscrowEnabled("fop");
+    HostResource host = makeHostResource(clock, "ns1.dein.fop", "a:fed::cafe");
+
+    clock.setTo(DateTime.parse("2000-01-01TZ"));
+    action.run();
+    executeTasksUntilEmpty("mapreduce", clock);
+    assertThat(readXml("fop_2000-01-01_full_S1_R0.xml.ghostryde")).contains("a:fed::cafe");
+
+    // Doctor the cached fragment, so that we can tell whether the next deposit reuses it.
+    RdeFragmentCacheEntry entry =
+        ofy().load().key(RdeFragmentCacheEntry.createKey(Key.create(host), FULL)).now();
+    persistResource(
+        RdeFragmentCacheEntry.create(
+            Key.create(host),
+            FULL,
+            entry.getFingerprint(),
+            entry.getXml().replace("a:fed::cafe", "a:fed::beef"),
+            entry.getError()));
+
+    setCursor(Registry.get("fop"), RDE_STAGING, DateTime.parse("2000-01-01TZ"));
+    action.response = new FakeResponse();
+    action.run();
+    executeTasksUntilEmpty("mapreduce", clock);
+    assertThat(readXml("fop_2000-01-01_full_S1_R1.xml.ghostryde")).contains("a:fed::beef");
+  }
+
+  @Test
+  public void testMapReduce_changedResource_isMarshalledAgain() throws Exception {
+    clock.setTo(DateTime.parse("1999-12-31TZ"));
+    createTldWithEscrowEnabled("fop");
+    HostResource host = makeHostResource(clock, "ns1.dein.fop", "a:fed::cafe");
+
+    clock.setTo(DateTime.parse("2000-01-01TZ"));
+    action.run();
+    executeTasksUntilEmpty("mapreduce", clock);
+
+    RdeFragmentCacheEntry entry =
+        ofy().load().key(RdeFragmentCacheEntry.createKey(Key.create(host), FULL)).now();
+    persistResource(
+        RdeFragmentCacheEntry.create(
+            Key.create(host),
+            FULL,
+            entry.getFingerprint(),
+            entry.getXml().replace("a:fed::cafe", "a:fed::beef"),
+            entry.getError()));
+    persistResourceWithCommitLog(
+        host.asBuilder()
+            .setInetAddresses(ImmutableSet.of(InetAddresses.forString("dead:beef::cafe")))
+            .build());
+
+    clock.setTo(DateTime.parse("2000-01-02TZ"));
+    action.response = new FakeResponse();
+    action.run();
+    executeTasksUntilEmpty("mapreduce", clock);
+    String deposit = readXml("fop_2000-01-02_full_S1_R0.xml.ghostryde");
+    assertThat(deposit).contains("dead:beef::cafe");
+    assertThat(deposit).doesNotContain("a:fed::beef");
+  }
+
+  @Test
+  public void testMapReduce_deletedResource_cachedFragmentIsDeleted() throws Exception {
+    clock.setTo(DateTime.parse("1999-12-31TZ"));
+    createTldWithEscrowEnabled("fop");
+    HostResource host = makeHostResource(clock, "ns1.dein.fop", "a:fed::cafe");
+
+    clock.setTo(DateTime.parse("2000-01-01TZ"));
+    action.run();
+    executeTasksUntilEmpty("mapreduce", clock);
+    Key<RdeFragmentCacheEntry> cacheKey = RdeFragmentCacheEntry.createKey(Key.create(host), FULL);
+    assertThat(ofy().load().key(cacheKey).now()).isNotNull();
+
+    persistResourceWithCommitLog(
+        host.asBuilder().setDeletionTime(DateTime.parse("2000-01-01T12:00Z")).build());
+    clock.setTo(DateTime.parse("2000-01-02TZ"));
+    action.response = new FakeResponse();
+    action.run();
+    executeTasksUntilEmpty("mapreduce", clock);
+    ofy().clearSessionCache();
+    assertThat(ofy().load().key(cacheKey).now()).isNull();
+  }
+
   @Test
   public void testMapReduce_brdaDeposit_doesntIncludeHostsOrContacts() throws Exception {
     clock.setTo(DateTime.parse("1999-12-31TZ"));
@@ -44,6 +44,7 @@ import com.google.appengine.api.utils.SystemProperty;
 import com.google.appengine.tools.cloudstorage.GcsFilename;
 import com.google.appengine.tools.cloudstorage.GcsService;
 import com.google.appengine.tools.cloudstorage.GcsServiceFactory;
+import com.google.apphosting.api.ApiProxy;
 import com.google.common.io.ByteSource;
 import com.google.common.io.CharStreams;
 import com.google.common.io.Files;
@@ -215,6 +216,17 @@ public class RdeUploadActionTest {
       action.runner = runner;
       action.taskEnqueuer = new TaskEnqueuer(new Retrier(null, 1));
       action.retrier = new Retrier(new FakeSleeper(clock), 3);
+      action.pipelineBufferSize = BUFFER_SIZE;
+      // The pipeline's threads need the test's App Engine environment to read from and write to
+      // Cloud Storage, like the request threads that they'd be in production.
+      ApiProxy.Environment environment = ApiProxy.getCurrentEnvironment();
+      action.threadFactory =
+          runnable ->
+              new Thread(
+                  () -> {
+                    ApiProxy.setEnvironmentForCurrentThread(environment);
+                    runnable.run();
+                  });
       return action;
     }
   }
@@ -0,0 +1,138 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.rde.imports;
+
+import static com.google.common.truth.Truth.assertThat;
+import static google.registry.rde.imports.RdeParser.RDE_CONTACT_URI;
+import static google.registry.rde.imports.RdeParser.RDE_DOMAIN_URI;
+import static google.registry.rde.imports.RdeParser.RDE_HOST_URI;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.appengine.tools.cloudstorage.GcsFilename;
+import com.google.appengine.tools.cloudstorage.GcsService;
+import com.google.appengine.tools.cloudstorage.GcsServiceFactory;
+import com.google.appengine.tools.cloudstorage.RetryParams;
+import com.google.common.io.ByteSource;
+import google.registry.gcs.GcsUtils;
+import google.registry.testing.AppEngineRule;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link RdeDepositIndex}. */
+@RunWith(JUnit4.class)
+public class RdeDepositIndexTest {
+
+  private static final ByteSource DEPOSIT_10_DOMAIN =
+      RdeImportsTestData.get("deposit_10_domain.xml");
+  private static final ByteSource DEPOSIT_10_HOST = RdeImportsTestData.get("deposit_10_host.xml");
+  private static final GcsFilename FILENAME = new GcsFilename("rde-import", "escrow-file.xml");
+  private static final int BUFFER_SIZE = 1024;
+
+  private static final GcsService GCS_SERVICE =
+      GcsServiceFactory.createGcsService(RetryParams.getDefaultInstance());
+
+  @Rule
+  public final AppEngineRule appEngine = AppEngineRule.builder().build();
+
+  private static RdeDepositIndex createIndex(
+      ByteSource deposit, String uri, String name, int interval) throws Exception {
+    try (InputStream xmlInput = deposit.openStream()) {
+      return RdeDepositIndex.create(xmlInput, uri, name, interval).get();
+    }
+  }
+
+  @Test
+  public void testContainsElement_everyNthElement() throws Exception {
+    RdeDepositIndex index = createIndex(DEPOSIT_10_DOMAIN, RDE_DOMAIN_URI, "domain", 3);
+    assertThat(index.containsElement(0)).isTrue();
+    assertThat(index.containsElement(1)).isFalse();
+    assertThat(index.containsElement(3)).isTrue();
+    assertThat(index.containsElement(6)).isTrue();
+    assertThat(index.containsElement(9)).isTrue();
+    assertThat(index.containsElement(12)).isFalse();
+  }
+
+  @Test
+  public void testOpenStreamAtElement_parsesFromElement() throws Exception {
+    new GcsUtils(GCS_SERVICE, BUFFER_SIZE).createFromBytes(FILENAME, DEPOSIT_10_DOMAIN.read());
+    RdeDepositIndex index = createIndex(DEPOSIT_10_DOMAIN, RDE_DOMAIN_URI, "domain", 3);
+    try (RdeParser parser =
+        new RdeParser(index.openStreamAtElement(GCS_SERVICE, FILENAME, 6, BUFFER_SIZE))) {
+      assertThat(parser.getHeader().getTld()).isEqualTo("test");
+      assertThat(parser.nextDomain()).isTrue();
+      assertThat(parser.getDomain().getName()).isEqualTo("example7.test");
+      assertThat(parser.nextDomain()).isTrue();
+      assertThat(parser.nextDomain()).isTrue();
+      assertThat(parser.nextDomain()).isTrue();
+      assertThat(parser.getDomain().getName()).isEqualTo("example10.test");
+      assertThat(parser.nextDomain()).isFalse();
+    }
+  }
+
+  @Test
+  public void testOpenStreamAtElement_hosts() throws Exception {
+    new GcsUtils(GCS_SERVICE, BUFFER_SIZE).createFromBytes(FILENAME, DEPOSIT_10_HOST.read());
+    RdeDepositIndex index = createIndex(DEPOSIT_10_HOST, RDE_HOST_URI, "host", 4);
+    try (RdeParser parser =
+        new RdeParser(index.openStreamAtElement(GCS_SERVICE, FILENAME, 4, BUFFER_SIZE))) {
+      assertThat(parser.nextHost()).isTrue();
+      assertThat(parser.getHost().getName()).isEqualTo("ns1.example5.test");
+    }
+  }
+
+  @Test
+  public void testCreate_noElements_isEmpty() throws Exception {
+    try (InputStream xmlInput = DEPOSIT_10_DOMAIN.openStream()) {
+      assertThat(RdeDepositIndex.create(xmlInput, RDE_CONTACT_URI, "contact", 1))
+          .isEqualTo(Optional.empty());
+    }
+  }
+
+  @Test
+  public void testCreate_skipsCommentsAndCdata() throws Exception {
+    String xml =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<rde:deposit xmlns:rde=\"urn:ietf:params:xml:ns:rde-1.0\"\n"
+            + "  xmlns:rdeHeader='urn:ietf:params:xml:ns:rdeHeader-1.0'\n"
+            + "  xmlns:d=\"urn:ietf:params:xml:ns:rdeDomain-1.0\">\n"
+            + "<rde:contents><rdeHeader:header></rdeHeader:header >\n"
+            + "<!-- <d:domain> --><![CDATA[<d:domain>]]><d:domain/><d:domainx/><d:domain>\n"
+            + "</d:domain></rde:contents></rde:deposit>";
+    RdeDepositIndex index =
+        RdeDepositIndex.create(
+                new ByteArrayInputStream(xml.getBytes(UTF_8)), RDE_DOMAIN_URI, "domain", 1)
+            .get();
+    assertThat(index.containsElement(0)).isTrue();
+    assertThat(index.containsElement(1)).isTrue();
+    assertThat(index.containsElement(2)).isFalse();
+  }
+
+  @Test
+  public void testCreate_undeclaredNamespace_isEmpty() throws Exception {
+    String xml =
+        "<rde:deposit xmlns:rde=\"urn:ietf:params:xml:ns:rde-1.0\"><rde:contents>"
+            + "<rdeHeader:header xmlns:rdeHeader=\"urn:ietf:params:xml:ns:rdeHeader-1.0\"/>"
+            + "</rde:contents></rde:deposit>";
+    assertThat(
+            RdeDepositIndex.create(
+                new ByteArrayInputStream(xml.getBytes(UTF_8)), RDE_DOMAIN_URI, "domain", 1))
+        .isEqualTo(Optional.empty());
+  }
+}
@@ -188,6 +188,26 @@ public class RdeDomainReaderTest {
     reader.next();
   }
 
+  /** Seeks to the first domain of the reader using the index, and after rehydration */
+  @Test
+  public void testIndexedThreeOffsetTwoResult_seeksWithRehydration() throws Exception {
+    pushToGcs(DEPOSIT_10_DOMAIN);
+    RdeDepositIndex index;
+    try (InputStream xmlInput = DEPOSIT_10_DOMAIN.openStream()) {
+      index = RdeDepositIndex.create(xmlInput, RdeParser.RDE_DOMAIN_URI, "domain", 3).get();
+    }
+    RdeDomainReader reader =
+        new RdeDomainReader(IMPORT_BUCKET_NAME, IMPORT_FILE_NAME, 3, 2, index);
+    reader.beginSlice();
+    checkDomain(reader.next(), "example4.test", "Dexample4-TEST");
+    reader.endSlice();
+    reader = cloneObject(reader);
+    reader.beginSlice();
+    checkDomain(reader.next(), "example5.test", "Dexample5-TEST");
+    thrown.expect(NoSuchElementException.class);
+    reader.next();
+  }
+
   private void pushToGcs(ByteSource source) throws IOException {
     try (OutputStream outStream =
           new GcsUtils(GCS_SERVICE, ConfigModule.provideGcsBufferSize())
@@ -24,6 +24,7 @@ import static org.mockito.Mockito.when;
 import google.registry.testing.ExceptionRule;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import javax.servlet.http.HttpServletResponse;
 import org.junit.Rule;
 import org.junit.Test;
@@ -61,6 +62,17 @@ public class ResponseImplTest {
     assertThat(httpOutput.toString()).isEqualTo("hello world");
   }
 
+  @Test
+  public void testGetPayloadWriter() throws Exception {
+    StringWriter httpOutput = new StringWriter();
+    when(rsp.getWriter()).thenReturn(new PrintWriter(httpOutput));
+    Writer writer = new ResponseImpl(rsp).getPayloadWriter();
+    writer.write("hello ");
+    writer.write("world");
+    writer.flush();
+    assertThat(httpOutput.toString()).isEqualTo("hello world");
+  }
+
   @Test
   public void testSendJavaScriptRedirect_producesHtmlScript() throws Exception {
     StringWriter httpOutput = new StringWriter();
@@ -70,9 +70,14 @@ public final class IoSpyRule extends ExternalResource {
     return this;
   }
 
-  /** Adds your {@link Closeable} to the list of streams to check, and returns its mocked self. */
+  /**
+   * Adds your {@link Closeable} to the list of streams to check, and returns its mocked self.
+   *
+   * <p>This may be called from any thread, e.g. by the stages of a {@link
+   * google.registry.util.StreamPipeline}.
+   */
   @CheckReturnValue
-  public <T extends Closeable> T register(T stream) {
+  public synchronized <T extends Closeable> T register(T stream) {
     T res = spy(stream);
     spiedCloseables.add(res);
     if (stream instanceof InputStream) {
@@ -18,7 +18,7 @@ import static com.google.appengine.tools.development.testing.LocalTaskQueueTestC
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Predicates.in;
 import static com.google.common.base.Predicates.not;
-import static com.google.common.collect.Iterables.getFirst;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.transform;
 import static com.google.common.collect.Multisets.containsOccurrences;
 import static com.google.common.truth.Truth.assertThat;
@@ -275,17 +275,24 @@ public class TaskQueueHelper {
     }
   }
 
-  /** Returns the value for the param on a task info, or empty if it is missing. */
-  private static String getParamFromTaskInfo(TaskStateInfo taskInfo, String paramName) {
-    return getFirst(UriParameters.parse(taskInfo.getBody()).get(paramName), "");
-  }
-
-  /** Ensures that the DNS queue tasks are exactly those for the expected target names. */
+  /**
+   * Ensures that the DNS queue tasks are exactly those for the expected target names.
+   *
+   * <p>A single DNS task can hold several target names, so this compares the target names across
+   * all tasks, regardless of how they are packed into tasks.
+   */
   public static void assertDnsTasksEnqueued(String... expectedTaskTargetNames) throws Exception {
-    assertTasksEnqueuedWithProperty(
-        DnsConstants.DNS_PULL_QUEUE_NAME,
-        taskStateInfo -> getParamFromTaskInfo(taskStateInfo, DnsConstants.DNS_TARGET_NAME_PARAM),
-        expectedTaskTargetNames);
+    assertThat(
+            getQueueInfo(DnsConstants.DNS_PULL_QUEUE_NAME)
+                .getTaskInfo()
+                .stream()
+                .flatMap(
+                    taskInfo ->
+                        UriParameters.parse(taskInfo.getBody())
+                            .get(DnsConstants.DNS_TARGET_NAME_PARAM)
+                            .stream())
+                .collect(toImmutableList()))
+        .containsExactly((Object[]) expectedTaskTargetNames);
   }
 
   /** Ensures that the DNS queue does not contain any tasks. */
@@ -36,11 +36,13 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.googlecode.objectify.Key;
+import google.registry.gcs.GcsUtils;
 import google.registry.model.domain.secdns.DelegationSignerData;
 import google.registry.model.eppcommon.StatusValue;
 import google.registry.model.host.HostResource;
 import google.registry.testing.FakeClock;
 import google.registry.testing.mapreduce.MapreduceTestCase;
+import google.registry.tools.server.GenerateZoneFilesAction.ZoneFileAssemblingOutput;
 import java.net.InetAddress;
 import java.util.Map;
 import org.joda.time.DateTime;
@@ -150,5 +152,63 @@ public class GenerateZoneFilesActionTest extends MapreduceTestCase<GenerateZoneF
     assertThat(generatedFileLines.iterator().next()).isEqualTo(goldenFileLines.iterator().next());
     // The remaining lines can be in any order.
     assertThat(generatedFileLines).containsExactlyElementsIn(goldenFileLines);
+    // The header and the partial zone files that it was assembled from are cleaned up.
+    assertThat(gcsService.getMetadata(new GcsFilename(
+        "zonefiles-bucket", String.format("tld-%s.zone.header", now)))).isNull();
+    for (int shard = 0; shard < GenerateZoneFilesAction.SHARDS_PER_TLD; shard++) {
+      assertThat(gcsService.getMetadata(new GcsFilename(
+          "zonefiles-bucket", String.format("tld-%s.zone.part%02d", now, shard)))).isNull();
+    }
+  }
+
+  @Test
+  public void testGenerate_tldWithoutDomains_writesOnlyHeader() throws Exception {
+    DateTime now = DateTime.now(DateTimeZone.UTC).withTimeAtStartOfDay();
+    createTld("tld");
+    createTld("com");
+    persistResource(newDomainResource("example.com").asBuilder()
+        .addNameservers(ImmutableSet.of(Key.create(persistActiveHost("ns.example.net"))))
+        .build());
+
+    GenerateZoneFilesAction action = new GenerateZoneFilesAction();
+    action.mrRunner = makeDefaultRunner();
+    action.bucket = "zonefiles-bucket";
+    action.gcsBufferSize = 123;
+    action.datastoreRetention = standardDays(29);
+    action.dnsDefaultATtl = Duration.standardSeconds(11);
+    action.dnsDefaultNsTtl = Duration.standardSeconds(222);
+    action.dnsDefaultDsTtl = Duration.standardSeconds(3333);
+    action.clock = new FakeClock(now.plusMinutes(2));
+
+    action.handleJsonRequest(ImmutableMap.<String, Object>of(
+        "tlds", ImmutableList.of("tld", "com"),
+        "exportTime", now));
+    executeTasksUntilEmpty("mapreduce");
+
+    assertThat(new String(readGcsFile(gcsService, new GcsFilename(
+        "zonefiles-bucket", String.format("tld-%s.zone", now))), UTF_8))
+            .isEqualTo("$ORIGIN\ttld.\n\n");
+    assertThat(new String(readGcsFile(gcsService, new GcsFilename(
+        "zonefiles-bucket", String.format("com-%s.zone", now))), UTF_8))
+            .isEqualTo("$ORIGIN\tcom.\n\nexample\t222\tIN\tNS\tns.example.net.\n\n");
+  }
+
+  @Test
+  public void testAssembly_rerunAfterPiecesDeleted_keepsZoneFile() throws Exception {
+    DateTime now = DateTime.now(DateTimeZone.UTC).withTimeAtStartOfDay();
+    new GcsUtils(gcsService, 123)
+        .createFromBytes(
+            new GcsFilename("zonefiles-bucket", String.format("tld-%s.zone.part03", now)),
+            "example\t222\tIN\tNS\tns.example.net.\n".getBytes(UTF_8));
+    ZoneFileAssemblingOutput output =
+        new ZoneFileAssemblingOutput(ImmutableSet.of("tld"), "zonefiles-bucket", now, 123);
+
+    output.finish(ImmutableList.of());
+    // A retry finds the pieces gone, but must not replace the zone file with just the header.
+    output.finish(ImmutableList.of());
+
+    assertThat(new String(readGcsFile(gcsService, new GcsFilename(
+        "zonefiles-bucket", String.format("tld-%s.zone", now))), UTF_8))
+            .isEqualTo("$ORIGIN\ttld.\n\nexample\t222\tIN\tNS\tns.example.net.\n");
   }
 }
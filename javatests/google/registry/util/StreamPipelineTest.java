@@ -0,0 +1,133 @@
+// Copyright 2017 The Nomulus Authors. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package google.registry.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import google.registry.testing.ExceptionRule;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link StreamPipeline}. */
+@RunWith(JUnit4.class)
+public class StreamPipelineTest {
+
+  @Rule
+  public ExceptionRule thrown = new ExceptionRule();
+
+  private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+  @Test
+  public void testFork_passesBytesThroughStages() throws Exception {
+    try (StreamPipeline pipeline = new StreamPipeline(threadFactory, 3, 2)) {
+      InputStream first =
+          pipeline.fork(
+              output -> {
+                output.write("hello ".getBytes(UTF_8));
+                output.write('w');
+                output.write("xxorld!".getBytes(UTF_8), 2, 5);
+              });
+      InputStream second =
+          pipeline.fork(
+              output -> {
+                int b;
+                while ((b = first.read()) != -1) {
+                  output.write(Character.toUpperCase(b));
+                }
+              });
+      assertThat(new String(ByteStreams.toByteArray(second), UTF_8)).isEqualTo("HELLO WORLD!");
+    }
+  }
+
+  @Test
+  public void testFork_largeData() throws Exception {
+    byte[] data = new byte[10 * 1024 * 1024];
+    new Random(42).nextBytes(data);
+    try (StreamPipeline pipeline = new StreamPipeline(threadFactory, 64 * 1024, 4)) {
+      InputStream first =
+          pipeline.fork(output -> ByteStreams.copy(new ByteArrayInputStream(data), output));
+      InputStream second = pipeline.fork(output -> ByteStreams.copy(first, output));
+      assertThat(ByteStreams.toByteArray(second)).isEqualTo(data);
+    }
+  }
+
+  @Test
+  public void testFork_stageFails_readerGetsFailure() throws Exception {
+    try (StreamPipeline pipeline = new StreamPipeline(threadFactory, 3, 2)) {
+      InputStream input =
+          pipeline.fork(
+              output -> {
+                output.write("hello".getBytes(UTF_8));
+                throw new IllegalStateException("oh no");
+              });
+      try {
+        ByteStreams.toByteArray(input);
+        fail("Expected IOException");
+      } catch (IOException e) {
+        assertThat(e).hasMessageThat().isEqualTo("Pipeline stage failed");
+        assertThat(e).hasCauseThat().isInstanceOf(IllegalStateException.class);
+        assertThat(e).hasCauseThat().hasMessageThat().isEqualTo("oh no");
+      }
+    }
+  }
+
+  @Test
+  public void testClose_stopsStagesThatAreStillWriting() throws Exception {
+    AtomicReference<Exception> stageFailure = new AtomicReference<>();
+    try (StreamPipeline pipeline = new StreamPipeline(threadFactory, 3, 2)) {
+      InputStream input =
+          pipeline.fork(
+              output -> {
+                try {
+                  while (true) {
+                    output.write("forever".getBytes(UTF_8));
+                  }
+                } catch (IOException e) {
+                  stageFailure.set(e);
+                  throw e;
+                }
+              });
+      assertThat(input.read()).isEqualTo('f');
+    }
+    assertThat(stageFailure.get()).hasMessageThat().isEqualTo("Pipeline reader closed");
+  }
+
+  @Test
+  public void testFork_failsAfterClose() throws Exception {
+    StreamPipeline pipeline = new StreamPipeline(threadFactory, 3, 2);
+    pipeline.close();
+    thrown.expect(IllegalStateException.class, "pipeline closed");
+    pipeline.fork(output -> {});
+  }
+
+  @Test
+  @SuppressWarnings("resource")
+  public void testConstructor_failsWithZeroBufferSize() {
+    thrown.expect(IllegalArgumentException.class, "bufferSize must be positive");
+    new StreamPipeline(threadFactory, 0, 2);
+  }
+}